@@ -1,15 +1,54 @@
 import apiClient from "./apiClient";
 
+const POLL_INTERVAL_MS = 1000;
+const ACTIVE_STATUSES = ["Pending", "Running"];
+// Số dòng tối đa của một trang /rows (bằng kích thước chunk ở backend)
+const ROWS_PAGE_SIZE = 500;
+
+// reportData chỉ chứa phần tóm tắt: nạp trang dòng đầu tiên vào reportData.items cho màn hình hiển thị
+const withFirstRows = async (report) => {
+    if (!report || report.status !== "Completed") {
+        return report;
+    }
+    const response = await apiClient.get(`/reports/${report.reportId}/rows`, {
+        params: { page: 0, size: ROWS_PAGE_SIZE }
+    });
+    return {
+        ...report,
+        reportData: { ...(report.reportData || {}), items: response.data.content }
+    };
+};
+
+// Backend tạo báo cáo ở background: chờ tới khi job kết thúc rồi trả về báo cáo đầy đủ
+const waitForReport = async (report) => {
+    let current = report;
+    while (current && ACTIVE_STATUSES.includes(current.status)) {
+        await new Promise((resolve) => setTimeout(resolve, POLL_INTERVAL_MS));
+        const response = await apiClient.get(`/reports/${current.reportId}`);
+        current = response.data;
+    }
+    if (current && current.status === "Failed") {
+        throw new Error(current.errorMessage || "Tạo báo cáo thất bại");
+    }
+    return withFirstRows(current);
+};
+
 export const reportService = {
     // Generate Inventory Report
     generateInventoryReport: async (data) => {
         const response = await apiClient.post("/reports/generate/inventory", data);
-        return response.data;
+        return waitForReport(response.data);
     },
     
     // Generate Sales Report
     generateSalesReport: async (data) => {
         const response = await apiClient.post("/reports/generate/sales", data);
+        return waitForReport(response.data);
+    },
+    
+    // Cancel a pending / running report
+    cancelReport: async (reportId) => {
+        const response = await apiClient.post(`/reports/${reportId}/cancel`);
         return response.data;
     },
     
@@ -22,6 +61,12 @@ export const reportService = {
     // Get report by ID
     getReportById: async (reportId) => {
         const response = await apiClient.get(`/reports/${reportId}`);
+        return withFirstRows(response.data);
+    },
+    
+    // Page through report rows
+    getReportRows: async (reportId, page = 0, size = 100) => {
+        const response = await apiClient.get(`/reports/${reportId}/rows`, { params: { page, size } });
         return response.data;
     },
     
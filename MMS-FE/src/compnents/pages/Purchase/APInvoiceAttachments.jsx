@@ -100,18 +100,18 @@ const APInvoiceAttachments = ({ invoiceId, readonly = false }) => {
     }
   };
 
+  // File đính kèm không public: tải qua API (có token) rồi xem / lưu từ blob
+  const fetchFileBlob = async (attachment) => {
+    const response = await apInvoiceAttachmentService.viewFile(attachment.attachmentId);
+    return URL.createObjectURL(response.data);
+  };
+
   const handleView = async (attachment) => {
     try {
-      console.log('Viewing attachment:', attachment);
-      
-      // Get static URL directly
-      const { downloadUrl } = await apInvoiceAttachmentService.getDownloadUrl(attachment.attachmentId);
-      
-      console.log('Download URL:', downloadUrl);
-      console.log('File name:', attachment.fileName);
-      
-      // Open in new tab instead of modal to avoid iframe blocking
-      window.open(downloadUrl, '_blank');
+      const blobUrl = await fetchFileBlob(attachment);
+      setPreviewUrl(blobUrl);
+      setPreviewFileType(attachment.fileName);
+      setShowPreview(true);
     } catch (error) {
       console.error('Error viewing file:', error);
       alert('Lỗi khi xem file');
@@ -120,8 +120,14 @@ const APInvoiceAttachments = ({ invoiceId, readonly = false }) => {
 
   const handleDownload = async (attachment) => {
     try {
-      const { downloadUrl } = await apInvoiceAttachmentService.getDownloadUrl(attachment.attachmentId);
-      window.open(downloadUrl, '_blank');
+      const blobUrl = await fetchFileBlob(attachment);
+      const link = document.createElement('a');
+      link.href = blobUrl;
+      link.download = attachment.fileName || 'attachment';
+      document.body.appendChild(link);
+      link.click();
+      link.remove();
+      URL.revokeObjectURL(blobUrl);
     } catch (error) {
       console.error('Error downloading file:', error);
       alert('Lỗi khi tải file');
@@ -322,6 +328,7 @@ const APInvoiceAttachments = ({ invoiceId, readonly = false }) => {
               <button
                 onClick={() => {
                   setShowPreview(false);
+                  URL.revokeObjectURL(previewUrl);
                   setPreviewUrl(null);
                   setPreviewFileType(null);
                 }}
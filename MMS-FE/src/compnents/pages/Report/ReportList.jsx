@@ -471,12 +471,14 @@ export default function ReportList() {
                                                 <span className={`inline-flex items-center px-2.5 py-0.5 rounded-full text-xs font-medium ${
                                                     report.status === 'Completed' 
                                                         ? 'bg-green-100 text-green-800' 
-                                                        : report.status === 'Processing'
+                                                        : report.status === 'Pending' || report.status === 'Running'
                                                         ? 'bg-yellow-100 text-yellow-800'
                                                         : 'bg-red-100 text-red-800'
                                                 }`}>
                                                     {report.status === 'Completed' ? 'Hoàn thành' :
-                                                     report.status === 'Processing' ? 'Đang xử lý' : 
+                                                     report.status === 'Pending' ? 'Đang chờ' :
+                                                     report.status === 'Running' ? `Đang xử lý (${report.progress || 0}%)` :
+                                                     report.status === 'Cancelled' ? 'Đã hủy' :
                                                      report.status === 'Failed' ? 'Lỗi' : report.status}
                                                 </span>
                                             </td>
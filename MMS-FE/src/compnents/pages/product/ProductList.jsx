@@ -42,6 +42,18 @@ const ProductList = () => {
     return `${baseUrl}${imagePath}`;
   };
 
+  // Build srcSet from thumbnail srcset returned by API (relative URLs)
+  const getImageSrcSet = (srcset) => {
+    if (!srcset) return undefined;
+    return srcset
+      .split(',')
+      .map(candidate => {
+        const [url, descriptor] = candidate.trim().split(/\s+/);
+        return `${getImageUrl(url)} ${descriptor}`;
+      })
+      .join(', ');
+  };
+
   // ============ Effects ============
   useEffect(() => {
     fetchCategories();
@@ -277,7 +289,10 @@ const ProductList = () => {
               {paginatedProducts.map((product, index) => {
                 const productId = product.productId || product.id || product.product_id;
                 const imageUrls = product.imageUrls || (product.imageUrl ? [product.imageUrl] : []);
-                const images = imageUrls.map(url => getImageUrl(url)).filter(Boolean);
+                // Ghép ảnh với srcset cùng chỉ số trước khi lọc để bỏ ảnh rỗng không làm lệch srcset
+                const images = imageUrls
+                  .map((url, i) => ({ src: getImageUrl(url), srcSet: getImageSrcSet(product.imageSrcsets?.[i]) }))
+                  .filter(image => image.src);
                 
                 return (
                   <tr key={productId} className="hover:bg-slate-50">
@@ -286,11 +301,14 @@ const ProductList = () => {
                         {images.length > 0 ? (
                           <>
                             <img 
-                              src={images[0]} 
+                              src={images[0].src} 
+                              srcSet={images[0].srcSet}
+                              sizes="96px"
+                              loading="lazy"
                               alt={product.name}
                               className="w-24 h-24 object-cover rounded-lg border-2 border-slate-300 shadow-md hover:shadow-lg transition-shadow"
                               onError={(e) => {
-                                console.error('Image load error:', images[0]);
+                                console.error('Image load error:', images[0].src);
                                 e.target.src = 'https://via.placeholder.com/112?text=No+Image';
                               }}
                             />
@@ -299,7 +317,10 @@ const ProductList = () => {
                                 {images.slice(1, 4).map((img, idx) => (
                                   <img 
                                     key={idx}
-                                    src={img} 
+                                    src={img.src} 
+                                    srcSet={img.srcSet}
+                                    sizes="64px"
+                                    loading="lazy"
                                     alt={`${product.name} ${idx + 2}`}
                                     className="w-16 h-16 object-cover rounded border-2 border-slate-200 hover:border-slate-300 transition-colors"
                                     onError={(e) => {
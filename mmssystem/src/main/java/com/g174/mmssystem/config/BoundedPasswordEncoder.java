@@ -0,0 +1,105 @@
+package com.g174.mmssystem.config;
+
+import com.g174.mmssystem.exception.ServiceBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BCrypt chạy trên pool luồng riêng có giới hạn thay vì trên luồng request.
+ *
+ * Mỗi lần băm / kiểm tra mật khẩu tốn hàng chục ms CPU; khi nhiều người đăng nhập cùng lúc, số lõi CPU dành cho
+ * BCrypt bị giới hạn ở app.security.password-hash-workers (mặc định nửa số lõi), phần còn lại vẫn phục vụ API khác.
+ * Hàng đợi đầy (app.security.password-hash-queue-capacity) thì từ chối ngay với 503 thay vì giữ thêm luồng request.
+ *
+ * Metrics (tag name=password-hash): executor.queued, executor.active, executor.queue.remaining, executor.completed,
+ * executor.idle (thời gian chờ trong hàng đợi), executor (thời gian băm) và password.hash.rejected.
+ */
+@Component
+@Slf4j
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate = new BCryptPasswordEncoder();
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private final ThreadPoolExecutor executor;
+    private final ExecutorService monitoredExecutor;
+    private final Counter rejected;
+
+    public BoundedPasswordEncoder(MeterRegistry meterRegistry,
+                                  @Value("${app.security.password-hash-workers:0}") int workers,
+                                  @Value("${app.security.password-hash-queue-capacity:100}") int queueCapacity) {
+        int poolSize = workers > 0 ? workers : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.monitoredExecutor = ExecutorServiceMetrics.monitor(meterRegistry, executor, "password-hash");
+        this.rejected = Counter.builder("password.hash.rejected")
+                .description("Số yêu cầu băm / kiểm tra mật khẩu bị từ chối do hàng đợi đầy")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> T run(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = monitoredExecutor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            log.warn("Password hash queue is full ({} queued)", executor.getQueue().size());
+            throw new ServiceBusyException("Hệ thống đang bận. Vui lòng thử lại sau.");
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServiceBusyException("Yêu cầu bị hủy. Vui lòng thử lại sau.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -29,7 +29,7 @@ public class CorsConfig {
         configuration.setAllowedHeaders(Arrays.asList("*"));
 
         configuration.setExposedHeaders(Arrays.asList(
-                "Authorization", "Content-Type", "X-Total-Count"
+                "Authorization", "Content-Type", "X-Total-Count", "ETag"
         ));
 
         configuration.setAllowCredentials(true);
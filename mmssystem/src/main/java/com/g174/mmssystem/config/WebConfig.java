@@ -1,18 +1,19 @@
 package com.g174.mmssystem.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
-import java.nio.file.Paths;
-
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+    // Xuất báo cáo lớn (StreamingResponseBody) có thể chạy lâu hơn timeout async mặc định của server
+    @Value("${app.report.export-timeout-ms:1800000}")
+    private long asyncRequestTimeout;
+
     @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        registry.addResourceHandler("/uploads/**")
-                .addResourceLocations("file:./uploads/")
-                .setCachePeriod(0);
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setDefaultTimeout(asyncRequestTimeout);
     }
 }
\ No newline at end of file
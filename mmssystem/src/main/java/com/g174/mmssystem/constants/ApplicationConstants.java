@@ -23,4 +23,7 @@ public final class ApplicationConstants {
 
     public static final String ROLE_PREFIX = "ROLE_";
     public static final String ANONYMOUS_USER = "anonymousUser";
+
+    // MySQL Connector/J chỉ stream từng dòng (không nạp cả result set) khi fetchSize = Integer.MIN_VALUE
+    public static final String STREAMING_FETCH_SIZE = "" + Integer.MIN_VALUE;
 }
\ No newline at end of file
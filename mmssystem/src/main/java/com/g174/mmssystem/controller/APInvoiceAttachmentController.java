@@ -4,12 +4,16 @@ import com.g174.mmssystem.annotation.LogActivity;
 import com.g174.mmssystem.dto.requestDTO.APInvoiceAttachmentRequestDTO;
 import com.g174.mmssystem.dto.responseDTO.APInvoiceAttachmentResponseDTO;
 import com.g174.mmssystem.entity.APInvoiceAttachment;
+import com.g174.mmssystem.service.FileServer;
+import com.g174.mmssystem.service.FileStore;
 import com.g174.mmssystem.service.IService.IAPInvoiceAttachmentService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.HttpHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -17,7 +21,9 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.net.MalformedURLException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashMap;
@@ -30,7 +36,15 @@ import java.util.Map;
 @Slf4j
 public class APInvoiceAttachmentController {
 
+    private static final String LEGACY_INVOICE_URL_PREFIX = "/uploads/invoices/";
+
     private final IAPInvoiceAttachmentService attachmentService;
+    private final FileServer fileServer;
+    private final FileStore fileStore;
+
+    // Thư mục của file đính kèm upload trước khi có FileStore (URL /uploads/invoices/...)
+    @Value("${file.upload.invoice-dir:uploads/invoices}")
+    private String legacyInvoiceDir;
 
     /**
      * Upload file đính kèm cho hóa đơn
@@ -152,24 +166,32 @@ public class APInvoiceAttachmentController {
     }
 
     /**
-     * Stream file để xem trực tiếp (không bắt download)
+     * Stream file để xem trực tiếp (không bắt download).
+     * Hỗ trợ Range (xem / tải tiếp từng phần PDF lớn) và ETag: trình duyệt giữ bản cache riêng
+     * và chỉ nhận 304 nếu file không đổi (vẫn kiểm tra quyền ở mỗi lần xem).
      */
     @GetMapping("/{attachmentId}/view")
     @PreAuthorize("hasAnyRole('MANAGER','ACCOUNTING')")
-    public ResponseEntity<Resource> viewFile(@PathVariable Integer attachmentId) {
+    public void viewFile(@PathVariable Integer attachmentId,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
         try {
             APInvoiceAttachmentResponseDTO attachment = attachmentService.getAttachmentById(attachmentId);
             
-            // Get file path from fileUrl (remove base URL part)
+            // File trong FileStore (kể cả kho riêng tư), file upload trước đây thì nằm trong file.upload.invoice-dir
             String fileUrl = attachment.getFileUrl();
-            String filePath = fileUrl.replace("/uploads/", "");
-            
-            Path path = Paths.get("uploads", filePath);
-            Resource resource = new UrlResource(path.toUri());
-            
-            if (!resource.exists() || !resource.isReadable()) {
+            Path path = fileStore.localPathOf(fileUrl);
+            if (path == null && fileUrl != null && fileUrl.startsWith(LEGACY_INVOICE_URL_PREFIX)) {
+                Path root = Paths.get(legacyInvoiceDir).toAbsolutePath().normalize();
+                path = root.resolve(fileUrl.substring(LEGACY_INVOICE_URL_PREFIX.length())).normalize();
+                if (!path.startsWith(root)) {
+                    path = null;
+                }
+            }
+            if (path == null || !Files.isRegularFile(path) || !Files.isReadable(path)) {
                 log.error("File not found or not readable: {}", path);
-                return ResponseEntity.notFound().build();
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
             }
             
             // Determine content type
@@ -178,27 +200,17 @@ public class APInvoiceAttachmentController {
                 contentType = "application/octet-stream";
             }
             
-            // Set headers for inline display (not download)
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.parseMediaType(contentType));
-            headers.add(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + attachment.getFileName() + "\"");
-            headers.add(HttpHeaders.CACHE_CONTROL, "no-cache, no-store, must-revalidate");
-            headers.add(HttpHeaders.PRAGMA, "no-cache");
-            headers.add(HttpHeaders.EXPIRES, "0");
-            
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(resource);
+            // Inline display (not download)
+            String contentDisposition = ContentDisposition.inline()
+                    .filename(attachment.getFileName(), StandardCharsets.UTF_8)
+                    .build()
+                    .toString();
+            fileServer.serve(path, MediaType.parseMediaType(contentType), contentDisposition,
+                    CacheControl.noCache().cachePrivate(), request, response);
                     
-        } catch (MalformedURLException e) {
-            log.error("Malformed URL for attachment {}: {}", attachmentId, e.getMessage());
-            return ResponseEntity.notFound().build();
         } catch (RuntimeException e) {
             log.error("Error viewing file for attachment {}: {}", attachmentId, e.getMessage());
-            return ResponseEntity.notFound().build();
-        } catch (Exception e) {
-            log.error("Error viewing file for attachment {}: {}", attachmentId, e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
         }
     }
 
@@ -9,6 +9,10 @@ import com.g174.mmssystem.dto.responseDTO.ARPaymentResponseDTO;
 import com.g174.mmssystem.service.IService.IARInvoiceService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -22,6 +26,23 @@ public class ARInvoiceController {
 
     private final IARInvoiceService arInvoiceService;
 
+    @GetMapping
+    @PreAuthorize("hasAnyRole('MANAGER','ACCOUNTING')")
+    public ResponseEntity<Page<ARInvoiceListResponseDTO>> listInvoices(
+            @RequestParam(required = false) Integer customerId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String keyword,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "createdAt") String sortBy,
+            @RequestParam(defaultValue = "desc") String sortDir) {
+
+        Sort sort = Sort.by(sortBy);
+        sort = "desc".equalsIgnoreCase(sortDir) ? sort.descending() : sort.ascending();
+        Pageable pageable = PageRequest.of(page, size, sort);
+        return ResponseEntity.ok(arInvoiceService.getInvoices(customerId, status, keyword, pageable));
+    }
+
     @GetMapping("/all")
     @PreAuthorize("hasAnyRole('MANAGER','ACCOUNTING')")
     public ResponseEntity<List<ARInvoiceListResponseDTO>> getAllInvoices() {
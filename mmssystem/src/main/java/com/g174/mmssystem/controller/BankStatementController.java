@@ -0,0 +1,46 @@
+package com.g174.mmssystem.controller;
+
+import com.g174.mmssystem.annotation.LogActivity;
+import com.g174.mmssystem.dto.responseDTO.BankStatementImportResultDTO;
+import com.g174.mmssystem.service.IService.IBankStatementImportService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api/bank-statements")
+@RequiredArgsConstructor
+@Slf4j
+public class BankStatementController {
+
+    private final IBankStatementImportService bankStatementImportService;
+
+    /**
+     * Import sao kê ngân hàng (CSV), tự khớp và ghi nhận thanh toán cho hóa đơn AR/AP.
+     * dryRun=true: chỉ trả về kết quả đối soát, không ghi thanh toán.
+     */
+    @PostMapping("/import")
+    @PreAuthorize("hasAnyRole('MANAGER','ACCOUNTING')")
+    @LogActivity(
+            action = "IMPORT_BANK_STATEMENT",
+            activityType = "PAYMENT_MANAGEMENT",
+            description = "Import sao kê ngân hàng"
+    )
+    public ResponseEntity<BankStatementImportResultDTO> importStatement(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(defaultValue = "false") boolean dryRun) throws IOException {
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("File sao kê rỗng");
+        }
+        log.info("Importing bank statement {} ({} bytes, dryRun={})", file.getOriginalFilename(), file.getSize(), dryRun);
+        try (InputStream input = file.getInputStream()) {
+            return ResponseEntity.ok(bankStatementImportService.importStatement(input, dryRun));
+        }
+    }
+}
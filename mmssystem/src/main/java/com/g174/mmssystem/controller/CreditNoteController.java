@@ -7,10 +7,16 @@ import com.g174.mmssystem.dto.responseDTO.CreditNoteResponseDTO;
 import com.g174.mmssystem.service.IService.ICreditNoteService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -20,6 +26,28 @@ public class CreditNoteController {
 
     private final ICreditNoteService creditNoteService;
 
+    @GetMapping
+    @PreAuthorize("hasAnyRole('MANAGER','ACCOUNTING')")
+    public ResponseEntity<Page<CreditNoteListResponseDTO>> listCreditNotes(
+            @RequestParam(required = false) Integer invoiceId,
+            @RequestParam(required = false) Integer returnOrderId,
+            @RequestParam(required = false) Integer customerId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "createdAt") String sortBy,
+            @RequestParam(defaultValue = "desc") String sortDir) {
+
+        Sort sort = Sort.by(sortBy);
+        sort = "desc".equalsIgnoreCase(sortDir) ? sort.descending() : sort.ascending();
+        Pageable pageable = PageRequest.of(page, size, sort);
+        return ResponseEntity.ok(creditNoteService.getCreditNotes(invoiceId, returnOrderId, customerId, status,
+                keyword, fromDate, toDate, pageable));
+    }
+
     @GetMapping("/all")
     @PreAuthorize("hasAnyRole('MANAGER','ACCOUNTING')")
     public ResponseEntity<List<CreditNoteListResponseDTO>> getAllCreditNotes(
@@ -4,6 +4,7 @@ import com.g174.mmssystem.annotation.LogActivity;
 import com.g174.mmssystem.dto.requestDTO.CustomerRequestDTO;
 import com.g174.mmssystem.dto.responseDTO.CustomerResponseDTO;
 import com.g174.mmssystem.dto.responseDTO.CustomerDetailResponseDTO;
+import com.g174.mmssystem.dto.responseDTO.SuggestionDTO;
 import com.g174.mmssystem.service.IService.ICustomerService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -89,6 +90,14 @@ public class CustomerController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/suggest")
+    @PreAuthorize("hasAnyRole('MANAGER','SALE','ACCOUNTING')")
+    public ResponseEntity<List<SuggestionDTO>> suggestCustomers(
+            @RequestParam(defaultValue = "") String q,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(customerService.suggestCustomers(q, limit));
+    }
+
     @GetMapping("/search/page")
     @PreAuthorize("hasAnyRole('MANAGER','SALE','ACCOUNTING')")
     public ResponseEntity<Page<CustomerResponseDTO>> searchCustomersWithPagination(
@@ -4,8 +4,12 @@ import com.g174.mmssystem.dto.DashboardStatsDTO;
 import com.g174.mmssystem.dto.DashboardStatsDTO.*;
 import com.g174.mmssystem.dto.NotificationDTO;
 import com.g174.mmssystem.dto.NotificationDTO.*;
+import com.g174.mmssystem.dto.responseDTO.AgingInvoiceDTO;
+import com.g174.mmssystem.dto.responseDTO.AgingReportDTO;
+import com.g174.mmssystem.dto.responseDTO.AgingRowDTO;
 import com.g174.mmssystem.entity.SalesOrder;
 import com.g174.mmssystem.entity.User;
+import com.g174.mmssystem.enums.AgingBucket;
 import com.g174.mmssystem.enums.PurchaseOrderStatus;
 import com.g174.mmssystem.enums.RequisitionStatus;
 import org.springframework.security.core.Authentication;
@@ -23,13 +27,20 @@ import com.g174.mmssystem.repository.RFQRepository;
 import com.g174.mmssystem.repository.SalesOrderRepository;
 import com.g174.mmssystem.repository.WarehouseRepository;
 import com.g174.mmssystem.repository.WarehouseStockRepository;
+import com.g174.mmssystem.service.IService.IAgingReportService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
@@ -56,6 +67,7 @@ public class DashboardController {
     private final DeliveryRepository deliveryRepository;
     private final APInvoiceRepository apInvoiceRepository;
     private final ARInvoiceRepository arInvoiceRepository;
+    private final IAgingReportService agingReportService;
 
     @GetMapping("/stats")
     @PreAuthorize("hasAnyRole('MANAGER','PURCHASE','WAREHOUSE','SALE','ACCOUNTING')")
@@ -454,31 +466,12 @@ public class DashboardController {
     
     // Helper method to get pending AP invoices (Accounts Payable)
     private List<PendingAPInvoice> getPendingAPInvoices(int limit) {
-        List<PendingAPInvoice> pendingList = new ArrayList<>();
-        
-        // Get all unpaid and partially paid AP invoices
-        List<com.g174.mmssystem.entity.APInvoice> apInvoices = apInvoiceRepository.findAllActive().stream()
-            .filter(invoice -> invoice.getStatus() == com.g174.mmssystem.entity.APInvoice.APInvoiceStatus.Unpaid ||
-                invoice.getStatus() == com.g174.mmssystem.entity.APInvoice.APInvoiceStatus.Partially_Paid)
-            .sorted((a, b) -> {
-                if (a.getDueDate() == null) return 1;
-                if (b.getDueDate() == null) return -1;
-                return a.getDueDate().compareTo(b.getDueDate());
-            })
-            .limit(limit)
-            .collect(Collectors.toList());
-        
-        LocalDateTime now = LocalDateTime.now();
-        for (com.g174.mmssystem.entity.APInvoice invoice : apInvoices) {
-            Integer daysUntilDue = null;
-            if (invoice.getDueDate() != null) {
-                daysUntilDue = (int) java.time.temporal.ChronoUnit.DAYS.between(
-                    now.toLocalDate(), 
-                    invoice.getDueDate()
-                );
-            }
-            
-            pendingList.add(new PendingAPInvoice(
+        LocalDate today = LocalDate.now();
+
+        // Unpaid / partially paid, due date gần nhất trước (không có hạn xếp cuối), chỉ lấy đúng limit dòng
+        Pageable topN = PageRequest.of(0, limit, Sort.by(Sort.Order.asc("dueDate").nullsLast()));
+        return apInvoiceRepository.findOpenByDueRange(null, null, null, true, topN).stream()
+            .map(invoice -> new PendingAPInvoice(
                 invoice.getApInvoiceId(),
                 invoice.getInvoiceNo(),
                 invoice.getVendor() != null ? invoice.getVendor().getName() : "Unknown",
@@ -486,113 +479,56 @@ public class DashboardController {
                 invoice.getBalanceAmount() != null ? invoice.getBalanceAmount() : BigDecimal.ZERO,
                 invoice.getDueDate() != null ? invoice.getDueDate().toString() : null,
                 invoice.getStatus() != null ? invoice.getStatus().name() : "Unknown",
-                daysUntilDue
-            ));
-        }
-        
-        return pendingList;
+                invoice.getDueDate() != null
+                    ? (int) java.time.temporal.ChronoUnit.DAYS.between(today, invoice.getDueDate())
+                    : null
+            ))
+            .collect(Collectors.toList());
     }
     
     // Helper method to get overdue AR invoices (Accounts Receivable)
     private List<OverdueARInvoice> getOverdueARInvoices(int limit) {
-        List<OverdueARInvoice> overdueList = new ArrayList<>();
-        
-        // Get overdue AR invoices
-        LocalDateTime now = LocalDateTime.now();
-        List<com.g174.mmssystem.entity.ARInvoice> arInvoices = arInvoiceRepository.findAllActiveInvoices().stream()
-            .filter(invoice -> invoice.getDueDate() != null &&
-                invoice.getDueDate().isBefore(now.toLocalDate()) &&
-                (invoice.getStatus() == com.g174.mmssystem.entity.ARInvoice.InvoiceStatus.Unpaid ||
-                 invoice.getStatus() == com.g174.mmssystem.entity.ARInvoice.InvoiceStatus.PartiallyPaid))
-            .sorted((a, b) -> a.getDueDate().compareTo(b.getDueDate()))
-            .limit(limit)
-            .collect(Collectors.toList());
-        
-        for (com.g174.mmssystem.entity.ARInvoice invoice : arInvoices) {
-            Integer daysOverdue = null;
-            if (invoice.getDueDate() != null) {
-                daysOverdue = (int) java.time.temporal.ChronoUnit.DAYS.between(
-                    invoice.getDueDate(),
-                    now.toLocalDate()
-                );
-            }
-            
-            String customerName = "Unknown";
-            if (invoice.getCustomer() != null) {
-                customerName = invoice.getCustomer().getFirstName() + " " + invoice.getCustomer().getLastName();
-            }
-            
-            overdueList.add(new OverdueARInvoice(
+        LocalDate today = LocalDate.now();
+
+        // Quá hạn lâu nhất trước, chỉ lấy đúng limit dòng
+        Pageable topN = PageRequest.of(0, limit, Sort.by("dueDate").ascending());
+        return arInvoiceRepository.findOpenByDueRange(null, null, today, false, topN).stream()
+            .map(invoice -> new OverdueARInvoice(
                 invoice.getArInvoiceId(),
                 invoice.getInvoiceNo(),
-                customerName,
+                invoice.getCustomer() != null
+                    ? invoice.getCustomer().getFirstName() + " " + invoice.getCustomer().getLastName()
+                    : "Unknown",
                 invoice.getTotalAmount() != null ? invoice.getTotalAmount() : BigDecimal.ZERO,
                 invoice.getBalanceAmount() != null ? invoice.getBalanceAmount() : BigDecimal.ZERO,
                 invoice.getDueDate() != null ? invoice.getDueDate().toString() : null,
                 invoice.getStatus() != null ? invoice.getStatus().name() : "Unknown",
-                daysOverdue
-            ));
-        }
-        
-        return overdueList;
+                (int) java.time.temporal.ChronoUnit.DAYS.between(invoice.getDueDate(), today)
+            ))
+            .collect(Collectors.toList());
     }
     
     // Helper method to get accounting summary
     private AccountingSummary getAccountingSummary() {
-        // Calculate total accounts payable (unpaid + partially paid)
-        BigDecimal totalAP = apInvoiceRepository.findAllActive().stream()
-            .filter(invoice -> invoice.getStatus() == com.g174.mmssystem.entity.APInvoice.APInvoiceStatus.Unpaid ||
-                invoice.getStatus() == com.g174.mmssystem.entity.APInvoice.APInvoiceStatus.Partially_Paid)
-            .map(invoice -> invoice.getBalanceAmount() != null ? invoice.getBalanceAmount() : BigDecimal.ZERO)
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        // Calculate total accounts receivable (unpaid + partially paid)
-        BigDecimal totalAR = arInvoiceRepository.findAllActiveInvoices().stream()
-            .filter(invoice -> invoice.getStatus() == com.g174.mmssystem.entity.ARInvoice.InvoiceStatus.Unpaid ||
-                invoice.getStatus() == com.g174.mmssystem.entity.ARInvoice.InvoiceStatus.PartiallyPaid)
-            .map(invoice -> invoice.getBalanceAmount() != null ? invoice.getBalanceAmount() : BigDecimal.ZERO)
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        // Count pending AP invoices
-        Integer pendingAPCount = (int) apInvoiceRepository.findAllActive().stream()
-            .filter(invoice -> invoice.getStatus() == com.g174.mmssystem.entity.APInvoice.APInvoiceStatus.Unpaid ||
-                invoice.getStatus() == com.g174.mmssystem.entity.APInvoice.APInvoiceStatus.Partially_Paid)
-            .count();
-        
-        // Count overdue AR invoices
-        LocalDateTime now = LocalDateTime.now();
-        Integer overdueARCount = (int) arInvoiceRepository.findAllActiveInvoices().stream()
-            .filter(invoice -> invoice.getDueDate() != null &&
-                invoice.getDueDate().isBefore(now.toLocalDate()) &&
-                (invoice.getStatus() == com.g174.mmssystem.entity.ARInvoice.InvoiceStatus.Unpaid ||
-                 invoice.getStatus() == com.g174.mmssystem.entity.ARInvoice.InvoiceStatus.PartiallyPaid))
-            .count();
-        
+        LocalDate today = LocalDate.now();
+
+        // Tổng công nợ lấy từ báo cáo tuổi nợ (grouped query, có cache theo ngày)
+        AgingRowDTO payables = agingReportService.getPayableAging(today).getTotals();
+        AgingRowDTO receivables = agingReportService.getReceivableAging(today).getTotals();
+
+        BigDecimal overdueReceivables = receivables.getDays0To30()
+            .add(receivables.getDays31To60())
+            .add(receivables.getDays61To90())
+            .add(receivables.getOver90());
+
         // Calculate upcoming payments (next 7 days)
-        LocalDateTime sevenDaysLater = now.plusDays(7);
-        BigDecimal upcomingPayments = apInvoiceRepository.findAllActive().stream()
-            .filter(invoice -> invoice.getDueDate() != null &&
-                !invoice.getDueDate().isBefore(now.toLocalDate()) &&
-                !invoice.getDueDate().isAfter(sevenDaysLater.toLocalDate()) &&
-                (invoice.getStatus() == com.g174.mmssystem.entity.APInvoice.APInvoiceStatus.Unpaid ||
-                 invoice.getStatus() == com.g174.mmssystem.entity.APInvoice.APInvoiceStatus.Partially_Paid))
-            .map(invoice -> invoice.getBalanceAmount() != null ? invoice.getBalanceAmount() : BigDecimal.ZERO)
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        // Calculate overdue receivables
-        BigDecimal overdueReceivables = arInvoiceRepository.findAllActiveInvoices().stream()
-            .filter(invoice -> invoice.getDueDate() != null &&
-                invoice.getDueDate().isBefore(now.toLocalDate()) &&
-                (invoice.getStatus() == com.g174.mmssystem.entity.ARInvoice.InvoiceStatus.Unpaid ||
-                 invoice.getStatus() == com.g174.mmssystem.entity.ARInvoice.InvoiceStatus.PartiallyPaid))
-            .map(invoice -> invoice.getBalanceAmount() != null ? invoice.getBalanceAmount() : BigDecimal.ZERO)
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
+        BigDecimal upcomingPayments = apInvoiceRepository.sumOpenBalanceDueBetween(today, today.plusDays(7));
+
         return new AccountingSummary(
-            totalAP,
-            totalAR,
-            pendingAPCount,
-            overdueARCount,
+            payables.getTotalAmount(),
+            receivables.getTotalAmount(),
+            (int) payables.getInvoiceCount(),
+            (int) receivables.getOverdueCount(),
             upcomingPayments,
             overdueReceivables
         );
@@ -618,6 +554,40 @@ public class DashboardController {
         return new ApprovalSummary(totalPending, pendingPQ, pendingPO, pendingSO);
     }
     
+    @GetMapping("/aging/ar")
+    @PreAuthorize("hasAnyRole('MANAGER','ACCOUNTING')")
+    public ResponseEntity<AgingReportDTO> getReceivableAging(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf) {
+        return ResponseEntity.ok(agingReportService.getReceivableAging(asOf));
+    }
+
+    @GetMapping("/aging/ap")
+    @PreAuthorize("hasAnyRole('MANAGER','ACCOUNTING')")
+    public ResponseEntity<AgingReportDTO> getPayableAging(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf) {
+        return ResponseEntity.ok(agingReportService.getPayableAging(asOf));
+    }
+
+    @GetMapping("/aging/ar/invoices")
+    @PreAuthorize("hasAnyRole('MANAGER','ACCOUNTING')")
+    public ResponseEntity<Page<AgingInvoiceDTO>> getReceivableAgingInvoices(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf,
+            @RequestParam(required = false) AgingBucket bucket,
+            @RequestParam(required = false) Integer customerId,
+            Pageable pageable) {
+        return ResponseEntity.ok(agingReportService.getReceivableInvoices(asOf, bucket, customerId, pageable));
+    }
+
+    @GetMapping("/aging/ap/invoices")
+    @PreAuthorize("hasAnyRole('MANAGER','ACCOUNTING')")
+    public ResponseEntity<Page<AgingInvoiceDTO>> getPayableAgingInvoices(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf,
+            @RequestParam(required = false) AgingBucket bucket,
+            @RequestParam(required = false) Integer vendorId,
+            Pageable pageable) {
+        return ResponseEntity.ok(agingReportService.getPayableInvoices(asOf, bucket, vendorId, pageable));
+    }
+
     @GetMapping("/notifications")
     @PreAuthorize("hasAnyRole('MANAGER','PURCHASE','WAREHOUSE','SALE','ACCOUNTING')")
     public ResponseEntity<NotificationDTO> getNotifications(Authentication authentication) {
@@ -760,12 +730,7 @@ public class DashboardController {
         LocalDateTime now = LocalDateTime.now();
         
         // Overdue AP invoices
-        Long overdueAP = apInvoiceRepository.findAllActive().stream()
-            .filter(invoice -> invoice.getDueDate() != null &&
-                invoice.getDueDate().isBefore(now.toLocalDate()) &&
-                (invoice.getStatus() == com.g174.mmssystem.entity.APInvoice.APInvoiceStatus.Unpaid ||
-                 invoice.getStatus() == com.g174.mmssystem.entity.APInvoice.APInvoiceStatus.Partially_Paid))
-            .count();
+        Long overdueAP = agingReportService.getPayableAging(now.toLocalDate()).getTotals().getOverdueCount();
         
         if (overdueAP > 0) {
             notifications.add(new NotificationItem(
@@ -782,12 +747,7 @@ public class DashboardController {
         }
         
         // Overdue AR invoices
-        Long overdueAR = arInvoiceRepository.findAllActiveInvoices().stream()
-            .filter(invoice -> invoice.getDueDate() != null &&
-                invoice.getDueDate().isBefore(now.toLocalDate()) &&
-                (invoice.getStatus() == com.g174.mmssystem.entity.ARInvoice.InvoiceStatus.Unpaid ||
-                 invoice.getStatus() == com.g174.mmssystem.entity.ARInvoice.InvoiceStatus.PartiallyPaid))
-            .count();
+        Long overdueAR = agingReportService.getReceivableAging(now.toLocalDate()).getTotals().getOverdueCount();
         
         if (overdueAR > 0) {
             notifications.add(new NotificationItem(
@@ -803,15 +763,10 @@ public class DashboardController {
             ));
         }
         
-        // Upcoming payments (next 7 days)
-        LocalDateTime sevenDaysLater = now.plusDays(7);
-        Long upcomingPayments = apInvoiceRepository.findAllActive().stream()
-            .filter(invoice -> invoice.getDueDate() != null &&
-                !invoice.getDueDate().isBefore(now.toLocalDate()) &&
-                !invoice.getDueDate().isAfter(sevenDaysLater.toLocalDate()) &&
-                (invoice.getStatus() == com.g174.mmssystem.entity.APInvoice.APInvoiceStatus.Unpaid ||
-                 invoice.getStatus() == com.g174.mmssystem.entity.APInvoice.APInvoiceStatus.Partially_Paid))
-            .count();
+        // Upcoming payments (next 7 days): chỉ cần COUNT của page đầu tiên
+        Long upcomingPayments = apInvoiceRepository.findOpenByDueRange(null, now.toLocalDate(),
+                now.toLocalDate().plusDays(8), false, PageRequest.of(0, 1))
+            .getTotalElements();
         
         if (upcomingPayments > 0) {
             notifications.add(new NotificationItem(
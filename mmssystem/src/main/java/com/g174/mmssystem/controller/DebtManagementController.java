@@ -1,15 +1,22 @@
 package com.g174.mmssystem.controller;
 
 import com.g174.mmssystem.dto.responseDTO.DebtTransactionResponseDTO;
+import com.g174.mmssystem.dto.responseDTO.BalanceReconciliationReportDTO;
+import com.g174.mmssystem.service.IService.IBalanceReconciliationService;
 import com.g174.mmssystem.service.IService.IDebtManagementService;
+import com.g174.mmssystem.service.IService.IDebtSummaryService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
+import java.util.Map;
+
 /**
  * Controller cho Debt Management
  * Tổng hợp công nợ từ APInvoice, APPayment, ARInvoice, ARPayment
@@ -21,6 +28,8 @@ import org.springframework.web.bind.annotation.*;
 public class DebtManagementController {
 
     private final IDebtManagementService debtManagementService;
+    private final IDebtSummaryService debtSummaryService;
+    private final IBalanceReconciliationService balanceReconciliationService;
 
     /**
      * Lấy danh sách tất cả giao dịch công nợ có phân trang
@@ -40,6 +49,10 @@ public class DebtManagementController {
     /**
      * Tìm kiếm giao dịch công nợ có phân trang
      * @param keyword - Từ khóa tìm kiếm (mã KH/NCC, tên, nội dung giao dịch, etc.)
+     * @param customerVendorType - Lọc theo Customer / Vendor (tùy chọn)
+     * @param transactionType - Lọc theo AP_INVOICE, AP_PAYMENT, AR_INVOICE, AR_PAYMENT (tùy chọn)
+     * @param fromDate - Từ ngày giao dịch (tùy chọn)
+     * @param toDate - Đến ngày giao dịch (tùy chọn)
      * @param pageable - Thông tin phân trang và sắp xếp
      * @return Page chứa danh sách DebtTransactionResponseDTO
      */
@@ -47,11 +60,16 @@ public class DebtManagementController {
     @PreAuthorize("hasAnyRole('MANAGER','ACCOUNTING','SALE','PURCHASE')")
     public ResponseEntity<Page<DebtTransactionResponseDTO>> searchDebtTransactionsWithPagination(
             @RequestParam(required = false, defaultValue = "") String keyword,
+            @RequestParam(required = false) String customerVendorType,
+            @RequestParam(required = false) String transactionType,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
             Pageable pageable) {
         log.info("REST: Searching debt transactions with keyword: '{}', page: {}, size: {}, sort: {}",
                 keyword, pageable.getPageNumber(), pageable.getPageSize(), pageable.getSort());
 
-        Page<DebtTransactionResponseDTO> response = debtManagementService.searchDebtTransactions(keyword, pageable);
+        Page<DebtTransactionResponseDTO> response = debtManagementService.searchDebtTransactions(
+                keyword, customerVendorType, transactionType, fromDate, toDate, pageable);
         return ResponseEntity.ok(response);
     }
 
@@ -64,6 +82,47 @@ public class DebtManagementController {
         Page<com.g174.mmssystem.dto.responseDTO.DebtSummaryRowDTO> response = debtManagementService.getCurrentMonthSummary(pageable);
         return ResponseEntity.ok(response);
     }
-}
 
+    /**
+     * Tổng hợp công nợ của một tháng bất kỳ (opening, tăng, giảm, closing) từ bảng tổng hợp
+     * @param customerVendorType - Lọc theo Customer / Vendor (tùy chọn)
+     */
+    @GetMapping("/summary/monthly/page")
+    @PreAuthorize("hasAnyRole('MANAGER','ACCOUNTING','SALE','PURCHASE')")
+    public ResponseEntity<Page<com.g174.mmssystem.dto.responseDTO.DebtSummaryRowDTO>> getMonthlySummaryByPeriod(
+            @RequestParam int year,
+            @RequestParam int month,
+            @RequestParam(required = false) String customerVendorType,
+            Pageable pageable) {
+        log.info("REST: Fetching debt summary for {}/{} - type: {}, page: {}, size: {}",
+                month, year, customerVendorType, pageable.getPageNumber(), pageable.getPageSize());
+
+        return ResponseEntity.ok(debtSummaryService.getMonthlySummary(year, month, customerVendorType, pageable));
+    }
+
+    /**
+     * Tính lại toàn bộ bảng tổng hợp công nợ theo tháng từ dữ liệu hóa đơn / thanh toán / Credit Note
+     */
+    @PostMapping("/summary/rebuild")
+    @PreAuthorize("hasAnyRole('MANAGER','ACCOUNTING')")
+    public ResponseEntity<Map<String, Object>> rebuildMonthlySummary() {
+        log.info("REST: Rebuilding debt monthly summaries");
+
+        int rows = debtSummaryService.rebuild();
+        return ResponseEntity.ok(Map.of("rebuiltRows", rows));
+    }
+
+    /**
+     * Đối soát toàn bộ công nợ KH/NCC với hóa đơn, thanh toán, Credit Note và sửa chỗ lệch
+     * @param dryRun - true: chỉ báo cáo chênh lệch, không sửa
+     */
+    @PostMapping("/reconcile")
+    @PreAuthorize("hasAnyRole('MANAGER','ACCOUNTING')")
+    public ResponseEntity<BalanceReconciliationReportDTO> reconcileBalances(
+            @RequestParam(defaultValue = "false") boolean dryRun) {
+        log.info("REST: Reconciling customer/vendor balances - dryRun: {}", dryRun);
+
+        return ResponseEntity.ok(balanceReconciliationService.reconcileAll(dryRun));
+    }
+}
 
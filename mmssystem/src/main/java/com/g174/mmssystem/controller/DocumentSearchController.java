@@ -0,0 +1,30 @@
+package com.g174.mmssystem.controller;
+
+import com.g174.mmssystem.dto.responseDTO.DocumentSearchResultDTO;
+import com.g174.mmssystem.enums.SearchDocumentType;
+import com.g174.mmssystem.service.IService.IDocumentSearchService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/search")
+@RequiredArgsConstructor
+public class DocumentSearchController {
+
+    private final IDocumentSearchService documentSearchService;
+
+    // Tìm chung theo số chứng từ / tên đối tác; chỉ trả về loại chứng từ mà role của người dùng được xem
+    @GetMapping("/documents")
+    @PreAuthorize("hasAnyRole('MANAGER','PURCHASE','SALE','WAREHOUSE','ACCOUNTING')")
+    public ResponseEntity<List<DocumentSearchResultDTO>> searchDocuments(
+            @RequestParam(defaultValue = "") String q,
+            @RequestParam(required = false) Set<SearchDocumentType> types,
+            @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(documentSearchService.searchDocuments(q, types, limit));
+    }
+}
@@ -1,21 +1,28 @@
 package com.g174.mmssystem.controller;
 
 import com.g174.mmssystem.annotation.LogActivity;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.g174.mmssystem.dto.requestDTO.GoodIssueBatchRequestDTO;
 import com.g174.mmssystem.dto.requestDTO.GoodIssueRequestDTO;
 import com.g174.mmssystem.dto.responseDTO.GoodIssueResponseDTO;
 import com.g174.mmssystem.service.IService.IGoodIssueService;
+import com.g174.mmssystem.service.IService.IUserContextService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
@@ -25,6 +32,8 @@ import java.util.List;
 public class GoodIssueController {
 
     private final IGoodIssueService issueService;
+    private final IUserContextService userContextService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     @PreAuthorize("hasAnyRole('MANAGER','WAREHOUSE')")
@@ -70,6 +79,44 @@ public class GoodIssueController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    /**
+     * Tạo và duyệt phiếu xuất kho cho nhiều Delivery trong một lần gọi.
+     * Kết quả trả về dạng NDJSON, mỗi dòng là kết quả của một Delivery.
+     */
+    @PostMapping(value = "/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasAnyRole('MANAGER','WAREHOUSE')")
+    @LogActivity(action = "BATCH_COMPLETE_GOOD_ISSUE", activityType = "WAREHOUSE_MANAGEMENT", description = "Tạo và duyệt phiếu xuất kho hàng loạt")
+    public ResponseEntity<StreamingResponseBody> createAndApproveIssues(
+            @Valid @RequestBody GoodIssueBatchRequestDTO requestDTO) {
+        log.info("REST: Batch creating good issues for {} deliveries", requestDTO.getDeliveryIds().size());
+
+        Integer userId = userContextService.getCurrentUserId();
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        List<Integer> issueIds = issueService.createAndApproveIssues(requestDTO, userId);
+        // Phiếu đã commit; kết quả được đọc lại theo từng nhóm và ghi ra ngay, không dựng cả danh sách trong bộ nhớ
+        StreamingResponseBody body = outputStream -> {
+            try {
+                issueService.streamBatchResults(issueIds, result -> {
+                    try {
+                        outputStream.write(objectMapper.writeValueAsBytes(result));
+                        outputStream.write('\n');
+                        outputStream.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     @GetMapping("/{issueId}")
     @PreAuthorize("hasAnyRole('MANAGER','WAREHOUSE','SALE','ACCOUNTING')")
     public ResponseEntity<GoodIssueResponseDTO> getIssueById(@PathVariable Integer issueId) {
@@ -9,6 +9,8 @@ import com.g174.mmssystem.service.IService.IMenuItemService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -24,11 +26,17 @@ public class MenuItemController {
     
     private final IMenuItemService menuItemService;
     
+    // Trả về ETag = version của menu; trình duyệt gửi lại If-None-Match và nhận 304 nếu menu không đổi
     @GetMapping("/current-user")
-    public ResponseEntity<MenuConfigResponseDTO> getMenuConfigForCurrentUser() {
-        log.info("API: Lấy menu config cho user hiện tại");
+    public ResponseEntity<MenuConfigResponseDTO> getMenuConfigForCurrentUser(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         MenuConfigResponseDTO menuConfig = menuItemService.getMenuConfigForCurrentUser();
-        return ResponseEntity.ok(menuConfig);
+        String etag = "\"" + menuConfig.getVersion() + "\"";
+        CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+        if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).body(menuConfig);
     }
     
     @GetMapping("/role/{roleName}")
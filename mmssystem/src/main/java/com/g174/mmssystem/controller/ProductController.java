@@ -3,6 +3,7 @@ package com.g174.mmssystem.controller;
 import com.g174.mmssystem.annotation.LogActivity;
 import com.g174.mmssystem.dto.requestDTO.ProductRequestDTO;
 import com.g174.mmssystem.dto.responseDTO.ProductResponseDTO;
+import com.g174.mmssystem.dto.responseDTO.SuggestionDTO;
 import com.g174.mmssystem.service.IService.IProductService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -42,6 +43,15 @@ public class ProductController {
         }
     }
 
+    // Gợi ý khi gõ cho màn hình nhập chứng từ: chỉ trả về id / mã / tên
+    @GetMapping("/suggest")
+    @PreAuthorize("hasAnyRole('MANAGER','PURCHASE','SALE','WAREHOUSE','ACCOUNTING')")
+    public ResponseEntity<List<SuggestionDTO>> suggestProducts(
+            @RequestParam(defaultValue = "") String q,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(productService.suggestProducts(q, limit));
+    }
+
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('MANAGER','PURCHASE','SALE','WAREHOUSE','ACCOUNTING')")
     public ResponseEntity<ProductResponseDTO> getProduct(@PathVariable Integer id) {
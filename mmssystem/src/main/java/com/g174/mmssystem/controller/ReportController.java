@@ -2,22 +2,31 @@ package com.g174.mmssystem.controller;
 
 import com.g174.mmssystem.dto.request.ReportRequest;
 import com.g174.mmssystem.dto.response.ReportResponse;
+import com.g174.mmssystem.enums.ReportExportFormat;
 import com.g174.mmssystem.enums.ReportStatus;
 import com.g174.mmssystem.enums.ReportType;
+import com.g174.mmssystem.service.ReportExportService;
 import com.g174.mmssystem.service.ReportService;
 import com.g174.mmssystem.entity.MenuItem;
 import com.g174.mmssystem.repository.MenuItemRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.annotation.PostConstruct;
 
+import java.time.LocalDate;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/reports")
 @RequiredArgsConstructor
@@ -26,6 +35,7 @@ import jakarta.annotation.PostConstruct;
 public class ReportController {
     
     private final ReportService reportService;
+    private final ReportExportService reportExportService;
     private final com.g174.mmssystem.repository.UserRepository userRepository;
     private final MenuItemRepository menuItemRepository;
     
@@ -70,6 +80,17 @@ public class ReportController {
         return ResponseEntity.ok(report);
     }
     
+    // Page through report rows (đọc theo chunk, không nạp toàn bộ báo cáo)
+    @GetMapping("/{id}/rows")
+    @PreAuthorize("hasAnyRole('MANAGER','PURCHASE','WAREHOUSE','SALE','ACCOUNTING')")
+    public ResponseEntity<Page<Map<String, Object>>> getReportRows(
+            @PathVariable Integer id,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "100") int size) {
+        
+        return ResponseEntity.ok(reportService.getReportRows(id, page, size));
+    }
+    
     // Filter reports
     @GetMapping("/filter")
     @PreAuthorize("hasAnyRole('MANAGER','PURCHASE','WAREHOUSE','SALE','ACCOUNTING')")
@@ -84,7 +105,8 @@ public class ReportController {
         return ResponseEntity.ok(reports);
     }
     
-    // Generate Inventory Report
+    // Generate Inventory Report: trả về 202 kèm reportId, dữ liệu được tạo ở background
+    // (theo dõi status/progress qua GET /{id})
     @PostMapping("/generate/inventory")
     @PreAuthorize("hasAnyRole('MANAGER','WAREHOUSE')")
     public ResponseEntity<ReportResponse> generateInventoryReport(
@@ -93,7 +115,7 @@ public class ReportController {
         
         Integer userId = extractUserIdFromAuth(authentication);
         ReportResponse report = reportService.generateInventoryReport(request, userId);
-        return ResponseEntity.status(HttpStatus.CREATED).body(report);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(report);
     }
     
     // Generate Purchase Report
@@ -105,7 +127,7 @@ public class ReportController {
         
         Integer userId = extractUserIdFromAuth(authentication);
         ReportResponse report = reportService.generatePurchaseReport(request, userId);
-        return ResponseEntity.status(HttpStatus.CREATED).body(report);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(report);
     }
     
     // Generate Sales Report
@@ -117,7 +139,7 @@ public class ReportController {
         
         Integer userId = extractUserIdFromAuth(authentication);
         ReportResponse report = reportService.generateSalesReport(request, userId);
-        return ResponseEntity.status(HttpStatus.CREATED).body(report);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(report);
     }
     
     // Generate Financial Report
@@ -129,7 +151,53 @@ public class ReportController {
         
         Integer userId = extractUserIdFromAuth(authentication);
         ReportResponse report = reportService.generateFinancialReport(request, userId);
-        return ResponseEntity.status(HttpStatus.CREATED).body(report);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(report);
+    }
+    
+    // Export Inventory Report rows as CSV / XLSX, streamed straight from the database
+    @GetMapping("/export/inventory")
+    @PreAuthorize("hasAnyRole('MANAGER','WAREHOUSE')")
+    public ResponseEntity<StreamingResponseBody> exportInventoryReport(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) Integer warehouseId) {
+        
+        ReportRequest filters = ReportRequest.builder().warehouseId(warehouseId).build();
+        return export(ReportType.Inventory, filters, format);
+    }
+    
+    // Export Purchase Report rows as CSV / XLSX
+    @GetMapping("/export/purchase")
+    @PreAuthorize("hasAnyRole('MANAGER','PURCHASE')")
+    public ResponseEntity<StreamingResponseBody> exportPurchaseReport(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) Integer vendorId) {
+        
+        ReportRequest filters = ReportRequest.builder()
+                .startDate(startDate).endDate(endDate).vendorId(vendorId).build();
+        return export(ReportType.Purchase, filters, format);
+    }
+    
+    // Export Sales Report rows as CSV / XLSX
+    @GetMapping("/export/sales")
+    @PreAuthorize("hasAnyRole('MANAGER','SALE')")
+    public ResponseEntity<StreamingResponseBody> exportSalesReport(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) Integer customerId) {
+        
+        ReportRequest filters = ReportRequest.builder()
+                .startDate(startDate).endDate(endDate).customerId(customerId).build();
+        return export(ReportType.Sales, filters, format);
+    }
+    
+    // Cancel a pending / running report job
+    @PostMapping("/{id}/cancel")
+    @PreAuthorize("hasAnyRole('MANAGER','PURCHASE','WAREHOUSE','SALE','ACCOUNTING')")
+    public ResponseEntity<ReportResponse> cancelReport(@PathVariable Integer id) {
+        return ResponseEntity.ok(reportService.cancelReport(id));
     }
     
     // Delete report
@@ -140,6 +208,17 @@ public class ReportController {
         return ResponseEntity.noContent().build();
     }
     
+    // Response được ghi dần trong lúc đọc cursor, không dựng cả file trong bộ nhớ
+    private ResponseEntity<StreamingResponseBody> export(ReportType type, ReportRequest filters, String format) {
+        ReportExportFormat exportFormat = ReportExportFormat.from(format);
+        StreamingResponseBody body = output -> reportExportService.export(type, filters, exportFormat, output);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"" + reportExportService.fileName(type, exportFormat) + "\"")
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .body(body);
+    }
+    
     // Helper method to extract user ID from authentication
     private Integer extractUserIdFromAuth(Authentication authentication) {
         if (authentication != null && authentication.getName() != null) {
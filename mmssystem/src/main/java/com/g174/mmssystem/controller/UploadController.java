@@ -0,0 +1,66 @@
+package com.g174.mmssystem.controller;
+
+import com.g174.mmssystem.service.FileServer;
+import com.g174.mmssystem.service.FileStore;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Phục vụ file đã upload (thư mục app.upload.dir, mặc định ./uploads), không cần đăng nhập.
+ * Ảnh trong FileStore có URL theo hash nội dung nên không bao giờ đổi: cache 1 năm, immutable.
+ * Ảnh upload trước đây được cache nhưng phải kiểm tra lại bằng ETag (304 nếu không đổi).
+ * File không phải ảnh (file đính kèm hóa đơn upload trước khi có kho riêng tư) chỉ được cache ở trình duyệt,
+ * không cho proxy / CDN lưu.
+ */
+@RestController
+@RequiredArgsConstructor
+public class UploadController {
+
+    private static final String PREFIX = "/uploads/";
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+    private static final CacheControl REVALIDATE = CacheControl.noCache();
+    private static final CacheControl PRIVATE_REVALIDATE = CacheControl.noCache().cachePrivate();
+
+    private final FileServer fileServer;
+    private final FileStore fileStore;
+
+    @GetMapping(PREFIX + "**")
+    public void serve(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String relativePath = UriUtils.decode(
+                request.getRequestURI().substring(request.getContextPath().length() + PREFIX.length()),
+                StandardCharsets.UTF_8);
+        Path root = fileStore.getUploadRoot();
+        Path file = root.resolve(relativePath).normalize();
+        // Không cho ra ngoài thư mục upload hay đọc file / thư mục ẩn (file tạm của FileStore)
+        if (!file.startsWith(root) || relativePath.startsWith(".") || relativePath.contains("/.")
+                || !Files.isRegularFile(file)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String fileName = file.getFileName().toString();
+        boolean contentAddressed = (PREFIX + relativePath).startsWith(FileStore.URL_PREFIX)
+                && FileStore.contentTagOf(fileName) != null;
+        MediaType contentType = MediaTypeFactory.getMediaType(fileName).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        CacheControl cacheControl;
+        if (!"image".equals(contentType.getType())) {
+            cacheControl = PRIVATE_REVALIDATE;
+        } else {
+            cacheControl = contentAddressed ? IMMUTABLE : REVALIDATE;
+        }
+        fileServer.serve(file, contentType, null, cacheControl, request, response);
+    }
+}
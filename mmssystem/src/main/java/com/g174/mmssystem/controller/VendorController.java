@@ -2,6 +2,7 @@ package com.g174.mmssystem.controller;
 
 import com.g174.mmssystem.annotation.LogActivity;
 import com.g174.mmssystem.dto.requestDTO.VendorRequestDTO;
+import com.g174.mmssystem.dto.responseDTO.SuggestionDTO;
 import com.g174.mmssystem.dto.responseDTO.VendorResponseDTO;
 import com.g174.mmssystem.service.IService.IVendorService;
 import jakarta.validation.Valid;
@@ -91,6 +92,14 @@ public class VendorController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/suggest")
+    @PreAuthorize("hasAnyRole('MANAGER','PURCHASE','ACCOUNTING')")
+    public ResponseEntity<List<SuggestionDTO>> suggestVendors(
+            @RequestParam(defaultValue = "") String q,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(vendorService.suggestVendors(q, limit));
+    }
+
     @GetMapping("/search/page")
     @PreAuthorize("hasAnyRole('MANAGER','PURCHASE','ACCOUNTING')")
     public ResponseEntity<Page<VendorResponseDTO>> searchVendorsWithPagination(
@@ -0,0 +1,27 @@
+package com.g174.mmssystem.dto.requestDTO;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GoodIssueBatchRequestDTO {
+
+    @NotEmpty(message = "Danh sách Delivery ID không được để trống")
+    @Size(max = 200, message = "Tối đa 200 phiếu giao hàng mỗi lần xuất kho hàng loạt")
+    private List<Integer> deliveryIds;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss[.SSS][XXX]", shape = JsonFormat.Shape.STRING)
+    private OffsetDateTime issueDate;
+
+    @Size(max = 5000, message = "Ghi chú không được vượt quá 5000 ký tự")
+    private String notes;
+}
@@ -24,9 +24,15 @@ public class ReportResponse {
     
     private ReportStatus status;
     
+    private Integer progress;
+    
+    private String errorMessage;
+    
     private String description;
     
-    private Object reportData; // Will be parsed from JSON
+    private Object reportData; // Summary only, rows are paged via /api/reports/{id}/rows
+    
+    private Integer rowCount;
     
     private Integer generatedByUserId;
     
@@ -34,4 +40,10 @@ public class ReportResponse {
     
     @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
     private LocalDateTime generatedAt;
+    
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime startedAt;
+    
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime completedAt;
 }
@@ -0,0 +1,40 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+import com.g174.mmssystem.entity.ARInvoice;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Một dòng danh sách hóa đơn AR, kèm cờ hasPayment / hasCreditNote tính bằng EXISTS trong cùng câu SELECT.
+ */
+public interface ARInvoiceListProjection {
+    Integer getArInvoiceId();
+    String getInvoiceNo();
+    ARInvoice.InvoiceStatus getStatus();
+    Integer getCustomerId();
+    String getCustomerCode();
+    String getCustomerFirstName();
+    String getCustomerLastName();
+    Integer getSalesOrderId();
+    String getSalesOrderNo();
+    Integer getDeliveryId();
+    String getDeliveryNo();
+    LocalDate getInvoiceDate();
+    LocalDate getDueDate();
+    BigDecimal getTotalAmount();
+    BigDecimal getBalanceAmount();
+    Boolean getHasPayment();
+    Boolean getHasCreditNote();
+    Instant getCreatedAt();
+    Instant getUpdatedAt();
+    String getCreatedByFirstName();
+    String getCreatedByLastName();
+    String getCreatedByEmployeeCode();
+    String getCreatedByEmail();
+    String getUpdatedByFirstName();
+    String getUpdatedByLastName();
+    String getUpdatedByEmployeeCode();
+    String getUpdatedByEmail();
+}
@@ -0,0 +1,20 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+import java.math.BigDecimal;
+
+/**
+ * Công nợ còn lại của một KH/NCC chia theo số ngày quá hạn tại ngày đối chiếu (asOf).
+ */
+public interface AgingBucketProjection {
+    Integer getPartyId();
+    String getPartyCode();
+    String getPartyName();
+    BigDecimal getCurrentAmount();
+    BigDecimal getDays0To30();
+    BigDecimal getDays31To60();
+    BigDecimal getDays61To90();
+    BigDecimal getOver90();
+    BigDecimal getTotalAmount();
+    Long getInvoiceCount();
+    Long getOverdueCount();
+}
@@ -0,0 +1,32 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+import com.g174.mmssystem.enums.AgingBucket;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Hóa đơn chưa thanh toán hết trong drill-down báo cáo tuổi nợ
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgingInvoiceDTO {
+    private Integer invoiceId;
+    private String invoiceNo;
+    private Integer partyId;
+    private String partyCode;
+    private String partyName;
+    private LocalDate invoiceDate;
+    private LocalDate dueDate;
+    private BigDecimal totalAmount;
+    private BigDecimal balanceAmount;
+    private String status;
+    private Integer daysOverdue; // âm: số ngày còn lại đến hạn
+    private AgingBucket bucket;
+}
@@ -0,0 +1,23 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Báo cáo tuổi nợ phải thu (Customer) / phải trả (Vendor) tại ngày asOfDate
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgingReportDTO {
+    private LocalDate asOfDate;
+    private String partyType; // Customer / Vendor
+    private AgingRowDTO totals;
+    private List<AgingRowDTO> rows; // sắp xếp theo tổng nợ giảm dần
+}
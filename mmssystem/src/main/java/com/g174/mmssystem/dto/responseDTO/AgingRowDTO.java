@@ -0,0 +1,29 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Công nợ còn lại của một KH/NCC theo nhóm tuổi nợ (dòng tổng không có partyId)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgingRowDTO {
+    private Integer partyId;
+    private String partyCode;
+    private String partyName;
+    private BigDecimal currentAmount;
+    private BigDecimal days0To30;
+    private BigDecimal days31To60;
+    private BigDecimal days61To90;
+    private BigDecimal over90;
+    private BigDecimal totalAmount;
+    private long invoiceCount;
+    private long overdueCount;
+}
@@ -0,0 +1,29 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Chênh lệch giữa balance đang lưu và số liệu tính lại từ chứng từ của một KH/NCC
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceDriftDTO {
+    private String partyType; // Customer / Vendor
+    private Integer partyId;
+    private BigDecimal expectedInvoiced;
+    private BigDecimal actualInvoiced;
+    private BigDecimal expectedPaid;
+    private BigDecimal actualPaid;
+    private BigDecimal expectedCreditNote;
+    private BigDecimal actualCreditNote;
+    private BigDecimal expectedOutstanding;
+    private BigDecimal actualOutstanding;
+    private boolean missingBalance; // chưa có dòng balance
+}
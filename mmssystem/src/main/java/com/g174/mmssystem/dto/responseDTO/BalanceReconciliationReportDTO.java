@@ -0,0 +1,32 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Kết quả đối soát toàn bộ CustomerBalance / VendorBalance
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceReconciliationReportDTO {
+    private Instant startedAt;
+    private long durationMs;
+    private boolean dryRun;
+    private int customersChecked;
+    private int customersCorrected;
+    private int vendorsChecked;
+    private int vendorsCorrected;
+    // Tổng |expectedOutstanding - actualOutstanding| của các dòng lệch
+    private BigDecimal totalOutstandingDrift;
+    // Danh sách dòng lệch (giới hạn số lượng, xem driftsTruncated)
+    private List<BalanceDriftDTO> drifts;
+    private boolean driftsTruncated;
+}
@@ -0,0 +1,27 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Dòng sao kê không ghi nhận được thanh toán, kèm lý do để kế toán xử lý tay
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BankStatementExceptionDTO {
+    private long lineNo;
+    private LocalDate transactionDate;
+    private BigDecimal amount;
+    private String description;
+    private String referenceNo;
+    private String reason; // INVALID_LINE / UNMATCHED / AMBIGUOUS / OVERPAYMENT / DUPLICATE / POSTING_FAILED
+    private String message;
+    private String candidateInvoices; // Các hóa đơn có thể khớp khi AMBIGUOUS
+}
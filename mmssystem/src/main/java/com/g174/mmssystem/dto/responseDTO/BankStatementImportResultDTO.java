@@ -0,0 +1,28 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Kết quả import sao kê ngân hàng: số dòng đã ghi nhận thanh toán và danh sách ngoại lệ
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BankStatementImportResultDTO {
+    private long durationMs;
+    private long totalLines;
+    private long receivablePayments; // Số thanh toán AR đã ghi nhận
+    private BigDecimal receivableAmount;
+    private long payablePayments; // Số thanh toán AP đã ghi nhận
+    private BigDecimal payableAmount;
+    private long exceptionCount;
+    private List<BankStatementExceptionDTO> exceptions;
+    private boolean exceptionsTruncated;
+}
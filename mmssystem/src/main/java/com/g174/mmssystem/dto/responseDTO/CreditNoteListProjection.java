@@ -0,0 +1,39 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+import com.g174.mmssystem.entity.CreditNote;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Các cột cần cho danh sách Credit Note, đọc bằng một câu SELECT (không nạp items, entity liên quan, user profile).
+ */
+public interface CreditNoteListProjection {
+    Integer getCnId();
+    String getCreditNoteNo();
+    CreditNote.CreditNoteStatus getStatus();
+    Integer getInvoiceId();
+    String getInvoiceNo();
+    Integer getSalesOrderId();
+    String getSalesOrderNo();
+    Integer getReturnOrderId();
+    String getReturnOrderNo();
+    Integer getCustomerId();
+    String getCustomerFirstName();
+    String getCustomerLastName();
+    Instant getCreditNoteDate();
+    BigDecimal getTotalAmount();
+    BigDecimal getAppliedToBalance();
+    BigDecimal getRefundAmount();
+    BigDecimal getRefundPaidAmount();
+    Instant getCreatedAt();
+    Instant getUpdatedAt();
+    String getCreatedByFirstName();
+    String getCreatedByLastName();
+    String getCreatedByEmployeeCode();
+    String getCreatedByEmail();
+    String getUpdatedByFirstName();
+    String getUpdatedByLastName();
+    String getUpdatedByEmployeeCode();
+    String getUpdatedByEmail();
+}
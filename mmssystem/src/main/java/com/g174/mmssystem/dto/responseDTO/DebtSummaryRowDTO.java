@@ -8,7 +8,8 @@ import lombok.NoArgsConstructor;
 import java.math.BigDecimal;
 
 /**
- * Dòng tổng hợp công nợ theo KH/NCC cho kỳ hiện tại
+ * Dòng tổng hợp công nợ theo KH/NCC cho một kỳ (tháng)
+ * totalDebit: phát sinh tăng, totalCredit: phát sinh giảm, balance = totalDebit - totalCredit
  */
 @Data
 @Builder
@@ -21,5 +22,8 @@ public class DebtSummaryRowDTO {
     private BigDecimal totalDebit;
     private BigDecimal totalCredit;
     private BigDecimal balance;
+    private Integer period; // yyyyMM
+    private BigDecimal openingBalance;
+    private BigDecimal closingBalance;
 }
 
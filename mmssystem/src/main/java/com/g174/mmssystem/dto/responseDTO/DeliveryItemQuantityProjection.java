@@ -0,0 +1,8 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+import java.math.BigDecimal;
+
+public interface DeliveryItemQuantityProjection {
+    Integer getDiId();
+    BigDecimal getQuantity();
+}
@@ -0,0 +1,11 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+/**
+ * Id / số chứng từ / tên đối tác (NCC, KH hoặc người yêu cầu) của một chứng từ,
+ * dùng để dựng chỉ mục tìm kiếm chứng từ trong bộ nhớ.
+ */
+public interface DocumentSearchProjection {
+    Number getId();
+    String getNumber();
+    String getPartyName();
+}
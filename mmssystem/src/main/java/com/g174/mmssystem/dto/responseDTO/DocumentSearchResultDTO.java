@@ -0,0 +1,21 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+import com.g174.mmssystem.enums.SearchDocumentType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Một kết quả của tìm kiếm chứng từ chung; type + id dùng để mở đúng màn hình chi tiết
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentSearchResultDTO {
+    private SearchDocumentType type;
+    private Integer id;
+    private String number;
+    private String partyName;
+}
@@ -0,0 +1,21 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+import com.g174.mmssystem.entity.GoodIssue;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GoodIssueBatchResultDTO {
+    private Integer deliveryId;
+    private String deliveryNo;
+    private Integer issueId;
+    private String issueNo;
+    private GoodIssue.GoodIssueStatus status;
+    private Integer itemCount;
+    private BigDecimal totalIssuedQty;
+}
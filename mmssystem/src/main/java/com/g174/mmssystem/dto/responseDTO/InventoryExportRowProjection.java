@@ -0,0 +1,15 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+import java.math.BigDecimal;
+
+/**
+ * Một dòng xuất báo cáo tồn kho (đọc trực tiếp từ cursor, không nạp entity).
+ */
+public interface InventoryExportRowProjection {
+    String getWarehouseCode();
+    String getWarehouseName();
+    String getProductCode();
+    String getProductName();
+    String getUnit();
+    BigDecimal getQuantity();
+}
@@ -0,0 +1,10 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+/**
+ * Id / mã / tên của một bản ghi danh mục, dùng để dựng chỉ mục tìm kiếm trong bộ nhớ.
+ */
+public interface MasterDataSearchProjection {
+    Integer getId();
+    String getCode();
+    String getName();
+}
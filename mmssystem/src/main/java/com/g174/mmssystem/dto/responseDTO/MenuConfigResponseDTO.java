@@ -14,4 +14,6 @@ public class MenuConfigResponseDTO {
     private List<MenuItemResponseDTO> mainMenu;
     private List<MenuItemResponseDTO> operationMenu;
     private List<MenuItemResponseDTO> managementMenu;
+    // Băm nội dung menu, đổi khi menu của role thay đổi; cũng là ETag của API menu
+    private String version;
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+import java.math.BigDecimal;
+
+/**
+ * Thông tin tối thiểu của hóa đơn còn nợ, dùng để dựng index đối soát sao kê ngân hàng.
+ */
+public interface OpenInvoiceProjection {
+    Integer getInvoiceId();
+    String getInvoiceNo();
+    Integer getPartyId();
+    String getPartyCode();
+    BigDecimal getBalanceAmount();
+}
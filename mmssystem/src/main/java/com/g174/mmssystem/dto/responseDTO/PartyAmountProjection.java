@@ -0,0 +1,11 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+import java.math.BigDecimal;
+
+/**
+ * Tổng tiền theo KH/NCC (customerId hoặc vendorId) từ một query GROUP BY.
+ */
+public interface PartyAmountProjection {
+    Integer getPartyId();
+    BigDecimal getAmount();
+}
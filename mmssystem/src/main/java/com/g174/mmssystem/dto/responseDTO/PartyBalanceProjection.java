@@ -0,0 +1,14 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+import java.math.BigDecimal;
+
+/**
+ * Số liệu hiện tại của một dòng CustomerBalance / VendorBalance (vendor không có Credit Note).
+ */
+public interface PartyBalanceProjection {
+    Integer getPartyId();
+    BigDecimal getTotalInvoiced();
+    BigDecimal getTotalPaid();
+    BigDecimal getTotalCreditNote();
+    BigDecimal getOutstandingBalance();
+}
@@ -25,6 +25,7 @@ public class ProductResponseDTO {
     private String status;
     private String imageUrl; // Legacy field - first image URL
     private List<String> imageUrls; // All image URLs as array
+    private List<String> imageSrcsets; // srcset (thumbnail) of each image in imageUrls, null if not available
     private Integer categoryId;
     private String categoryName;
     private java.math.BigDecimal totalQuantity;
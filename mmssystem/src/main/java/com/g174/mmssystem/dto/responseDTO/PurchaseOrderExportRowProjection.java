@@ -0,0 +1,20 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+import com.g174.mmssystem.enums.PurchaseOrderApprovalStatus;
+import com.g174.mmssystem.enums.PurchaseOrderStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Một dòng xuất báo cáo mua hàng (đọc trực tiếp từ cursor, không nạp entity).
+ */
+public interface PurchaseOrderExportRowProjection {
+    String getPoNo();
+    LocalDateTime getOrderDate();
+    String getVendorCode();
+    String getVendorName();
+    PurchaseOrderStatus getStatus();
+    PurchaseOrderApprovalStatus getApprovalStatus();
+    BigDecimal getTotalAfterTax();
+}
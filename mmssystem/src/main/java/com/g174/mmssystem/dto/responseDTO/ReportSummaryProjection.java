@@ -0,0 +1,25 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+import com.g174.mmssystem.enums.ReportStatus;
+import com.g174.mmssystem.enums.ReportType;
+
+import java.time.LocalDateTime;
+
+/**
+ * Các cột cho danh sách báo cáo, không đọc report_data và dòng dữ liệu.
+ */
+public interface ReportSummaryProjection {
+    Integer getReportId();
+    String getName();
+    ReportType getType();
+    ReportStatus getStatus();
+    Integer getProgress();
+    String getErrorMessage();
+    String getDescription();
+    Integer getRowCount();
+    Integer getGeneratedByUserId();
+    String getGeneratedByEmail();
+    LocalDateTime getGeneratedAt();
+    LocalDateTime getStartedAt();
+    LocalDateTime getCompletedAt();
+}
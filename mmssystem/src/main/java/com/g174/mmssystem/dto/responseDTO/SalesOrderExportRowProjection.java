@@ -0,0 +1,20 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+import com.g174.mmssystem.entity.SalesOrder;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Một dòng xuất báo cáo bán hàng (đọc trực tiếp từ cursor, không nạp entity).
+ */
+public interface SalesOrderExportRowProjection {
+    String getSoNo();
+    Instant getOrderDate();
+    String getCustomerCode();
+    String getCustomerFirstName();
+    String getCustomerLastName();
+    SalesOrder.OrderStatus getStatus();
+    SalesOrder.ApprovalStatus getApprovalStatus();
+    BigDecimal getTotalAmount();
+}
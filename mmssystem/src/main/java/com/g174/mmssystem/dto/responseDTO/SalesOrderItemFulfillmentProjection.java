@@ -0,0 +1,9 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+import java.math.BigDecimal;
+
+public interface SalesOrderItemFulfillmentProjection {
+    Integer getSoiId();
+    BigDecimal getDeliveredQty();
+    BigDecimal getPlannedQty();
+}
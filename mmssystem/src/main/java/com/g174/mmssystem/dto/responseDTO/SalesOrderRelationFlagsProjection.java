@@ -0,0 +1,10 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+/**
+ * Cờ chứng từ liên quan của một đơn bán hàng, tính bằng EXISTS cho cả trang trong một câu SELECT.
+ */
+public interface SalesOrderRelationFlagsProjection {
+    Integer getSoId();
+    Boolean getHasDelivery();
+    Boolean getHasInvoice();
+}
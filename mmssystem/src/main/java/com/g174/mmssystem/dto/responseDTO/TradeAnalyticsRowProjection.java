@@ -0,0 +1,18 @@
+package com.g174.mmssystem.dto.responseDTO;
+
+import java.math.BigDecimal;
+
+/**
+ * Một nhóm trong báo cáo phân tích mua / bán (theo NCC, KH, sản phẩm hoặc danh mục).
+ * Cùng một projection cho truy vấn trên dòng chứng từ gốc và trên bảng tổng hợp tháng.
+ */
+public interface TradeAnalyticsRowProjection {
+    Integer getGroupId();
+    String getGroupCode();
+    String getGroupName();
+    BigDecimal getQuantity();
+    BigDecimal getReceivedQty();
+    BigDecimal getAmount();
+    Long getLeadDays();
+    Long getLineCount();
+}
@@ -1,5 +1,6 @@
 package com.g174.mmssystem.entity;
 
+import com.g174.mmssystem.service.DocumentSearchEntityListener;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -18,6 +19,7 @@ import org.hibernate.annotations.FetchMode;
 @AllArgsConstructor
 @Builder
 @Entity
+@EntityListeners(DocumentSearchEntityListener.class)
 @Table(name = "AP_Invoices",
         indexes = {
                 @Index(name = "idx_ap_invoice_no", columnList = "invoice_no"),
@@ -15,7 +15,8 @@ import java.time.LocalDateTime;
 @Table(name = "AP_Payments",
         indexes = {
                 @Index(name = "idx_app_invoice", columnList = "ap_invoice_id"),
-                @Index(name = "idx_app_date", columnList = "payment_date")
+                @Index(name = "idx_app_date", columnList = "payment_date"),
+                @Index(name = "uk_app_statement_fingerprint", columnList = "statement_fingerprint", unique = true)
         })
 public class APPayment {
     @Id
@@ -42,6 +43,10 @@ public class APPayment {
     @Column(name = "notes", columnDefinition = "TEXT")
     private String notes;
 
+    // Fingerprint dòng sao kê ngân hàng đã tạo thanh toán này (chống import trùng)
+    @Column(name = "statement_fingerprint", length = 64)
+    private String statementFingerprint;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
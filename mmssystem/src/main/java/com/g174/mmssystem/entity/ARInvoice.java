@@ -1,5 +1,7 @@
 package com.g174.mmssystem.entity;
 
+import com.g174.mmssystem.service.DocumentSearchEntityListener;
+import com.g174.mmssystem.service.TradeAggregateEntityListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.DecimalMax;
 import jakarta.validation.constraints.DecimalMin;
@@ -17,6 +19,7 @@ import java.util.List;
 @Getter
 @Setter
 @Entity
+@EntityListeners({DocumentSearchEntityListener.class, TradeAggregateEntityListener.class})
 @Table(name = "ar_invoices", indexes = {
         @Index(name = "idx_ar_status", columnList = "status"),
         @Index(name = "idx_ar_customer", columnList = "customer_id"),
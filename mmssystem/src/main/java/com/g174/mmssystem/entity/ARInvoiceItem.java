@@ -1,5 +1,6 @@
 package com.g174.mmssystem.entity;
 
+import com.g174.mmssystem.service.TradeAggregateEntityListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.DecimalMax;
@@ -11,6 +12,7 @@ import java.math.BigDecimal;
 @Getter
 @Setter
 @Entity
+@EntityListeners(TradeAggregateEntityListener.class)
 @Table(name = "ar_invoice_items",
         indexes = {
                 @Index(name = "idx_ari_invoice", columnList = "ar_invoice_id")
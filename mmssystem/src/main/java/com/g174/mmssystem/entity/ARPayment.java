@@ -17,7 +17,8 @@ import java.time.Instant;
 @Table(name = "ar_payments",
         indexes = {
                 @Index(name = "idx_arp_invoice", columnList = "ar_invoice_id"),
-                @Index(name = "idx_arp_date", columnList = "payment_date")
+                @Index(name = "idx_arp_date", columnList = "payment_date"),
+                @Index(name = "uk_arp_statement_fingerprint", columnList = "statement_fingerprint", unique = true)
         })
 public class ARPayment {
 
@@ -51,6 +52,11 @@ public class ARPayment {
     @Column(name = "notes", columnDefinition = "TEXT")
     private String notes;
 
+    // Fingerprint dòng sao kê ngân hàng đã tạo thanh toán này (chống import trùng)
+    @Size(max = 64)
+    @Column(name = "statement_fingerprint", length = 64)
+    private String statementFingerprint;
+
     @Column(name = "created_at")
     private Instant createdAt;
 
@@ -0,0 +1,21 @@
+package com.g174.mmssystem.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Dòng khóa dùng chung giữa các node: khóa chia sẻ (FOR SHARE) cho thao tác thường xuyên,
+ * khóa độc quyền (FOR UPDATE) cho thao tác bảo trì cần chạy một mình, ví dụ dựng lại tổng hợp công nợ.
+ * Khóa được giữ đến khi transaction kết thúc.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "App_Locks")
+public class AppLock {
+
+    @Id
+    @Column(name = "lock_name", length = 50)
+    private String lockName;
+}
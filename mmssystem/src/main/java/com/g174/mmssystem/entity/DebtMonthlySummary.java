@@ -0,0 +1,81 @@
+package com.g174.mmssystem.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Tổng hợp công nợ theo KH/NCC theo từng tháng.
+ * closing_balance = opening_balance + total_increase - total_decrease,
+ * opening_balance của tháng sau = closing_balance của tháng gần nhất trước đó.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "debt_monthly_summaries",
+        indexes = {
+                @Index(name = "idx_debt_summary_period", columnList = "period, party_type, party_code")
+        },
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_debt_summary_party_period", columnNames = {"party_type", "party_id", "period"})
+        })
+public class DebtMonthlySummary {
+
+    public static final String PARTY_CUSTOMER = "Customer";
+    public static final String PARTY_VENDOR = "Vendor";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "summary_id")
+    private Long summaryId;
+
+    @NotNull
+    @Size(max = 20)
+    @Column(name = "party_type", nullable = false, length = 20)
+    private String partyType;
+
+    @NotNull
+    @Column(name = "party_id", nullable = false)
+    private Integer partyId;
+
+    @Size(max = 50)
+    @Column(name = "party_code", length = 50)
+    private String partyCode;
+
+    @Size(max = 255)
+    @Column(name = "party_name")
+    private String partyName;
+
+    /**
+     * Kỳ dạng yyyyMM, ví dụ 202610
+     */
+    @NotNull
+    @Column(name = "period", nullable = false)
+    private Integer period;
+
+    @Column(name = "opening_balance", precision = 18, scale = 2)
+    private BigDecimal openingBalance = BigDecimal.ZERO;
+
+    @Column(name = "total_increase", precision = 18, scale = 2)
+    private BigDecimal totalIncrease = BigDecimal.ZERO;
+
+    @Column(name = "total_decrease", precision = 18, scale = 2)
+    private BigDecimal totalDecrease = BigDecimal.ZERO;
+
+    @Column(name = "closing_balance", precision = 18, scale = 2)
+    private BigDecimal closingBalance = BigDecimal.ZERO;
+
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = Instant.now();
+    }
+}
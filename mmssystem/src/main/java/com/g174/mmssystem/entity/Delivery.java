@@ -1,5 +1,6 @@
 package com.g174.mmssystem.entity;
 
+import com.g174.mmssystem.service.DocumentSearchEntityListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Size;
 import lombok.Getter;
@@ -12,6 +13,7 @@ import java.util.List;
 @Getter
 @Setter
 @Entity
+@EntityListeners(DocumentSearchEntityListener.class)
 @Table(name = "deliveries",
         indexes = {
                 @Index(name = "idx_delivery_status", columnList = "status, deleted_at"),
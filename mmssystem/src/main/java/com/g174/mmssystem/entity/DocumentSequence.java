@@ -0,0 +1,23 @@
+package com.g174.mmssystem.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Bộ đếm số chứng từ (xem DocumentNumberAllocator): mỗi dòng giữ số lớn nhất đã được cấp cho một tiền tố,
+ * ví dụ "GI2026" -> 153.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "Document_Sequences")
+public class DocumentSequence {
+
+    @Id
+    @Column(name = "seq_name", length = 30)
+    private String seqName;
+
+    @Column(name = "last_value", nullable = false)
+    private Long lastValue;
+}
@@ -1,5 +1,7 @@
 package com.g174.mmssystem.entity;
 
+import com.g174.mmssystem.service.DocumentSearchEntityListener;
+import com.g174.mmssystem.service.TradeAggregateEntityListener;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -12,6 +14,7 @@ import java.util.List;
 @AllArgsConstructor
 @Builder
 @Entity
+@EntityListeners({DocumentSearchEntityListener.class, TradeAggregateEntityListener.class})
 @Table(name = "Goods_Receipts",
         indexes = {
                 @Index(name = "idx_gr_no", columnList = "receipt_no"),
@@ -1,5 +1,6 @@
 package com.g174.mmssystem.entity;
 
+import com.g174.mmssystem.service.TradeAggregateEntityListener;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -11,6 +12,7 @@ import java.math.BigDecimal;
 @AllArgsConstructor
 @Builder
 @Entity
+@EntityListeners(TradeAggregateEntityListener.class)
 @Table(name = "Goods_Receipt_Items",
         indexes = {
                 @Index(name = "idx_gri_receipt", columnList = "receipt_id"),
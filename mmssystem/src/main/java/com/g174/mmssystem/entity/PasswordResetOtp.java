@@ -0,0 +1,52 @@
+package com.g174.mmssystem.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Trạng thái OTP đặt lại mật khẩu và bộ đếm giới hạn yêu cầu của một email (xem OtpStore).
+ * Chỉ lưu vào bảng khi app.otp.store=database (chạy nhiều instance), mặc định giữ trong bộ nhớ.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "Password_Reset_Otps")
+public class PasswordResetOtp {
+
+    /**
+     * Email đã chuẩn hóa (chữ thường)
+     */
+    @Id
+    @Column(name = "email", length = 255)
+    private String email;
+
+    /**
+     * SHA-256 (hex) của mã OTP, null = chưa có mã
+     */
+    @Column(name = "otp_hash", length = 64)
+    private String otpHash;
+
+    @Column(name = "expires_at")
+    private Instant expiresAt;
+
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "used", nullable = false)
+    private Boolean used = false;
+
+    /**
+     * Số lượt yêu cầu OTP còn lại (token bucket), được nạp lại theo thời gian
+     */
+    @Column(name = "request_tokens", nullable = false)
+    private Double requestTokens;
+
+    @Column(name = "tokens_updated_at", nullable = false)
+    private Instant tokensUpdatedAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
@@ -2,6 +2,8 @@ package com.g174.mmssystem.entity;
 
 import com.g174.mmssystem.enums.PurchaseOrderApprovalStatus;
 import com.g174.mmssystem.enums.PurchaseOrderStatus;
+import com.g174.mmssystem.service.DocumentSearchEntityListener;
+import com.g174.mmssystem.service.TradeAggregateEntityListener;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -15,6 +17,7 @@ import java.util.List;
 @AllArgsConstructor
 @Builder
 @Entity
+@EntityListeners({DocumentSearchEntityListener.class, TradeAggregateEntityListener.class})
 @Table(name = "Purchase_Orders",
         indexes = {
                 @Index(name = "idx_po_no", columnList = "po_no"),
@@ -1,5 +1,6 @@
 package com.g174.mmssystem.entity;
 
+import com.g174.mmssystem.service.TradeAggregateEntityListener;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -12,6 +13,7 @@ import java.time.LocalDate;
 @AllArgsConstructor
 @Builder
 @Entity
+@EntityListeners(TradeAggregateEntityListener.class)
 @Table(name = "Purchase_Order_Items",
         indexes = {
                 @Index(name = "idx_poi_order", columnList = "order_id"),
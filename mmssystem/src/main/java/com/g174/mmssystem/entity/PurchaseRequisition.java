@@ -1,6 +1,7 @@
 package com.g174.mmssystem.entity;
 
 import com.g174.mmssystem.enums.RequisitionStatus;
+import com.g174.mmssystem.service.DocumentSearchEntityListener;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -14,6 +15,7 @@ import java.util.List;
 @AllArgsConstructor
 @Builder
 @Entity
+@EntityListeners(DocumentSearchEntityListener.class)
 @Table(name = "Purchase_Requisitions",
         indexes = {
                 @Index(name = "idx_pr_no", columnList = "requisition_no"),
@@ -1,5 +1,6 @@
 package com.g174.mmssystem.entity;
 
+import com.g174.mmssystem.service.DocumentSearchEntityListener;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -13,6 +14,7 @@ import java.util.List;
 @AllArgsConstructor
 @Builder
 @Entity
+@EntityListeners(DocumentSearchEntityListener.class)
 @Table(name = "RFQs",
         indexes = {
                 @Index(name = "idx_rfq_no", columnList = "rfq_no"),
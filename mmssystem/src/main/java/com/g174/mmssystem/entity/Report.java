@@ -12,7 +12,8 @@ import java.time.LocalDateTime;
 @Table(name = "Reports", indexes = {
     @Index(name = "idx_report_type", columnList = "type"),
     @Index(name = "idx_report_status", columnList = "status"),
-    @Index(name = "idx_report_date", columnList = "generated_at")
+    @Index(name = "idx_report_date", columnList = "generated_at"),
+    @Index(name = "idx_report_param_hash", columnList = "param_hash")
 })
 @Data
 @NoArgsConstructor
@@ -34,19 +35,48 @@ public class Report {
 
     @Enumerated(EnumType.STRING)
     @Column(name = "status", nullable = false)
+    @Builder.Default
     private ReportStatus status = ReportStatus.Pending;
 
+    // Tiến độ 0-100 khi báo cáo đang được tạo ở background
+    @Column(name = "progress")
+    @Builder.Default
+    private Integer progress = 0;
+
+    // SHA-256 của người tạo + loại báo cáo + bộ lọc, dùng để gộp các yêu cầu giống nhau đang chạy
+    @Column(name = "param_hash", length = 64)
+    private String paramHash;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
     @Column(name = "description", columnDefinition = "TEXT")
     private String description;
 
+    // Chỉ chứa phần tóm tắt; dòng dữ liệu nằm trong Report_Chunks
     @Column(name = "report_data", columnDefinition = "JSON")
     private String reportData;
 
+    @Column(name = "row_count")
+    private Integer rowCount;
+
+    @Column(name = "chunk_count")
+    private Integer chunkCount;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "generated_by")
     private User generatedBy;
 
     @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
     @Column(name = "generated_at", nullable = false)
+    @Builder.Default
     private LocalDateTime generatedAt = LocalDateTime.now();
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
 }
@@ -0,0 +1,37 @@
+package com.g174.mmssystem.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Một khối dòng dữ liệu của báo cáo: tối đa ReportChunkStore.CHUNK_ROWS dòng, lưu dạng JSON array nén GZIP.
+ * Dòng thứ n của báo cáo nằm ở chunk n / CHUNK_ROWS nên đọc một trang chỉ chạm tới 1-2 chunk.
+ */
+@Entity
+@Table(name = "Report_Chunks", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_report_chunk", columnNames = {"report_id", "chunk_index"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReportChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "chunk_id")
+    private Long chunkId;
+
+    @Column(name = "report_id", nullable = false)
+    private Integer reportId;
+
+    @Column(name = "chunk_index", nullable = false)
+    private Integer chunkIndex;
+
+    @Column(name = "row_count", nullable = false)
+    private Integer rowCount;
+
+    @Lob
+    @Column(name = "payload", nullable = false, columnDefinition = "LONGBLOB")
+    private byte[] payload;
+}
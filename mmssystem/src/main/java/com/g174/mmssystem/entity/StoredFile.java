@@ -0,0 +1,40 @@
+package com.g174.mmssystem.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * File lưu theo nội dung (xem FileStore): một dòng cho mỗi nội dung khác nhau,
+ * refCount = số chỗ đang dùng file; file bị xóa khi refCount về 0.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "Stored_Files", indexes = {
+        @Index(name = "idx_stored_files_unreferenced", columnList = "ref_count, created_at")
+})
+public class StoredFile {
+
+    /**
+     * SHA-256 (hex) của nội dung + phần mở rộng, ví dụ "9f86d0...0f00a08.png";
+     * file riêng tư có tiền tố "private/"
+     */
+    @Id
+    @Column(name = "storage_key", length = 100)
+    private String storageKey;
+
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+
+    @Column(name = "content_type", length = 100)
+    private String contentType;
+
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
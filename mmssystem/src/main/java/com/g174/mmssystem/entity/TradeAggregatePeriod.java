@@ -0,0 +1,28 @@
+package com.g174.mmssystem.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Đánh dấu tháng đã được dựng tổng hợp trong trade_monthly_aggregates
+ * (kể cả tháng không có chứng từ nào).
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "trade_aggregate_periods")
+public class TradeAggregatePeriod {
+
+    /**
+     * Kỳ dạng yyyyMM
+     */
+    @Id
+    @Column(name = "period")
+    private Integer period;
+
+    @Column(name = "built_at", nullable = false)
+    private LocalDateTime builtAt;
+}
@@ -0,0 +1,80 @@
+package com.g174.mmssystem.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+/**
+ * Tổng hợp dòng chứng từ mua / bán theo tháng, theo (NCC hoặc KH, sản phẩm).
+ * Dùng cho báo cáo phân tích khoảng thời gian dài thay vì quét lại toàn bộ dòng chứng từ.
+ * Mỗi tháng được dựng lại nguyên khối từ chứng từ gốc (xem TradeAggregatePeriod).
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "trade_monthly_aggregates",
+        indexes = {
+                @Index(name = "idx_trade_agg_period", columnList = "source, period, party_id"),
+                @Index(name = "idx_trade_agg_product", columnList = "source, period, product_id")
+        },
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_trade_agg", columnNames = {"source", "period", "party_id", "product_id"})
+        })
+public class TradeMonthlyAggregate {
+
+    // Dòng đơn mua: quantity = SL đặt, received_qty = SL đã nhận, amount = thành tiền
+    public static final String SOURCE_PURCHASE_ORDER = "PurchaseOrder";
+    // Dòng phiếu nhập từ đơn mua: lead_days = tổng số ngày từ ngày đặt tới ngày nhận
+    public static final String SOURCE_GOODS_RECEIPT = "GoodsReceipt";
+    // Dòng đơn bán: amount = doanh số đặt hàng
+    public static final String SOURCE_SALES_ORDER = "SalesOrder";
+    // Dòng hóa đơn bán: amount = doanh thu đã xuất hóa đơn
+    public static final String SOURCE_AR_INVOICE = "ARInvoice";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "aggregate_id")
+    private Long aggregateId;
+
+    @NotNull
+    @Size(max = 20)
+    @Column(name = "source", nullable = false, length = 20)
+    private String source;
+
+    /**
+     * Kỳ dạng yyyyMM, ví dụ 202610
+     */
+    @NotNull
+    @Column(name = "period", nullable = false)
+    private Integer period;
+
+    /**
+     * vendor_id (mua hàng) hoặc customer_id (bán hàng)
+     */
+    @NotNull
+    @Column(name = "party_id", nullable = false)
+    private Integer partyId;
+
+    @NotNull
+    @Column(name = "product_id", nullable = false)
+    private Integer productId;
+
+    @Column(name = "quantity", precision = 18, scale = 2)
+    private BigDecimal quantity = BigDecimal.ZERO;
+
+    @Column(name = "received_qty", precision = 18, scale = 2)
+    private BigDecimal receivedQty = BigDecimal.ZERO;
+
+    @Column(name = "amount", precision = 18, scale = 2)
+    private BigDecimal amount = BigDecimal.ZERO;
+
+    @Column(name = "lead_days")
+    private Long leadDays = 0L;
+
+    @Column(name = "line_count")
+    private Long lineCount = 0L;
+}
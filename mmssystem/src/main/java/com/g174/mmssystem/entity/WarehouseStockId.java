@@ -2,10 +2,12 @@ package com.g174.mmssystem.entity;
 
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
 
 import java.io.Serializable;
 
+@Getter
 @NoArgsConstructor
 @AllArgsConstructor
 @EqualsAndHashCode
@@ -0,0 +1,13 @@
+package com.g174.mmssystem.enums;
+
+/**
+ * Nhóm tuổi nợ theo số ngày quá hạn tại ngày đối chiếu.
+ * Current: chưa đến hạn hoặc không có hạn thanh toán.
+ */
+public enum AgingBucket {
+    Current,
+    Days0To30,
+    Days31To60,
+    Days61To90,
+    Over90
+}
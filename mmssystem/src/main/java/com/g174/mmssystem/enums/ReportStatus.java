@@ -2,6 +2,8 @@ package com.g174.mmssystem.enums;
 
 public enum ReportStatus {
     Pending,
+    Running,
     Completed,
-    Failed
+    Failed,
+    Cancelled
 }
@@ -0,0 +1,29 @@
+package com.g174.mmssystem.enums;
+
+import java.util.Set;
+
+/**
+ * Loại chứng từ trong tìm kiếm chung, kèm các role được xem loại chứng từ đó
+ * (giống quyền của API tìm kiếm riêng của từng loại).
+ */
+public enum SearchDocumentType {
+    PurchaseRequisition("MANAGER", "SALE", "PURCHASE", "WAREHOUSE"),
+    RFQ("MANAGER", "PURCHASE"),
+    PurchaseOrder("MANAGER", "PURCHASE", "WAREHOUSE", "ACCOUNTING"),
+    GoodsReceipt("MANAGER", "PURCHASE", "WAREHOUSE", "ACCOUNTING"),
+    APInvoice("MANAGER", "ACCOUNTING"),
+    SalesOrder("MANAGER", "SALE", "WAREHOUSE", "ACCOUNTING"),
+    Delivery("MANAGER", "SALE", "WAREHOUSE", "ACCOUNTING"),
+    GoodIssue("MANAGER", "WAREHOUSE", "SALE", "ACCOUNTING"),
+    ARInvoice("MANAGER", "ACCOUNTING");
+
+    private final Set<String> roles;
+
+    SearchDocumentType(String... roles) {
+        this.roles = Set.of(roles);
+    }
+
+    public boolean isVisibleTo(String roleName) {
+        return roles.contains(roleName);
+    }
+}
@@ -0,0 +1,11 @@
+package com.g174.mmssystem.exception;
+
+/**
+ * Hệ thống tạm thời quá tải (hàng đợi xử lý đã đầy), client nên thử lại sau
+ */
+public class ServiceBusyException extends RuntimeException {
+
+    public ServiceBusyException(String message) {
+        super(message);
+    }
+}
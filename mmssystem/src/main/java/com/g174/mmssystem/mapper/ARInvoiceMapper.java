@@ -4,6 +4,7 @@ import com.g174.mmssystem.dto.requestDTO.ARInvoiceItemRequestDTO;
 import com.g174.mmssystem.dto.requestDTO.ARInvoiceRequestDTO;
 import com.g174.mmssystem.dto.requestDTO.ARPaymentRequestDTO;
 import com.g174.mmssystem.dto.responseDTO.ARInvoiceItemResponseDTO;
+import com.g174.mmssystem.dto.responseDTO.ARInvoiceListProjection;
 import com.g174.mmssystem.dto.responseDTO.ARInvoiceListResponseDTO;
 import com.g174.mmssystem.dto.responseDTO.ARInvoiceResponseDTO;
 import com.g174.mmssystem.dto.responseDTO.ARPaymentResponseDTO;
@@ -136,6 +137,33 @@ public class ARInvoiceMapper {
                 .build();
     }
 
+    public ARInvoiceListResponseDTO toListResponse(ARInvoiceListProjection row) {
+        return ARInvoiceListResponseDTO.builder()
+                .arInvoiceId(row.getArInvoiceId())
+                .invoiceNo(row.getInvoiceNo())
+                .status(row.getStatus())
+                .customerId(row.getCustomerId())
+                .customerName(row.getCustomerId() != null ? getCustomerName(row.getCustomerFirstName(),
+                        row.getCustomerLastName(), row.getCustomerCode()) : null)
+                .salesOrderId(row.getSalesOrderId())
+                .salesOrderNo(row.getSalesOrderNo())
+                .deliveryId(row.getDeliveryId())
+                .deliveryNo(row.getDeliveryNo())
+                .invoiceDate(row.getInvoiceDate())
+                .dueDate(row.getDueDate())
+                .totalAmount(row.getTotalAmount())
+                .balanceAmount(row.getBalanceAmount())
+                .hasPayment(row.getHasPayment())
+                .hasCreditNote(row.getHasCreditNote())
+                .createdAt(row.getCreatedAt())
+                .createdByDisplay(row.getCreatedByEmail() != null ? buildUserDisplay(row.getCreatedByFirstName(),
+                        row.getCreatedByLastName(), row.getCreatedByEmployeeCode(), row.getCreatedByEmail()) : null)
+                .updatedAt(row.getUpdatedAt())
+                .updatedByDisplay(row.getUpdatedByEmail() != null ? buildUserDisplay(row.getUpdatedByFirstName(),
+                        row.getUpdatedByLastName(), row.getUpdatedByEmployeeCode(), row.getUpdatedByEmail()) : null)
+                .build();
+    }
+
     public ARInvoiceItemResponseDTO toItemResponse(ARInvoiceItem item) {
         Product product = item.getProduct();
         DeliveryItem deliveryItem = item.getDeliveryItem();
@@ -189,30 +217,34 @@ public class ARInvoiceMapper {
     private String getCustomerName(Customer customer) {
         if (customer == null)
             return null;
-        String firstName = customer.getFirstName();
-        String lastName = customer.getLastName();
+        return getCustomerName(customer.getFirstName(), customer.getLastName(), customer.getCustomerCode());
+    }
+
+    private String getCustomerName(String firstName, String lastName, String customerCode) {
         if (StringUtils.hasText(firstName) || StringUtils.hasText(lastName)) {
             return (firstName != null ? firstName : "") + " " + (lastName != null ? lastName : "").trim();
         }
-        return customer.getCustomerCode();
+        return customerCode;
     }
 
     private String buildUserDisplay(User user) {
         if (user == null)
             return null;
-        if (user.getProfile() != null) {
-            String firstName = user.getProfile().getFirstName();
-            String lastName = user.getProfile().getLastName();
-            if (StringUtils.hasText(firstName) || StringUtils.hasText(lastName)) {
-                String name = (firstName != null ? firstName : "") + " " + (lastName != null ? lastName : "");
-                if (StringUtils.hasText(name.trim())) {
-                    return name.trim();
-                }
+        UserProfile profile = user.getProfile();
+        return buildUserDisplay(profile != null ? profile.getFirstName() : null,
+                profile != null ? profile.getLastName() : null, user.getEmployeeCode(), user.getEmail());
+    }
+
+    private String buildUserDisplay(String firstName, String lastName, String employeeCode, String email) {
+        if (StringUtils.hasText(firstName) || StringUtils.hasText(lastName)) {
+            String name = (firstName != null ? firstName : "") + " " + (lastName != null ? lastName : "");
+            if (StringUtils.hasText(name.trim())) {
+                return name.trim();
             }
         }
-        if (StringUtils.hasText(user.getEmployeeCode())) {
-            return user.getEmployeeCode();
+        if (StringUtils.hasText(employeeCode)) {
+            return employeeCode;
         }
-        return user.getEmail();
+        return email;
     }
 }
@@ -3,6 +3,7 @@ package com.g174.mmssystem.mapper;
 import com.g174.mmssystem.dto.requestDTO.CreditNoteItemRequestDTO;
 import com.g174.mmssystem.dto.requestDTO.CreditNoteRequestDTO;
 import com.g174.mmssystem.dto.responseDTO.CreditNoteItemResponseDTO;
+import com.g174.mmssystem.dto.responseDTO.CreditNoteListProjection;
 import com.g174.mmssystem.dto.responseDTO.CreditNoteListResponseDTO;
 import com.g174.mmssystem.dto.responseDTO.CreditNoteResponseDTO;
 import com.g174.mmssystem.entity.*;
@@ -149,6 +150,36 @@ public class CreditNoteMapper {
                 .build();
     }
 
+    public CreditNoteListResponseDTO toListResponse(CreditNoteListProjection row) {
+        boolean hasCreatedBy = row.getCreatedByEmail() != null;
+        boolean hasUpdatedBy = row.getUpdatedByEmail() != null;
+        return CreditNoteListResponseDTO.builder()
+                .cnId(row.getCnId())
+                .creditNoteNo(row.getCreditNoteNo())
+                .status(row.getStatus())
+                .invoiceId(row.getInvoiceId())
+                .invoiceNo(row.getInvoiceNo())
+                .salesOrderId(row.getSalesOrderId())
+                .salesOrderNo(row.getSalesOrderNo())
+                .returnOrderId(row.getReturnOrderId())
+                .returnOrderNo(row.getReturnOrderNo())
+                .customerId(row.getCustomerId())
+                .customerName(row.getCustomerId() != null
+                        ? row.getCustomerFirstName() + " " + row.getCustomerLastName() : null)
+                .creditNoteDate(row.getCreditNoteDate())
+                .totalAmount(row.getTotalAmount())
+                .appliedToBalance(row.getAppliedToBalance())
+                .refundAmount(row.getRefundAmount())
+                .refundPaidAmount(row.getRefundPaidAmount())
+                .createdAt(row.getCreatedAt())
+                .updatedAt(row.getUpdatedAt())
+                .createdByDisplay(hasCreatedBy ? buildUserDisplay(row.getCreatedByFirstName(),
+                        row.getCreatedByLastName(), row.getCreatedByEmployeeCode(), row.getCreatedByEmail()) : null)
+                .updatedByDisplay(hasUpdatedBy ? buildUserDisplay(row.getUpdatedByFirstName(),
+                        row.getUpdatedByLastName(), row.getUpdatedByEmployeeCode(), row.getUpdatedByEmail()) : null)
+                .build();
+    }
+
     private String getCustomerName(Customer customer) {
         if (customer == null) {
             return null;
@@ -193,21 +224,23 @@ public class CreditNoteMapper {
         if (user == null) {
             return null;
         }
-        String fullName = null;
-        if (user.getProfile() != null) {
-            String joinedName = Stream.of(user.getProfile().getFirstName(), user.getProfile().getLastName())
-                    .filter(StringUtils::hasText)
-                    .collect(Collectors.joining(" "));
-            if (StringUtils.hasText(joinedName)) {
-                fullName = joinedName.trim();
-            }
-        }
+        UserProfile profile = user.getProfile();
+        return buildUserDisplay(profile != null ? profile.getFirstName() : null,
+                profile != null ? profile.getLastName() : null,
+                user.getEmployeeCode(), user.getEmail());
+    }
+
+    private String buildUserDisplay(String firstName, String lastName, String employeeCode, String email) {
+        String fullName = Stream.of(firstName, lastName)
+                .filter(StringUtils::hasText)
+                .collect(Collectors.joining(" "))
+                .trim();
         if (StringUtils.hasText(fullName)) {
             return fullName;
         }
-        if (StringUtils.hasText(user.getEmployeeCode())) {
-            return user.getEmployeeCode();
+        if (StringUtils.hasText(employeeCode)) {
+            return employeeCode;
         }
-        return user.getEmail();
+        return email;
     }
 }
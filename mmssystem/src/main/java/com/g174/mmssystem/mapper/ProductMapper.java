@@ -5,6 +5,8 @@ import com.g174.mmssystem.dto.responseDTO.ProductResponseDTO;
 import com.g174.mmssystem.entity.Product;
 import com.g174.mmssystem.entity.ProductCategory;
 import com.g174.mmssystem.entity.User;
+import com.g174.mmssystem.service.ThumbnailGenerator;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
@@ -13,8 +15,11 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 @Component
+@RequiredArgsConstructor
 public class ProductMapper {
 
+    private final ThumbnailGenerator thumbnailGenerator;
+
     public Product toEntity(ProductRequestDTO dto, ProductCategory category, User createdBy) {
         if (dto == null) {
             return null;
@@ -49,11 +54,16 @@ public class ProductMapper {
 
         // Parse imageUrl to imageUrls array (split by comma or semicolon)
         List<String> imageUrls = null;
+        List<String> imageSrcsets = null;
         if (entity.getImageUrl() != null && !entity.getImageUrl().trim().isEmpty()) {
             imageUrls = Arrays.stream(entity.getImageUrl().split("[,;]"))
                     .map(String::trim)
                     .filter(url -> !url.isEmpty())
                     .collect(Collectors.toList());
+            // srcset thumbnail của từng ảnh (cùng thứ tự imageUrls), null nếu ảnh chưa có thumbnail
+            imageSrcsets = imageUrls.stream()
+                    .map(thumbnailGenerator::srcsetOf)
+                    .collect(Collectors.toList());
         }
 
         return ProductResponseDTO.builder()
@@ -68,6 +78,7 @@ public class ProductMapper {
                 .status(entity.getStatus() != null ? entity.getStatus().name() : null)
                 .imageUrl(entity.getImageUrl()) // Legacy field
                 .imageUrls(imageUrls) // New array field
+                .imageSrcsets(imageSrcsets)
                 .categoryId(entity.getCategory() != null ? entity.getCategory().getCategoryId() : null)
                 .categoryName(entity.getCategory() != null ? entity.getCategory().getName() : null)
                 .createdAt(entity.getCreatedAt())
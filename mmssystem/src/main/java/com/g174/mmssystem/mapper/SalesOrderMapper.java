@@ -6,7 +6,7 @@ import com.g174.mmssystem.dto.responseDTO.SalesOrderItemResponseDTO;
 import com.g174.mmssystem.dto.responseDTO.SalesOrderListResponseDTO;
 import com.g174.mmssystem.dto.responseDTO.SalesOrderResponseDTO;
 import com.g174.mmssystem.entity.*;
-import com.g174.mmssystem.repository.DeliveryItemRepository;
+import com.g174.mmssystem.service.OrderFulfillmentCalculator;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -21,7 +21,7 @@ import java.util.stream.Stream;
 @RequiredArgsConstructor
 public class SalesOrderMapper {
 
-    private final DeliveryItemRepository deliveryItemRepository;
+    private final OrderFulfillmentCalculator fulfillmentCalculator;
     private static final BigDecimal ZERO = BigDecimal.ZERO;
 
     private BigDecimal defaultBigDecimal(BigDecimal value) {
@@ -80,6 +80,7 @@ public class SalesOrderMapper {
     }
 
     public SalesOrderResponseDTO toResponse(SalesOrder order, List<SalesOrderItem> items) {
+        OrderFulfillmentCalculator.SalesOrderFulfillment fulfillment = fulfillmentCalculator.forSalesOrder(order.getSoId());
         User createdBy = order.getCreatedBy();
         User updatedBy = order.getUpdatedBy();
         return SalesOrderResponseDTO.builder()
@@ -113,7 +114,7 @@ public class SalesOrderMapper {
                 .updatedById(updatedBy != null ? updatedBy.getId() : null)
                 .updatedBy(updatedBy != null ? updatedBy.getEmail() : null)
                 .updatedByDisplay(buildUserDisplay(updatedBy))
-                .items(items.stream().map(this::toItemResponse).collect(Collectors.toList()))
+                .items(items.stream().map(item -> toItemResponse(item, fulfillment)).collect(Collectors.toList()))
                 .build();
     }
 
@@ -136,22 +137,15 @@ public class SalesOrderMapper {
                 .build();
     }
 
-    private SalesOrderItemResponseDTO toItemResponse(SalesOrderItem item) {
+    private SalesOrderItemResponseDTO toItemResponse(SalesOrderItem item,
+            OrderFulfillmentCalculator.SalesOrderFulfillment fulfillment) {
         Product product = item.getProduct();
         Warehouse warehouse = item.getWarehouse();
 
-        // Tính số lượng đã nhận (từ các Delivery đã Delivered)
-        BigDecimal deliveredQty = deliveryItemRepository.sumDeliveredQtyBySalesOrderItem(item.getSoiId());
-        if (deliveredQty == null) {
-            deliveredQty = BigDecimal.ZERO;
-        }
-
-        // Tính số lượng chưa nhận
+        // Số lượng đã nhận (từ các Delivery đã Delivered) và số lượng chưa nhận
         BigDecimal quantity = item.getQuantity() != null ? item.getQuantity() : BigDecimal.ZERO;
-        BigDecimal remainingQty = quantity.subtract(deliveredQty);
-        if (remainingQty.compareTo(BigDecimal.ZERO) < 0) {
-            remainingQty = BigDecimal.ZERO;
-        }
+        BigDecimal deliveredQty = fulfillment.deliveredQty(item.getSoiId());
+        BigDecimal remainingQty = fulfillment.remainingToDeliver(item);
 
         return SalesOrderItemResponseDTO.builder()
                 .soiId(item.getSoiId())
@@ -174,11 +168,17 @@ public class SalesOrderMapper {
     }
 
     public SalesOrderItemResponseDTO toItemResponseDTO(SalesOrderItem item) {
-        return toItemResponse(item);
+        Integer soId = item.getSalesOrder() != null ? item.getSalesOrder().getSoId() : null;
+        return toItemResponse(item, fulfillmentCalculator.forSalesOrder(soId));
     }
 
     public List<SalesOrderItemResponseDTO> toItemResponseList(List<SalesOrderItem> items) {
-        return items.stream().map(this::toItemResponse).collect(Collectors.toList());
+        if (items.isEmpty()) {
+            return List.of();
+        }
+        Integer soId = items.get(0).getSalesOrder() != null ? items.get(0).getSalesOrder().getSoId() : null;
+        OrderFulfillmentCalculator.SalesOrderFulfillment fulfillment = fulfillmentCalculator.forSalesOrder(soId);
+        return items.stream().map(item -> toItemResponse(item, fulfillment)).collect(Collectors.toList());
     }
 
     private String buildUserDisplay(User user) {
@@ -1,13 +1,22 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.dto.responseDTO.AgingBucketProjection;
+import com.g174.mmssystem.dto.responseDTO.DocumentSearchProjection;
+import com.g174.mmssystem.dto.responseDTO.OpenInvoiceProjection;
+import com.g174.mmssystem.dto.responseDTO.PartyAmountProjection;
 import com.g174.mmssystem.entity.APInvoice;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -64,4 +73,86 @@ public interface APInvoiceRepository extends JpaRepository<APInvoice, Integer> {
 
     @Query(value = "SELECT * FROM AP_Invoices WHERE invoice_no LIKE CONCAT(:prefix, '%') AND deleted_at IS NULL ORDER BY invoice_no DESC LIMIT 1", nativeQuery = true)
     Optional<APInvoice> findTopByInvoiceNoStartingWithOrderByInvoiceNoDesc(@Param("prefix") String prefix);
+
+    @Query("SELECT ai.vendor.vendorId AS partyId, SUM(ai.totalAmount) AS amount FROM APInvoice ai " +
+            "WHERE ai.deletedAt IS NULL GROUP BY ai.vendor.vendorId")
+    List<PartyAmountProjection> sumActiveTotalByVendor();
+
+    @Query("SELECT ai.vendor.vendorId AS partyId, SUM(ai.totalAmount) AS amount FROM APInvoice ai " +
+            "WHERE ai.deletedAt IS NULL AND ai.vendor.vendorId IN :vendorIds GROUP BY ai.vendor.vendorId")
+    List<PartyAmountProjection> sumActiveTotalByVendorIds(@Param("vendorIds") Collection<Integer> vendorIds);
+
+    @Query("SELECT COALESCE(SUM(ai.totalAmount), 0) FROM APInvoice ai " +
+            "WHERE ai.vendor.vendorId = :vendorId AND ai.deletedAt IS NULL")
+    java.math.BigDecimal sumActiveTotalByVendorId(@Param("vendorId") Integer vendorId);
+
+    /**
+     * Tuổi nợ phải trả theo vendor: một query GROUP BY, các mốc minusN = asOf - N ngày.
+     */
+    @Query("SELECT v.vendorId AS partyId, MAX(v.vendorCode) AS partyCode, MAX(v.name) AS partyName, " +
+            "SUM(CASE WHEN ai.dueDate IS NULL OR ai.dueDate >= :asOf THEN ai.balanceAmount ELSE 0 END) AS currentAmount, " +
+            "SUM(CASE WHEN ai.dueDate < :asOf AND ai.dueDate >= :minus30 THEN ai.balanceAmount ELSE 0 END) AS days0To30, " +
+            "SUM(CASE WHEN ai.dueDate < :minus30 AND ai.dueDate >= :minus60 THEN ai.balanceAmount ELSE 0 END) AS days31To60, " +
+            "SUM(CASE WHEN ai.dueDate < :minus60 AND ai.dueDate >= :minus90 THEN ai.balanceAmount ELSE 0 END) AS days61To90, " +
+            "SUM(CASE WHEN ai.dueDate < :minus90 THEN ai.balanceAmount ELSE 0 END) AS over90, " +
+            "SUM(ai.balanceAmount) AS totalAmount, COUNT(ai) AS invoiceCount, " +
+            "SUM(CASE WHEN ai.dueDate < :asOf THEN 1 ELSE 0 END) AS overdueCount " +
+            "FROM APInvoice ai JOIN ai.vendor v " +
+            "WHERE ai.status IN ('Unpaid', 'Partially_Paid') AND ai.deletedAt IS NULL " +
+            "GROUP BY v.vendorId")
+    List<AgingBucketProjection> sumAgingByVendor(@Param("asOf") LocalDate asOf,
+                                                 @Param("minus30") LocalDate minus30,
+                                                 @Param("minus60") LocalDate minus60,
+                                                 @Param("minus90") LocalDate minus90);
+
+    /**
+     * Danh sách hóa đơn phải trả chưa thanh toán hết trong một khoảng hạn thanh toán (drill-down tuổi nợ).
+     */
+    @Query(value = "SELECT ai FROM APInvoice ai JOIN FETCH ai.vendor v " +
+            "WHERE ai.status IN ('Unpaid', 'Partially_Paid') AND ai.deletedAt IS NULL " +
+            "AND (:vendorId IS NULL OR v.vendorId = :vendorId) " +
+            "AND (((:dueFrom IS NULL OR ai.dueDate >= :dueFrom) AND (:dueBefore IS NULL OR ai.dueDate < :dueBefore)) " +
+            "     OR (:includeNoDueDate = true AND ai.dueDate IS NULL))",
+            countQuery = "SELECT COUNT(ai) FROM APInvoice ai " +
+                    "WHERE ai.status IN ('Unpaid', 'Partially_Paid') AND ai.deletedAt IS NULL " +
+                    "AND (:vendorId IS NULL OR ai.vendor.vendorId = :vendorId) " +
+                    "AND (((:dueFrom IS NULL OR ai.dueDate >= :dueFrom) AND (:dueBefore IS NULL OR ai.dueDate < :dueBefore)) " +
+                    "     OR (:includeNoDueDate = true AND ai.dueDate IS NULL))")
+    Page<APInvoice> findOpenByDueRange(@Param("vendorId") Integer vendorId,
+                                       @Param("dueFrom") LocalDate dueFrom,
+                                       @Param("dueBefore") LocalDate dueBefore,
+                                       @Param("includeNoDueDate") boolean includeNoDueDate,
+                                       Pageable pageable);
+
+    @Query("SELECT COALESCE(SUM(ai.balanceAmount), 0) FROM APInvoice ai " +
+            "WHERE ai.status IN ('Unpaid', 'Partially_Paid') AND ai.deletedAt IS NULL " +
+            "AND ai.dueDate >= :fromDate AND ai.dueDate <= :toDate")
+    BigDecimal sumOpenBalanceDueBetween(@Param("fromDate") LocalDate fromDate,
+                                        @Param("toDate") LocalDate toDate);
+
+    @Query("SELECT ai.apInvoiceId AS invoiceId, ai.invoiceNo AS invoiceNo, v.vendorId AS partyId, " +
+            "v.vendorCode AS partyCode, ai.balanceAmount AS balanceAmount " +
+            "FROM APInvoice ai JOIN ai.vendor v " +
+            "WHERE ai.status IN ('Unpaid', 'Partially_Paid') AND ai.deletedAt IS NULL AND ai.balanceAmount > 0")
+    List<OpenInvoiceProjection> findOpenInvoiceKeys();
+
+    // Khóa hóa đơn theo thứ tự id để ghi thanh toán không vượt quá số còn nợ khi có thanh toán song song
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT ai FROM APInvoice ai JOIN FETCH ai.vendor LEFT JOIN FETCH ai.purchaseOrder " +
+            "WHERE ai.apInvoiceId IN :ids ORDER BY ai.apInvoiceId")
+    List<APInvoice> lockAllWithVendorByIdIn(@Param("ids") Collection<Integer> ids);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT ai FROM APInvoice ai WHERE ai.apInvoiceId = :id")
+    Optional<APInvoice> findByIdForUpdate(@Param("id") Integer id);
+
+    @Query("SELECT ap.apInvoiceId AS id, ap.invoiceNo AS number, v.name AS partyName " +
+            "FROM APInvoice ap LEFT JOIN ap.vendor v " +
+            "WHERE ap.deletedAt IS NULL")
+    List<DocumentSearchProjection> findActiveSearchDocuments();
+
+    @Query("SELECT ap.apInvoiceId AS id, ap.invoiceNo AS number, v.name AS partyName " +
+            "FROM APInvoice ap LEFT JOIN ap.vendor v " +
+            "WHERE ap.apInvoiceId IN :ids AND ap.deletedAt IS NULL")
+    List<DocumentSearchProjection> findSearchDocumentsByIds(@Param("ids") Collection<Integer> ids);
 }
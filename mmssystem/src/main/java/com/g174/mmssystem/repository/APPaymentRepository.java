@@ -1,11 +1,13 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.dto.responseDTO.PartyAmountProjection;
 import com.g174.mmssystem.entity.APPayment;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -34,4 +36,18 @@ public interface APPaymentRepository extends JpaRepository<APPayment, Integer> {
             @Param("keyword") String keyword,
             org.springframework.data.domain.Pageable pageable
     );
+
+    @Query("SELECT ap.apInvoice.vendor.vendorId AS partyId, SUM(ap.amount) AS amount FROM APPayment ap " +
+            "GROUP BY ap.apInvoice.vendor.vendorId")
+    List<PartyAmountProjection> sumPaidByVendor();
+
+    @Query("SELECT ap.apInvoice.vendor.vendorId AS partyId, SUM(ap.amount) AS amount FROM APPayment ap " +
+            "WHERE ap.apInvoice.vendor.vendorId IN :vendorIds GROUP BY ap.apInvoice.vendor.vendorId")
+    List<PartyAmountProjection> sumPaidByVendorIds(@Param("vendorIds") Collection<Integer> vendorIds);
+
+    @Query("SELECT ap.referenceNo FROM APPayment ap WHERE ap.referenceNo IN :referenceNos")
+    List<String> findExistingReferenceNos(@Param("referenceNos") Collection<String> referenceNos);
+
+    @Query("SELECT ap.statementFingerprint FROM APPayment ap WHERE ap.statementFingerprint IN :fingerprints")
+    List<String> findExistingStatementFingerprints(@Param("fingerprints") Collection<String> fingerprints);
 }
@@ -1,5 +1,6 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.dto.responseDTO.TradeAnalyticsRowProjection;
 import com.g174.mmssystem.entity.ARInvoiceItem;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -7,6 +8,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @Repository
@@ -17,5 +19,28 @@ public interface ARInvoiceItemRepository extends JpaRepository<ARInvoiceItem, In
     @Modifying
     @Query("DELETE FROM ARInvoiceItem ari WHERE ari.invoice.arInvoiceId = :invoiceId")
     void deleteByInvoiceId(@Param("invoiceId") Integer invoiceId);
-}
 
+    // ===== Báo cáo phân tích bán hàng: doanh thu đã xuất hóa đơn, ngày hóa đơn trong [from, to) =====
+
+    @Query("SELECT c.customerId AS groupId, c.customerCode AS groupCode, CONCAT(c.firstName, ' ', c.lastName) AS groupName, " +
+            "SUM(COALESCE(ii.quantity, 0)) AS quantity, SUM(COALESCE(ii.lineTotal, 0)) AS amount, COUNT(ii) AS lineCount " +
+            "FROM ARInvoiceItem ii JOIN ii.invoice inv JOIN inv.customer c " +
+            "WHERE inv.invoiceDate >= :from AND inv.invoiceDate < :to AND inv.deletedAt IS NULL " +
+            "AND inv.status <> com.g174.mmssystem.entity.ARInvoice.InvoiceStatus.Cancelled " +
+            "AND (:customerId IS NULL OR c.customerId = :customerId) " +
+            "GROUP BY c.customerId, c.customerCode, c.firstName, c.lastName")
+    List<TradeAnalyticsRowProjection> sumByCustomer(@Param("from") LocalDate from,
+                                                    @Param("to") LocalDate to,
+                                                    @Param("customerId") Integer customerId);
+
+    @Query("SELECT p.productId AS groupId, p.sku AS groupCode, p.name AS groupName, " +
+            "SUM(COALESCE(ii.quantity, 0)) AS quantity, SUM(COALESCE(ii.lineTotal, 0)) AS amount, COUNT(ii) AS lineCount " +
+            "FROM ARInvoiceItem ii JOIN ii.invoice inv JOIN inv.customer c JOIN ii.product p " +
+            "WHERE inv.invoiceDate >= :from AND inv.invoiceDate < :to AND inv.deletedAt IS NULL " +
+            "AND inv.status <> com.g174.mmssystem.entity.ARInvoice.InvoiceStatus.Cancelled " +
+            "AND (:customerId IS NULL OR c.customerId = :customerId) " +
+            "GROUP BY p.productId, p.sku, p.name")
+    List<TradeAnalyticsRowProjection> sumByProduct(@Param("from") LocalDate from,
+                                                   @Param("to") LocalDate to,
+                                                   @Param("customerId") Integer customerId);
+}
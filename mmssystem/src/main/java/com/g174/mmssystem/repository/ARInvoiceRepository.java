@@ -1,15 +1,24 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.dto.responseDTO.ARInvoiceListProjection;
+import com.g174.mmssystem.dto.responseDTO.AgingBucketProjection;
+import com.g174.mmssystem.dto.responseDTO.DocumentSearchProjection;
+import com.g174.mmssystem.dto.responseDTO.OpenInvoiceProjection;
+import com.g174.mmssystem.dto.responseDTO.PartyAmountProjection;
 import com.g174.mmssystem.entity.ARInvoice;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ARInvoiceRepository extends JpaRepository<ARInvoice, Integer> {
@@ -68,4 +77,116 @@ public interface ARInvoiceRepository extends JpaRepository<ARInvoice, Integer> {
      */
     @Query("SELECT ar FROM ARInvoice ar WHERE ar.delivery.deliveryId = :deliveryId AND ar.deletedAt IS NULL")
     List<ARInvoice> findByDelivery_DeliveryIdAndDeletedAtIsNull(@Param("deliveryId") Integer deliveryId);
-}
\ No newline at end of file
+
+    @Query("SELECT ar.customer.customerId AS partyId, SUM(ar.totalAmount) AS amount FROM ARInvoice ar " +
+            "WHERE ar.deletedAt IS NULL GROUP BY ar.customer.customerId")
+    List<PartyAmountProjection> sumActiveTotalByCustomer();
+
+    @Query("SELECT ar.customer.customerId AS partyId, SUM(ar.totalAmount) AS amount FROM ARInvoice ar " +
+            "WHERE ar.deletedAt IS NULL AND ar.customer.customerId IN :customerIds GROUP BY ar.customer.customerId")
+    List<PartyAmountProjection> sumActiveTotalByCustomerIds(@Param("customerIds") Collection<Integer> customerIds);
+
+    @Query("SELECT COALESCE(SUM(ar.totalAmount), 0) FROM ARInvoice ar " +
+            "WHERE ar.customer.customerId = :customerId AND ar.deletedAt IS NULL")
+    java.math.BigDecimal sumActiveTotalByCustomerId(@Param("customerId") Integer customerId);
+
+    /**
+     * Tuổi nợ phải thu theo customer: một query GROUP BY, các mốc minusN = asOf - N ngày.
+     */
+    @Query("SELECT c.customerId AS partyId, MAX(c.customerCode) AS partyCode, " +
+            "MAX(CONCAT(c.firstName, ' ', c.lastName)) AS partyName, " +
+            "SUM(CASE WHEN ar.dueDate IS NULL OR ar.dueDate >= :asOf THEN ar.balanceAmount ELSE 0 END) AS currentAmount, " +
+            "SUM(CASE WHEN ar.dueDate < :asOf AND ar.dueDate >= :minus30 THEN ar.balanceAmount ELSE 0 END) AS days0To30, " +
+            "SUM(CASE WHEN ar.dueDate < :minus30 AND ar.dueDate >= :minus60 THEN ar.balanceAmount ELSE 0 END) AS days31To60, " +
+            "SUM(CASE WHEN ar.dueDate < :minus60 AND ar.dueDate >= :minus90 THEN ar.balanceAmount ELSE 0 END) AS days61To90, " +
+            "SUM(CASE WHEN ar.dueDate < :minus90 THEN ar.balanceAmount ELSE 0 END) AS over90, " +
+            "SUM(ar.balanceAmount) AS totalAmount, COUNT(ar) AS invoiceCount, " +
+            "SUM(CASE WHEN ar.dueDate < :asOf THEN 1 ELSE 0 END) AS overdueCount " +
+            "FROM ARInvoice ar JOIN ar.customer c " +
+            "WHERE ar.status IN ('Unpaid', 'PartiallyPaid') AND ar.deletedAt IS NULL " +
+            "GROUP BY c.customerId")
+    List<AgingBucketProjection> sumAgingByCustomer(@Param("asOf") LocalDate asOf,
+                                                   @Param("minus30") LocalDate minus30,
+                                                   @Param("minus60") LocalDate minus60,
+                                                   @Param("minus90") LocalDate minus90);
+
+    /**
+     * Danh sách hóa đơn chưa thanh toán hết trong một khoảng hạn thanh toán (drill-down tuổi nợ).
+     * dueFrom / dueBefore = null: không giới hạn; includeNoDueDate: lấy cả hóa đơn không có hạn.
+     */
+    @Query(value = "SELECT ar FROM ARInvoice ar JOIN FETCH ar.customer c " +
+            "WHERE ar.status IN ('Unpaid', 'PartiallyPaid') AND ar.deletedAt IS NULL " +
+            "AND (:customerId IS NULL OR c.customerId = :customerId) " +
+            "AND (((:dueFrom IS NULL OR ar.dueDate >= :dueFrom) AND (:dueBefore IS NULL OR ar.dueDate < :dueBefore)) " +
+            "     OR (:includeNoDueDate = true AND ar.dueDate IS NULL))",
+            countQuery = "SELECT COUNT(ar) FROM ARInvoice ar " +
+                    "WHERE ar.status IN ('Unpaid', 'PartiallyPaid') AND ar.deletedAt IS NULL " +
+                    "AND (:customerId IS NULL OR ar.customer.customerId = :customerId) " +
+                    "AND (((:dueFrom IS NULL OR ar.dueDate >= :dueFrom) AND (:dueBefore IS NULL OR ar.dueDate < :dueBefore)) " +
+                    "     OR (:includeNoDueDate = true AND ar.dueDate IS NULL))")
+    Page<ARInvoice> findOpenByDueRange(@Param("customerId") Integer customerId,
+                                       @Param("dueFrom") LocalDate dueFrom,
+                                       @Param("dueBefore") LocalDate dueBefore,
+                                       @Param("includeNoDueDate") boolean includeNoDueDate,
+                                       Pageable pageable);
+
+    @Query("SELECT ar.arInvoiceId AS invoiceId, ar.invoiceNo AS invoiceNo, c.customerId AS partyId, " +
+            "c.customerCode AS partyCode, ar.balanceAmount AS balanceAmount " +
+            "FROM ARInvoice ar JOIN ar.customer c " +
+            "WHERE ar.status IN ('Unpaid', 'PartiallyPaid') AND ar.deletedAt IS NULL AND ar.balanceAmount > 0")
+    List<OpenInvoiceProjection> findOpenInvoiceKeys();
+
+    // Khóa hóa đơn theo thứ tự id để ghi thanh toán không vượt quá số còn nợ khi có thanh toán song song
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT ar FROM ARInvoice ar JOIN FETCH ar.customer WHERE ar.arInvoiceId IN :ids ORDER BY ar.arInvoiceId")
+    List<ARInvoice> lockAllWithCustomerByIdIn(@Param("ids") Collection<Integer> ids);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT ar FROM ARInvoice ar WHERE ar.arInvoiceId = :id")
+    Optional<ARInvoice> findByIdForUpdate(@Param("id") Integer id);
+
+    @Query(value = "SELECT ar.arInvoiceId AS arInvoiceId, ar.invoiceNo AS invoiceNo, ar.status AS status, " +
+            "c.customerId AS customerId, c.customerCode AS customerCode, " +
+            "c.firstName AS customerFirstName, c.lastName AS customerLastName, " +
+            "so.soId AS salesOrderId, so.soNo AS salesOrderNo, d.deliveryId AS deliveryId, d.deliveryNo AS deliveryNo, " +
+            "ar.invoiceDate AS invoiceDate, ar.dueDate AS dueDate, " +
+            "ar.totalAmount AS totalAmount, ar.balanceAmount AS balanceAmount, " +
+            "CASE WHEN EXISTS (SELECT 1 FROM ARPayment p WHERE p.invoice = ar) " +
+            "THEN true ELSE false END AS hasPayment, " +
+            "CASE WHEN EXISTS (SELECT 1 FROM CreditNote cn WHERE cn.invoice = ar AND cn.deletedAt IS NULL) " +
+            "THEN true ELSE false END AS hasCreditNote, " +
+            "ar.createdAt AS createdAt, ar.updatedAt AS updatedAt, " +
+            "cp.firstName AS createdByFirstName, cp.lastName AS createdByLastName, " +
+            "cu.employeeCode AS createdByEmployeeCode, cu.email AS createdByEmail, " +
+            "up.firstName AS updatedByFirstName, up.lastName AS updatedByLastName, " +
+            "uu.employeeCode AS updatedByEmployeeCode, uu.email AS updatedByEmail " +
+            "FROM ARInvoice ar LEFT JOIN ar.customer c LEFT JOIN ar.salesOrder so LEFT JOIN ar.delivery d " +
+            "LEFT JOIN ar.createdBy cu LEFT JOIN cu.profile cp LEFT JOIN ar.updatedBy uu LEFT JOIN uu.profile up " +
+            "WHERE ar.deletedAt IS NULL " +
+            "AND (:customerId IS NULL OR c.customerId = :customerId) " +
+            "AND (:status IS NULL OR ar.status = :status) " +
+            "AND (:keyword IS NULL OR LOWER(ar.invoiceNo) LIKE :keyword OR LOWER(so.soNo) LIKE :keyword " +
+            "OR LOWER(c.customerCode) LIKE :keyword OR LOWER(c.firstName) LIKE :keyword " +
+            "OR LOWER(c.lastName) LIKE :keyword)",
+            countQuery = "SELECT COUNT(ar) FROM ARInvoice ar LEFT JOIN ar.customer c LEFT JOIN ar.salesOrder so " +
+                    "WHERE ar.deletedAt IS NULL " +
+                    "AND (:customerId IS NULL OR c.customerId = :customerId) " +
+                    "AND (:status IS NULL OR ar.status = :status) " +
+                    "AND (:keyword IS NULL OR LOWER(ar.invoiceNo) LIKE :keyword OR LOWER(so.soNo) LIKE :keyword " +
+                    "OR LOWER(c.customerCode) LIKE :keyword OR LOWER(c.firstName) LIKE :keyword " +
+                    "OR LOWER(c.lastName) LIKE :keyword)")
+    Page<ARInvoiceListProjection> findListPage(@Param("customerId") Integer customerId,
+                                               @Param("status") ARInvoice.InvoiceStatus status,
+                                               @Param("keyword") String keyword,
+                                               Pageable pageable);
+
+    @Query("SELECT ar.arInvoiceId AS id, ar.invoiceNo AS number, CONCAT(COALESCE(c.firstName, ''), ' ', COALESCE(c.lastName, '')) AS partyName " +
+            "FROM ARInvoice ar LEFT JOIN ar.customer c " +
+            "WHERE ar.deletedAt IS NULL")
+    List<DocumentSearchProjection> findActiveSearchDocuments();
+
+    @Query("SELECT ar.arInvoiceId AS id, ar.invoiceNo AS number, CONCAT(COALESCE(c.firstName, ''), ' ', COALESCE(c.lastName, '')) AS partyName " +
+            "FROM ARInvoice ar LEFT JOIN ar.customer c " +
+            "WHERE ar.arInvoiceId IN :ids AND ar.deletedAt IS NULL")
+    List<DocumentSearchProjection> findSearchDocumentsByIds(@Param("ids") Collection<Integer> ids);
+}
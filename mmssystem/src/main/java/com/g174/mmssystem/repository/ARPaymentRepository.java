@@ -1,11 +1,13 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.dto.responseDTO.PartyAmountProjection;
 import com.g174.mmssystem.entity.ARPayment;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -20,5 +22,18 @@ public interface ARPaymentRepository extends JpaRepository<ARPayment, Integer> {
 
     @Query("SELECT SUM(p.amount) FROM ARPayment p WHERE p.invoice.customer.customerId = :customerId")
     java.math.BigDecimal getTotalPaidByCustomerId(@Param("customerId") Integer customerId);
-}
 
+    @Query("SELECT p.invoice.customer.customerId AS partyId, SUM(p.amount) AS amount FROM ARPayment p " +
+            "GROUP BY p.invoice.customer.customerId")
+    List<PartyAmountProjection> sumPaidByCustomer();
+
+    @Query("SELECT p.invoice.customer.customerId AS partyId, SUM(p.amount) AS amount FROM ARPayment p " +
+            "WHERE p.invoice.customer.customerId IN :customerIds GROUP BY p.invoice.customer.customerId")
+    List<PartyAmountProjection> sumPaidByCustomerIds(@Param("customerIds") Collection<Integer> customerIds);
+
+    @Query("SELECT p.referenceNo FROM ARPayment p WHERE p.referenceNo IN :referenceNos")
+    List<String> findExistingReferenceNos(@Param("referenceNos") Collection<String> referenceNos);
+
+    @Query("SELECT p.statementFingerprint FROM ARPayment p WHERE p.statementFingerprint IN :fingerprints")
+    List<String> findExistingStatementFingerprints(@Param("fingerprints") Collection<String> fingerprints);
+}
@@ -0,0 +1,28 @@
+package com.g174.mmssystem.repository;
+
+import com.g174.mmssystem.entity.AppLock;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface AppLockRepository extends JpaRepository<AppLock, String> {
+
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO App_Locks (lock_name) VALUES (:lockName)", nativeQuery = true)
+    void insertIfAbsent(@Param("lockName") String lockName);
+
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT l FROM AppLock l WHERE l.lockName = :lockName")
+    Optional<AppLock> lockShared(@Param("lockName") String lockName);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT l FROM AppLock l WHERE l.lockName = :lockName")
+    Optional<AppLock> lockExclusive(@Param("lockName") String lockName);
+}
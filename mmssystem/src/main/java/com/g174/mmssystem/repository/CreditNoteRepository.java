@@ -1,5 +1,6 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.dto.responseDTO.PartyAmountProjection;
 import com.g174.mmssystem.entity.CreditNote;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
@@ -7,10 +8,12 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface CreditNoteRepository extends JpaRepository<CreditNote, Integer>, JpaSpecificationExecutor<CreditNote> {
+public interface CreditNoteRepository extends JpaRepository<CreditNote, Integer>, JpaSpecificationExecutor<CreditNote>,
+        CreditNoteRepositoryCustom {
 
     CreditNote findByCreditNoteNo(String creditNoteNo);
 
@@ -20,5 +23,24 @@ public interface CreditNoteRepository extends JpaRepository<CreditNote, Integer>
 
     @Query("SELECT cn FROM CreditNote cn WHERE cn.invoice.customer.customerId = :customerId AND cn.deletedAt IS NULL")
     List<CreditNote> findByCustomerIdAndDeletedAtIsNull(@Param("customerId") Integer customerId);
-}
 
+    /**
+     * Tổng phần Credit Note bù trừ vào công nợ (appliedToBalance, fallback totalAmount) theo customer.
+     */
+    @Query("SELECT cn.invoice.customer.customerId AS partyId, " +
+            "SUM(COALESCE(cn.appliedToBalance, cn.totalAmount)) AS amount FROM CreditNote cn " +
+            "WHERE cn.deletedAt IS NULL AND cn.status IN :statuses GROUP BY cn.invoice.customer.customerId")
+    List<PartyAmountProjection> sumAppliedByCustomer(@Param("statuses") Collection<CreditNote.CreditNoteStatus> statuses);
+
+    @Query("SELECT cn.invoice.customer.customerId AS partyId, " +
+            "SUM(COALESCE(cn.appliedToBalance, cn.totalAmount)) AS amount FROM CreditNote cn " +
+            "WHERE cn.deletedAt IS NULL AND cn.status IN :statuses AND cn.invoice.customer.customerId IN :customerIds " +
+            "GROUP BY cn.invoice.customer.customerId")
+    List<PartyAmountProjection> sumAppliedByCustomerIds(@Param("customerIds") Collection<Integer> customerIds,
+                                                        @Param("statuses") Collection<CreditNote.CreditNoteStatus> statuses);
+
+    @Query("SELECT COALESCE(SUM(COALESCE(cn.appliedToBalance, cn.totalAmount)), 0) FROM CreditNote cn " +
+            "WHERE cn.invoice.customer.customerId = :customerId AND cn.deletedAt IS NULL AND cn.status IN :statuses")
+    java.math.BigDecimal sumAppliedByCustomerId(@Param("customerId") Integer customerId,
+                                                @Param("statuses") Collection<CreditNote.CreditNoteStatus> statuses);
+}
@@ -0,0 +1,16 @@
+package com.g174.mmssystem.repository;
+
+import com.g174.mmssystem.dto.responseDTO.CreditNoteListProjection;
+import com.g174.mmssystem.entity.CreditNote;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+public interface CreditNoteRepositoryCustom {
+
+    /**
+     * Lọc / sắp xếp / phân trang Credit Note trong database và chỉ SELECT các cột của danh sách.
+     * Pageable.unpaged() trả về toàn bộ kết quả đã lọc.
+     */
+    Page<CreditNoteListProjection> findListPage(Specification<CreditNote> spec, Pageable pageable);
+}
@@ -0,0 +1,151 @@
+package com.g174.mmssystem.repository;
+
+import com.g174.mmssystem.dto.responseDTO.CreditNoteListProjection;
+import com.g174.mmssystem.entity.ARInvoice;
+import com.g174.mmssystem.entity.CreditNote;
+import com.g174.mmssystem.entity.Customer;
+import com.g174.mmssystem.entity.ReturnOrder;
+import com.g174.mmssystem.entity.SalesOrder;
+import com.g174.mmssystem.entity.User;
+import com.g174.mmssystem.entity.UserProfile;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TupleElement;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class CreditNoteRepositoryCustomImpl implements CreditNoteRepositoryCustom {
+
+    /**
+     * Các field FE được phép sort (field của CreditNote).
+     */
+    private static final Set<String> SORTABLE_FIELDS = Set.of(
+            "cnId", "creditNoteNo", "creditNoteDate", "status", "totalAmount",
+            "appliedToBalance", "refundAmount", "refundPaidAmount", "createdAt", "updatedAt");
+
+    private final ProjectionFactory projectionFactory = new SpelAwareProxyProjectionFactory();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<CreditNoteListProjection> findListPage(Specification<CreditNote> spec, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        Long total = null;
+        if (pageable.isPaged()) {
+            CriteriaQuery<Long> countQuery = cb.createQuery(Long.class);
+            Root<CreditNote> countRoot = countQuery.from(CreditNote.class);
+            Predicate countPredicate = spec != null ? spec.toPredicate(countRoot, countQuery, cb) : null;
+            countQuery.select(cb.count(countRoot));
+            if (countPredicate != null) {
+                countQuery.where(countPredicate);
+            }
+            total = entityManager.createQuery(countQuery).getSingleResult();
+            if (total == 0 || pageable.getOffset() >= total) {
+                return new PageImpl<>(new ArrayList<>(), pageable, total);
+            }
+        }
+
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<CreditNote> root = query.from(CreditNote.class);
+        Join<CreditNote, ARInvoice> invoice = root.join("invoice", JoinType.LEFT);
+        Join<ARInvoice, Customer> customer = invoice.join("customer", JoinType.LEFT);
+        Join<ARInvoice, SalesOrder> salesOrder = invoice.join("salesOrder", JoinType.LEFT);
+        Join<CreditNote, ReturnOrder> returnOrder = root.join("returnOrder", JoinType.LEFT);
+        Join<CreditNote, User> createdBy = root.join("createdBy", JoinType.LEFT);
+        Join<User, UserProfile> createdByProfile = createdBy.join("profile", JoinType.LEFT);
+        Join<CreditNote, User> updatedBy = root.join("updatedBy", JoinType.LEFT);
+        Join<User, UserProfile> updatedByProfile = updatedBy.join("profile", JoinType.LEFT);
+        // Tạo join trước để CreditNoteSpecifications dùng lại, tránh join ar_invoices nhiều lần
+        Predicate predicate = spec != null ? spec.toPredicate(root, query, cb) : null;
+
+        List<Selection<?>> columns = List.of(
+                root.get("cnId").alias("cnId"),
+                root.get("creditNoteNo").alias("creditNoteNo"),
+                root.get("status").alias("status"),
+                invoice.get("arInvoiceId").alias("invoiceId"),
+                invoice.get("invoiceNo").alias("invoiceNo"),
+                salesOrder.get("soId").alias("salesOrderId"),
+                salesOrder.get("soNo").alias("salesOrderNo"),
+                returnOrder.get("roId").alias("returnOrderId"),
+                returnOrder.get("returnNo").alias("returnOrderNo"),
+                customer.get("customerId").alias("customerId"),
+                customer.get("firstName").alias("customerFirstName"),
+                customer.get("lastName").alias("customerLastName"),
+                root.get("creditNoteDate").alias("creditNoteDate"),
+                root.get("totalAmount").alias("totalAmount"),
+                root.get("appliedToBalance").alias("appliedToBalance"),
+                root.get("refundAmount").alias("refundAmount"),
+                root.get("refundPaidAmount").alias("refundPaidAmount"),
+                root.get("createdAt").alias("createdAt"),
+                root.get("updatedAt").alias("updatedAt"),
+                createdByProfile.get("firstName").alias("createdByFirstName"),
+                createdByProfile.get("lastName").alias("createdByLastName"),
+                createdBy.get("employeeCode").alias("createdByEmployeeCode"),
+                createdBy.get("email").alias("createdByEmail"),
+                updatedByProfile.get("firstName").alias("updatedByFirstName"),
+                updatedByProfile.get("lastName").alias("updatedByLastName"),
+                updatedBy.get("employeeCode").alias("updatedByEmployeeCode"),
+                updatedBy.get("email").alias("updatedByEmail"));
+        query.multiselect(columns);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(buildOrderBy(pageable.getSort(), root, cb));
+
+        TypedQuery<Tuple> typedQuery = entityManager.createQuery(query);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+
+        List<CreditNoteListProjection> content = new ArrayList<>();
+        for (Tuple tuple : typedQuery.getResultList()) {
+            Map<String, Object> values = new HashMap<>();
+            for (TupleElement<?> element : tuple.getElements()) {
+                values.put(element.getAlias(), tuple.get(element));
+            }
+            content.add(projectionFactory.createProjection(CreditNoteListProjection.class, values));
+        }
+        return new PageImpl<>(content, pageable, total != null ? total : content.size());
+    }
+
+    private List<Order> buildOrderBy(Sort sort, Root<CreditNote> root, CriteriaBuilder cb) {
+        List<Order> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            if (SORTABLE_FIELDS.contains(order.getProperty())) {
+                orders.add(order.isAscending()
+                        ? cb.asc(root.get(order.getProperty()))
+                        : cb.desc(root.get(order.getProperty())));
+            }
+        }
+        if (orders.isEmpty()) {
+            orders.add(cb.desc(root.get("createdAt")));
+        }
+        // Thứ tự phụ để phân trang ổn định
+        orders.add(cb.desc(root.get("cnId")));
+        return orders;
+    }
+}
@@ -1,11 +1,18 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.dto.responseDTO.PartyBalanceProjection;
 import com.g174.mmssystem.entity.CustomerBalance;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -15,5 +22,49 @@ public interface CustomerBalanceRepository extends JpaRepository<CustomerBalance
 
     @Query("SELECT cb FROM CustomerBalance cb WHERE cb.customer.customerId = :customerId")
     Optional<CustomerBalance> findBalanceByCustomerId(@Param("customerId") Integer customerId);
-}
 
+    /**
+     * Cộng delta trực tiếp trong database (không đọc - cộng - ghi), tránh mất cập nhật khi ghi nhận đồng thời.
+     * outstanding_balance được gán trước để luôn tính từ giá trị cũ (MySQL gán SET theo thứ tự trái sang phải).
+     * Trả về 0 nếu customer chưa có dòng balance.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE CustomerBalance cb SET " +
+            "cb.outstandingBalance = greatest(greatest(cb.totalInvoiced + :invoiced, 0) " +
+            "  - greatest(cb.totalPaid + :paid, 0) - greatest(cb.totalCreditNote + :creditNote, 0), 0), " +
+            "cb.totalInvoiced = greatest(cb.totalInvoiced + :invoiced, 0), " +
+            "cb.totalPaid = greatest(cb.totalPaid + :paid, 0), " +
+            "cb.totalCreditNote = greatest(cb.totalCreditNote + :creditNote, 0), " +
+            "cb.lastUpdatedAt = CURRENT_INSTANT " +
+            "WHERE cb.customer.customerId = :customerId")
+    int applyDelta(@Param("customerId") Integer customerId,
+                   @Param("invoiced") BigDecimal invoiced,
+                   @Param("paid") BigDecimal paid,
+                   @Param("creditNote") BigDecimal creditNote);
+
+    /**
+     * Tạo dòng balance rỗng nếu chưa có; INSERT IGNORE để hai giao dịch đồng thời không lỗi unique key.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT IGNORE INTO customer_balances " +
+            "(customer_id, total_invoiced, total_paid, total_credit_note, outstanding_balance, last_updated_at) " +
+            "SELECT c.customer_id, 0, 0, 0, 0, NOW() FROM customers c WHERE c.customer_id = :customerId",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("customerId") Integer customerId);
+
+    @Query("SELECT cb.customer.customerId AS partyId, cb.totalInvoiced AS totalInvoiced, cb.totalPaid AS totalPaid, " +
+            "cb.totalCreditNote AS totalCreditNote, cb.outstandingBalance AS outstandingBalance FROM CustomerBalance cb")
+    List<PartyBalanceProjection> findAllSnapshots();
+
+    @Query("SELECT cb.customer.customerId AS partyId, cb.totalInvoiced AS totalInvoiced, cb.totalPaid AS totalPaid, " +
+            "cb.totalCreditNote AS totalCreditNote, cb.outstandingBalance AS outstandingBalance FROM CustomerBalance cb " +
+            "WHERE cb.customer.customerId IN :customerIds")
+    List<PartyBalanceProjection> findSnapshotsByCustomerIds(@Param("customerIds") Collection<Integer> customerIds);
+
+    /**
+     * Khóa các dòng balance (SELECT ... FOR UPDATE) theo thứ tự customer_id để ghi nhận công nợ đồng thời phải chờ
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT cb FROM CustomerBalance cb WHERE cb.customer.customerId IN :customerIds ORDER BY cb.customer.customerId")
+    List<CustomerBalance> lockByCustomerIds(@Param("customerIds") Collection<Integer> customerIds);
+}
@@ -1,5 +1,6 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.dto.responseDTO.MasterDataSearchProjection;
 import com.g174.mmssystem.entity.Customer;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -90,4 +91,9 @@ public interface CustomerRepository extends JpaRepository<Customer, Integer> {
         WHERE c.customer_id = :customerId AND c.deleted_at IS NULL
         """, nativeQuery = true)
     TransactionSummaryProjection getTransactionSummary(@Param("customerId") Integer customerId);
+
+    @Query("SELECT c.customerId AS id, c.customerCode AS code, " +
+            "CONCAT(COALESCE(c.firstName, ''), ' ', COALESCE(c.lastName, '')) AS name " +
+            "FROM Customer c WHERE c.deletedAt IS NULL")
+    List<MasterDataSearchProjection> findActiveSearchDocuments();
 }
\ No newline at end of file
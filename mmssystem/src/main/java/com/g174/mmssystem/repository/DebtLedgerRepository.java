@@ -0,0 +1,227 @@
+package com.g174.mmssystem.repository;
+
+import com.g174.mmssystem.dto.responseDTO.DebtTransactionResponseDTO;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Sổ công nợ: gộp AP Invoice, AP Payment, AR Invoice, AR Payment bằng một câu UNION ALL,
+ * lọc / tìm kiếm / sắp xếp / phân trang ngay trong database.
+ */
+@Repository
+public class DebtLedgerRepository {
+
+    private static final String LEDGER_SQL = """
+            SELECT 'Vendor' AS party_type, v.vendor_id AS party_id, v.vendor_code AS party_code, v.name AS party_name,
+                   ap.total_amount AS debit_amount, 0 AS credit_amount,
+                   CONCAT('Hóa đơn phải trả: ', ap.invoice_no) AS content,
+                   ap.invoice_date AS transaction_date, 'AP_INVOICE' AS transaction_type,
+                   ap.invoice_no AS reference_no, ap.ap_invoice_id AS source_id
+            FROM AP_Invoices ap
+            JOIN vendors v ON v.vendor_id = ap.vendor_id
+            WHERE ap.deleted_at IS NULL
+            UNION ALL
+            SELECT 'Vendor', v.vendor_id, v.vendor_code, v.name,
+                   0, p.amount,
+                   CONCAT('Thanh toán cho: ', ap.invoice_no, COALESCE(CONCAT(' - ', p.reference_no), '')),
+                   COALESCE(DATE(p.payment_date), CURRENT_DATE), 'AP_PAYMENT',
+                   COALESCE(p.reference_no, ap.invoice_no), p.ap_payment_id
+            FROM AP_Payments p
+            JOIN AP_Invoices ap ON ap.ap_invoice_id = p.ap_invoice_id
+            JOIN vendors v ON v.vendor_id = ap.vendor_id
+            WHERE ap.deleted_at IS NULL
+            UNION ALL
+            SELECT 'Customer', c.customer_id, c.customer_code, CONCAT(c.first_name, ' ', c.last_name),
+                   ar.total_amount, 0,
+                   CONCAT('Hóa đơn phải thu: ', ar.invoice_no),
+                   ar.invoice_date, 'AR_INVOICE',
+                   ar.invoice_no, ar.ar_invoice_id
+            FROM ar_invoices ar
+            JOIN customers c ON c.customer_id = ar.customer_id
+            WHERE ar.deleted_at IS NULL
+            UNION ALL
+            SELECT 'Customer', c.customer_id, c.customer_code, CONCAT(c.first_name, ' ', c.last_name),
+                   0, p.amount,
+                   CONCAT('Thanh toán từ: ', ar.invoice_no, COALESCE(CONCAT(' - ', p.reference_no), '')),
+                   COALESCE(DATE(p.payment_date), CURRENT_DATE), 'AR_PAYMENT',
+                   COALESCE(p.reference_no, ar.invoice_no), p.ar_payment_id
+            FROM ar_payments p
+            JOIN ar_invoices ar ON ar.ar_invoice_id = p.ar_invoice_id
+            JOIN customers c ON c.customer_id = ar.customer_id
+            WHERE ar.deleted_at IS NULL
+            """;
+
+    /**
+     * Các field FE được phép sort -> cột của sổ công nợ.
+     */
+    private static final Map<String, String> SORT_COLUMNS = Map.of(
+            "customervendorcode", "t.party_code",
+            "customervendorname", "t.party_name",
+            "debitamount", "t.debit_amount",
+            "creditamount", "t.credit_amount",
+            "transactiondate", "t.transaction_date",
+            "transactiontype", "t.transaction_type",
+            "referenceno", "t.reference_no");
+
+    private static final String DEFAULT_ORDER = "t.transaction_date DESC";
+
+    // Thứ tự phụ để phân trang ổn định khi giá trị sort trùng nhau
+    private static final String TIE_BREAKER = "t.transaction_type ASC, t.source_id ASC";
+
+    /**
+     * Credit Note đã Issued/Applied làm giảm công nợ phải thu (chỉ phần bù trừ vào hóa đơn).
+     */
+    private static final String CREDIT_NOTE_SQL = """
+            SELECT 'Customer' AS party_type, c.customer_id AS party_id, c.customer_code AS party_code,
+                   CONCAT(c.first_name, ' ', c.last_name) AS party_name,
+                   0 AS debit_amount, COALESCE(cn.applied_to_balance, cn.total_amount) AS credit_amount,
+                   DATE(cn.credit_note_date) AS transaction_date
+            FROM credit_notes cn
+            JOIN ar_invoices ar ON ar.ar_invoice_id = cn.invoice_id
+            JOIN customers c ON c.customer_id = ar.customer_id
+            WHERE cn.deleted_at IS NULL AND cn.status IN ('Issued', 'Applied')
+            """;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public Page<DebtTransactionResponseDTO> findPage(String keyword, String partyType, String transactionType,
+                                                     LocalDate fromDate, LocalDate toDate, Pageable pageable) {
+        Map<String, Object> params = new HashMap<>();
+        String where = buildWhere(keyword, partyType, transactionType, fromDate, toDate, params);
+
+        Query countQuery = entityManager.createNativeQuery(
+                "SELECT COUNT(*) FROM (" + LEDGER_SQL + ") t" + where);
+        params.forEach(countQuery::setParameter);
+        long total = ((Number) countQuery.getSingleResult()).longValue();
+
+        if (total == 0 || pageable.getOffset() >= total) {
+            return new PageImpl<>(new ArrayList<>(), pageable, total);
+        }
+
+        Query pageQuery = entityManager.createNativeQuery(
+                "SELECT t.party_code, t.party_type, t.party_name, t.debit_amount, t.credit_amount, t.content, "
+                        + "t.transaction_date, t.transaction_type, t.reference_no "
+                        + "FROM (" + LEDGER_SQL + ") t" + where
+                        + " ORDER BY " + buildOrderBy(pageable.getSort()));
+        params.forEach(pageQuery::setParameter);
+        pageQuery.setFirstResult((int) pageable.getOffset());
+        pageQuery.setMaxResults(pageable.getPageSize());
+
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = pageQuery.getResultList();
+        List<DebtTransactionResponseDTO> content = new ArrayList<>(rows.size());
+        long sequence = pageable.getOffset();
+        for (Object[] row : rows) {
+            content.add(DebtTransactionResponseDTO.builder()
+                    .id(++sequence)
+                    .customerVendorCode((String) row[0])
+                    .customerVendorType((String) row[1])
+                    .customerVendorName((String) row[2])
+                    .debitAmount(toBigDecimal(row[3]))
+                    .creditAmount(toBigDecimal(row[4]))
+                    .transactionContent((String) row[5])
+                    .transactionDate(toLocalDate(row[6]))
+                    .transactionType((String) row[7])
+                    .referenceNo((String) row[8])
+                    .build());
+        }
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * Tổng phát sinh tăng / giảm theo KH/NCC và kỳ yyyyMM (gồm cả Credit Note), dùng để rebuild bảng tổng hợp tháng.
+     * Mỗi dòng: party_type, party_id, party_code, party_name, period, total_increase, total_decrease.
+     */
+    public List<Object[]> sumByPartyAndPeriod() {
+        String sql = "SELECT t.party_type, t.party_id, MAX(t.party_code), MAX(t.party_name), "
+                + "YEAR(t.transaction_date) * 100 + MONTH(t.transaction_date) AS period, "
+                + "SUM(t.debit_amount), SUM(t.credit_amount) "
+                + "FROM (SELECT party_type, party_id, party_code, party_name, debit_amount, credit_amount, transaction_date "
+                + "FROM (" + LEDGER_SQL + ") l UNION ALL " + CREDIT_NOTE_SQL + ") t "
+                + "GROUP BY t.party_type, t.party_id, period "
+                + "ORDER BY t.party_type, t.party_id, period";
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager.createNativeQuery(sql).getResultList();
+        return rows;
+    }
+
+    private String buildWhere(String keyword, String partyType, String transactionType,
+                              LocalDate fromDate, LocalDate toDate, Map<String, Object> params) {
+        List<String> conditions = new ArrayList<>();
+        if (StringUtils.hasText(keyword)) {
+            conditions.add("(LOWER(t.party_code) LIKE :keyword OR LOWER(t.party_name) LIKE :keyword "
+                    + "OR LOWER(t.content) LIKE :keyword OR LOWER(t.reference_no) LIKE :keyword)");
+            params.put("keyword", "%" + keyword.trim().toLowerCase(Locale.ROOT) + "%");
+        }
+        if (StringUtils.hasText(partyType)) {
+            conditions.add("t.party_type = :partyType");
+            params.put("partyType", partyType.trim());
+        }
+        if (StringUtils.hasText(transactionType)) {
+            conditions.add("t.transaction_type = :transactionType");
+            params.put("transactionType", transactionType.trim().toUpperCase(Locale.ROOT));
+        }
+        if (fromDate != null) {
+            conditions.add("t.transaction_date >= :fromDate");
+            params.put("fromDate", fromDate);
+        }
+        if (toDate != null) {
+            conditions.add("t.transaction_date <= :toDate");
+            params.put("toDate", toDate);
+        }
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    private String buildOrderBy(Sort sort) {
+        List<String> orders = new ArrayList<>();
+        if (sort != null) {
+            for (Sort.Order order : sort) {
+                String column = SORT_COLUMNS.get(order.getProperty().toLowerCase(Locale.ROOT));
+                if (column != null) {
+                    orders.add(column + (order.isAscending() ? " ASC" : " DESC"));
+                }
+            }
+        }
+        if (orders.isEmpty()) {
+            orders.add(DEFAULT_ORDER);
+        }
+        orders.add(TIE_BREAKER);
+        return String.join(", ", orders);
+    }
+
+    private BigDecimal toBigDecimal(Object value) {
+        if (value == null) {
+            return BigDecimal.ZERO;
+        }
+        if (value instanceof BigDecimal decimal) {
+            return decimal;
+        }
+        return new BigDecimal(value.toString());
+    }
+
+    private LocalDate toLocalDate(Object value) {
+        if (value instanceof LocalDate localDate) {
+            return localDate;
+        }
+        if (value instanceof java.sql.Date sqlDate) {
+            return sqlDate.toLocalDate();
+        }
+        return value != null ? LocalDate.parse(value.toString()) : null;
+    }
+}
@@ -0,0 +1,74 @@
+package com.g174.mmssystem.repository;
+
+import com.g174.mmssystem.entity.DebtMonthlySummary;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+@Repository
+public interface DebtMonthlySummaryRepository extends JpaRepository<DebtMonthlySummary, Long> {
+
+    Optional<DebtMonthlySummary> findByPartyTypeAndPartyIdAndPeriod(String partyType, Integer partyId, Integer period);
+
+    /**
+     * Dòng tổng hợp gần nhất tới kỳ :period (kể cả kỳ đó) của mỗi KH/NCC. Dòng của kỳ trước chỉ lấy khi còn
+     * số dư (closing khác 0): KH/NCC không phát sinh trong kỳ vẫn có mặt với số dư mang sang.
+     * @param partyType - "Customer" / "Vendor", null = tất cả
+     */
+    @Query("SELECT s FROM DebtMonthlySummary s " +
+            "WHERE (:partyType IS NULL OR s.partyType = :partyType) " +
+            "AND (s.period = :period OR s.closingBalance <> 0) " +
+            "AND s.period = (SELECT MAX(p.period) FROM DebtMonthlySummary p " +
+            "    WHERE p.partyType = s.partyType AND p.partyId = s.partyId AND p.period <= :period)")
+    Page<DebtMonthlySummary> findLatestUpToPeriod(@Param("period") Integer period,
+                                                  @Param("partyType") String partyType,
+                                                  Pageable pageable);
+
+    /**
+     * Tạo dòng tổng hợp của kỳ nếu chưa có, opening = closing của kỳ gần nhất trước đó.
+     * INSERT IGNORE để hai giao dịch đồng thời không lỗi unique key.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT IGNORE INTO debt_monthly_summaries " +
+            "(party_type, party_id, party_code, party_name, period, opening_balance, total_increase, total_decrease, closing_balance, updated_at) " +
+            "SELECT :partyType, :partyId, :partyCode, :partyName, :period, prev.closing, 0, 0, prev.closing, NOW() " +
+            "FROM (SELECT COALESCE((SELECT s.closing_balance FROM debt_monthly_summaries s " +
+            "      WHERE s.party_type = :partyType AND s.party_id = :partyId AND s.period < :period " +
+            "      ORDER BY s.period DESC LIMIT 1), 0) AS closing) prev",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("partyType") String partyType,
+                       @Param("partyId") Integer partyId,
+                       @Param("partyCode") String partyCode,
+                       @Param("partyName") String partyName,
+                       @Param("period") Integer period);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE DebtMonthlySummary s SET s.totalIncrease = s.totalIncrease + :increase, " +
+            "s.totalDecrease = s.totalDecrease + :decrease, " +
+            "s.closingBalance = s.closingBalance + :increase - :decrease, s.updatedAt = CURRENT_INSTANT " +
+            "WHERE s.partyType = :partyType AND s.partyId = :partyId AND s.period = :period")
+    int applyDelta(@Param("partyType") String partyType,
+                   @Param("partyId") Integer partyId,
+                   @Param("period") Integer period,
+                   @Param("increase") BigDecimal increase,
+                   @Param("decrease") BigDecimal decrease);
+
+    /**
+     * Giao dịch ghi vào kỳ cũ: dời opening/closing của các kỳ sau cùng một lượng.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE DebtMonthlySummary s SET s.openingBalance = s.openingBalance + :delta, " +
+            "s.closingBalance = s.closingBalance + :delta, s.updatedAt = CURRENT_INSTANT " +
+            "WHERE s.partyType = :partyType AND s.partyId = :partyId AND s.period > :period")
+    int shiftLaterPeriods(@Param("partyType") String partyType,
+                          @Param("partyId") Integer partyId,
+                          @Param("period") Integer period,
+                          @Param("delta") BigDecimal delta);
+}
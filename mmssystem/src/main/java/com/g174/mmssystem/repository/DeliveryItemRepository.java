@@ -1,5 +1,6 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.dto.responseDTO.SalesOrderItemFulfillmentProjection;
 import com.g174.mmssystem.entity.DeliveryItem;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -7,6 +8,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -14,6 +16,11 @@ public interface DeliveryItemRepository extends JpaRepository<DeliveryItem, Inte
 
     List<DeliveryItem> findByDelivery_DeliveryId(Integer deliveryId);
 
+    List<DeliveryItem> findByDelivery_DeliveryIdIn(Collection<Integer> deliveryIds);
+
+    @Query("select di from DeliveryItem di join fetch di.product left join fetch di.warehouse where di.delivery.deliveryId in :deliveryIds")
+    List<DeliveryItem> findByDeliveryIdsWithProductAndWarehouse(@Param("deliveryIds") Collection<Integer> deliveryIds);
+
     void deleteByDelivery_DeliveryId(Integer deliveryId);
 
     @Query("select coalesce(sum(di.plannedQty), 0) from DeliveryItem di where di.salesOrderItem.soiId = :soiId and di.delivery.deletedAt is null and di.delivery.status <> com.g174.mmssystem.entity.Delivery.DeliveryStatus.Cancelled")
@@ -29,4 +36,12 @@ public interface DeliveryItemRepository extends JpaRepository<DeliveryItem, Inte
     // Lấy danh sách DeliveryItem đã planned (chưa Delivered) để kiểm tra số lượng trong kho
     @Query("select di from DeliveryItem di where di.salesOrderItem.soiId = :soiId and di.delivery.deletedAt is null and di.delivery.status <> com.g174.mmssystem.entity.Delivery.DeliveryStatus.Cancelled and di.delivery.status <> com.g174.mmssystem.entity.Delivery.DeliveryStatus.Delivered")
     List<DeliveryItem> findPlannedItemsBySalesOrderItem(@Param("soiId") Integer soiId);
+
+    // Gom số lượng đã giao / đã lên kế hoạch theo từng dòng SO của cả đơn hàng trong một query
+    @Query("select di.salesOrderItem.soiId as soiId, " +
+            "coalesce(sum(case when di.delivery.status = com.g174.mmssystem.entity.Delivery.DeliveryStatus.Delivered then di.deliveredQty else 0 end), 0) as deliveredQty, " +
+            "coalesce(sum(case when di.delivery.status <> com.g174.mmssystem.entity.Delivery.DeliveryStatus.Delivered then di.plannedQty else 0 end), 0) as plannedQty " +
+            "from DeliveryItem di where di.salesOrderItem.salesOrder.soId = :soId and di.delivery.deletedAt is null and di.delivery.status <> com.g174.mmssystem.entity.Delivery.DeliveryStatus.Cancelled " +
+            "group by di.salesOrderItem.soiId")
+    List<SalesOrderItemFulfillmentProjection> sumFulfillmentBySalesOrder(@Param("soId") Integer soId);
 }
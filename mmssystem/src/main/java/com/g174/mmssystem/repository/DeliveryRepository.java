@@ -1,12 +1,16 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.dto.responseDTO.DocumentSearchProjection;
 import com.g174.mmssystem.entity.Delivery;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -37,5 +41,23 @@ public interface DeliveryRepository extends JpaRepository<Delivery, Integer>, Jp
      */
     @Query("SELECT MAX(d.deliveryNo) FROM Delivery d WHERE d.deliveryNo LIKE CONCAT(:prefix, '%') AND d.deletedAt IS NULL")
     String findMaxDeliveryNo(@Param("prefix") String prefix);
+
+    /**
+     * Chuyển hàng loạt Delivery đang Picked sang Shipped (sau khi Good Issue được duyệt)
+     */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Delivery d SET d.status = com.g174.mmssystem.entity.Delivery.DeliveryStatus.Shipped, d.updatedAt = :updatedAt " +
+           "WHERE d.deliveryId IN :deliveryIds AND d.status = com.g174.mmssystem.entity.Delivery.DeliveryStatus.Picked")
+    int markPickedAsShipped(@Param("deliveryIds") Collection<Integer> deliveryIds, @Param("updatedAt") Instant updatedAt);
+
+    @Query("SELECT d.deliveryId AS id, d.deliveryNo AS number, CONCAT(COALESCE(c.firstName, ''), ' ', COALESCE(c.lastName, '')) AS partyName " +
+            "FROM Delivery d LEFT JOIN d.salesOrder so LEFT JOIN so.customer c " +
+            "WHERE d.deletedAt IS NULL")
+    List<DocumentSearchProjection> findActiveSearchDocuments();
+
+    @Query("SELECT d.deliveryId AS id, d.deliveryNo AS number, CONCAT(COALESCE(c.firstName, ''), ' ', COALESCE(c.lastName, '')) AS partyName " +
+            "FROM Delivery d LEFT JOIN d.salesOrder so LEFT JOIN so.customer c " +
+            "WHERE d.deliveryId IN :ids AND d.deletedAt IS NULL")
+    List<DocumentSearchProjection> findSearchDocumentsByIds(@Param("ids") Collection<Integer> ids);
 }
 
@@ -0,0 +1,24 @@
+package com.g174.mmssystem.repository;
+
+import com.g174.mmssystem.entity.DocumentSequence;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface DocumentSequenceRepository extends JpaRepository<DocumentSequence, String> {
+
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO Document_Sequences (seq_name, last_value) VALUES (:seqName, 0)", nativeQuery = true)
+    void insertIfAbsent(@Param("seqName") String seqName);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM DocumentSequence s WHERE s.seqName = :seqName")
+    Optional<DocumentSequence> findForUpdate(@Param("seqName") String seqName);
+}
@@ -1,5 +1,6 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.dto.responseDTO.ProductQuantityProjection;
 import com.g174.mmssystem.entity.GoodIssueItem;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -19,4 +20,11 @@ public interface GoodIssueItemRepository extends JpaRepository<GoodIssueItem, In
 
     @Query("SELECT gii FROM GoodIssueItem gii WHERE gii.deliveryItem.diId = :diId")
     List<GoodIssueItem> findByDeliveryItemId(@Param("diId") Integer diId);
+
+    @Query("SELECT gii.product.productId AS productId, COALESCE(SUM(gii.issuedQty), 0) AS quantity " +
+            "FROM GoodIssueItem gii WHERE gii.goodIssue.delivery.deliveryId = :deliveryId " +
+            "AND gii.goodIssue.status = com.g174.mmssystem.entity.GoodIssue.GoodIssueStatus.Approved " +
+            "AND gii.goodIssue.deletedAt IS NULL " +
+            "GROUP BY gii.product.productId")
+    List<ProductQuantityProjection> sumApprovedIssuedQtyByDelivery(@Param("deliveryId") Integer deliveryId);
 }
@@ -1,5 +1,7 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.dto.responseDTO.DocumentSearchProjection;
+import com.g174.mmssystem.dto.responseDTO.GoodIssueBatchResultDTO;
 import com.g174.mmssystem.entity.GoodIssue;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -8,6 +10,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -66,6 +69,20 @@ public interface GoodIssueRepository extends JpaRepository<GoodIssue, Integer> {
             "WHERE gi.delivery.deliveryId = :deliveryId AND gi.deletedAt IS NULL")
     List<GoodIssue> findByDeliveryIdWithRelations(@Param("deliveryId") Integer deliveryId);
 
+    @Query("SELECT DISTINCT gi.delivery.deliveryId FROM GoodIssue gi " +
+            "WHERE gi.delivery.deliveryId IN :deliveryIds " +
+            "AND gi.status = com.g174.mmssystem.entity.GoodIssue.GoodIssueStatus.Approved " +
+            "AND gi.deletedAt IS NULL")
+    List<Integer> findDeliveryIdsWithApprovedIssue(@Param("deliveryIds") Collection<Integer> deliveryIds);
+
+    @Query("SELECT new com.g174.mmssystem.dto.responseDTO.GoodIssueBatchResultDTO(" +
+            "d.deliveryId, d.deliveryNo, gi.issueId, gi.issueNo, gi.status, " +
+            "CAST(COUNT(i) AS Integer), COALESCE(SUM(i.issuedQty), 0)) " +
+            "FROM GoodIssue gi JOIN gi.delivery d LEFT JOIN gi.items i " +
+            "WHERE gi.issueId IN :issueIds " +
+            "GROUP BY d.deliveryId, d.deliveryNo, gi.issueId, gi.issueNo, gi.status")
+    List<GoodIssueBatchResultDTO> findBatchResults(@Param("issueIds") Collection<Integer> issueIds);
+
     @Query("SELECT gi FROM GoodIssue gi WHERE gi.warehouse.warehouseId = :warehouseId AND gi.deletedAt IS NULL")
     List<GoodIssue> findByWarehouseId(@Param("warehouseId") Integer warehouseId);
 
@@ -90,4 +107,14 @@ public interface GoodIssueRepository extends JpaRepository<GoodIssue, Integer> {
 
     @Query(value = "SELECT * FROM Good_Issues WHERE issue_no LIKE CONCAT(:prefix, '%') AND deleted_at IS NULL ORDER BY issue_no DESC LIMIT 1", nativeQuery = true)
     Optional<GoodIssue> findTopByIssueNoStartingWithOrderByIssueNoDesc(@Param("prefix") String prefix);
+
+    @Query("SELECT gi.issueId AS id, gi.issueNo AS number, CONCAT(COALESCE(c.firstName, ''), ' ', COALESCE(c.lastName, '')) AS partyName " +
+            "FROM GoodIssue gi LEFT JOIN gi.delivery d LEFT JOIN d.salesOrder so LEFT JOIN so.customer c " +
+            "WHERE gi.deletedAt IS NULL")
+    List<DocumentSearchProjection> findActiveSearchDocuments();
+
+    @Query("SELECT gi.issueId AS id, gi.issueNo AS number, CONCAT(COALESCE(c.firstName, ''), ' ', COALESCE(c.lastName, '')) AS partyName " +
+            "FROM GoodIssue gi LEFT JOIN gi.delivery d LEFT JOIN d.salesOrder so LEFT JOIN so.customer c " +
+            "WHERE gi.issueId IN :ids AND gi.deletedAt IS NULL")
+    List<DocumentSearchProjection> findSearchDocumentsByIds(@Param("ids") Collection<Integer> ids);
 }
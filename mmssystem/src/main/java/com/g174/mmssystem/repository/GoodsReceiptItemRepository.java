@@ -1,11 +1,13 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.dto.responseDTO.TradeAnalyticsRowProjection;
 import com.g174.mmssystem.entity.GoodsReceiptItem;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -28,5 +30,18 @@ public interface GoodsReceiptItemRepository extends JpaRepository<GoodsReceiptIt
            "AND gri.goodsReceipt.sourceType = 'SalesReturn' " +
            "AND gri.goodsReceipt.deletedAt IS NULL")
     List<GoodsReceiptItem> findApprovedByRoiId(@Param("roiId") Integer roiId);
-}
 
+    // Thời gian giao hàng theo NCC: số ngày từ ngày đặt đơn mua tới ngày nhập, phiếu nhập đã duyệt trong [from, to)
+    @Query("SELECT v.vendorId AS groupId, v.vendorCode AS groupCode, v.name AS groupName, " +
+            "SUM(COALESCE(gri.receivedQty, 0)) AS quantity, SUM(COALESCE(gri.acceptedQty, 0)) AS receivedQty, " +
+            "SUM((cast(gr.receivedDate as LocalDate) - cast(po.orderDate as LocalDate)) by day) AS leadDays, COUNT(gri) AS lineCount " +
+            "FROM GoodsReceiptItem gri JOIN gri.goodsReceipt gr JOIN gr.purchaseOrder po JOIN po.vendor v " +
+            "WHERE gr.receivedDate >= :from AND gr.receivedDate < :to AND gr.deletedAt IS NULL " +
+            "AND gr.status = com.g174.mmssystem.entity.GoodsReceipt.GoodsReceiptStatus.Approved " +
+            "AND gr.sourceType = com.g174.mmssystem.entity.GoodsReceipt.SourceType.Purchase " +
+            "AND (:vendorId IS NULL OR v.vendorId = :vendorId) " +
+            "GROUP BY v.vendorId, v.vendorCode, v.name")
+    List<TradeAnalyticsRowProjection> sumLeadTimeByVendor(@Param("from") LocalDateTime from,
+                                                          @Param("to") LocalDateTime to,
+                                                          @Param("vendorId") Integer vendorId);
+}
@@ -1,5 +1,6 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.dto.responseDTO.DocumentSearchProjection;
 import com.g174.mmssystem.entity.GoodsReceipt;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -8,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -97,5 +99,17 @@ public interface GoodsReceiptRepository extends JpaRepository<GoodsReceipt, Inte
            "LEFT JOIN FETCH i.purchaseOrderItem " +
            "WHERE gr.status = 'Approved' AND gr.deletedAt IS NULL")
     List<GoodsReceipt> findAllApprovedWithItems();
+
+    @Query("SELECT gr.receiptId AS id, gr.receiptNo AS number, COALESCE(v.name, CONCAT(COALESCE(c.firstName, ''), ' ', COALESCE(c.lastName, ''))) AS partyName " +
+            "FROM GoodsReceipt gr LEFT JOIN gr.purchaseOrder po LEFT JOIN po.vendor v " +
+            "LEFT JOIN gr.returnOrder ro LEFT JOIN ro.delivery d LEFT JOIN d.salesOrder so LEFT JOIN so.customer c " +
+            "WHERE gr.deletedAt IS NULL")
+    List<DocumentSearchProjection> findActiveSearchDocuments();
+
+    @Query("SELECT gr.receiptId AS id, gr.receiptNo AS number, COALESCE(v.name, CONCAT(COALESCE(c.firstName, ''), ' ', COALESCE(c.lastName, ''))) AS partyName " +
+            "FROM GoodsReceipt gr LEFT JOIN gr.purchaseOrder po LEFT JOIN po.vendor v " +
+            "LEFT JOIN gr.returnOrder ro LEFT JOIN ro.delivery d LEFT JOIN d.salesOrder so LEFT JOIN so.customer c " +
+            "WHERE gr.receiptId IN :ids AND gr.deletedAt IS NULL")
+    List<DocumentSearchProjection> findSearchDocumentsByIds(@Param("ids") Collection<Integer> ids);
 }
 
@@ -0,0 +1,36 @@
+package com.g174.mmssystem.repository;
+
+import com.g174.mmssystem.entity.PasswordResetOtp;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public interface PasswordResetOtpRepository extends JpaRepository<PasswordResetOtp, String> {
+
+    /**
+     * Tạo dòng trạng thái cho email nếu chưa có (bucket đầy), để sau đó khóa dòng bằng findForUpdate
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO Password_Reset_Otps " +
+            "(email, attempts, used, request_tokens, tokens_updated_at, updated_at) " +
+            "VALUES (:email, 0, FALSE, :tokens, :now, :now)", nativeQuery = true)
+    void insertIfAbsent(@Param("email") String email,
+                        @Param("tokens") double tokens,
+                        @Param("now") Instant now);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM PasswordResetOtp o WHERE o.email = :email")
+    Optional<PasswordResetOtp> findForUpdate(@Param("email") String email);
+
+    @Modifying
+    @Query("DELETE FROM PasswordResetOtp o WHERE o.updatedAt < :cutoff")
+    int deleteIdleBefore(@Param("cutoff") Instant cutoff);
+}
@@ -1,5 +1,6 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.dto.responseDTO.MasterDataSearchProjection;
 import com.g174.mmssystem.entity.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -21,4 +22,7 @@ public interface ProductRepository extends JpaRepository<Product, Integer> {
 
     @Query("SELECT p FROM Product p WHERE p.deletedAt IS NOT NULL ORDER BY p.createdAt DESC")
     List<Product> findAllDeletedOrderByCreatedAt();
+
+    @Query("SELECT p.productId AS id, p.sku AS code, p.name AS name FROM Product p WHERE p.deletedAt IS NULL")
+    List<MasterDataSearchProjection> findActiveSearchDocuments();
 }
\ No newline at end of file
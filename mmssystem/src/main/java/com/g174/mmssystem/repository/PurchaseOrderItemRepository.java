@@ -1,11 +1,13 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.dto.responseDTO.TradeAnalyticsRowProjection;
 import com.g174.mmssystem.entity.PurchaseOrderItem;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -19,5 +21,45 @@ public interface PurchaseOrderItemRepository extends JpaRepository<PurchaseOrder
 
     @Query("SELECT poi FROM PurchaseOrderItem poi WHERE poi.purchaseQuotationItem.pqItemId = :pqItemId")
     List<PurchaseOrderItem> findByPqItemId(@Param("pqItemId") Integer pqItemId);
-}
 
+    // ===== Báo cáo phân tích mua hàng: dòng đơn mua đã duyệt, ngày đặt trong [from, to) =====
+
+    @Query("SELECT v.vendorId AS groupId, v.vendorCode AS groupCode, v.name AS groupName, " +
+            "SUM(COALESCE(i.quantity, 0)) AS quantity, SUM(COALESCE(i.receivedQty, 0)) AS receivedQty, " +
+            "SUM(COALESCE(i.lineTotal, 0)) AS amount, COUNT(i) AS lineCount " +
+            "FROM PurchaseOrderItem i JOIN i.purchaseOrder po JOIN po.vendor v " +
+            "WHERE po.orderDate >= :from AND po.orderDate < :to AND po.deletedAt IS NULL " +
+            "AND po.status <> com.g174.mmssystem.enums.PurchaseOrderStatus.Cancelled " +
+            "AND po.approvalStatus = com.g174.mmssystem.enums.PurchaseOrderApprovalStatus.Approved " +
+            "AND (:vendorId IS NULL OR v.vendorId = :vendorId) " +
+            "GROUP BY v.vendorId, v.vendorCode, v.name")
+    List<TradeAnalyticsRowProjection> sumByVendor(@Param("from") LocalDateTime from,
+                                                  @Param("to") LocalDateTime to,
+                                                  @Param("vendorId") Integer vendorId);
+
+    @Query("SELECT p.productId AS groupId, p.sku AS groupCode, p.name AS groupName, " +
+            "SUM(COALESCE(i.quantity, 0)) AS quantity, SUM(COALESCE(i.receivedQty, 0)) AS receivedQty, " +
+            "SUM(COALESCE(i.lineTotal, 0)) AS amount, COUNT(i) AS lineCount " +
+            "FROM PurchaseOrderItem i JOIN i.purchaseOrder po JOIN po.vendor v JOIN i.product p " +
+            "WHERE po.orderDate >= :from AND po.orderDate < :to AND po.deletedAt IS NULL " +
+            "AND po.status <> com.g174.mmssystem.enums.PurchaseOrderStatus.Cancelled " +
+            "AND po.approvalStatus = com.g174.mmssystem.enums.PurchaseOrderApprovalStatus.Approved " +
+            "AND (:vendorId IS NULL OR v.vendorId = :vendorId) " +
+            "GROUP BY p.productId, p.sku, p.name")
+    List<TradeAnalyticsRowProjection> sumByProduct(@Param("from") LocalDateTime from,
+                                                   @Param("to") LocalDateTime to,
+                                                   @Param("vendorId") Integer vendorId);
+
+    @Query("SELECT c.categoryId AS groupId, c.name AS groupName, " +
+            "SUM(COALESCE(i.quantity, 0)) AS quantity, SUM(COALESCE(i.receivedQty, 0)) AS receivedQty, " +
+            "SUM(COALESCE(i.lineTotal, 0)) AS amount, COUNT(i) AS lineCount " +
+            "FROM PurchaseOrderItem i JOIN i.purchaseOrder po JOIN po.vendor v JOIN i.product p LEFT JOIN p.category c " +
+            "WHERE po.orderDate >= :from AND po.orderDate < :to AND po.deletedAt IS NULL " +
+            "AND po.status <> com.g174.mmssystem.enums.PurchaseOrderStatus.Cancelled " +
+            "AND po.approvalStatus = com.g174.mmssystem.enums.PurchaseOrderApprovalStatus.Approved " +
+            "AND (:vendorId IS NULL OR v.vendorId = :vendorId) " +
+            "GROUP BY c.categoryId, c.name")
+    List<TradeAnalyticsRowProjection> sumByCategory(@Param("from") LocalDateTime from,
+                                                    @Param("to") LocalDateTime to,
+                                                    @Param("vendorId") Integer vendorId);
+}
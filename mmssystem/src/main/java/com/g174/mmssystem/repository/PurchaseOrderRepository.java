@@ -1,15 +1,24 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.constants.ApplicationConstants;
+import com.g174.mmssystem.dto.responseDTO.DocumentSearchProjection;
+import com.g174.mmssystem.dto.responseDTO.PurchaseOrderExportRowProjection;
 import com.g174.mmssystem.entity.PurchaseOrder;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PurchaseOrderRepository extends JpaRepository<PurchaseOrder, Integer> {
@@ -65,5 +74,31 @@ public interface PurchaseOrderRepository extends JpaRepository<PurchaseOrder, In
 
     @Query("SELECT COUNT(po) FROM PurchaseOrder po WHERE po.status = :status AND po.deletedAt IS NULL")
     Long countByStatus(@Param("status") com.g174.mmssystem.enums.PurchaseOrderStatus status);
-}
 
+    // Xuất báo cáo mua hàng: đọc theo cursor, phải dùng trong transaction và đóng Stream sau khi đọc xong
+    @Query("SELECT po.poNo AS poNo, po.orderDate AS orderDate, v.vendorCode AS vendorCode, v.name AS vendorName, " +
+            "po.status AS status, po.approvalStatus AS approvalStatus, po.totalAfterTax AS totalAfterTax " +
+            "FROM PurchaseOrder po LEFT JOIN po.vendor v " +
+            "WHERE po.deletedAt IS NULL " +
+            "AND (:vendorId IS NULL OR v.vendorId = :vendorId) " +
+            "AND (:fromDate IS NULL OR po.orderDate >= :fromDate) " +
+            "AND (:toDate IS NULL OR po.orderDate < :toDate) " +
+            "ORDER BY po.orderDate, po.orderId")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = ApplicationConstants.STREAMING_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<PurchaseOrderExportRowProjection> streamExportRows(@Param("vendorId") Integer vendorId,
+                                                              @Param("fromDate") LocalDateTime fromDate,
+                                                              @Param("toDate") LocalDateTime toDate);
+
+    @Query("SELECT po.orderId AS id, po.poNo AS number, v.name AS partyName " +
+            "FROM PurchaseOrder po LEFT JOIN po.vendor v " +
+            "WHERE po.deletedAt IS NULL")
+    List<DocumentSearchProjection> findActiveSearchDocuments();
+
+    @Query("SELECT po.orderId AS id, po.poNo AS number, v.name AS partyName " +
+            "FROM PurchaseOrder po LEFT JOIN po.vendor v " +
+            "WHERE po.orderId IN :ids AND po.deletedAt IS NULL")
+    List<DocumentSearchProjection> findSearchDocumentsByIds(@Param("ids") Collection<Integer> ids);
+}
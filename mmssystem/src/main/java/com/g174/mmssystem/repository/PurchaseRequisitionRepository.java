@@ -1,5 +1,6 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.dto.responseDTO.DocumentSearchProjection;
 import com.g174.mmssystem.entity.PurchaseRequisition;
 import com.g174.mmssystem.enums.RequisitionStatus;
 import org.springframework.data.domain.Page;
@@ -9,6 +10,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -59,5 +61,15 @@ public interface PurchaseRequisitionRepository extends JpaRepository<PurchaseReq
 
     @Query("SELECT COUNT(pr) FROM PurchaseRequisition pr WHERE pr.status = :status AND pr.deletedAt IS NULL")
     Long countByStatus(@Param("status") RequisitionStatus status);
+
+    @Query("SELECT pr.requisitionId AS id, pr.requisitionNo AS number, CONCAT(COALESCE(p.firstName, ''), ' ', COALESCE(p.lastName, '')) AS partyName " +
+            "FROM PurchaseRequisition pr LEFT JOIN pr.requester u LEFT JOIN u.profile p " +
+            "WHERE pr.deletedAt IS NULL")
+    List<DocumentSearchProjection> findActiveSearchDocuments();
+
+    @Query("SELECT pr.requisitionId AS id, pr.requisitionNo AS number, CONCAT(COALESCE(p.firstName, ''), ' ', COALESCE(p.lastName, '')) AS partyName " +
+            "FROM PurchaseRequisition pr LEFT JOIN pr.requester u LEFT JOIN u.profile p " +
+            "WHERE pr.requisitionId IN :ids AND pr.deletedAt IS NULL")
+    List<DocumentSearchProjection> findSearchDocumentsByIds(@Param("ids") Collection<Long> ids);
 }
 
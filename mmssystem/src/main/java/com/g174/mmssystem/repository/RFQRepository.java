@@ -1,5 +1,6 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.dto.responseDTO.DocumentSearchProjection;
 import com.g174.mmssystem.entity.RFQ;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -9,6 +10,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -69,5 +71,15 @@ public interface RFQRepository extends JpaRepository<RFQ, Integer> {
            "AND r.deletedAt IS NULL")
     List<RFQ> findExpiringRFQs(@Param("startDate") LocalDate startDate, 
                                 @Param("endDate") LocalDate endDate);
+
+    @Query("SELECT r.rfqId AS id, r.rfqNo AS number, v.name AS partyName " +
+            "FROM RFQ r LEFT JOIN r.selectedVendor v " +
+            "WHERE r.deletedAt IS NULL")
+    List<DocumentSearchProjection> findActiveSearchDocuments();
+
+    @Query("SELECT r.rfqId AS id, r.rfqNo AS number, v.name AS partyName " +
+            "FROM RFQ r LEFT JOIN r.selectedVendor v " +
+            "WHERE r.rfqId IN :ids AND r.deletedAt IS NULL")
+    List<DocumentSearchProjection> findSearchDocumentsByIds(@Param("ids") Collection<Integer> ids);
 }
 
@@ -0,0 +1,24 @@
+package com.g174.mmssystem.repository;
+
+import com.g174.mmssystem.entity.ReportChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ReportChunkRepository extends JpaRepository<ReportChunk, Long> {
+
+    @Query("SELECT c FROM ReportChunk c WHERE c.reportId = :reportId " +
+           "AND c.chunkIndex BETWEEN :fromIndex AND :toIndex ORDER BY c.chunkIndex")
+    List<ReportChunk> findChunks(@Param("reportId") Integer reportId,
+                                 @Param("fromIndex") Integer fromIndex,
+                                 @Param("toIndex") Integer toIndex);
+
+    @Modifying
+    @Query("DELETE FROM ReportChunk c WHERE c.reportId = :reportId")
+    int deleteByReportId(@Param("reportId") Integer reportId);
+}
@@ -1,16 +1,20 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.dto.responseDTO.ReportSummaryProjection;
 import com.g174.mmssystem.entity.Report;
 import com.g174.mmssystem.enums.ReportStatus;
 import com.g174.mmssystem.enums.ReportType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Optional;
 
 @Repository
 public interface ReportRepository extends JpaRepository<Report, Integer> {
@@ -44,4 +48,66 @@ public interface ReportRepository extends JpaRepository<Report, Integer> {
     
     // Đếm theo status
     long countByStatus(ReportStatus status);
+    
+    // Danh sách báo cáo: không đọc report_data
+    @Query("SELECT r.reportId AS reportId, r.name AS name, r.type AS type, r.status AS status, " +
+           "r.progress AS progress, r.errorMessage AS errorMessage, r.description AS description, " +
+           "r.rowCount AS rowCount, u.id AS generatedByUserId, u.email AS generatedByEmail, " +
+           "r.generatedAt AS generatedAt, r.startedAt AS startedAt, r.completedAt AS completedAt " +
+           "FROM Report r LEFT JOIN r.generatedBy u " +
+           "WHERE (:type IS NULL OR r.type = :type) AND (:status IS NULL OR r.status = :status) " +
+           "AND (:keyword IS NULL OR LOWER(r.name) LIKE LOWER(CONCAT('%', :keyword, '%')) " +
+           "OR LOWER(r.description) LIKE LOWER(CONCAT('%', :keyword, '%')))")
+    Page<ReportSummaryProjection> findSummaries(@Param("type") ReportType type,
+                                                @Param("status") ReportStatus status,
+                                                @Param("keyword") String keyword,
+                                                Pageable pageable);
+    
+    @Query("SELECT r FROM Report r LEFT JOIN FETCH r.generatedBy WHERE r.reportId = :reportId")
+    Optional<Report> findWithUserById(@Param("reportId") Integer reportId);
+    
+    // Chuyển trạng thái job báo cáo: chỉ cập nhật khi trạng thái hiện tại khớp, trả về số dòng đã đổi
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Report r SET r.status = :running, r.progress = 0, r.startedAt = :now " +
+           "WHERE r.reportId = :reportId AND r.status = :pending")
+    int markRunning(@Param("reportId") Integer reportId,
+                    @Param("pending") ReportStatus pending,
+                    @Param("running") ReportStatus running,
+                    @Param("now") LocalDateTime now);
+    
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Report r SET r.progress = :progress WHERE r.reportId = :reportId AND r.status = :running")
+    int updateProgress(@Param("reportId") Integer reportId,
+                       @Param("progress") Integer progress,
+                       @Param("running") ReportStatus running);
+    
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Report r SET r.status = :completed, r.progress = 100, r.reportData = :reportData, " +
+           "r.rowCount = :rowCount, r.chunkCount = :chunkCount, r.completedAt = :now, r.errorMessage = NULL " +
+           "WHERE r.reportId = :reportId AND r.status = :running")
+    int markCompleted(@Param("reportId") Integer reportId,
+                      @Param("reportData") String reportData,
+                      @Param("rowCount") Integer rowCount,
+                      @Param("chunkCount") Integer chunkCount,
+                      @Param("running") ReportStatus running,
+                      @Param("completed") ReportStatus completed,
+                      @Param("now") LocalDateTime now);
+    
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Report r SET r.status = :status, r.errorMessage = :errorMessage, r.completedAt = :now " +
+           "WHERE r.reportId = :reportId AND r.status IN :activeStatuses")
+    int markFinished(@Param("reportId") Integer reportId,
+                     @Param("status") ReportStatus status,
+                     @Param("errorMessage") String errorMessage,
+                     @Param("activeStatuses") Collection<ReportStatus> activeStatuses,
+                     @Param("now") LocalDateTime now);
+    
+    // Job đang chờ / đang chạy khi ứng dụng dừng sẽ không bao giờ hoàn thành
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Report r SET r.status = :status, r.errorMessage = :errorMessage, r.completedAt = :now " +
+           "WHERE r.status IN :activeStatuses")
+    int markAllFinished(@Param("status") ReportStatus status,
+                        @Param("errorMessage") String errorMessage,
+                        @Param("activeStatuses") Collection<ReportStatus> activeStatuses,
+                        @Param("now") LocalDateTime now);
 }
@@ -1,11 +1,13 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.dto.responseDTO.DeliveryItemQuantityProjection;
 import com.g174.mmssystem.entity.ReturnOrderItem;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -23,6 +25,13 @@ public interface ReturnOrderItemRepository extends JpaRepository<ReturnOrderItem
 
     List<ReturnOrderItem> findByDeliveryItem_DiId(Integer deliveryItemId);
 
+    @Query("SELECT roi.deliveryItem.diId AS diId, COALESCE(SUM(roi.returnedQty), 0) AS quantity " +
+           "FROM ReturnOrderItem roi " +
+           "WHERE roi.deliveryItem.diId IN :deliveryItemIds " +
+           "GROUP BY roi.deliveryItem.diId")
+    List<DeliveryItemQuantityProjection> sumReturnedQtyByDeliveryItemIds(
+            @Param("deliveryItemIds") Collection<Integer> deliveryItemIds);
+
     void deleteByReturnOrder_RoId(Integer returnOrderId);
 }
 
@@ -1,9 +1,13 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.dto.responseDTO.TradeAnalyticsRowProjection;
 import com.g174.mmssystem.entity.SalesOrderItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.List;
 
 @Repository
@@ -12,4 +16,30 @@ public interface SalesOrderItemRepository extends JpaRepository<SalesOrderItem,
     List<SalesOrderItem> findBySalesOrder_SoId(Integer orderId);
 
     void deleteBySalesOrder_SoId(Integer orderId);
+
+    // ===== Báo cáo phân tích bán hàng: dòng đơn bán đã duyệt, ngày đặt trong [from, to) =====
+
+    @Query("SELECT c.customerId AS groupId, c.customerCode AS groupCode, CONCAT(c.firstName, ' ', c.lastName) AS groupName, " +
+            "SUM(COALESCE(soi.quantity, 0)) AS quantity, SUM(COALESCE(soi.lineTotal, 0)) AS amount, COUNT(soi) AS lineCount " +
+            "FROM SalesOrderItem soi JOIN soi.salesOrder so JOIN so.customer c " +
+            "WHERE so.orderDate >= :from AND so.orderDate < :to AND so.deletedAt IS NULL " +
+            "AND so.status <> com.g174.mmssystem.entity.SalesOrder.OrderStatus.Cancelled " +
+            "AND so.approvalStatus = com.g174.mmssystem.entity.SalesOrder.ApprovalStatus.Approved " +
+            "AND (:customerId IS NULL OR c.customerId = :customerId) " +
+            "GROUP BY c.customerId, c.customerCode, c.firstName, c.lastName")
+    List<TradeAnalyticsRowProjection> sumByCustomer(@Param("from") Instant from,
+                                                    @Param("to") Instant to,
+                                                    @Param("customerId") Integer customerId);
+
+    @Query("SELECT p.productId AS groupId, p.sku AS groupCode, p.name AS groupName, " +
+            "SUM(COALESCE(soi.quantity, 0)) AS quantity, SUM(COALESCE(soi.lineTotal, 0)) AS amount, COUNT(soi) AS lineCount " +
+            "FROM SalesOrderItem soi JOIN soi.salesOrder so JOIN so.customer c JOIN soi.product p " +
+            "WHERE so.orderDate >= :from AND so.orderDate < :to AND so.deletedAt IS NULL " +
+            "AND so.status <> com.g174.mmssystem.entity.SalesOrder.OrderStatus.Cancelled " +
+            "AND so.approvalStatus = com.g174.mmssystem.entity.SalesOrder.ApprovalStatus.Approved " +
+            "AND (:customerId IS NULL OR c.customerId = :customerId) " +
+            "GROUP BY p.productId, p.sku, p.name")
+    List<TradeAnalyticsRowProjection> sumByProduct(@Param("from") Instant from,
+                                                   @Param("to") Instant to,
+                                                   @Param("customerId") Integer customerId);
 }
@@ -1,16 +1,25 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.constants.ApplicationConstants;
+import com.g174.mmssystem.dto.responseDTO.DocumentSearchProjection;
+import com.g174.mmssystem.dto.responseDTO.SalesOrderExportRowProjection;
+import com.g174.mmssystem.dto.responseDTO.SalesOrderRelationFlagsProjection;
 import com.g174.mmssystem.entity.SalesOrder;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface SalesOrderRepository extends JpaRepository<SalesOrder, Integer>, JpaSpecificationExecutor<SalesOrder> {
@@ -61,4 +70,40 @@ public interface SalesOrderRepository extends JpaRepository<SalesOrder, Integer>
 
     @Query("SELECT MAX(so.soNo) FROM SalesOrder so WHERE so.soNo LIKE :prefix% AND so.deletedAt IS NULL")
     String findMaxOrderNo(@Param("prefix") String prefix);
-}
\ No newline at end of file
+
+    @Query("SELECT so.soId AS soId, " +
+            "CASE WHEN EXISTS (SELECT 1 FROM Delivery d WHERE d.salesOrder = so AND d.deletedAt IS NULL) " +
+            "THEN true ELSE false END AS hasDelivery, " +
+            "CASE WHEN EXISTS (SELECT 1 FROM ARInvoice ar WHERE ar.salesOrder = so AND ar.deletedAt IS NULL) " +
+            "THEN true ELSE false END AS hasInvoice " +
+            "FROM SalesOrder so WHERE so.soId IN :ids")
+    List<SalesOrderRelationFlagsProjection> findRelationFlags(@Param("ids") Collection<Integer> ids);
+
+    // Xuất báo cáo bán hàng: đọc theo cursor, phải dùng trong transaction và đóng Stream sau khi đọc xong
+    @Query("SELECT so.soNo AS soNo, so.orderDate AS orderDate, c.customerCode AS customerCode, " +
+            "c.firstName AS customerFirstName, c.lastName AS customerLastName, so.status AS status, " +
+            "so.approvalStatus AS approvalStatus, so.totalAmount AS totalAmount " +
+            "FROM SalesOrder so LEFT JOIN so.customer c " +
+            "WHERE so.deletedAt IS NULL " +
+            "AND (:customerId IS NULL OR c.customerId = :customerId) " +
+            "AND (:fromDate IS NULL OR so.orderDate >= :fromDate) " +
+            "AND (:toDate IS NULL OR so.orderDate < :toDate) " +
+            "ORDER BY so.orderDate, so.soId")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = ApplicationConstants.STREAMING_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<SalesOrderExportRowProjection> streamExportRows(@Param("customerId") Integer customerId,
+                                                           @Param("fromDate") Instant fromDate,
+                                                           @Param("toDate") Instant toDate);
+
+    @Query("SELECT so.soId AS id, so.soNo AS number, CONCAT(COALESCE(c.firstName, ''), ' ', COALESCE(c.lastName, '')) AS partyName " +
+            "FROM SalesOrder so LEFT JOIN so.customer c " +
+            "WHERE so.deletedAt IS NULL")
+    List<DocumentSearchProjection> findActiveSearchDocuments();
+
+    @Query("SELECT so.soId AS id, so.soNo AS number, CONCAT(COALESCE(c.firstName, ''), ' ', COALESCE(c.lastName, '')) AS partyName " +
+            "FROM SalesOrder so LEFT JOIN so.customer c " +
+            "WHERE so.soId IN :ids AND so.deletedAt IS NULL")
+    List<DocumentSearchProjection> findSearchDocumentsByIds(@Param("ids") Collection<Integer> ids);
+}
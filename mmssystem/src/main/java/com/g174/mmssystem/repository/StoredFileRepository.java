@@ -0,0 +1,61 @@
+package com.g174.mmssystem.repository;
+
+import com.g174.mmssystem.entity.StoredFile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface StoredFileRepository extends JpaRepository<StoredFile, String> {
+
+    /**
+     * Thêm một tham chiếu: tạo dòng mới với ref_count = 1 hoặc tăng ref_count nếu nội dung đã có
+     */
+    @Modifying
+    @Query(value = "INSERT INTO Stored_Files (storage_key, size_bytes, content_type, ref_count, created_at) " +
+            "VALUES (:storageKey, :sizeBytes, :contentType, 1, NOW()) " +
+            "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1", nativeQuery = true)
+    void acquire(@Param("storageKey") String storageKey,
+                 @Param("sizeBytes") Long sizeBytes,
+                 @Param("contentType") String contentType);
+
+    /**
+     * Lưu nội dung chưa có tham chiếu (ref_count = 0). Nội dung đã có thì giữ nguyên số tham chiếu;
+     * nếu vẫn chưa ai dùng thì làm mới created_at để sweep tính lại thời gian chờ từ lần upload này.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO Stored_Files (storage_key, size_bytes, content_type, ref_count, created_at) " +
+            "VALUES (:storageKey, :sizeBytes, :contentType, 0, NOW()) " +
+            "ON DUPLICATE KEY UPDATE created_at = CASE WHEN ref_count = 0 THEN NOW() ELSE created_at END",
+            nativeQuery = true)
+    void register(@Param("storageKey") String storageKey,
+                  @Param("sizeBytes") Long sizeBytes,
+                  @Param("contentType") String contentType);
+
+    /**
+     * Thêm một tham chiếu tới nội dung đã có; 0 nếu nội dung không còn (đã bị sweep xóa)
+     */
+    @Modifying
+    @Query("UPDATE StoredFile f SET f.refCount = f.refCount + 1 WHERE f.storageKey = :storageKey")
+    int acquireExisting(@Param("storageKey") String storageKey);
+
+    @Modifying
+    @Query("UPDATE StoredFile f SET f.refCount = f.refCount - 1 WHERE f.storageKey = :storageKey AND f.refCount > 0")
+    int release(@Param("storageKey") String storageKey);
+
+    @Modifying
+    @Query("DELETE FROM StoredFile f WHERE f.storageKey = :storageKey AND f.refCount = 0")
+    int deleteIfUnreferenced(@Param("storageKey") String storageKey);
+
+    @Query("SELECT f.storageKey FROM StoredFile f WHERE f.refCount = 0 AND f.createdAt < :cutoff")
+    List<String> findUnreferencedBefore(@Param("cutoff") LocalDateTime cutoff);
+
+    @Modifying
+    @Query("DELETE FROM StoredFile f WHERE f.storageKey = :storageKey AND f.refCount = 0 AND f.createdAt < :cutoff")
+    int deleteIfUnreferencedBefore(@Param("storageKey") String storageKey, @Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,43 @@
+package com.g174.mmssystem.repository;
+
+import com.g174.mmssystem.entity.TradeAggregatePeriod;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface TradeAggregatePeriodRepository extends JpaRepository<TradeAggregatePeriod, Integer> {
+
+    @Query("SELECT p.period FROM TradeAggregatePeriod p WHERE p.period BETWEEN :fromPeriod AND :toPeriod")
+    List<Integer> findBuiltPeriods(@Param("fromPeriod") Integer fromPeriod,
+                                   @Param("toPeriod") Integer toPeriod);
+
+    /**
+     * Bỏ dấu "đã dựng" để lần báo cáo sau dựng lại các tháng này
+     */
+    @Modifying
+    @Query("DELETE FROM TradeAggregatePeriod p WHERE p.period IN :periods")
+    int deleteByPeriods(@Param("periods") Collection<Integer> periods);
+
+    // ===== Ngày chứng từ, dùng để tìm tháng của dòng chứng từ vừa ghi =====
+
+    @Query("SELECT DISTINCT po.orderDate FROM PurchaseOrder po WHERE po.orderId IN :ids")
+    List<LocalDateTime> findPurchaseOrderDates(@Param("ids") Collection<Integer> ids);
+
+    @Query("SELECT DISTINCT gr.receivedDate FROM GoodsReceipt gr WHERE gr.receiptId IN :ids")
+    List<LocalDateTime> findGoodsReceiptDates(@Param("ids") Collection<Integer> ids);
+
+    @Query("SELECT DISTINCT so.orderDate FROM SalesOrder so WHERE so.soId IN :ids")
+    List<Instant> findSalesOrderDates(@Param("ids") Collection<Integer> ids);
+
+    @Query("SELECT DISTINCT inv.invoiceDate FROM ARInvoice inv WHERE inv.arInvoiceId IN :ids")
+    List<LocalDate> findARInvoiceDates(@Param("ids") Collection<Integer> ids);
+}
@@ -0,0 +1,126 @@
+package com.g174.mmssystem.repository;
+
+import com.g174.mmssystem.dto.responseDTO.TradeAnalyticsRowProjection;
+import com.g174.mmssystem.entity.TradeMonthlyAggregate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TradeMonthlyAggregateRepository extends JpaRepository<TradeMonthlyAggregate, Long> {
+
+    @Modifying
+    @Query("DELETE FROM TradeMonthlyAggregate a WHERE a.period = :period")
+    int deleteByPeriod(@Param("period") Integer period);
+
+    // ===== Dựng tổng hợp một tháng từ dòng chứng từ gốc, [from, to) là khoảng ngày của tháng =====
+
+    @Modifying
+    @Query("INSERT INTO TradeMonthlyAggregate (source, period, partyId, productId, quantity, receivedQty, amount, leadDays, lineCount) " +
+            "SELECT '" + TradeMonthlyAggregate.SOURCE_PURCHASE_ORDER + "', :period, v.vendorId, p.productId, " +
+            "SUM(COALESCE(i.quantity, 0)), SUM(COALESCE(i.receivedQty, 0)), SUM(COALESCE(i.lineTotal, 0)), 0L, COUNT(i) " +
+            "FROM PurchaseOrderItem i JOIN i.purchaseOrder po JOIN po.vendor v JOIN i.product p " +
+            "WHERE po.orderDate >= :from AND po.orderDate < :to AND po.deletedAt IS NULL " +
+            "AND po.status <> com.g174.mmssystem.enums.PurchaseOrderStatus.Cancelled " +
+            "AND po.approvalStatus = com.g174.mmssystem.enums.PurchaseOrderApprovalStatus.Approved " +
+            "GROUP BY v.vendorId, p.productId")
+    int insertPurchaseOrderPeriod(@Param("period") Integer period,
+                                  @Param("from") LocalDateTime from,
+                                  @Param("to") LocalDateTime to);
+
+    @Modifying
+    @Query("INSERT INTO TradeMonthlyAggregate (source, period, partyId, productId, quantity, receivedQty, amount, leadDays, lineCount) " +
+            "SELECT '" + TradeMonthlyAggregate.SOURCE_GOODS_RECEIPT + "', :period, v.vendorId, p.productId, " +
+            "SUM(COALESCE(gri.receivedQty, 0)), SUM(COALESCE(gri.acceptedQty, 0)), 0, " +
+            "SUM((cast(gr.receivedDate as LocalDate) - cast(po.orderDate as LocalDate)) by day), COUNT(gri) " +
+            "FROM GoodsReceiptItem gri JOIN gri.goodsReceipt gr JOIN gr.purchaseOrder po JOIN po.vendor v JOIN gri.product p " +
+            "WHERE gr.receivedDate >= :from AND gr.receivedDate < :to AND gr.deletedAt IS NULL " +
+            "AND gr.status = com.g174.mmssystem.entity.GoodsReceipt.GoodsReceiptStatus.Approved " +
+            "AND gr.sourceType = com.g174.mmssystem.entity.GoodsReceipt.SourceType.Purchase " +
+            "GROUP BY v.vendorId, p.productId")
+    int insertGoodsReceiptPeriod(@Param("period") Integer period,
+                                 @Param("from") LocalDateTime from,
+                                 @Param("to") LocalDateTime to);
+
+    @Modifying
+    @Query("INSERT INTO TradeMonthlyAggregate (source, period, partyId, productId, quantity, receivedQty, amount, leadDays, lineCount) " +
+            "SELECT '" + TradeMonthlyAggregate.SOURCE_SALES_ORDER + "', :period, c.customerId, p.productId, " +
+            "SUM(COALESCE(soi.quantity, 0)), 0, SUM(COALESCE(soi.lineTotal, 0)), 0L, COUNT(soi) " +
+            "FROM SalesOrderItem soi JOIN soi.salesOrder so JOIN so.customer c JOIN soi.product p " +
+            "WHERE so.orderDate >= :from AND so.orderDate < :to AND so.deletedAt IS NULL " +
+            "AND so.status <> com.g174.mmssystem.entity.SalesOrder.OrderStatus.Cancelled " +
+            "AND so.approvalStatus = com.g174.mmssystem.entity.SalesOrder.ApprovalStatus.Approved " +
+            "GROUP BY c.customerId, p.productId")
+    int insertSalesOrderPeriod(@Param("period") Integer period,
+                               @Param("from") Instant from,
+                               @Param("to") Instant to);
+
+    @Modifying
+    @Query("INSERT INTO TradeMonthlyAggregate (source, period, partyId, productId, quantity, receivedQty, amount, leadDays, lineCount) " +
+            "SELECT '" + TradeMonthlyAggregate.SOURCE_AR_INVOICE + "', :period, c.customerId, p.productId, " +
+            "SUM(COALESCE(ii.quantity, 0)), 0, SUM(COALESCE(ii.lineTotal, 0)), 0L, COUNT(ii) " +
+            "FROM ARInvoiceItem ii JOIN ii.invoice inv JOIN inv.customer c JOIN ii.product p " +
+            "WHERE inv.invoiceDate >= :from AND inv.invoiceDate < :to AND inv.deletedAt IS NULL " +
+            "AND inv.status <> com.g174.mmssystem.entity.ARInvoice.InvoiceStatus.Cancelled " +
+            "GROUP BY c.customerId, p.productId")
+    int insertARInvoicePeriod(@Param("period") Integer period,
+                              @Param("from") LocalDate from,
+                              @Param("to") LocalDate to);
+
+    // ===== Đọc tổng hợp trong khoảng kỳ [fromPeriod, toPeriod] =====
+
+    @Query("SELECT v.vendorId AS groupId, v.vendorCode AS groupCode, v.name AS groupName, " +
+            "SUM(a.quantity) AS quantity, SUM(a.receivedQty) AS receivedQty, SUM(a.amount) AS amount, " +
+            "SUM(a.leadDays) AS leadDays, SUM(a.lineCount) AS lineCount " +
+            "FROM TradeMonthlyAggregate a JOIN Vendor v ON v.vendorId = a.partyId " +
+            "WHERE a.source = :source AND a.period BETWEEN :fromPeriod AND :toPeriod " +
+            "AND (:vendorId IS NULL OR a.partyId = :vendorId) " +
+            "GROUP BY v.vendorId, v.vendorCode, v.name")
+    List<TradeAnalyticsRowProjection> sumByVendor(@Param("source") String source,
+                                                  @Param("fromPeriod") Integer fromPeriod,
+                                                  @Param("toPeriod") Integer toPeriod,
+                                                  @Param("vendorId") Integer vendorId);
+
+    @Query("SELECT c.customerId AS groupId, c.customerCode AS groupCode, " +
+            "CONCAT(c.firstName, ' ', c.lastName) AS groupName, " +
+            "SUM(a.quantity) AS quantity, SUM(a.amount) AS amount, SUM(a.lineCount) AS lineCount " +
+            "FROM TradeMonthlyAggregate a JOIN Customer c ON c.customerId = a.partyId " +
+            "WHERE a.source = :source AND a.period BETWEEN :fromPeriod AND :toPeriod " +
+            "AND (:customerId IS NULL OR a.partyId = :customerId) " +
+            "GROUP BY c.customerId, c.customerCode, c.firstName, c.lastName")
+    List<TradeAnalyticsRowProjection> sumByCustomer(@Param("source") String source,
+                                                    @Param("fromPeriod") Integer fromPeriod,
+                                                    @Param("toPeriod") Integer toPeriod,
+                                                    @Param("customerId") Integer customerId);
+
+    @Query("SELECT p.productId AS groupId, p.sku AS groupCode, p.name AS groupName, " +
+            "SUM(a.quantity) AS quantity, SUM(a.receivedQty) AS receivedQty, SUM(a.amount) AS amount, " +
+            "SUM(a.leadDays) AS leadDays, SUM(a.lineCount) AS lineCount " +
+            "FROM TradeMonthlyAggregate a JOIN Product p ON p.productId = a.productId " +
+            "WHERE a.source = :source AND a.period BETWEEN :fromPeriod AND :toPeriod " +
+            "AND (:partyId IS NULL OR a.partyId = :partyId) " +
+            "GROUP BY p.productId, p.sku, p.name")
+    List<TradeAnalyticsRowProjection> sumByProduct(@Param("source") String source,
+                                                   @Param("fromPeriod") Integer fromPeriod,
+                                                   @Param("toPeriod") Integer toPeriod,
+                                                   @Param("partyId") Integer partyId);
+
+    @Query("SELECT c.categoryId AS groupId, c.name AS groupName, " +
+            "SUM(a.quantity) AS quantity, SUM(a.receivedQty) AS receivedQty, SUM(a.amount) AS amount, " +
+            "SUM(a.leadDays) AS leadDays, SUM(a.lineCount) AS lineCount " +
+            "FROM TradeMonthlyAggregate a JOIN Product p ON p.productId = a.productId LEFT JOIN p.category c " +
+            "WHERE a.source = :source AND a.period BETWEEN :fromPeriod AND :toPeriod " +
+            "AND (:partyId IS NULL OR a.partyId = :partyId) " +
+            "GROUP BY c.categoryId, c.name")
+    List<TradeAnalyticsRowProjection> sumByCategory(@Param("source") String source,
+                                                    @Param("fromPeriod") Integer fromPeriod,
+                                                    @Param("toPeriod") Integer toPeriod,
+                                                    @Param("partyId") Integer partyId);
+}
@@ -6,9 +6,11 @@ import com.g174.mmssystem.entity.User.UserStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.util.List;
@@ -20,6 +22,17 @@ public interface UserRepository extends JpaRepository<User, Integer> {
     
     @Query("SELECT u FROM User u LEFT JOIN FETCH u.department LEFT JOIN FETCH u.profile LEFT JOIN FETCH u.userRoles ur LEFT JOIN FETCH ur.role WHERE u.email = :email")
     Optional<User> findByEmailWithRelations(@Param("email") String email);
+
+    @Query("SELECT u.id FROM User u WHERE u.email = :email")
+    Optional<Integer> findIdByEmail(@Param("email") String email);
+
+    /**
+     * Ghi thời điểm đăng nhập mà không cần nạp lại entity (transaction riêng, ngắn)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.lastLogin = :loginAt, u.updatedAt = :loginAt WHERE u.id = :userId")
+    int updateLastLogin(@Param("userId") Integer userId, @Param("loginAt") Instant loginAt);
     
     Optional<User> findByEmployeeCode(String employeeCode);
 
@@ -1,11 +1,18 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.dto.responseDTO.PartyBalanceProjection;
 import com.g174.mmssystem.entity.VendorBalance;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -15,4 +22,46 @@ public interface VendorBalanceRepository extends JpaRepository<VendorBalance, In
 
     @Query("SELECT vb FROM VendorBalance vb WHERE vb.vendor.vendorId = :vendorId")
     Optional<VendorBalance> findBalanceByVendorId(@Param("vendorId") Integer vendorId);
+
+    /**
+     * Cộng delta trực tiếp trong database (không đọc - cộng - ghi), tránh mất cập nhật khi ghi nhận đồng thời.
+     * outstanding_balance được gán trước để luôn tính từ giá trị cũ. Trả về 0 nếu vendor chưa có dòng balance.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE VendorBalance vb SET " +
+            "vb.outstandingBalance = greatest(greatest(vb.totalInvoiced + :invoiced, 0) " +
+            "  - greatest(vb.totalPaid + :paid, 0), 0), " +
+            "vb.totalInvoiced = greatest(vb.totalInvoiced + :invoiced, 0), " +
+            "vb.totalPaid = greatest(vb.totalPaid + :paid, 0), " +
+            "vb.lastUpdatedAt = CURRENT_INSTANT " +
+            "WHERE vb.vendor.vendorId = :vendorId")
+    int applyDelta(@Param("vendorId") Integer vendorId,
+                   @Param("invoiced") BigDecimal invoiced,
+                   @Param("paid") BigDecimal paid);
+
+    /**
+     * Tạo dòng balance rỗng nếu chưa có; INSERT IGNORE để hai giao dịch đồng thời không lỗi unique key.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT IGNORE INTO vendor_balances " +
+            "(vendor_id, total_invoiced, total_paid, outstanding_balance, last_updated_at) " +
+            "SELECT v.vendor_id, 0, 0, 0, NOW() FROM vendors v WHERE v.vendor_id = :vendorId",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("vendorId") Integer vendorId);
+
+    @Query("SELECT vb.vendor.vendorId AS partyId, vb.totalInvoiced AS totalInvoiced, vb.totalPaid AS totalPaid, " +
+            "CAST(0 AS BigDecimal) AS totalCreditNote, vb.outstandingBalance AS outstandingBalance FROM VendorBalance vb")
+    List<PartyBalanceProjection> findAllSnapshots();
+
+    @Query("SELECT vb.vendor.vendorId AS partyId, vb.totalInvoiced AS totalInvoiced, vb.totalPaid AS totalPaid, " +
+            "CAST(0 AS BigDecimal) AS totalCreditNote, vb.outstandingBalance AS outstandingBalance FROM VendorBalance vb " +
+            "WHERE vb.vendor.vendorId IN :vendorIds")
+    List<PartyBalanceProjection> findSnapshotsByVendorIds(@Param("vendorIds") Collection<Integer> vendorIds);
+
+    /**
+     * Khóa các dòng balance (SELECT ... FOR UPDATE) theo thứ tự vendor_id để ghi nhận công nợ đồng thời phải chờ
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT vb FROM VendorBalance vb WHERE vb.vendor.vendorId IN :vendorIds ORDER BY vb.vendor.vendorId")
+    List<VendorBalance> lockByVendorIds(@Param("vendorIds") Collection<Integer> vendorIds);
 }
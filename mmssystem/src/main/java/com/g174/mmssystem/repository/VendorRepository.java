@@ -1,5 +1,6 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.dto.responseDTO.MasterDataSearchProjection;
 import com.g174.mmssystem.entity.Vendor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -53,4 +54,7 @@ public interface VendorRepository extends JpaRepository<Vendor, Integer> {
     // Thêm method kiểm tra duplicate với retry
     @Query("SELECT COUNT(v) > 0 FROM Vendor v WHERE v.vendorCode = :vendorCode")
     boolean existsByVendorCode(@Param("vendorCode") String vendorCode);
+
+    @Query("SELECT v.vendorId AS id, v.vendorCode AS code, v.name AS name FROM Vendor v WHERE v.deletedAt IS NULL")
+    List<MasterDataSearchProjection> findActiveSearchDocuments();
 }
\ No newline at end of file
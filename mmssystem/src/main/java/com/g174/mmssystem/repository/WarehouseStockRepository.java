@@ -1,16 +1,23 @@
 package com.g174.mmssystem.repository;
 
+import com.g174.mmssystem.constants.ApplicationConstants;
+import com.g174.mmssystem.dto.responseDTO.InventoryExportRowProjection;
 import com.g174.mmssystem.entity.WarehouseStock;
 import com.g174.mmssystem.entity.WarehouseStockId;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface WarehouseStockRepository extends JpaRepository<WarehouseStock, WarehouseStockId> {
@@ -40,6 +47,11 @@ public interface WarehouseStockRepository extends JpaRepository<WarehouseStock,
      */
     List<WarehouseStock> findByProductId(Integer productId);
 
+    /**
+     * Lấy stock của nhiều cặp kho / sản phẩm trong một query (kết quả là tập cha, service lọc theo cặp)
+     */
+    List<WarehouseStock> findByWarehouseIdInAndProductIdIn(Collection<Integer> warehouseIds, Collection<Integer> productIds);
+
     /**
      * Tính tổng số lượng của một product trong tất cả warehouses
      */
@@ -73,4 +85,27 @@ public interface WarehouseStockRepository extends JpaRepository<WarehouseStock,
     int updateStockQuantity(@Param("warehouseId") Integer warehouseId,
                             @Param("productId") Integer productId,
                             @Param("quantityChange") BigDecimal quantityChange);
+
+    /**
+     * Trừ tồn kho có điều kiện: chỉ trừ khi còn đủ số lượng.
+     * Trả về 0 nếu không đủ hàng (hoặc chưa có bản ghi stock) để service rollback.
+     */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE WarehouseStock ws SET ws.quantity = ws.quantity - :quantity " +
+           "WHERE ws.warehouseId = :warehouseId AND ws.productId = :productId AND ws.quantity >= :quantity")
+    int decreaseStockIfSufficient(@Param("warehouseId") Integer warehouseId,
+                                  @Param("productId") Integer productId,
+                                  @Param("quantity") BigDecimal quantity);
+
+    // Xuất báo cáo tồn kho: đọc theo cursor, phải dùng trong transaction và đóng Stream sau khi đọc xong
+    @Query("SELECT w.code AS warehouseCode, w.name AS warehouseName, p.sku AS productCode, p.name AS productName, " +
+            "p.uom AS unit, ws.quantity AS quantity " +
+            "FROM WarehouseStock ws JOIN ws.warehouse w JOIN ws.product p " +
+            "WHERE ws.quantity > 0 AND (:warehouseId IS NULL OR ws.warehouseId = :warehouseId) " +
+            "ORDER BY w.code, p.sku")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = ApplicationConstants.STREAMING_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<InventoryExportRowProjection> streamInventoryExportRows(@Param("warehouseId") Integer warehouseId);
 }
@@ -0,0 +1,35 @@
+package com.g174.mmssystem.scheduler;
+
+import com.g174.mmssystem.dto.responseDTO.BalanceReconciliationReportDTO;
+import com.g174.mmssystem.service.IService.IBalanceReconciliationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BalanceReconciliationScheduler {
+
+    private final IBalanceReconciliationService balanceReconciliationService;
+
+    /**
+     * Đối soát toàn bộ công nợ KH/NCC với chứng từ gốc
+     * Chạy mỗi ngày lúc 01:30
+     */
+    @Scheduled(cron = "0 30 1 * * ?")
+    public void nightlyReconcile() {
+        log.info("Starting nightly balance reconciliation task...");
+
+        try {
+            BalanceReconciliationReportDTO report = balanceReconciliationService.reconcileAll(false);
+            if (report.getCustomersCorrected() > 0 || report.getVendorsCorrected() > 0) {
+                log.warn("Nightly reconciliation corrected {} customer and {} vendor balances (outstanding drift {})",
+                        report.getCustomersCorrected(), report.getVendorsCorrected(), report.getTotalOutstandingDrift());
+            }
+        } catch (Exception e) {
+            log.error("Error during nightly balance reconciliation: {}", e.getMessage(), e);
+        }
+    }
+}
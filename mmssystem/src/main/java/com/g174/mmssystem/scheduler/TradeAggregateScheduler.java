@@ -0,0 +1,41 @@
+package com.g174.mmssystem.scheduler;
+
+import com.g174.mmssystem.service.TradeAnalyticsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TradeAggregateScheduler {
+
+    private final TradeAnalyticsService tradeAnalyticsService;
+
+    @Value("${app.report.aggregate-refresh-months:3}")
+    private int refreshMonths;
+
+    /**
+     * Dựng lại tổng hợp mua / bán của các tháng gần nhất (chứng từ tháng trước vẫn có thể được sửa, hủy)
+     * Chạy mỗi ngày lúc 02:30
+     */
+    @Scheduled(cron = "0 30 2 * * ?")
+    public void refreshRecentMonths() {
+        if (refreshMonths <= 0) {
+            return;
+        }
+        log.info("Starting trade aggregate refresh for the last {} months...", refreshMonths);
+
+        try {
+            YearMonth lastClosed = YearMonth.now().minusMonths(1);
+            int built = tradeAnalyticsService.rebuildMonths(lastClosed.minusMonths(refreshMonths - 1L), lastClosed);
+            log.info("Refreshed trade aggregates for {} months", built);
+        } catch (Exception e) {
+            log.error("Error during trade aggregate refresh: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.g174.mmssystem.service;
+
+import com.g174.mmssystem.entity.User;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+
+/**
+ * UserDetails kèm entity User đã nạp (cùng role, phòng ban, profile) lúc xác thực,
+ * để bước cấp token khi đăng nhập dùng lại mà không truy vấn User lần nữa.
+ */
+@Getter
+public class AuthUserDetails extends org.springframework.security.core.userdetails.User {
+
+    private final transient User user;
+
+    public AuthUserDetails(User user, Collection<? extends GrantedAuthority> authorities) {
+        super(user.getEmail(), user.getPassword(), authorities);
+        this.user = user;
+    }
+}
@@ -0,0 +1,88 @@
+package com.g174.mmssystem.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Gộp các delta công nợ của cùng một KH/NCC trong một transaction rồi ghi một lần trước khi commit.
+ * Dùng cho tài khoản "nóng" (nhiều hóa đơn / thanh toán trong cùng một request) để giảm số câu UPDATE
+ * và thời gian giữ lock trên dòng balance.
+ *
+ * Chỉ bật khi app.balance.coalesce-deltas=true và đang có transaction; ngoài ra delta được ghi ngay.
+ * Lưu ý: đọc balance trong cùng transaction sẽ chưa thấy các delta đang gộp.
+ */
+@Component
+@Slf4j
+public class BalanceDeltaCoalescer {
+
+    @Value("${app.balance.coalesce-deltas:false}")
+    private boolean enabled;
+
+    /**
+     * Ghi delta xuống database: (partyId, deltas) theo đúng thứ tự cột của loại balance.
+     */
+    @FunctionalInterface
+    public interface DeltaWriter {
+        void write(Integer partyId, BigDecimal[] deltas);
+    }
+
+    /**
+     * Thêm delta cho partyId. Nếu không gộp được thì gọi writer ngay.
+     * @param scope - Loại balance (ví dụ "customer", "vendor"), mỗi scope có writer riêng
+     */
+    public void add(String scope, Integer partyId, BigDecimal[] deltas, DeltaWriter writer) {
+        if (!enabled || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            writer.write(partyId, deltas);
+            return;
+        }
+
+        PendingDeltas pending = (PendingDeltas) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingDeltas();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.merge(scope, partyId, deltas, writer);
+    }
+
+    private final class PendingDeltas implements TransactionSynchronization {
+
+        private final Map<String, Map<Integer, BigDecimal[]>> deltasByScope = new LinkedHashMap<>();
+        private final Map<String, DeltaWriter> writers = new LinkedHashMap<>();
+
+        void merge(String scope, Integer partyId, BigDecimal[] deltas, DeltaWriter writer) {
+            writers.putIfAbsent(scope, writer);
+            deltasByScope.computeIfAbsent(scope, k -> new LinkedHashMap<>())
+                    .merge(partyId, deltas.clone(), PendingDeltas::sum);
+        }
+
+        private static BigDecimal[] sum(BigDecimal[] current, BigDecimal[] added) {
+            for (int i = 0; i < current.length; i++) {
+                current[i] = current[i].add(added[i]);
+            }
+            return current;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            deltasByScope.forEach((scope, deltas) -> {
+                DeltaWriter writer = writers.get(scope);
+                deltas.forEach(writer::write);
+                log.debug("Flushed {} coalesced {} balance deltas", deltas.size(), scope);
+            });
+            deltasByScope.clear();
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(BalanceDeltaCoalescer.this);
+        }
+    }
+}
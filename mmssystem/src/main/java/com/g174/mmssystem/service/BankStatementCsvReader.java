@@ -0,0 +1,280 @@
+package com.g174.mmssystem.service;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Đọc sao kê ngân hàng dạng CSV từng dòng một (bộ nhớ không phụ thuộc kích thước file).
+ *
+ * Dòng đầu tiên là header, nhận các tên cột (không phân biệt hoa thường / dấu / khoảng trắng):
+ * - Ngày: date, transaction_date, ngay, ngay_giao_dich
+ * - Số tiền: amount, so_tien (dương = tiền vào, âm = tiền ra)
+ *   hoặc hai cột credit / ghi_co (tiền vào) và debit / ghi_no (tiền ra)
+ * - Nội dung: description, noi_dung, dien_giai
+ * - Tham chiếu: reference, reference_no, so_tham_chieu, ma_giao_dich
+ * - Mã KH/NCC (tùy chọn): party, party_code, ma_doi_tac
+ * Mỗi bản ghi nằm trên một dòng; field có dấu phẩy phải đặt trong dấu nháy kép.
+ *
+ * Mỗi dòng hợp lệ có fingerprint SHA-256 của (ngày, số tiền, mã đối tác, nội dung, tham chiếu, lần xuất hiện):
+ * đọc lại cùng file cho cùng fingerprint, còn hai giao dịch giống hệt nhau trong một file vẫn khác nhau
+ * nhờ thứ tự xuất hiện. Dùng để chống import trùng các dòng không có số tham chiếu.
+ */
+public class BankStatementCsvReader implements Closeable {
+
+    private static final Map<String, String> COLUMN_ALIASES = Map.ofEntries(
+            Map.entry("date", "date"), Map.entry("transactiondate", "date"),
+            Map.entry("ngay", "date"), Map.entry("ngaygiaodich", "date"),
+            Map.entry("amount", "amount"), Map.entry("sotien", "amount"),
+            Map.entry("credit", "credit"), Map.entry("ghico", "credit"),
+            Map.entry("debit", "debit"), Map.entry("ghino", "debit"),
+            Map.entry("description", "description"), Map.entry("noidung", "description"),
+            Map.entry("diengiai", "description"),
+            Map.entry("reference", "reference"), Map.entry("referenceno", "reference"),
+            Map.entry("sothamchieu", "reference"), Map.entry("magiaodich", "reference"),
+            Map.entry("party", "party"), Map.entry("partycode", "party"), Map.entry("madoitac", "party"));
+
+    private static final List<DateTimeFormatter> DATE_FORMATS = List.of(
+            DateTimeFormatter.ISO_LOCAL_DATE,
+            DateTimeFormatter.ofPattern("d/M/yyyy"),
+            DateTimeFormatter.ofPattern("d-M-yyyy"),
+            DateTimeFormatter.ofPattern("d.M.yyyy"));
+
+    /**
+     * Một dòng sao kê. amount dương = tiền vào, âm = tiền ra; error != null nếu dòng không hợp lệ
+     * (khi đó fingerprint = null).
+     */
+    public record StatementLine(long lineNo, LocalDate transactionDate, BigDecimal amount,
+                                String description, String referenceNo, String partyCode, String fingerprint,
+                                String error) {
+
+        public boolean isValid() {
+            return error == null;
+        }
+    }
+
+    private final BufferedReader reader;
+    private final Map<String, Integer> columns = new HashMap<>();
+    // Số lần đã gặp mỗi giao dịch (theo khóa không có thứ tự xuất hiện) trong file
+    private final Map<String, Integer> occurrences = new HashMap<>();
+    private long lineNo;
+
+    public BankStatementCsvReader(InputStream input) throws IOException {
+        this.reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        readHeader();
+    }
+
+    /**
+     * @return Dòng tiếp theo, null khi hết file (bỏ qua dòng trống)
+     */
+    public StatementLine next() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            if (!line.isBlank()) {
+                return parse(line);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void readHeader() throws IOException {
+        String header = reader.readLine();
+        lineNo++;
+        if (header == null) {
+            throw new IllegalArgumentException("File sao kê rỗng");
+        }
+        // Bỏ BOM của file CSV xuất từ Excel
+        if (header.startsWith("\uFEFF")) {
+            header = header.substring(1);
+        }
+        List<String> names = splitLine(header);
+        for (int i = 0; i < names.size(); i++) {
+            String column = COLUMN_ALIASES.get(normalizeHeader(names.get(i)));
+            if (column != null) {
+                columns.putIfAbsent(column, i);
+            }
+        }
+        if (!columns.containsKey("date")) {
+            throw new IllegalArgumentException("File sao kê thiếu cột ngày giao dịch (date)");
+        }
+        if (!columns.containsKey("amount") && !columns.containsKey("credit") && !columns.containsKey("debit")) {
+            throw new IllegalArgumentException("File sao kê thiếu cột số tiền (amount hoặc credit/debit)");
+        }
+    }
+
+    private StatementLine parse(String line) {
+        List<String> fields = splitLine(line);
+        String description = field(fields, "description");
+        String reference = field(fields, "reference");
+        String party = field(fields, "party");
+
+        LocalDate date = parseDate(field(fields, "date"));
+        if (date == null) {
+            return new StatementLine(lineNo, null, null, description, reference, party, null,
+                    "Ngày giao dịch không hợp lệ: " + field(fields, "date"));
+        }
+
+        BigDecimal amount;
+        try {
+            if (columns.containsKey("amount")) {
+                amount = parseAmount(field(fields, "amount"));
+            } else {
+                BigDecimal credit = parseAmount(field(fields, "credit"));
+                BigDecimal debit = parseAmount(field(fields, "debit"));
+                amount = nonNull(credit).subtract(nonNull(debit).abs());
+            }
+        } catch (NumberFormatException e) {
+            return new StatementLine(lineNo, date, null, description, reference, party, null,
+                    "Số tiền không hợp lệ");
+        }
+        if (amount == null || amount.signum() == 0) {
+            return new StatementLine(lineNo, date, amount, description, reference, party, null,
+                    "Dòng sao kê không có số tiền");
+        }
+        return new StatementLine(lineNo, date, amount, description, reference, party,
+                fingerprint(date, amount, party, description, reference), null);
+    }
+
+    private String fingerprint(LocalDate date, BigDecimal amount, String party, String description, String reference) {
+        String key = String.join("|", date.toString(), amount.stripTrailingZeros().toPlainString(),
+                canonical(party), canonical(description), canonical(reference));
+        String digest = sha256(key);
+        int occurrence = occurrences.merge(digest, 1, Integer::sum);
+        return occurrence == 1 ? digest : sha256(digest + "#" + occurrence);
+    }
+
+    // Không phân biệt hoa thường và khoảng trắng thừa
+    private static String canonical(String value) {
+        return value == null ? "" : value.trim().replaceAll("\\s+", " ").toUpperCase(Locale.ROOT);
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 không khả dụng", e);
+        }
+    }
+
+    private String field(List<String> fields, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Tách một dòng CSV, hỗ trợ field trong dấu nháy kép và "" bên trong field.
+     */
+    static List<String> splitLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    static LocalDate parseDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        // Bỏ phần giờ nếu có (2024-05-01 10:15:00, 01/05/2024 10:15)
+        String date = value.split("[ T]")[0];
+        for (DateTimeFormatter format : DATE_FORMATS) {
+            try {
+                return LocalDate.parse(date, format);
+            } catch (DateTimeParseException ignored) {
+                // thử định dạng tiếp theo
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Nhận cả định dạng 1,234,567.89 và 1.234.567,89; bỏ ký hiệu tiền tệ.
+     * Số âm: dấu trừ ở đầu / cuối hoặc kiểu kế toán trong ngoặc "(1,234)".
+     * Một dấu chấm duy nhất luôn là dấu thập phân ("1.500" = 1.5); chỉ nhiều nhóm "1.500.000" mới là phân cách nghìn.
+     */
+    static BigDecimal parseAmount(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        boolean negative = (trimmed.startsWith("(") && trimmed.endsWith(")")) || trimmed.indexOf('-') >= 0;
+        String amount = trimmed.replaceAll("[^0-9,.]", "");
+        if (amount.isEmpty()) {
+            return null;
+        }
+        int lastComma = amount.lastIndexOf(',');
+        int lastDot = amount.lastIndexOf('.');
+        if (lastComma >= 0 && lastDot >= 0) {
+            // Dấu xuất hiện sau cùng là dấu thập phân
+            amount = lastComma > lastDot
+                    ? amount.replace(".", "").replace(',', '.')
+                    : amount.replace(",", "");
+        } else if (lastComma >= 0) {
+            amount = amount.matches("\\d{1,3}(,\\d{3})+") ? amount.replace(",", "") : amount.replace(',', '.');
+        } else if (lastDot >= 0 && amount.matches("\\d{1,3}(\\.\\d{3}){2,}")) {
+            amount = amount.replace(".", "");
+        }
+        BigDecimal parsed = new BigDecimal(amount);
+        return negative ? parsed.negate() : parsed;
+    }
+
+    private static String normalizeHeader(String name) {
+        String folded = Normalizer.normalize(name.trim(), Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .replace('đ', 'd')
+                .replace('Đ', 'D');
+        return folded.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", "");
+    }
+
+    private static BigDecimal nonNull(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+}
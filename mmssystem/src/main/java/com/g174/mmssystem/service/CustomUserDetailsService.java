@@ -23,7 +23,8 @@ public class CustomUserDetailsService implements UserDetailsService {
     @Override
     @Transactional(readOnly = true)
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        User user = userRepository.findByEmail(email)
+        // Một truy vấn fetch join user + role (+ phòng ban, profile dùng khi cấp token)
+        User user = userRepository.findByEmailWithRelations(email)
                 .filter(u -> u.getDeletedAt() == null)
                 .orElseThrow(() -> new UsernameNotFoundException(
                         "Không tìm thấy người dùng với email: " + email));
@@ -32,15 +33,7 @@ public class CustomUserDetailsService implements UserDetailsService {
             throw new UsernameNotFoundException("Tài khoản đã bị vô hiệu hóa");
         }
 
-        return org.springframework.security.core.userdetails.User.builder()
-                .username(user.getEmail())
-                .password(user.getPassword())
-                .authorities(getAuthorities(user))
-                .accountExpired(false)
-                .accountLocked(false)
-                .credentialsExpired(false)
-                .disabled(false)
-                .build();
+        return new AuthUserDetails(user, getAuthorities(user));
     }
 
     private Collection<? extends GrantedAuthority> getAuthorities(User user) {
@@ -0,0 +1,53 @@
+package com.g174.mmssystem.service;
+
+import com.g174.mmssystem.entity.DocumentSequence;
+import com.g174.mmssystem.repository.DocumentSequenceRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Cấp số chứng từ liên tiếp không trùng giữa các request đồng thời.
+ *
+ * Mỗi tiền tố có một dòng trong Document_Sequences; reserve() khóa dòng đó (SELECT ... FOR UPDATE), lấy số lớn hơn
+ * cả số đã cấp lẫn số lớn nhất đang có trong bảng chứng từ (chứng từ tạo trước khi có bộ đếm hoặc nhập mã tay),
+ * rồi commit ngay trong transaction riêng để request khác không phải chờ transaction nghiệp vụ.
+ * Số đã cấp không được trả lại nếu transaction nghiệp vụ rollback (chấp nhận mã bị nhảy).
+ */
+@Component
+public class DocumentNumberAllocator {
+
+    private final DocumentSequenceRepository sequenceRepository;
+    private final TransactionTemplate sequenceTransaction;
+
+    public DocumentNumberAllocator(DocumentSequenceRepository sequenceRepository,
+                                   PlatformTransactionManager transactionManager) {
+        this.sequenceRepository = sequenceRepository;
+        this.sequenceTransaction = new TransactionTemplate(transactionManager);
+        this.sequenceTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Giữ chỗ {@code count} số liên tiếp cho tiền tố {@code seqName}.
+     *
+     * @param currentMax số lớn nhất đang có trong bảng chứng từ, được đọc sau khi đã khóa bộ đếm
+     * @return số đầu tiên trong dãy đã giữ chỗ
+     */
+    public long reserve(String seqName, int count, LongSupplier currentMax) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Số lượng mã cần cấp phải lớn hơn 0");
+        }
+        Long first = sequenceTransaction.execute(status -> {
+            sequenceRepository.insertIfAbsent(seqName);
+            DocumentSequence sequence = sequenceRepository.findForUpdate(seqName)
+                    .orElseThrow(() -> new IllegalStateException("Không tìm thấy bộ đếm " + seqName));
+            long start = Math.max(sequence.getLastValue(), currentMax.getAsLong()) + 1;
+            sequence.setLastValue(start + count - 1);
+            return start;
+        });
+        return first;
+    }
+}
@@ -0,0 +1,62 @@
+package com.g174.mmssystem.service;
+
+import com.g174.mmssystem.entity.APInvoice;
+import com.g174.mmssystem.entity.ARInvoice;
+import com.g174.mmssystem.entity.Delivery;
+import com.g174.mmssystem.entity.GoodIssue;
+import com.g174.mmssystem.entity.GoodsReceipt;
+import com.g174.mmssystem.entity.PurchaseOrder;
+import com.g174.mmssystem.entity.PurchaseRequisition;
+import com.g174.mmssystem.entity.RFQ;
+import com.g174.mmssystem.entity.SalesOrder;
+import com.g174.mmssystem.enums.SearchDocumentType;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Entity listener của các chứng từ trong tìm kiếm chung: báo DocumentSearchIndex nạp lại chứng từ vừa ghi.
+ * Chỉ đọc id (không chạm vào quan hệ lazy trong callback), số chứng từ và tên đối tác được nạp lại sau commit.
+ *
+ * Hibernate tạo listener qua Spring bean container; DocumentSearchIndex lấy qua ObjectProvider vì nó
+ * phụ thuộc các repository, tức là phụ thuộc EntityManagerFactory đang khởi tạo listener này.
+ */
+public class DocumentSearchEntityListener {
+
+    private final ObjectProvider<DocumentSearchIndex> documentSearchIndex;
+
+    public DocumentSearchEntityListener(ObjectProvider<DocumentSearchIndex> documentSearchIndex) {
+        this.documentSearchIndex = documentSearchIndex;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        DocumentSearchIndex index = documentSearchIndex.getIfAvailable();
+        if (index == null) {
+            return;
+        }
+        if (entity instanceof PurchaseRequisition requisition) {
+            Long id = requisition.getRequisitionId();
+            index.markChanged(SearchDocumentType.PurchaseRequisition, id != null ? id.intValue() : null);
+        } else if (entity instanceof RFQ rfq) {
+            index.markChanged(SearchDocumentType.RFQ, rfq.getRfqId());
+        } else if (entity instanceof PurchaseOrder order) {
+            index.markChanged(SearchDocumentType.PurchaseOrder, order.getOrderId());
+        } else if (entity instanceof GoodsReceipt receipt) {
+            index.markChanged(SearchDocumentType.GoodsReceipt, receipt.getReceiptId());
+        } else if (entity instanceof APInvoice invoice) {
+            index.markChanged(SearchDocumentType.APInvoice, invoice.getApInvoiceId());
+        } else if (entity instanceof SalesOrder order) {
+            index.markChanged(SearchDocumentType.SalesOrder, order.getSoId());
+        } else if (entity instanceof Delivery delivery) {
+            index.markChanged(SearchDocumentType.Delivery, delivery.getDeliveryId());
+        } else if (entity instanceof GoodIssue issue) {
+            index.markChanged(SearchDocumentType.GoodIssue, issue.getIssueId());
+        } else if (entity instanceof ARInvoice invoice) {
+            index.markChanged(SearchDocumentType.ARInvoice, invoice.getArInvoiceId());
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.g174.mmssystem.service;
+
+import com.g174.mmssystem.dto.responseDTO.DocumentSearchProjection;
+import com.g174.mmssystem.dto.responseDTO.DocumentSearchResultDTO;
+import com.g174.mmssystem.enums.SearchDocumentType;
+import com.g174.mmssystem.repository.APInvoiceRepository;
+import com.g174.mmssystem.repository.ARInvoiceRepository;
+import com.g174.mmssystem.repository.DeliveryRepository;
+import com.g174.mmssystem.repository.GoodIssueRepository;
+import com.g174.mmssystem.repository.GoodsReceiptRepository;
+import com.g174.mmssystem.repository.PurchaseOrderRepository;
+import com.g174.mmssystem.repository.PurchaseRequisitionRepository;
+import com.g174.mmssystem.repository.RFQRepository;
+import com.g174.mmssystem.repository.SalesOrderRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chỉ mục tìm kiếm chung trong bộ nhớ cho các chứng từ (PR, RFQ, PO, GR, hóa đơn AP/AR, SO, phiếu giao, phiếu xuất),
+ * chỉ bản ghi chưa xóa. Mỗi loại có một chỉ mục n-gram riêng trên số chứng từ và tên đối tác; một lần tìm
+ * chạy song song trên các loại được yêu cầu rồi trộn kết quả theo cùng thứ hạng (NGramSearchIndex.Hit).
+ *
+ * - Nạp toàn bộ khi ứng dụng sẵn sàng và nạp lại định kỳ (app.search.index-refresh-ms).
+ * - DocumentSearchEntityListener báo chứng từ thay đổi sau khi transaction commit; các id thay đổi được gom lại
+ *   và nạp lại theo id trên một luồng nền (số chứng từ, tên đối tác lấy lại từ DB).
+ * - Trước khi nạp xong, isReady() = false.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DocumentSearchIndex {
+
+    private final PurchaseRequisitionRepository purchaseRequisitionRepository;
+    private final RFQRepository rfqRepository;
+    private final PurchaseOrderRepository purchaseOrderRepository;
+    private final GoodsReceiptRepository goodsReceiptRepository;
+    private final APInvoiceRepository apInvoiceRepository;
+    private final SalesOrderRepository salesOrderRepository;
+    private final DeliveryRepository deliveryRepository;
+    private final GoodIssueRepository goodIssueRepository;
+    private final ARInvoiceRepository arInvoiceRepository;
+
+    private record Document(String number, String partyName) {
+    }
+
+    private record Match(SearchDocumentType type, NGramSearchIndex.Hit hit) {
+        static final Comparator<Match> ORDER = Comparator.<Match, NGramSearchIndex.Hit>comparing(Match::hit,
+                        Comparator.comparingInt(NGramSearchIndex.Hit::rank)
+                                .thenComparingInt(NGramSearchIndex.Hit::nameLength))
+                .thenComparing(Match::type)
+                .thenComparingInt(match -> match.hit().id());
+    }
+
+    /**
+     * Chỉ mục của một loại chứng từ
+     */
+    private static final class TypeIndex {
+        private final NGramSearchIndex keywords = new NGramSearchIndex();
+        private final Map<Integer, Document> documents = new ConcurrentHashMap<>();
+
+        void put(DocumentSearchProjection projection) {
+            int id = projection.getId().intValue();
+            keywords.put(id, projection.getNumber(), projection.getPartyName());
+            documents.put(id, new Document(projection.getNumber(), projection.getPartyName()));
+        }
+
+        void remove(int id) {
+            keywords.remove(id);
+            documents.remove(id);
+        }
+    }
+
+    private final AtomicInteger searchThreadCount = new AtomicInteger();
+    private final ExecutorService searchExecutor = Executors.newFixedThreadPool(
+            Math.min(SearchDocumentType.values().length, Runtime.getRuntime().availableProcessors()), runnable -> {
+                Thread thread = new Thread(runnable, "document-search-" + searchThreadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "document-search-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Map<SearchDocumentType, TypeIndex> indexes;
+    // Id chứng từ đã thay đổi, chờ nạp lại
+    private final Map<SearchDocumentType, Set<Integer>> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    // Thay đổi commit trong lúc đang nạp lại, đưa lại vào hàng chờ sau khi nạp xong
+    private Map<SearchDocumentType, Set<Integer>> changesDuringReload;
+
+    public boolean isReady() {
+        return indexes != null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.index-refresh-ms:600000}",
+            initialDelayString = "${app.search.index-refresh-ms:600000}")
+    public void reload() {
+        long startTime = System.currentTimeMillis();
+        synchronized (this) {
+            changesDuringReload = new EnumMap<>(SearchDocumentType.class);
+        }
+        try {
+            Map<SearchDocumentType, TypeIndex> loaded = new EnumMap<>(SearchDocumentType.class);
+            int total = 0;
+            for (SearchDocumentType type : SearchDocumentType.values()) {
+                TypeIndex index = new TypeIndex();
+                List<DocumentSearchProjection> documents = loadAll(type);
+                documents.forEach(index::put);
+                loaded.put(type, index);
+                total += documents.size();
+            }
+            synchronized (this) {
+                indexes = loaded;
+                changesDuringReload.forEach(this::enqueue);
+            }
+            log.info("Loaded document search index: {} documents in {} ms", total, System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            log.warn("Failed to load document search index: {}", e.getMessage());
+        } finally {
+            synchronized (this) {
+                changesDuringReload = null;
+            }
+        }
+    }
+
+    /**
+     * Tìm chứng từ theo số chứng từ / tên đối tác trên các loại types (song song), trộn theo thứ hạng
+     * @return Tối đa limit kết quả
+     */
+    public List<DocumentSearchResultDTO> search(String keyword, Collection<SearchDocumentType> types, int limit) {
+        Map<SearchDocumentType, TypeIndex> current = indexes;
+        if (current == null) {
+            throw new IllegalStateException("Chỉ mục tìm kiếm chứng từ đang được nạp, vui lòng thử lại sau");
+        }
+        if (types.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        List<CompletableFuture<List<Match>>> futures = new ArrayList<>(types.size());
+        for (SearchDocumentType type : types) {
+            TypeIndex index = current.get(type);
+            futures.add(CompletableFuture.supplyAsync(() -> index.keywords.searchHits(keyword, limit).stream()
+                    .map(hit -> new Match(type, hit))
+                    .toList(), searchExecutor));
+        }
+        List<Match> matches = new ArrayList<>();
+        for (CompletableFuture<List<Match>> future : futures) {
+            matches.addAll(future.join());
+        }
+        matches.sort(Match.ORDER);
+
+        List<DocumentSearchResultDTO> result = new ArrayList<>(Math.min(limit, matches.size()));
+        for (Match match : matches) {
+            if (result.size() == limit) {
+                break;
+            }
+            Document document = current.get(match.type()).documents.get(match.hit().id());
+            if (document != null) {
+                result.add(new DocumentSearchResultDTO(match.type(), match.hit().id(),
+                        document.number(), document.partyName()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Đánh dấu chứng từ cần nạp lại vào chỉ mục, sau khi transaction hiện tại commit
+     */
+    public void markChanged(SearchDocumentType type, Integer id) {
+        if (id == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(type, Set.of(id));
+                }
+            });
+        } else {
+            enqueue(type, Set.of(id));
+        }
+    }
+
+    private synchronized void enqueue(SearchDocumentType type, Set<Integer> ids) {
+        if (changesDuringReload != null) {
+            changesDuringReload.computeIfAbsent(type, k -> new HashSet<>()).addAll(ids);
+        }
+        if (indexes == null) {
+            return;
+        }
+        pending.computeIfAbsent(type, k -> ConcurrentHashMap.newKeySet()).addAll(ids);
+        if (refreshScheduled.compareAndSet(false, true)) {
+            refreshExecutor.execute(this::refreshPending);
+        }
+    }
+
+    private void refreshPending() {
+        // Xóa cờ trước khi nạp để thay đổi đến trong lúc nạp được lên lịch lần nữa
+        refreshScheduled.set(false);
+        Map<SearchDocumentType, TypeIndex> current = indexes;
+        for (SearchDocumentType type : SearchDocumentType.values()) {
+            Set<Integer> queued = pending.get(type);
+            if (queued == null || queued.isEmpty()) {
+                continue;
+            }
+            List<Integer> ids = new ArrayList<>(queued);
+            queued.removeAll(ids);
+            try {
+                TypeIndex index = current.get(type);
+                Set<Integer> missing = new HashSet<>(ids);
+                for (DocumentSearchProjection document : loadByIds(type, ids)) {
+                    index.put(document);
+                    missing.remove(document.getId().intValue());
+                }
+                // Không còn trả về = đã xóa (mềm)
+                missing.forEach(index::remove);
+            } catch (Exception e) {
+                log.warn("Failed to refresh {} search documents {}: {}", type, ids, e.getMessage());
+            }
+        }
+    }
+
+    private List<DocumentSearchProjection> loadAll(SearchDocumentType type) {
+        return switch (type) {
+            case PurchaseRequisition -> purchaseRequisitionRepository.findActiveSearchDocuments();
+            case RFQ -> rfqRepository.findActiveSearchDocuments();
+            case PurchaseOrder -> purchaseOrderRepository.findActiveSearchDocuments();
+            case GoodsReceipt -> goodsReceiptRepository.findActiveSearchDocuments();
+            case APInvoice -> apInvoiceRepository.findActiveSearchDocuments();
+            case SalesOrder -> salesOrderRepository.findActiveSearchDocuments();
+            case Delivery -> deliveryRepository.findActiveSearchDocuments();
+            case GoodIssue -> goodIssueRepository.findActiveSearchDocuments();
+            case ARInvoice -> arInvoiceRepository.findActiveSearchDocuments();
+        };
+    }
+
+    private List<DocumentSearchProjection> loadByIds(SearchDocumentType type, List<Integer> ids) {
+        return switch (type) {
+            case PurchaseRequisition -> purchaseRequisitionRepository.findSearchDocumentsByIds(
+                    ids.stream().map(Integer::longValue).toList());
+            case RFQ -> rfqRepository.findSearchDocumentsByIds(ids);
+            case PurchaseOrder -> purchaseOrderRepository.findSearchDocumentsByIds(ids);
+            case GoodsReceipt -> goodsReceiptRepository.findSearchDocumentsByIds(ids);
+            case APInvoice -> apInvoiceRepository.findSearchDocumentsByIds(ids);
+            case SalesOrder -> salesOrderRepository.findSearchDocumentsByIds(ids);
+            case Delivery -> deliveryRepository.findSearchDocumentsByIds(ids);
+            case GoodIssue -> goodIssueRepository.findSearchDocumentsByIds(ids);
+            case ARInvoice -> arInvoiceRepository.findSearchDocumentsByIds(ids);
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        searchExecutor.shutdownNow();
+        refreshExecutor.shutdownNow();
+    }
+}
@@ -1,6 +1,7 @@
 package com.g174.mmssystem.service;
 
 import com.g174.mmssystem.exception.EmailSendingException;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -12,6 +13,11 @@ import org.springframework.stereotype.Service;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import java.security.SecureRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.g174.mmssystem.entity.RFQ;
 import com.g174.mmssystem.entity.Vendor;
@@ -31,6 +37,15 @@ public class EmailService {
 
     private static final SecureRandom random = new SecureRandom();
 
+    private final AtomicInteger otpMailThreadCount = new AtomicInteger();
+    // Gửi email OTP ngoài luồng request; hàng đợi có giới hạn để đợt yêu cầu dồn dập không làm tràn bộ nhớ
+    private final ThreadPoolExecutor otpMailExecutor = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(500), runnable -> {
+                Thread thread = new Thread(runnable, "otp-mail-" + otpMailThreadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
     public String generateOTP() {
         StringBuilder otp = new StringBuilder();
         for (int i = 0; i < otpLength; i++) {
@@ -39,6 +54,29 @@ public class EmailService {
         return otp.toString();
     }
 
+    /**
+     * Xếp hàng gửi email OTP trên luồng nền; lỗi gửi chỉ được ghi log (người dùng có thể yêu cầu mã mới)
+     * @throws EmailSendingException nếu hàng đợi gửi email đã đầy
+     */
+    public void sendOTPEmailAsync(String toEmail, String otp) {
+        try {
+            otpMailExecutor.execute(() -> {
+                try {
+                    sendOTPEmail(toEmail, otp);
+                } catch (Exception e) {
+                    log.error("Failed to send OTP email to: {}", toEmail, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new EmailSendingException("Hệ thống đang bận gửi email. Vui lòng thử lại sau.");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        otpMailExecutor.shutdown();
+    }
+
     public void sendOTPEmail(String toEmail, String otp) {
         try {
             MimeMessage message = mailSender.createMimeMessage();
@@ -0,0 +1,218 @@
+package com.g174.mmssystem.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ghi file trên đĩa ra HTTP response, hỗ trợ cache và tải từng đoạn.
+ *
+ * - ETag mạnh = SHA-256 nội dung: lấy từ tên file với file trong FileStore (kể cả file dẫn xuất), file khác thì băm một lần và cache
+ *   theo (kích thước, thời điểm sửa). If-None-Match khớp thì trả 304 không có body.
+ * - Range: hỗ trợ một đoạn "bytes=a-b" / "bytes=a-" / "bytes=-n" (206), nhiều đoạn thì trả cả file (200),
+ *   đoạn không hợp lệ trả 416; If-Range khác ETag thì bỏ qua Range.
+ * - Body được gửi bằng sendfile của Tomcat khi connector hỗ trợ (kernel chép thẳng từ file ra socket),
+ *   nếu không thì FileChannel.transferTo vào output stream của response.
+ */
+@Component
+@Slf4j
+public class FileServer {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    // File nhỏ ghi trực tiếp rẻ hơn chuyển sang sendfile (cùng ngưỡng mặc định của Tomcat)
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+    private static final int MAX_CACHED_ETAGS = 10_000;
+
+    private record CachedEtag(long size, long lastModified, String etag) {
+    }
+
+    record ByteRange(long start, long end) {
+        long length() {
+            return end - start + 1;
+        }
+    }
+
+    private final Map<Path, CachedEtag> etags = new ConcurrentHashMap<>();
+
+    /**
+     * @param contentDisposition - Giá trị header Content-Disposition, null = không gửi
+     */
+    public void serve(Path file, MediaType contentType, String contentDisposition, CacheControl cacheControl,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long size = attributes.size();
+        String etag = etagOf(file, attributes);
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, attributes.lastModifiedTime().toMillis());
+
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        ByteRange range = new ByteRange(0, size - 1);
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (rangeHeader != null && (ifRange == null || ifRange.trim().equals(etag))) {
+            ByteRange requested = parseRange(rangeHeader, size);
+            if (requested == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (requested.length() < size) {
+                range = requested;
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE,
+                        "bytes " + range.start() + "-" + range.end() + "/" + size);
+            }
+        }
+
+        response.setContentType(contentType.toString());
+        if (contentDisposition != null) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
+        }
+        response.setContentLengthLong(Math.max(range.length(), 0));
+        if ("HEAD".equals(request.getMethod()) || range.length() <= 0) {
+            return;
+        }
+        transfer(file, range, request, response);
+    }
+
+    private void transfer(Path file, ByteRange range, HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        if (range.length() >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, range.start());
+            request.setAttribute(SENDFILE_END, range.end() + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = range.start();
+            long remaining = range.length();
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, out);
+                if (written <= 0) {
+                    // File bị cắt ngắn trong lúc gửi
+                    break;
+                }
+                position += written;
+                remaining -= written;
+            }
+        }
+    }
+
+    /**
+     * @return Đoạn byte (đã giới hạn trong file), null nếu không thỏa mãn được;
+     *         header sai cú pháp hoặc nhiều đoạn thì trả cả file
+     */
+    static ByteRange parseRange(String header, long size) {
+        ByteRange whole = new ByteRange(0, size - 1);
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return whole;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return whole;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // bytes=-n: n byte cuối
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || size == 0) {
+                    return null;
+                }
+                return new ByteRange(Math.max(0, size - suffix), size - 1);
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            if (start >= size || end < start) {
+                return null;
+            }
+            return new ByteRange(start, end);
+        } catch (NumberFormatException e) {
+            return whole;
+        }
+    }
+
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String etagOf(Path file, BasicFileAttributes attributes) throws IOException {
+        String contentTag = FileStore.contentTagOf(file.getFileName().toString());
+        if (contentTag != null) {
+            return "\"" + contentTag + "\"";
+        }
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        CachedEtag cached = etags.get(file);
+        if (cached != null && cached.size() == attributes.size() && cached.lastModified() == lastModified) {
+            return cached.etag();
+        }
+        String etag = "\"" + sha256(file) + "\"";
+        if (etags.size() >= MAX_CACHED_ETAGS) {
+            etags.clear();
+        }
+        etags.put(file, new CachedEtag(attributes.size(), lastModified, etag));
+        return etag;
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
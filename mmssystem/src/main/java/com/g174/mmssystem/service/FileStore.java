@@ -0,0 +1,341 @@
+package com.g174.mmssystem.service;
+
+import com.g174.mmssystem.repository.StoredFileRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.function.IntSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Kho file upload đánh địa chỉ theo nội dung (dùng chung cho file đính kèm hóa đơn, ảnh sản phẩm, avatar).
+ *
+ * - File được băm SHA-256 ngay trong lúc ghi (một lần đọc stream) vào file tạm trong kho, rồi đổi tên (atomic move,
+ *   không sao chép) thành &lt;app.upload.dir&gt;/files/ab/cd/&lt;sha256&gt;.&lt;ext&gt; (ab, cd = 4 ký tự đầu của hash)
+ *   để mỗi thư mục chỉ chứa ít file.
+ * - Nội dung trùng với file đã có thì bỏ file tạm và dùng lại file cũ; số tham chiếu nằm trong Stored_Files.
+ *   store() tăng tham chiếu (bị hoàn lại nếu transaction của nơi gọi rollback), release() giảm tham chiếu
+ *   trong transaction của nơi gọi và xóa file sau commit khi không còn ai dùng.
+ * - File upload trước rồi mới gắn vào bản ghi (ảnh sản phẩm) dùng storeUnreferenced() và acquire() khi bản ghi
+ *   được lưu; file không ai acquire sau app.upload.unreferenced-grace-ms bị sweepUnreferenced() xóa.
+ * - Thao tác trên cùng một nội dung được tuần tự hóa để file không bị xóa khi đang được upload lại.
+ * - File dẫn xuất (ảnh thumbnail, xem ThumbnailGenerator) nằm cạnh file gốc với tên &lt;sha256&gt;-&lt;hậu tố&gt;.&lt;ext&gt;
+ *   và bị xóa cùng file gốc.
+ * URL do store() trả về nằm dưới /uploads/** nên được phục vụ công khai như file upload cũ. File không được public
+ * (file đính kèm hóa đơn) dùng storePrivate(): lưu trong &lt;app.upload.private-dir&gt;/files (phải nằm ngoài
+ * app.upload.dir), URL /private-uploads/files/... không được controller nào phục vụ trực tiếp, controller có kiểm tra
+ * quyền đọc file qua localPathOf().
+ */
+@Component
+@Slf4j
+public class FileStore {
+
+    public static final String URL_PREFIX = "/uploads/files/";
+    public static final String PRIVATE_URL_PREFIX = "/private-uploads/files/";
+
+    // Storage key của file riêng tư có tiền tố để không dùng chung tham chiếu với cùng nội dung ở kho public
+    private static final String PRIVATE_KEY_PREFIX = "private/";
+    private static final Pattern EXTENSION = Pattern.compile("[a-z0-9]{1,10}");
+    private static final Pattern STORAGE_KEY = Pattern.compile("(private/)?[0-9a-f]{64}(\\.[a-z0-9]{1,10})?");
+    // File gốc hoặc file dẫn xuất (<sha256>-w320.jpg)
+    private static final Pattern STORED_NAME = Pattern.compile("([0-9a-f]{64}(-[a-z0-9]{1,10})?)(\\.[a-z0-9]{1,10})?");
+    private static final int LOCK_STRIPES = 64;
+
+    private final StoredFileRepository storedFileRepository;
+    private final TransactionTemplate refTransaction;
+    private final Duration unreferencedGrace;
+    private final Path uploadRoot;
+    private final Path root;
+    private final Path privateRoot;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public FileStore(StoredFileRepository storedFileRepository, PlatformTransactionManager transactionManager,
+                     @Value("${app.upload.unreferenced-grace-ms:86400000}") long unreferencedGraceMs,
+                     @Value("${app.upload.dir:uploads}") String uploadDir,
+                     @Value("${app.upload.private-dir:private-uploads}") String privateUploadDir) {
+        this.storedFileRepository = storedFileRepository;
+        this.unreferencedGrace = Duration.ofMillis(unreferencedGraceMs);
+        this.uploadRoot = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.root = uploadRoot.resolve("files");
+        Path privateUploadRoot = Paths.get(privateUploadDir).toAbsolutePath().normalize();
+        // Thư mục riêng tư nằm trong thư mục upload thì file đính kèm hóa đơn bị phục vụ công khai dưới /uploads/**
+        if (privateUploadRoot.startsWith(uploadRoot) || uploadRoot.startsWith(privateUploadRoot)) {
+            throw new IllegalStateException("app.upload.private-dir (" + privateUploadRoot
+                    + ") không được lồng với app.upload.dir (" + uploadRoot + ")");
+        }
+        this.privateRoot = privateUploadRoot.resolve("files");
+        // Tham chiếu mới được commit ngay (khi còn giữ khóa) để release đồng thời thấy được và không xóa file
+        this.refTransaction = new TransactionTemplate(transactionManager);
+        this.refTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Lưu file và thêm một tham chiếu tới nội dung của nó
+     * @return URL tương đối của file (/uploads/files/...)
+     */
+    public String store(MultipartFile file) throws IOException {
+        return storeReferenced(file, false);
+    }
+
+    /**
+     * Như store() nhưng file không được phục vụ công khai dưới /uploads/**
+     * @return URL tương đối của file (/private-uploads/files/...), chỉ dùng để định danh file
+     */
+    public String storePrivate(MultipartFile file) throws IOException {
+        return storeReferenced(file, true);
+    }
+
+    /**
+     * Lưu file nhưng chưa thêm tham chiếu; nơi gọi acquire(url) khi lưu bản ghi dùng file
+     * @return URL tương đối của file (/uploads/files/...)
+     */
+    public String storeUnreferenced(MultipartFile file) throws IOException {
+        return urlOf(write(file, false, false));
+    }
+
+    private String storeReferenced(MultipartFile file, boolean privateArea) throws IOException {
+        String storageKey = write(file, privateArea, true);
+        releaseOnRollback(storageKey);
+        return urlOf(storageKey);
+    }
+
+    private String write(MultipartFile file, boolean privateArea, boolean acquire) throws IOException {
+        // File tạm nằm trong cùng thư mục gốc với file đích để đổi tên được atomic
+        Path tempDir = (privateArea ? privateRoot : root).resolve(".tmp");
+        Files.createDirectories(tempDir);
+        Path temp = Files.createTempFile(tempDir, "upload-", ".part");
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                size = Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String storageKey = (privateArea ? PRIVATE_KEY_PREFIX : "")
+                    + HexFormat.of().formatHex(digest.digest()) + extension(file.getOriginalFilename());
+            Path target = pathOf(storageKey);
+
+            synchronized (lockFor(storageKey)) {
+                if (Files.exists(target)) {
+                    log.debug("Upload trùng nội dung với {}", storageKey);
+                } else {
+                    Files.createDirectories(target.getParent());
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                }
+                refTransaction.executeWithoutResult(status -> {
+                    if (acquire) {
+                        storedFileRepository.acquire(storageKey, size, file.getContentType());
+                    } else {
+                        storedFileRepository.register(storageKey, size, file.getContentType());
+                    }
+                });
+            }
+            return storageKey;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Thêm một tham chiếu tới file đã lưu, trong transaction của nơi gọi (rollback thì tham chiếu cũng mất).
+     * URL không thuộc kho (file upload trước đây) được bỏ qua.
+     * @return false nếu file không còn trong kho (chưa được dùng quá lâu nên đã bị xóa)
+     */
+    @Transactional
+    public boolean acquire(String url) {
+        String storageKey = storageKeyOf(url);
+        return storageKey == null || storedFileRepository.acquireExisting(storageKey) > 0;
+    }
+
+    /**
+     * Xóa file đã upload nhưng không được bản ghi nào dùng sau thời gian chờ
+     */
+    @Scheduled(fixedDelayString = "${app.upload.unreferenced-sweep-ms:3600000}",
+            initialDelayString = "${app.upload.unreferenced-sweep-ms:3600000}")
+    public void sweepUnreferenced() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(unreferencedGrace);
+        for (String storageKey : storedFileRepository.findUnreferencedBefore(cutoff)) {
+            // Upload lại cùng nội dung làm mới created_at nên điều kiện thời gian được kiểm tra lại khi xóa
+            deleteFiles(storageKey, () -> storedFileRepository.deleteIfUnreferencedBefore(storageKey, cutoff));
+        }
+    }
+
+    /**
+     * Bỏ một tham chiếu tới file; URL không thuộc kho (file upload trước đây) được bỏ qua
+     */
+    @Transactional
+    public void release(String url) {
+        String storageKey = storageKeyOf(url);
+        if (storageKey == null || storedFileRepository.release(storageKey) == 0) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deleteIfUnreferenced(storageKey);
+                }
+            });
+        } else {
+            deleteIfUnreferenced(storageKey);
+        }
+    }
+
+    private void releaseOnRollback(String storageKey) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    refTransaction.executeWithoutResult(s -> storedFileRepository.release(storageKey));
+                    deleteIfUnreferenced(storageKey);
+                }
+            }
+        });
+    }
+
+    private void deleteIfUnreferenced(String storageKey) {
+        deleteFiles(storageKey, () -> storedFileRepository.deleteIfUnreferenced(storageKey));
+    }
+
+    // Xóa dòng Stored_Files (deleteRow trả số dòng đã xóa) rồi xóa file gốc và file dẫn xuất
+    private void deleteFiles(String storageKey, IntSupplier deleteRow) {
+        synchronized (lockFor(storageKey)) {
+            Integer deleted = refTransaction.execute(status -> deleteRow.getAsInt());
+            if (deleted == null || deleted == 0) {
+                return;
+            }
+            Path path = pathOf(storageKey);
+            try {
+                Files.deleteIfExists(path);
+                try (DirectoryStream<Path> derived = Files.newDirectoryStream(path.getParent(),
+                        fileNameOf(storageKey).substring(0, 64) + "-*")) {
+                    for (Path file : derived) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+                log.info("Deleted unreferenced file {}", storageKey);
+            } catch (IOException e) {
+                log.warn("Failed to delete file {}: {}", storageKey, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Định danh nội dung của file trong kho (tên file bỏ phần mở rộng: hash, hoặc hash-hậu tố với file dẫn xuất),
+     * null nếu tên file không phải tên trong kho. Nội dung ứng với một định danh không bao giờ thay đổi.
+     */
+    public static String contentTagOf(String fileName) {
+        if (fileName == null) {
+            return null;
+        }
+        Matcher matcher = STORED_NAME.matcher(fileName);
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    /**
+     * Thư mục upload công khai (tuyệt đối), được phục vụ dưới /uploads/**; kho nằm trong thư mục con files
+     */
+    public Path getUploadRoot() {
+        return uploadRoot;
+    }
+
+    /**
+     * Đường dẫn file gốc của URL do store() / storePrivate() trả về, null nếu URL không thuộc kho
+     */
+    public Path localPathOf(String url) {
+        String storageKey = storageKeyOf(url);
+        return storageKey != null ? pathOf(storageKey) : null;
+    }
+
+    private static String storageKeyOf(String url) {
+        if (url == null) {
+            return null;
+        }
+        String trimmed = url.trim();
+        String keyPrefix;
+        if (trimmed.startsWith(URL_PREFIX)) {
+            keyPrefix = "";
+        } else if (trimmed.startsWith(PRIVATE_URL_PREFIX)) {
+            keyPrefix = PRIVATE_KEY_PREFIX;
+        } else {
+            return null;
+        }
+        String storageKey = keyPrefix + trimmed.substring(trimmed.lastIndexOf('/') + 1);
+        if (!STORAGE_KEY.matcher(storageKey).matches() || !trimmed.equals(urlOf(storageKey))) {
+            return null;
+        }
+        return storageKey;
+    }
+
+    private static String urlOf(String storageKey) {
+        String fileName = fileNameOf(storageKey);
+        return (isPrivate(storageKey) ? PRIVATE_URL_PREFIX : URL_PREFIX)
+                + fileName.substring(0, 2) + "/" + fileName.substring(2, 4) + "/" + fileName;
+    }
+
+    private Path pathOf(String storageKey) {
+        String fileName = fileNameOf(storageKey);
+        return (isPrivate(storageKey) ? privateRoot : root)
+                .resolve(fileName.substring(0, 2)).resolve(fileName.substring(2, 4)).resolve(fileName);
+    }
+
+    private static boolean isPrivate(String storageKey) {
+        return storageKey.startsWith(PRIVATE_KEY_PREFIX);
+    }
+
+    private static String fileNameOf(String storageKey) {
+        return isPrivate(storageKey) ? storageKey.substring(PRIVATE_KEY_PREFIX.length()) : storageKey;
+    }
+
+    /**
+     * Phần mở rộng của tên file gốc (chữ thường, chỉ chữ / số), rỗng nếu không hợp lệ
+     */
+    private static String extension(String originalFilename) {
+        if (originalFilename == null || originalFilename.lastIndexOf('.') < 0) {
+            return "";
+        }
+        String extension = originalFilename.substring(originalFilename.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        return EXTENSION.matcher(extension).matches() ? "." + extension : "";
+    }
+
+    private Object lockFor(String storageKey) {
+        return locks[Math.floorMod(storageKey.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -5,6 +5,8 @@ import com.g174.mmssystem.dto.requestDTO.ARPaymentRequestDTO;
 import com.g174.mmssystem.dto.responseDTO.ARInvoiceResponseDTO;
 import com.g174.mmssystem.dto.responseDTO.ARInvoiceListResponseDTO;
 import com.g174.mmssystem.dto.responseDTO.ARPaymentResponseDTO;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 
 import java.util.List;
 
@@ -18,6 +20,8 @@ public interface IARInvoiceService {
 
     List<ARInvoiceListResponseDTO> getAllInvoices();
 
+    Page<ARInvoiceListResponseDTO> getInvoices(Integer customerId, String status, String keyword, Pageable pageable);
+
     void deleteInvoice(Integer invoiceId);
 
     ARPaymentResponseDTO addPayment(ARPaymentRequestDTO request);
@@ -0,0 +1,52 @@
+package com.g174.mmssystem.service.IService;
+
+import com.g174.mmssystem.dto.responseDTO.AgingInvoiceDTO;
+import com.g174.mmssystem.dto.responseDTO.AgingReportDTO;
+import com.g174.mmssystem.enums.AgingBucket;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDate;
+
+/**
+ * Báo cáo tuổi nợ phải thu / phải trả (Current, 0-30, 31-60, 61-90, trên 90 ngày).
+ * Kết quả được cache theo ngày đối chiếu và bị xóa khi có hóa đơn / thanh toán / Credit Note mới.
+ */
+public interface IAgingReportService {
+
+    /**
+     * Tuổi nợ phải thu theo khách hàng
+     * @param asOf - Ngày đối chiếu (null = hôm nay)
+     */
+    AgingReportDTO getReceivableAging(LocalDate asOf);
+
+    /**
+     * Tuổi nợ phải trả theo nhà cung cấp
+     * @param asOf - Ngày đối chiếu (null = hôm nay)
+     */
+    AgingReportDTO getPayableAging(LocalDate asOf);
+
+    /**
+     * Danh sách hóa đơn phải thu còn nợ trong một nhóm tuổi nợ
+     * @param bucket - Nhóm tuổi nợ (null = tất cả)
+     * @param customerId - Lọc theo khách hàng (null = tất cả)
+     */
+    Page<AgingInvoiceDTO> getReceivableInvoices(LocalDate asOf, AgingBucket bucket, Integer customerId, Pageable pageable);
+
+    /**
+     * Danh sách hóa đơn phải trả còn nợ trong một nhóm tuổi nợ
+     * @param bucket - Nhóm tuổi nợ (null = tất cả)
+     * @param vendorId - Lọc theo nhà cung cấp (null = tất cả)
+     */
+    Page<AgingInvoiceDTO> getPayableInvoices(LocalDate asOf, AgingBucket bucket, Integer vendorId, Pageable pageable);
+
+    /**
+     * Đánh dấu công nợ phải thu đã thay đổi: cache bị xóa sau khi transaction hiện tại commit
+     */
+    void markReceivablesChanged();
+
+    /**
+     * Đánh dấu công nợ phải trả đã thay đổi: cache bị xóa sau khi transaction hiện tại commit
+     */
+    void markPayablesChanged();
+}
@@ -0,0 +1,16 @@
+package com.g174.mmssystem.service.IService;
+
+import com.g174.mmssystem.dto.responseDTO.BalanceReconciliationReportDTO;
+
+/**
+ * Đối soát toàn bộ công nợ KH/NCC với chứng từ gốc (hóa đơn, thanh toán, Credit Note)
+ */
+public interface IBalanceReconciliationService {
+
+    /**
+     * Tính lại tổng hóa đơn / thanh toán / Credit Note của tất cả KH và NCC, so với balance đang lưu
+     * và ghi các chỗ lệch theo từng lô.
+     * @param dryRun - true: chỉ báo cáo chênh lệch, không sửa
+     */
+    BalanceReconciliationReportDTO reconcileAll(boolean dryRun);
+}
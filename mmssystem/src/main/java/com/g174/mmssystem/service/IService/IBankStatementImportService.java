@@ -0,0 +1,19 @@
+package com.g174.mmssystem.service.IService;
+
+import com.g174.mmssystem.dto.responseDTO.BankStatementImportResultDTO;
+
+import java.io.InputStream;
+
+/**
+ * Import sao kê ngân hàng (CSV) và ghi nhận thanh toán hàng loạt cho hóa đơn phải thu / phải trả.
+ */
+public interface IBankStatementImportService {
+
+    /**
+     * Đọc sao kê theo từng dòng (không nạp cả file vào bộ nhớ), khớp với hóa đơn còn nợ theo
+     * số hóa đơn, mã KH/NCC và số tiền, ghi nhận thanh toán theo lô.
+     * Tiền vào (số dương / cột credit) -> thanh toán AR, tiền ra (số âm / cột debit) -> thanh toán AP.
+     * @param dryRun - true: chỉ đối soát, không ghi thanh toán
+     */
+    BankStatementImportResultDTO importStatement(InputStream csv, boolean dryRun);
+}
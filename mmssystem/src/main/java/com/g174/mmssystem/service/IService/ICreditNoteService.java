@@ -3,7 +3,10 @@ package com.g174.mmssystem.service.IService;
 import com.g174.mmssystem.dto.requestDTO.CreditNoteRequestDTO;
 import com.g174.mmssystem.dto.responseDTO.CreditNoteListResponseDTO;
 import com.g174.mmssystem.dto.responseDTO.CreditNoteResponseDTO;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 
+import java.time.LocalDate;
 import java.util.List;
 
 public interface ICreditNoteService {
@@ -16,6 +19,9 @@ public interface ICreditNoteService {
 
     List<CreditNoteListResponseDTO> getAllCreditNotes(Integer invoiceId, Integer returnOrderId, String status, String keyword);
 
+    Page<CreditNoteListResponseDTO> getCreditNotes(Integer invoiceId, Integer returnOrderId, Integer customerId,
+            String status, String keyword, LocalDate fromDate, LocalDate toDate, Pageable pageable);
+
     void deleteCreditNote(Integer id);
 
     CreditNoteResponseDTO changeStatus(Integer id, String status);
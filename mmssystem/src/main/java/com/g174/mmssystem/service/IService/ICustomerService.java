@@ -2,6 +2,7 @@ package com.g174.mmssystem.service.IService;
 
 import com.g174.mmssystem.dto.requestDTO.CustomerRequestDTO;
 import com.g174.mmssystem.dto.responseDTO.CustomerResponseDTO;
+import com.g174.mmssystem.dto.responseDTO.SuggestionDTO;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import com.g174.mmssystem.dto.responseDTO.CustomerDetailResponseDTO;
@@ -17,6 +18,7 @@ public interface ICustomerService {
     Page<CustomerResponseDTO> getAllCustomers(Pageable pageable);
     List<CustomerResponseDTO> searchCustomers(String keyword);
     Page<CustomerResponseDTO> searchCustomers(String keyword, Pageable pageable);
+    List<SuggestionDTO> suggestCustomers(String prefix, int limit);
     CustomerResponseDTO updateCustomer(Integer customerId, CustomerRequestDTO customerRequestDTO);
     void deleteCustomer(Integer customerId);
     void restoreCustomer(Integer customerId);
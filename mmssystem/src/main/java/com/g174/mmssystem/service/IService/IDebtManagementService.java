@@ -5,6 +5,8 @@ import com.g174.mmssystem.dto.responseDTO.DebtSummaryRowDTO;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.time.LocalDate;
+
 /**
  * Service interface cho Debt Management
  * Tổng hợp công nợ từ APInvoice, APPayment, ARInvoice, ARPayment
@@ -26,6 +28,15 @@ public interface IDebtManagementService {
      */
     Page<DebtTransactionResponseDTO> searchDebtTransactions(String keyword, Pageable pageable);
 
+    /**
+     * Tìm kiếm giao dịch công nợ có lọc theo loại đối tượng, loại giao dịch và khoảng ngày
+     * @param customerVendorType - "Customer" hoặc "Vendor" (null = tất cả)
+     * @param transactionType - AP_INVOICE, AP_PAYMENT, AR_INVOICE, AR_PAYMENT (null = tất cả)
+     */
+    Page<DebtTransactionResponseDTO> searchDebtTransactions(String keyword, String customerVendorType,
+                                                            String transactionType, LocalDate fromDate,
+                                                            LocalDate toDate, Pageable pageable);
+
     /**
      * Tổng hợp công nợ theo tháng hiện tại (group by KH/NCC)
      */
@@ -0,0 +1,42 @@
+package com.g174.mmssystem.service.IService;
+
+import com.g174.mmssystem.dto.responseDTO.DebtSummaryRowDTO;
+import com.g174.mmssystem.entity.Customer;
+import com.g174.mmssystem.entity.Vendor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Bảng tổng hợp công nợ theo tháng (opening, tăng, giảm, closing) cho từng KH/NCC.
+ * Được cập nhật trong cùng transaction với hóa đơn, thanh toán, Credit Note.
+ */
+public interface IDebtSummaryService {
+
+    /**
+     * Ghi nhận phát sinh công nợ phải thu của khách hàng vào kỳ chứa ngày giao dịch
+     * @param increase - Phát sinh tăng (hóa đơn), có thể âm khi hủy hóa đơn
+     * @param decrease - Phát sinh giảm (thanh toán, Credit Note)
+     */
+    void recordCustomer(Customer customer, LocalDate transactionDate, BigDecimal increase, BigDecimal decrease);
+
+    /**
+     * Ghi nhận phát sinh công nợ phải trả nhà cung cấp vào kỳ chứa ngày giao dịch
+     */
+    void recordVendor(Vendor vendor, LocalDate transactionDate, BigDecimal increase, BigDecimal decrease);
+
+    /**
+     * Lấy tổng hợp công nợ của một tháng có phân trang, gồm cả KH/NCC không phát sinh trong tháng
+     * nhưng còn số dư từ các tháng trước
+     * @param customerVendorType - "Customer" / "Vendor" (null = tất cả)
+     */
+    Page<DebtSummaryRowDTO> getMonthlySummary(int year, int month, String customerVendorType, Pageable pageable);
+
+    /**
+     * Xóa và tính lại toàn bộ bảng tổng hợp từ hóa đơn, thanh toán, Credit Note
+     * @return Số dòng tổng hợp đã tạo
+     */
+    int rebuild();
+}
@@ -0,0 +1,16 @@
+package com.g174.mmssystem.service.IService;
+
+import com.g174.mmssystem.dto.responseDTO.DocumentSearchResultDTO;
+import com.g174.mmssystem.enums.SearchDocumentType;
+
+import java.util.List;
+import java.util.Set;
+
+public interface IDocumentSearchService {
+
+    /**
+     * Tìm chung trên các loại chứng từ người dùng hiện tại được xem
+     * @param types - Chỉ tìm trong các loại này, rỗng / null = tất cả
+     */
+    List<DocumentSearchResultDTO> searchDocuments(String keyword, Set<SearchDocumentType> types, int limit);
+}
@@ -1,17 +1,27 @@
 package com.g174.mmssystem.service.IService;
 
+import com.g174.mmssystem.dto.requestDTO.GoodIssueBatchRequestDTO;
 import com.g174.mmssystem.dto.requestDTO.GoodIssueRequestDTO;
+import com.g174.mmssystem.dto.responseDTO.GoodIssueBatchResultDTO;
 import com.g174.mmssystem.dto.responseDTO.GoodIssueResponseDTO;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface IGoodIssueService {
     GoodIssueResponseDTO createIssue(GoodIssueRequestDTO dto, Integer createdById);
 
     GoodIssueResponseDTO createIssueFromDelivery(Integer deliveryId, GoodIssueRequestDTO dto, Integer createdById);
 
+    /**
+     * @return ID các phiếu xuất kho đã tạo, theo thứ tự Delivery trong request
+     */
+    List<Integer> createAndApproveIssues(GoodIssueBatchRequestDTO dto, Integer userId);
+
+    void streamBatchResults(List<Integer> issueIds, Consumer<GoodIssueBatchResultDTO> sink);
+
     GoodIssueResponseDTO getIssueById(Integer issueId);
 
     List<GoodIssueResponseDTO> getAllIssues();
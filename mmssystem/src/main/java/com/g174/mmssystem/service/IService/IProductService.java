@@ -2,6 +2,7 @@ package com.g174.mmssystem.service.IService;
 
 import com.g174.mmssystem.dto.requestDTO.ProductRequestDTO;
 import com.g174.mmssystem.dto.responseDTO.ProductResponseDTO;
+import com.g174.mmssystem.dto.responseDTO.SuggestionDTO;
 import jakarta.validation.Valid;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -13,6 +14,8 @@ public interface IProductService {
 
     List<ProductResponseDTO> searchProducts(String keyword);
 
+    List<SuggestionDTO> suggestProducts(String prefix, int limit);
+
     List<ProductResponseDTO> getDeletedProducts();
 
     ProductResponseDTO getProduct(Integer id);
@@ -1,5 +1,6 @@
 package com.g174.mmssystem.service.IService;
 import com.g174.mmssystem.dto.requestDTO.VendorRequestDTO;
+import com.g174.mmssystem.dto.responseDTO.SuggestionDTO;
 import com.g174.mmssystem.dto.responseDTO.VendorResponseDTO;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -13,6 +14,7 @@ public interface IVendorService {
     Page<VendorResponseDTO> getAllVendors(Pageable pageable);
     List<VendorResponseDTO> searchVendors(String keyword);
     Page<VendorResponseDTO> searchVendors(String keyword, Pageable pageable);
+    List<SuggestionDTO> suggestVendors(String prefix, int limit);
     VendorResponseDTO updateVendor(Integer vendorId, VendorRequestDTO vendorRequestDTO);
     void deleteVendor(Integer vendorId);
     void restoreVendor(Integer vendorId);
@@ -9,6 +9,7 @@ import com.g174.mmssystem.exception.ResourceNotFoundException;
 import com.g174.mmssystem.repository.APInvoiceAttachmentRepository;
 import com.g174.mmssystem.repository.APInvoiceRepository;
 import com.g174.mmssystem.repository.UserRepository;
+import com.g174.mmssystem.service.FileStore;
 import com.g174.mmssystem.service.IService.IAPInvoiceAttachmentService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -19,13 +20,8 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
@@ -36,9 +32,7 @@ public class APInvoiceAttachmentServiceImpl implements IAPInvoiceAttachmentServi
     private final APInvoiceAttachmentRepository attachmentRepository;
     private final APInvoiceRepository apInvoiceRepository;
     private final UserRepository userRepository;
-
-    @Value("${file.upload.invoice-dir:uploads/invoices}")
-    private String uploadDir;
+    private final FileStore fileStore;
 
     @Value("${file.upload.base-url:http://localhost:8080}")
     private String baseUrl;
@@ -70,28 +64,15 @@ public class APInvoiceAttachmentServiceImpl implements IAPInvoiceAttachmentServi
         }
 
         try {
-            // Create upload directory if not exists
-            Path uploadPath = Paths.get(uploadDir);
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-            }
-
-            // Generate unique filename
+            // Save file (file trùng nội dung dùng chung một bản lưu); không public, chỉ xem qua API có kiểm tra quyền
             String originalFilename = file.getOriginalFilename();
-            String extension = originalFilename != null && originalFilename.contains(".") 
-                    ? originalFilename.substring(originalFilename.lastIndexOf(".")) 
-                    : "";
-            String uniqueFilename = UUID.randomUUID().toString() + extension;
-            
-            // Save file
-            Path filePath = uploadPath.resolve(uniqueFilename);
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+            String fileUrl = fileStore.storePrivate(file);
 
             // Create attachment record
             APInvoiceAttachment attachment = new APInvoiceAttachment();
             attachment.setApInvoice(invoice);
             attachment.setFileName(originalFilename);
-            attachment.setFileUrl("/uploads/invoices/" + uniqueFilename);
+            attachment.setFileUrl(fileUrl);
             attachment.setFileType(fileType != null ? fileType : APInvoiceAttachment.FileType.VENDOR_INVOICE);
             attachment.setFileSize(file.getSize());
             attachment.setMimeType(contentType);
@@ -101,7 +82,7 @@ public class APInvoiceAttachmentServiceImpl implements IAPInvoiceAttachmentServi
 
             APInvoiceAttachment saved = attachmentRepository.save(attachment);
             
-            log.info("Uploaded attachment {} for invoice {}", uniqueFilename, invoiceId);
+            log.info("Uploaded attachment {} for invoice {}", fileUrl, invoiceId);
             
             return mapToResponseDTO(saved);
 
@@ -158,6 +139,7 @@ public class APInvoiceAttachmentServiceImpl implements IAPInvoiceAttachmentServi
         
         attachment.setDeletedAt(LocalDateTime.now());
         attachmentRepository.save(attachment);
+        fileStore.release(attachment.getFileUrl());
         
         log.info("Deleted attachment {} for invoice {}", attachmentId, attachment.getApInvoice().getApInvoiceId());
     }
@@ -168,7 +150,8 @@ public class APInvoiceAttachmentServiceImpl implements IAPInvoiceAttachmentServi
         APInvoiceAttachment attachment = attachmentRepository.findByIdActive(attachmentId)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy file đính kèm với ID: " + attachmentId));
         
-        return baseUrl + attachment.getFileUrl();
+        // File không nằm dưới /uploads/** công khai: tải qua endpoint xem file (cần đăng nhập)
+        return baseUrl + "/api/ap-invoice-attachments/" + attachment.getAttachmentId() + "/view";
     }
 
     // ========== Helper Methods ==========
@@ -20,9 +20,11 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
@@ -41,6 +43,7 @@ public class APInvoiceServiceImpl implements IAPInvoiceService {
     private final PurchaseOrderItemRepository orderItemRepository;
     private final GoodsReceiptItemRepository receiptItemRepository;
     private final com.g174.mmssystem.service.IService.IVendorBalanceService vendorBalanceService;
+    private final com.g174.mmssystem.service.IService.IDebtSummaryService debtSummaryService;
 
     @Override
     @Transactional
@@ -150,6 +153,8 @@ public class APInvoiceServiceImpl implements IAPInvoiceService {
         } catch (Exception e) {
             log.error("Failed to update vendor balance for vendor {}: {}", vendor.getVendorId(), e.getMessage());
         }
+        // Tổng hợp công nợ tháng phải khớp với hóa đơn: lỗi ở đây rollback cả transaction
+        debtSummaryService.recordVendor(vendor, saved.getInvoiceDate(), saved.getTotalAmount(), BigDecimal.ZERO);
 
         log.info("AP Invoice created successfully with ID: {} and number: {}", saved.getApInvoiceId(), saved.getInvoiceNo());
         return invoiceMapper.toResponseDTO(savedWithRelations);
@@ -317,6 +322,8 @@ public class APInvoiceServiceImpl implements IAPInvoiceService {
         } catch (Exception e) {
             log.error("Failed to update vendor balance for vendor {}: {}", vendor.getVendorId(), e.getMessage());
         }
+        // Tổng hợp công nợ tháng phải khớp với hóa đơn: lỗi ở đây rollback cả transaction
+        debtSummaryService.recordVendor(vendor, saved.getInvoiceDate(), saved.getTotalAmount(), BigDecimal.ZERO);
 
         log.info("AP Invoice auto-created from GR: {} with invoice number: {}", goodsReceipt.getReceiptNo(), invoiceNo);
         return invoiceMapper.toResponseDTO(savedWithRelations);
@@ -426,6 +433,8 @@ public class APInvoiceServiceImpl implements IAPInvoiceService {
         } catch (Exception e) {
             log.error("Failed to update vendor balance for vendor {}: {}", vendor.getVendorId(), e.getMessage());
         }
+        // Tổng hợp công nợ tháng phải khớp với hóa đơn: lỗi ở đây rollback cả transaction
+        debtSummaryService.recordVendor(vendor, saved.getInvoiceDate(), saved.getTotalAmount(), BigDecimal.ZERO);
 
         log.info("AP Invoice created from completed PO: {} with invoice number: {} (covering {} GRs)", 
                  purchaseOrder.getPoNo(), invoiceNo, goodsReceipts.size());
@@ -516,6 +525,10 @@ public class APInvoiceServiceImpl implements IAPInvoiceService {
             throw new IllegalStateException("Không thể chỉnh sửa hóa đơn đã có thanh toán một phần");
         }
 
+        // Giữ giá trị cũ để điều chỉnh công nợ nếu tổng tiền hoặc ngày hóa đơn thay đổi
+        BigDecimal oldTotalAmount = invoice.getTotalAmount();
+        LocalDate oldInvoiceDate = invoice.getInvoiceDate();
+
         // Update fields
         if (dto.getInvoiceDate() != null) {
             invoice.setInvoiceDate(dto.getInvoiceDate());
@@ -548,6 +561,7 @@ public class APInvoiceServiceImpl implements IAPInvoiceService {
         invoice.setUpdatedAt(LocalDateTime.now());
 
         APInvoice saved = invoiceRepository.save(invoice);
+        postInvoiceAmountChange(saved, oldTotalAmount, oldInvoiceDate);
         APInvoice savedWithRelations = invoiceRepository.findByIdWithRelations(saved.getApInvoiceId())
                 .orElse(saved);
 
@@ -555,15 +569,47 @@ public class APInvoiceServiceImpl implements IAPInvoiceService {
         return invoiceMapper.toResponseDTO(savedWithRelations);
     }
 
+    /**
+     * Hóa đơn đổi tổng tiền/ngày: đảo phát sinh cũ ở kỳ cũ và ghi phát sinh mới ở kỳ mới,
+     * vendor balance chỉ điều chỉnh phần chênh lệch.
+     */
+    private void postInvoiceAmountChange(APInvoice invoice, BigDecimal oldTotalAmount, LocalDate oldInvoiceDate) {
+        BigDecimal oldTotal = oldTotalAmount != null ? oldTotalAmount : BigDecimal.ZERO;
+        BigDecimal newTotal = invoice.getTotalAmount() != null ? invoice.getTotalAmount() : BigDecimal.ZERO;
+        boolean amountChanged = oldTotal.compareTo(newTotal) != 0;
+        if (!amountChanged && Objects.equals(oldInvoiceDate, invoice.getInvoiceDate())) {
+            return;
+        }
+
+        Vendor vendor = invoice.getVendor();
+        if (amountChanged) {
+            try {
+                vendorBalanceService.updateOnInvoiceCreated(vendor.getVendorId(), newTotal.subtract(oldTotal));
+            } catch (Exception e) {
+                log.error("Failed to update vendor balance for vendor {}: {}", vendor.getVendorId(), e.getMessage());
+            }
+        }
+        debtSummaryService.recordVendor(vendor, oldInvoiceDate, oldTotal.negate(), BigDecimal.ZERO);
+        debtSummaryService.recordVendor(vendor, invoice.getInvoiceDate(), newTotal, BigDecimal.ZERO);
+    }
+
     @Override
     @Transactional
     public APInvoiceResponseDTO deleteInvoice(Integer invoiceId) {
         log.info("Deleting AP Invoice ID: {}", invoiceId);
 
-        APInvoice invoice = invoiceRepository.findById(invoiceId)
+        // Lock the invoice so a concurrent payment cannot be added while it is being deleted
+        APInvoice invoice = invoiceRepository.findByIdForUpdate(invoiceId)
                 .filter(inv -> inv.getDeletedAt() == null)
                 .orElseThrow(() -> new ResourceNotFoundException("AP Invoice not found  " + invoiceId));
 
+        // Payments of a deleted invoice drop out of the debt ledger, so the debt summary could not
+        // be kept consistent with a rebuild; same rule as AR invoices
+        if (!paymentRepository.findByInvoiceId(invoiceId).isEmpty()) {
+            throw new IllegalStateException("Cannot delete AP Invoice " + invoice.getInvoiceNo()
+                    + " because it already has payments");
+        }
+
         // Store values before delete for balance update
         Integer vendorId = invoice.getVendor().getVendorId();
         BigDecimal totalAmount = invoice.getTotalAmount();
@@ -577,6 +623,8 @@ public class APInvoiceServiceImpl implements IAPInvoiceService {
         } catch (Exception e) {
             log.error("Failed to update vendor balance for vendor {}: {}", vendorId, e.getMessage());
         }
+        debtSummaryService.recordVendor(invoice.getVendor(), invoice.getInvoiceDate(),
+                totalAmount != null ? totalAmount.negate() : BigDecimal.ZERO, BigDecimal.ZERO);
 
         log.info("AP Invoice deleted successfully");
         return invoiceMapper.toResponseDTO(saved);
@@ -587,9 +635,15 @@ public class APInvoiceServiceImpl implements IAPInvoiceService {
     public APPaymentResponseDTO addPayment(APPaymentRequestDTO dto) {
         log.info("Adding payment to AP Invoice ID: {}", dto.getApInvoiceId());
 
-        APInvoice invoice = invoiceRepository.findById(dto.getApInvoiceId())
+        // Lock the invoice so concurrent payments (including bank statement import) cannot overpay
+        APInvoice invoice = invoiceRepository.findByIdForUpdate(dto.getApInvoiceId())
                 .filter(inv -> inv.getDeletedAt() == null)
                 .orElseThrow(() -> new ResourceNotFoundException("AP Invoice not found  " + dto.getApInvoiceId()));
+        if (invoice.getStatus() == APInvoice.APInvoiceStatus.Paid
+                || dto.getAmount().compareTo(invoice.getBalanceAmount()) > 0) {
+            throw new IllegalStateException("Payment amount exceeds the remaining balance of AP Invoice "
+                    + invoice.getInvoiceNo());
+        }
 
         // Auto-generate reference number if not provided
         String referenceNo = dto.getReferenceNo();
@@ -632,6 +686,9 @@ public class APInvoiceServiceImpl implements IAPInvoiceService {
         } catch (Exception e) {
             log.error("Failed to update vendor balance: {}", e.getMessage());
         }
+        debtSummaryService.recordVendor(invoice.getVendor(),
+                saved.getPaymentDate() != null ? saved.getPaymentDate().toLocalDate() : null,
+                BigDecimal.ZERO, dto.getAmount());
 
         // Update Purchase Order status to Completed if invoice is fully paid
         if (invoiceFullyPaid && invoice.getPurchaseOrder() != null) {
@@ -14,10 +14,13 @@ import com.g174.mmssystem.repository.*;
 import com.g174.mmssystem.service.IService.IARInvoiceService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -48,6 +51,7 @@ public class ARInvoiceServiceImpl implements IARInvoiceService {
     private final ARInvoiceMapper arInvoiceMapper;
     private final CreditNoteRepository creditNoteRepository;
     private final com.g174.mmssystem.service.IService.ICustomerBalanceService customerBalanceService;
+    private final com.g174.mmssystem.service.IService.IDebtSummaryService debtSummaryService;
 
     @Override
     public ARInvoiceResponseDTO createInvoice(ARInvoiceRequestDTO request) {
@@ -77,6 +81,7 @@ public class ARInvoiceServiceImpl implements IARInvoiceService {
 
         // Cập nhật customer balance
         customerBalanceService.updateOnInvoiceCreated(customer.getCustomerId(), saved.getTotalAmount());
+        debtSummaryService.recordCustomer(customer, saved.getInvoiceDate(), saved.getTotalAmount(), BigDecimal.ZERO);
 
         return arInvoiceMapper.toResponse(saved, items, new ArrayList<>());
     }
@@ -137,22 +142,30 @@ public class ARInvoiceServiceImpl implements IARInvoiceService {
     @Override
     @Transactional(readOnly = true)
     public List<ARInvoiceListResponseDTO> getAllInvoices() {
-        List<ARInvoice> invoices = arInvoiceRepository.findAllActiveInvoices();
-        return invoices.stream()
+        return arInvoiceRepository.findListPage(null, null, null, Pageable.unpaged()).stream()
                 .map(arInvoiceMapper::toListResponse)
-                .map(this::enrichListDtoWithRelations)
                 .collect(Collectors.toList());
     }
 
-    private ARInvoiceListResponseDTO enrichListDtoWithRelations(ARInvoiceListResponseDTO dto) {
-        if (dto == null || dto.getArInvoiceId() == null)
-            return dto;
-        Integer id = dto.getArInvoiceId();
-        boolean hasPayment = !arPaymentRepository.findByInvoice_ArInvoiceIdOrderByPaymentDateDesc(id).isEmpty();
-        boolean hasCreditNote = !creditNoteRepository.findByInvoice_ArInvoiceIdAndDeletedAtIsNull(id).isEmpty();
-        dto.setHasPayment(hasPayment);
-        dto.setHasCreditNote(hasCreditNote);
-        return dto;
+    @Override
+    @Transactional(readOnly = true)
+    public Page<ARInvoiceListResponseDTO> getInvoices(Integer customerId, String status, String keyword,
+            Pageable pageable) {
+        // hasPayment / hasCreditNote được tính bằng EXISTS ngay trong câu SELECT danh sách
+        String like = StringUtils.hasText(keyword) ? "%" + keyword.trim().toLowerCase() + "%" : null;
+        return arInvoiceRepository.findListPage(customerId, parseStatus(status), like, pageable)
+                .map(arInvoiceMapper::toListResponse);
+    }
+
+    private ARInvoice.InvoiceStatus parseStatus(String status) {
+        if (!StringUtils.hasText(status)) {
+            return null;
+        }
+        try {
+            return ARInvoice.InvoiceStatus.valueOf(status.trim());
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Trạng thái hóa đơn không hợp lệ: " + status);
+        }
     }
 
     @Override
@@ -170,6 +183,8 @@ public class ARInvoiceServiceImpl implements IARInvoiceService {
 
         // Cập nhật customer balance trước khi xóa
         customerBalanceService.updateOnInvoiceDeleted(invoice.getCustomer().getCustomerId(), invoice.getTotalAmount());
+        debtSummaryService.recordCustomer(invoice.getCustomer(), invoice.getInvoiceDate(),
+                invoice.getTotalAmount() != null ? invoice.getTotalAmount().negate() : BigDecimal.ZERO, BigDecimal.ZERO);
 
         invoice.setDeletedAt(Instant.now());
         arInvoiceRepository.save(invoice);
@@ -177,7 +192,10 @@ public class ARInvoiceServiceImpl implements IARInvoiceService {
 
     @Override
     public ARPaymentResponseDTO addPayment(ARPaymentRequestDTO request) {
-        ARInvoice invoice = getInvoiceEntity(request.getInvoiceId());
+        // Khóa hóa đơn: thanh toán song song (kể cả import sao kê) không được vượt số còn nợ
+        ARInvoice invoice = arInvoiceRepository.findByIdForUpdate(request.getInvoiceId())
+                .filter(inv -> inv.getDeletedAt() == null)
+                .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy hóa đơn với ID: " + request.getInvoiceId()));
 
         if (invoice.getStatus() == ARInvoice.InvoiceStatus.Paid) {
             throw new IllegalStateException("Hóa đơn đã thanh toán đủ, không thể thêm thanh toán");
@@ -199,6 +217,9 @@ public class ARInvoiceServiceImpl implements IARInvoiceService {
 
         // Cập nhật customer balance
         customerBalanceService.updateOnPaymentAdded(invoice.getCustomer().getCustomerId(), request.getAmount());
+        debtSummaryService.recordCustomer(invoice.getCustomer(),
+                saved.getPaymentDate() != null ? saved.getPaymentDate().atZone(java.time.ZoneId.systemDefault()).toLocalDate() : null,
+                BigDecimal.ZERO, request.getAmount());
 
         // Cập nhật balance_amount và status
         BigDecimal newBalance = invoice.getBalanceAmount().subtract(request.getAmount());
@@ -0,0 +1,301 @@
+package com.g174.mmssystem.service.Impl;
+
+import com.g174.mmssystem.dto.responseDTO.AgingBucketProjection;
+import com.g174.mmssystem.dto.responseDTO.AgingInvoiceDTO;
+import com.g174.mmssystem.dto.responseDTO.AgingReportDTO;
+import com.g174.mmssystem.dto.responseDTO.AgingRowDTO;
+import com.g174.mmssystem.entity.APInvoice;
+import com.g174.mmssystem.entity.ARInvoice;
+import com.g174.mmssystem.entity.Customer;
+import com.g174.mmssystem.entity.Vendor;
+import com.g174.mmssystem.enums.AgingBucket;
+import com.g174.mmssystem.repository.APInvoiceRepository;
+import com.g174.mmssystem.repository.ARInvoiceRepository;
+import com.g174.mmssystem.service.IService.IAgingReportService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+@Service
+@Slf4j
+@Transactional(readOnly = true)
+public class AgingReportServiceImpl implements IAgingReportService {
+
+    private static final String PARTY_CUSTOMER = "Customer";
+    private static final String PARTY_VENDOR = "Vendor";
+
+    // Sắp xếp mặc định cho drill-down: hóa đơn quá hạn lâu nhất trước
+    private static final Sort DEFAULT_DRILL_DOWN_SORT = Sort.by(Sort.Order.asc("dueDate"), Sort.Order.asc("invoiceNo"));
+
+    private final ARInvoiceRepository arInvoiceRepository;
+    private final APInvoiceRepository apInvoiceRepository;
+
+    private final AgingCache receivables;
+    private final AgingCache payables;
+
+    public AgingReportServiceImpl(ARInvoiceRepository arInvoiceRepository,
+                                  APInvoiceRepository apInvoiceRepository,
+                                  @Value("${app.aging.cache-ttl-minutes:5}") long cacheTtlMinutes) {
+        this.arInvoiceRepository = arInvoiceRepository;
+        this.apInvoiceRepository = apInvoiceRepository;
+        this.receivables = new AgingCache(PARTY_CUSTOMER, Duration.ofMinutes(cacheTtlMinutes));
+        this.payables = new AgingCache(PARTY_VENDOR, Duration.ofMinutes(cacheTtlMinutes));
+    }
+
+    @Override
+    public AgingReportDTO getReceivableAging(LocalDate asOf) {
+        return receivables.get(resolveAsOf(asOf), date -> buildReport(PARTY_CUSTOMER, date,
+                arInvoiceRepository.sumAgingByCustomer(date, date.minusDays(30), date.minusDays(60), date.minusDays(90))));
+    }
+
+    @Override
+    public AgingReportDTO getPayableAging(LocalDate asOf) {
+        return payables.get(resolveAsOf(asOf), date -> buildReport(PARTY_VENDOR, date,
+                apInvoiceRepository.sumAgingByVendor(date, date.minusDays(30), date.minusDays(60), date.minusDays(90))));
+    }
+
+    @Override
+    public Page<AgingInvoiceDTO> getReceivableInvoices(LocalDate asOf, AgingBucket bucket, Integer customerId,
+                                                       Pageable pageable) {
+        LocalDate date = resolveAsOf(asOf);
+        DueRange range = DueRange.of(bucket, date);
+        return arInvoiceRepository.findOpenByDueRange(customerId, range.from(), range.before(),
+                        range.includeNoDueDate(), withDefaultSort(pageable))
+                .map(invoice -> toAgingInvoice(invoice, date));
+    }
+
+    @Override
+    public Page<AgingInvoiceDTO> getPayableInvoices(LocalDate asOf, AgingBucket bucket, Integer vendorId,
+                                                    Pageable pageable) {
+        LocalDate date = resolveAsOf(asOf);
+        DueRange range = DueRange.of(bucket, date);
+        return apInvoiceRepository.findOpenByDueRange(vendorId, range.from(), range.before(),
+                        range.includeNoDueDate(), withDefaultSort(pageable))
+                .map(invoice -> toAgingInvoice(invoice, date));
+    }
+
+    @Override
+    public void markReceivablesChanged() {
+        receivables.invalidateAfterCommit();
+    }
+
+    @Override
+    public void markPayablesChanged() {
+        payables.invalidateAfterCommit();
+    }
+
+    private LocalDate resolveAsOf(LocalDate asOf) {
+        return asOf != null ? asOf : LocalDate.now();
+    }
+
+    private Pageable withDefaultSort(Pageable pageable) {
+        if (pageable.isUnpaged() || pageable.getSort().isSorted()) {
+            return pageable;
+        }
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(),
+                DEFAULT_DRILL_DOWN_SORT);
+    }
+
+    private AgingReportDTO buildReport(String partyType, LocalDate asOf, List<AgingBucketProjection> buckets) {
+        List<AgingRowDTO> rows = new ArrayList<>(buckets.size());
+        AgingRowDTO totals = AgingRowDTO.builder()
+                .currentAmount(BigDecimal.ZERO)
+                .days0To30(BigDecimal.ZERO)
+                .days31To60(BigDecimal.ZERO)
+                .days61To90(BigDecimal.ZERO)
+                .over90(BigDecimal.ZERO)
+                .totalAmount(BigDecimal.ZERO)
+                .build();
+
+        for (AgingBucketProjection bucket : buckets) {
+            AgingRowDTO row = AgingRowDTO.builder()
+                    .partyId(bucket.getPartyId())
+                    .partyCode(bucket.getPartyCode())
+                    .partyName(bucket.getPartyName())
+                    .currentAmount(nonNull(bucket.getCurrentAmount()))
+                    .days0To30(nonNull(bucket.getDays0To30()))
+                    .days31To60(nonNull(bucket.getDays31To60()))
+                    .days61To90(nonNull(bucket.getDays61To90()))
+                    .over90(nonNull(bucket.getOver90()))
+                    .totalAmount(nonNull(bucket.getTotalAmount()))
+                    .invoiceCount(bucket.getInvoiceCount() != null ? bucket.getInvoiceCount() : 0L)
+                    .overdueCount(bucket.getOverdueCount() != null ? bucket.getOverdueCount() : 0L)
+                    .build();
+            rows.add(row);
+
+            totals.setCurrentAmount(totals.getCurrentAmount().add(row.getCurrentAmount()));
+            totals.setDays0To30(totals.getDays0To30().add(row.getDays0To30()));
+            totals.setDays31To60(totals.getDays31To60().add(row.getDays31To60()));
+            totals.setDays61To90(totals.getDays61To90().add(row.getDays61To90()));
+            totals.setOver90(totals.getOver90().add(row.getOver90()));
+            totals.setTotalAmount(totals.getTotalAmount().add(row.getTotalAmount()));
+            totals.setInvoiceCount(totals.getInvoiceCount() + row.getInvoiceCount());
+            totals.setOverdueCount(totals.getOverdueCount() + row.getOverdueCount());
+        }
+        rows.sort(Comparator.comparing(AgingRowDTO::getTotalAmount).reversed());
+
+        log.debug("Built {} aging report as of {}: {} parties", partyType, asOf, rows.size());
+        return AgingReportDTO.builder()
+                .asOfDate(asOf)
+                .partyType(partyType)
+                .totals(totals)
+                .rows(rows)
+                .build();
+    }
+
+    private AgingInvoiceDTO toAgingInvoice(ARInvoice invoice, LocalDate asOf) {
+        Customer customer = invoice.getCustomer();
+        return AgingInvoiceDTO.builder()
+                .invoiceId(invoice.getArInvoiceId())
+                .invoiceNo(invoice.getInvoiceNo())
+                .partyId(customer != null ? customer.getCustomerId() : null)
+                .partyCode(customer != null ? customer.getCustomerCode() : null)
+                .partyName(customer != null ? customer.getFirstName() + " " + customer.getLastName() : null)
+                .invoiceDate(invoice.getInvoiceDate())
+                .dueDate(invoice.getDueDate())
+                .totalAmount(invoice.getTotalAmount())
+                .balanceAmount(invoice.getBalanceAmount())
+                .status(invoice.getStatus() != null ? invoice.getStatus().name() : null)
+                .daysOverdue(daysOverdue(invoice.getDueDate(), asOf))
+                .bucket(bucketOf(invoice.getDueDate(), asOf))
+                .build();
+    }
+
+    private AgingInvoiceDTO toAgingInvoice(APInvoice invoice, LocalDate asOf) {
+        Vendor vendor = invoice.getVendor();
+        return AgingInvoiceDTO.builder()
+                .invoiceId(invoice.getApInvoiceId())
+                .invoiceNo(invoice.getInvoiceNo())
+                .partyId(vendor != null ? vendor.getVendorId() : null)
+                .partyCode(vendor != null ? vendor.getVendorCode() : null)
+                .partyName(vendor != null ? vendor.getName() : null)
+                .invoiceDate(invoice.getInvoiceDate())
+                .dueDate(invoice.getDueDate())
+                .totalAmount(invoice.getTotalAmount())
+                .balanceAmount(invoice.getBalanceAmount())
+                .status(invoice.getStatus() != null ? invoice.getStatus().name() : null)
+                .daysOverdue(daysOverdue(invoice.getDueDate(), asOf))
+                .bucket(bucketOf(invoice.getDueDate(), asOf))
+                .build();
+    }
+
+    private Integer daysOverdue(LocalDate dueDate, LocalDate asOf) {
+        return dueDate != null ? (int) ChronoUnit.DAYS.between(dueDate, asOf) : null;
+    }
+
+    /**
+     * Cùng quy tắc với các câu SUM(CASE ...) trong repository.
+     */
+    static AgingBucket bucketOf(LocalDate dueDate, LocalDate asOf) {
+        if (dueDate == null || !dueDate.isBefore(asOf)) {
+            return AgingBucket.Current;
+        }
+        if (!dueDate.isBefore(asOf.minusDays(30))) {
+            return AgingBucket.Days0To30;
+        }
+        if (!dueDate.isBefore(asOf.minusDays(60))) {
+            return AgingBucket.Days31To60;
+        }
+        if (!dueDate.isBefore(asOf.minusDays(90))) {
+            return AgingBucket.Days61To90;
+        }
+        return AgingBucket.Over90;
+    }
+
+    private BigDecimal nonNull(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    /**
+     * Khoảng hạn thanh toán của một nhóm tuổi nợ: from <= dueDate < before (null = không giới hạn).
+     */
+    private record DueRange(LocalDate from, LocalDate before, boolean includeNoDueDate) {
+
+        static DueRange of(AgingBucket bucket, LocalDate asOf) {
+            if (bucket == null) {
+                return new DueRange(null, null, true);
+            }
+            return switch (bucket) {
+                case Current -> new DueRange(asOf, null, true);
+                case Days0To30 -> new DueRange(asOf.minusDays(30), asOf, false);
+                case Days31To60 -> new DueRange(asOf.minusDays(60), asOf.minusDays(30), false);
+                case Days61To90 -> new DueRange(asOf.minusDays(90), asOf.minusDays(60), false);
+                case Over90 -> new DueRange(null, asOf.minusDays(90), false);
+            };
+        }
+    }
+
+    /**
+     * Cache báo cáo theo ngày đối chiếu. Key gồm cả "thế hệ" dữ liệu: mỗi lần công nợ thay đổi thì tăng thế hệ,
+     * nên một báo cáo đang tính dở từ dữ liệu cũ không thể ghi đè vào cache của dữ liệu mới.
+     */
+    private static final class AgingCache {
+
+        private final String name;
+        private final AtomicLong generation = new AtomicLong();
+        private final Cache<CacheKey, AgingReportDTO> cache;
+
+        AgingCache(String name, Duration ttl) {
+            this.name = name;
+            this.cache = Caffeine.newBuilder()
+                    .maximumSize(64)
+                    .expireAfterWrite(ttl)
+                    .build();
+        }
+
+        AgingReportDTO get(LocalDate asOf, Function<LocalDate, AgingReportDTO> loader) {
+            return cache.get(new CacheKey(asOf, generation.get()), key -> loader.apply(key.asOf()));
+        }
+
+        void invalidateAfterCommit() {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                invalidate();
+                return;
+            }
+            // Mỗi transaction chỉ đăng ký một lần dù có nhiều hóa đơn / thanh toán
+            if (TransactionSynchronizationManager.hasResource(this)) {
+                return;
+            }
+            TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(AgingCache.this);
+                }
+            });
+        }
+
+        private void invalidate() {
+            generation.incrementAndGet();
+            cache.invalidateAll();
+            log.debug("Invalidated {} aging cache", name);
+        }
+    }
+
+    private record CacheKey(LocalDate asOf, long generation) {
+    }
+}
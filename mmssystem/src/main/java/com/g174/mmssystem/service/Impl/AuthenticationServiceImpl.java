@@ -7,6 +7,7 @@ import com.g174.mmssystem.exception.InvalidCredentialsException;
 import com.g174.mmssystem.exception.ResourceNotFoundException;
 import com.g174.mmssystem.exception.TokenExpiredException;
 import com.g174.mmssystem.repository.*;
+import com.g174.mmssystem.service.AuthUserDetails;
 import com.g174.mmssystem.service.IService.IAuthenticationService;
 import com.g174.mmssystem.until.JwtService;
 import lombok.RequiredArgsConstructor;
@@ -38,8 +39,11 @@ public class AuthenticationServiceImpl implements IAuthenticationService {
     private final JwtService jwtService;
     private final PasswordEncoder passwordEncoder;
 
+    /**
+     * Không mở transaction bao ngoài: kiểm tra BCrypt có thể phải chờ trong hàng đợi (BoundedPasswordEncoder),
+     * không giữ connection DB trong lúc chờ. User được nạp một lần (fetch join) khi xác thực và dùng lại để cấp token.
+     */
     @Override
-    @Transactional
     public LoginResponseDTO login(LoginRequestDTO loginRequest) {
         try {
             Authentication authentication = authenticationManager.authenticate(
@@ -49,7 +53,9 @@ public class AuthenticationServiceImpl implements IAuthenticationService {
                     )
             );
 
-            User user = userRepository.findByEmail(loginRequest.getEmail())
+            User user = authentication.getPrincipal() instanceof AuthUserDetails details
+                    ? details.getUser()
+                    : userRepository.findByEmailWithRelations(loginRequest.getEmail())
                     .filter(u -> u.getDeletedAt() == null)
                     .orElseThrow(() -> new InvalidCredentialsException("Email hoặc mật khẩu không chính xác"));
 
@@ -57,8 +63,9 @@ public class AuthenticationServiceImpl implements IAuthenticationService {
                 throw new InvalidCredentialsException("Tài khoản đã bị vô hiệu hóa");
             }
 
-            user.setLastLogin(Instant.now());
-            userRepository.save(user);
+            Instant loginAt = Instant.now();
+            userRepository.updateLastLogin(user.getId(), loginAt);
+            user.setLastLogin(loginAt);
 
             String accessToken = jwtService.generateAccessToken(user);
             String refreshToken = jwtService.generateRefreshToken(user);
@@ -96,7 +103,7 @@ public class AuthenticationServiceImpl implements IAuthenticationService {
 
         String email = jwtService.extractEmail(refreshToken);
 
-        User user = userRepository.findByEmail(email)
+        User user = userRepository.findByEmailWithRelations(email)
                 .filter(u -> u.getDeletedAt() == null)
                 .filter(u -> u.getStatus() == User.UserStatus.Active)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy người dùng hoặc tài khoản không hoạt động"));
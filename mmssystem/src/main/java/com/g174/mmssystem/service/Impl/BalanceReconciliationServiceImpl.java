@@ -0,0 +1,385 @@
+package com.g174.mmssystem.service.Impl;
+
+import com.g174.mmssystem.dto.responseDTO.BalanceDriftDTO;
+import com.g174.mmssystem.dto.responseDTO.BalanceReconciliationReportDTO;
+import com.g174.mmssystem.dto.responseDTO.PartyAmountProjection;
+import com.g174.mmssystem.dto.responseDTO.PartyBalanceProjection;
+import com.g174.mmssystem.entity.CustomerBalance;
+import com.g174.mmssystem.entity.VendorBalance;
+import com.g174.mmssystem.repository.APInvoiceRepository;
+import com.g174.mmssystem.repository.APPaymentRepository;
+import com.g174.mmssystem.repository.ARInvoiceRepository;
+import com.g174.mmssystem.repository.ARPaymentRepository;
+import com.g174.mmssystem.repository.CreditNoteRepository;
+import com.g174.mmssystem.repository.CustomerBalanceRepository;
+import com.g174.mmssystem.repository.VendorBalanceRepository;
+import com.g174.mmssystem.service.IService.IBalanceReconciliationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+
+/**
+ * Đối soát công nợ toàn hệ thống:
+ * - Lượt quét: tính tổng hóa đơn / thanh toán / Credit Note theo KH, NCC bằng vài query GROUP BY (không duyệt từng
+ *   chứng từ) và so với balance đang lưu để tìm KH/NCC có thể lệch. Các query này không cùng snapshot nên chứng từ
+ *   ghi nhận giữa chừng có thể trông như lệch; kết quả chỉ dùng để chọn KH/NCC cần kiểm tra lại.
+ * - Kiểm tra lại theo từng lô trên ForkJoinPool riêng, mỗi lô một transaction: khóa các dòng balance (FOR UPDATE)
+ *   trước, rồi mới đọc tổng chứng từ của đúng các KH/NCC đó. Mọi giao dịch ghi nhận đều cập nhật dòng balance trong
+ *   cùng transaction với chứng từ, nên giao dịch đã commit trước khi khóa được thấy đủ cả hai phía, còn giao dịch chưa
+ *   commit phải chờ lô commit (chứng từ của nó chưa được thấy). Transaction dùng READ_COMMITTED để mỗi câu đọc thấy
+ *   dữ liệu mới nhất sau khi đã có khóa; với REPEATABLE_READ một số database lấy snapshot từ đầu transaction và báo lỗi
+ *   khi khóa dòng vừa được giao dịch khác commit.
+ *   dryRun không khóa mà đọc trong một snapshot REPEATABLE_READ chỉ đọc, cũng cho balance và chứng từ khớp nhau.
+ * - Chỉ chỗ lệch còn lại sau khi kiểm tra lại mới được báo cáo / ghi trong chính transaction đó, mỗi lô một JDBC batch.
+ */
+@Service
+@Slf4j
+public class BalanceReconciliationServiceImpl implements IBalanceReconciliationService {
+
+    private static final String CUSTOMER = "Customer";
+    private static final String VENDOR = "Vendor";
+    private static final int CHUNK_SIZE = 500;
+    private static final int MAX_REPORTED_DRIFTS = 500;
+    // Giới hạn số lô chạy song song để không chiếm hết connection pool
+    private static final int MAX_PARALLELISM = 4;
+    // Lô bị chọn làm nạn nhân deadlock / hết thời gian chờ khóa thì chạy lại
+    private static final int MAX_CHUNK_ATTEMPTS = 3;
+
+    private final ARInvoiceRepository arInvoiceRepository;
+    private final ARPaymentRepository arPaymentRepository;
+    private final CreditNoteRepository creditNoteRepository;
+    private final APInvoiceRepository apInvoiceRepository;
+    private final APPaymentRepository apPaymentRepository;
+    private final CustomerBalanceRepository customerBalanceRepository;
+    private final VendorBalanceRepository vendorBalanceRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate lockingTransaction;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public BalanceReconciliationServiceImpl(ARInvoiceRepository arInvoiceRepository,
+                                            ARPaymentRepository arPaymentRepository,
+                                            CreditNoteRepository creditNoteRepository,
+                                            APInvoiceRepository apInvoiceRepository,
+                                            APPaymentRepository apPaymentRepository,
+                                            CustomerBalanceRepository customerBalanceRepository,
+                                            VendorBalanceRepository vendorBalanceRepository,
+                                            JdbcTemplate jdbcTemplate,
+                                            PlatformTransactionManager transactionManager) {
+        this.arInvoiceRepository = arInvoiceRepository;
+        this.arPaymentRepository = arPaymentRepository;
+        this.creditNoteRepository = creditNoteRepository;
+        this.apInvoiceRepository = apInvoiceRepository;
+        this.apPaymentRepository = apPaymentRepository;
+        this.customerBalanceRepository = customerBalanceRepository;
+        this.vendorBalanceRepository = vendorBalanceRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.lockingTransaction = new TransactionTemplate(transactionManager);
+        this.lockingTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @Override
+    public BalanceReconciliationReportDTO reconcileAll(boolean dryRun) {
+        Instant startedAt = Instant.now();
+        log.info("Starting balance reconciliation (dryRun={})", dryRun);
+
+        // Tổng theo chứng từ: [invoiced, paid, creditNote]
+        Map<Integer, BigDecimal[]> expectedCustomers = new HashMap<>();
+        merge(expectedCustomers, arInvoiceRepository.sumActiveTotalByCustomer(), 0);
+        merge(expectedCustomers, arPaymentRepository.sumPaidByCustomer(), 1);
+        merge(expectedCustomers, creditNoteRepository.sumAppliedByCustomer(
+                CustomerBalanceServiceImpl.APPLIED_CREDIT_NOTE_STATUSES), 2);
+
+        Map<Integer, BigDecimal[]> expectedVendors = new HashMap<>();
+        merge(expectedVendors, apInvoiceRepository.sumActiveTotalByVendor(), 0);
+        merge(expectedVendors, apPaymentRepository.sumPaidByVendor(), 1);
+
+        PartyResult customers = reconcileParties(CUSTOMER, expectedCustomers,
+                customerBalanceRepository.findAllSnapshots(), dryRun, this::recheckCustomers);
+        PartyResult vendors = reconcileParties(VENDOR, expectedVendors,
+                vendorBalanceRepository.findAllSnapshots(), dryRun, this::recheckVendors);
+
+        List<BalanceDriftDTO> drifts = new ArrayList<>(customers.drifts);
+        drifts.addAll(vendors.drifts);
+        BigDecimal totalOutstandingDrift = drifts.stream()
+                .map(d -> d.getExpectedOutstanding().subtract(d.getActualOutstanding()).abs())
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        drifts.sort(Comparator.comparing(
+                (BalanceDriftDTO d) -> d.getExpectedOutstanding().subtract(d.getActualOutstanding()).abs()).reversed());
+        boolean truncated = drifts.size() > MAX_REPORTED_DRIFTS;
+
+        BalanceReconciliationReportDTO report = BalanceReconciliationReportDTO.builder()
+                .startedAt(startedAt)
+                .durationMs(Duration.between(startedAt, Instant.now()).toMillis())
+                .dryRun(dryRun)
+                .customersChecked(customers.checked)
+                .customersCorrected(dryRun ? 0 : customers.drifts.size())
+                .vendorsChecked(vendors.checked)
+                .vendorsCorrected(dryRun ? 0 : vendors.drifts.size())
+                .totalOutstandingDrift(totalOutstandingDrift)
+                .drifts(truncated ? new ArrayList<>(drifts.subList(0, MAX_REPORTED_DRIFTS)) : drifts)
+                .driftsTruncated(truncated)
+                .build();
+
+        log.info("Balance reconciliation finished in {} ms: customers {}/{} drifted, vendors {}/{} drifted, outstanding drift {}",
+                report.getDurationMs(), customers.drifts.size(), customers.checked,
+                vendors.drifts.size(), vendors.checked, totalOutstandingDrift);
+        return report;
+    }
+
+    private PartyResult reconcileParties(String partyType,
+                                         Map<Integer, BigDecimal[]> expected,
+                                         List<PartyBalanceProjection> snapshots,
+                                         boolean dryRun,
+                                         BiFunction<List<BalanceDriftDTO>, Boolean, List<BalanceDriftDTO>> recheck) {
+        Map<Integer, PartyBalanceProjection> actual = new HashMap<>(snapshots.size() * 2);
+        for (PartyBalanceProjection snapshot : snapshots) {
+            actual.put(snapshot.getPartyId(), snapshot);
+        }
+
+        TreeSet<Integer> allPartyIds = new TreeSet<>(expected.keySet());
+        allPartyIds.addAll(actual.keySet());
+        List<Integer> partyIds = new ArrayList<>(allPartyIds);
+        List<List<Integer>> chunks = new ArrayList<>();
+        for (int i = 0; i < partyIds.size(); i += CHUNK_SIZE) {
+            chunks.add(partyIds.subList(i, Math.min(i + CHUNK_SIZE, partyIds.size())));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Math.min(MAX_PARALLELISM, Runtime.getRuntime().availableProcessors()));
+        try {
+            List<BalanceDriftDTO> drifts = pool.submit(() -> chunks.parallelStream()
+                            .map(chunk -> processChunk(partyType, chunk, expected, actual, dryRun, recheck))
+                            .flatMap(List::stream)
+                            .toList())
+                    .get();
+            return new PartyResult(partyIds.size(), drifts);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Đối soát công nợ bị gián đoạn", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Đối soát công nợ " + partyType + " thất bại: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * So sánh một lô KH/NCC theo lượt quét, rồi kiểm tra lại (và ghi nếu không phải dryRun) những KH/NCC có vẻ lệch
+     * trong một transaction nhất quán.
+     */
+    private List<BalanceDriftDTO> processChunk(String partyType,
+                                               List<Integer> partyIds,
+                                               Map<Integer, BigDecimal[]> expected,
+                                               Map<Integer, PartyBalanceProjection> actual,
+                                               boolean dryRun,
+                                               BiFunction<List<BalanceDriftDTO>, Boolean, List<BalanceDriftDTO>> recheck) {
+        List<BalanceDriftDTO> candidates = new ArrayList<>();
+        for (Integer partyId : partyIds) {
+            BalanceDriftDTO drift = compare(partyType, partyId, expected.get(partyId), toTotals(actual.get(partyId)));
+            if (drift != null) {
+                candidates.add(drift);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+
+        TransactionTemplate transaction = dryRun ? readOnlyTransaction : lockingTransaction;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transaction.execute(status -> recheck.apply(candidates, dryRun));
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt >= MAX_CHUNK_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("Balance reconciliation chunk of {} {} hit a lock conflict, retrying ({}/{})",
+                        candidates.size(), partyType, attempt, MAX_CHUNK_ATTEMPTS);
+            }
+        }
+    }
+
+    /**
+     * Chạy trong transaction của lô: khóa balance của các KH có vẻ lệch, đọc lại tổng chứng từ của đúng các KH đó
+     * và chỉ sửa chỗ còn lệch.
+     */
+    private List<BalanceDriftDTO> recheckCustomers(List<BalanceDriftDTO> candidates, boolean dryRun) {
+        List<Integer> customerIds = candidates.stream().map(BalanceDriftDTO::getPartyId).sorted().toList();
+
+        Map<Integer, Totals> actual = new HashMap<>();
+        if (dryRun) {
+            customerBalanceRepository.findSnapshotsByCustomerIds(customerIds)
+                    .forEach(snapshot -> actual.put(snapshot.getPartyId(), toTotals(snapshot)));
+        } else {
+            // Dòng balance còn thiếu được tạo trước để cũng bị khóa như các dòng khác
+            candidates.stream()
+                    .filter(BalanceDriftDTO::isMissingBalance)
+                    .forEach(drift -> customerBalanceRepository.insertIfAbsent(drift.getPartyId()));
+            for (CustomerBalance balance : customerBalanceRepository.lockByCustomerIds(customerIds)) {
+                actual.put(balance.getCustomer().getCustomerId(), new Totals(balance.getTotalInvoiced(),
+                        balance.getTotalPaid(), balance.getTotalCreditNote(), balance.getOutstandingBalance()));
+            }
+        }
+
+        Map<Integer, BigDecimal[]> expected = new HashMap<>();
+        merge(expected, arInvoiceRepository.sumActiveTotalByCustomerIds(customerIds), 0);
+        merge(expected, arPaymentRepository.sumPaidByCustomerIds(customerIds), 1);
+        merge(expected, creditNoteRepository.sumAppliedByCustomerIds(customerIds,
+                CustomerBalanceServiceImpl.APPLIED_CREDIT_NOTE_STATUSES), 2);
+
+        List<BalanceDriftDTO> drifts = new ArrayList<>();
+        for (Integer customerId : customerIds) {
+            BalanceDriftDTO drift = compare(CUSTOMER, customerId, expected.get(customerId), actual.get(customerId));
+            if (drift != null) {
+                drifts.add(drift);
+            }
+        }
+        if (!dryRun && !drifts.isEmpty()) {
+            writeCustomerCorrections(drifts);
+        }
+        return drifts;
+    }
+
+    private List<BalanceDriftDTO> recheckVendors(List<BalanceDriftDTO> candidates, boolean dryRun) {
+        List<Integer> vendorIds = candidates.stream().map(BalanceDriftDTO::getPartyId).sorted().toList();
+
+        Map<Integer, Totals> actual = new HashMap<>();
+        if (dryRun) {
+            vendorBalanceRepository.findSnapshotsByVendorIds(vendorIds)
+                    .forEach(snapshot -> actual.put(snapshot.getPartyId(), toTotals(snapshot)));
+        } else {
+            candidates.stream()
+                    .filter(BalanceDriftDTO::isMissingBalance)
+                    .forEach(drift -> vendorBalanceRepository.insertIfAbsent(drift.getPartyId()));
+            for (VendorBalance balance : vendorBalanceRepository.lockByVendorIds(vendorIds)) {
+                actual.put(balance.getVendor().getVendorId(), new Totals(balance.getTotalInvoiced(),
+                        balance.getTotalPaid(), BigDecimal.ZERO, balance.getOutstandingBalance()));
+            }
+        }
+
+        Map<Integer, BigDecimal[]> expected = new HashMap<>();
+        merge(expected, apInvoiceRepository.sumActiveTotalByVendorIds(vendorIds), 0);
+        merge(expected, apPaymentRepository.sumPaidByVendorIds(vendorIds), 1);
+
+        List<BalanceDriftDTO> drifts = new ArrayList<>();
+        for (Integer vendorId : vendorIds) {
+            BalanceDriftDTO drift = compare(VENDOR, vendorId, expected.get(vendorId), actual.get(vendorId));
+            if (drift != null) {
+                drifts.add(drift);
+            }
+        }
+        if (!dryRun && !drifts.isEmpty()) {
+            writeVendorCorrections(drifts);
+        }
+        return drifts;
+    }
+
+    private BalanceDriftDTO compare(String partyType, Integer partyId,
+                                    BigDecimal[] expectedTotals, Totals snapshot) {
+        BigDecimal expectedInvoiced = expectedTotals != null ? expectedTotals[0] : BigDecimal.ZERO;
+        BigDecimal expectedPaid = expectedTotals != null ? expectedTotals[1] : BigDecimal.ZERO;
+        BigDecimal expectedCreditNote = expectedTotals != null ? expectedTotals[2] : BigDecimal.ZERO;
+        BigDecimal expectedOutstanding = expectedInvoiced.subtract(expectedPaid).subtract(expectedCreditNote)
+                .max(BigDecimal.ZERO);
+
+        BigDecimal actualInvoiced = snapshot != null ? nonNull(snapshot.invoiced()) : BigDecimal.ZERO;
+        BigDecimal actualPaid = snapshot != null ? nonNull(snapshot.paid()) : BigDecimal.ZERO;
+        BigDecimal actualCreditNote = snapshot != null ? nonNull(snapshot.creditNote()) : BigDecimal.ZERO;
+        BigDecimal actualOutstanding = snapshot != null ? nonNull(snapshot.outstanding()) : BigDecimal.ZERO;
+
+        boolean matches = expectedInvoiced.compareTo(actualInvoiced) == 0
+                && expectedPaid.compareTo(actualPaid) == 0
+                && expectedCreditNote.compareTo(actualCreditNote) == 0
+                && expectedOutstanding.compareTo(actualOutstanding) == 0;
+        // KH/NCC chưa có chứng từ và chưa có balance thì không cần tạo dòng
+        if (matches && (snapshot != null || expectedTotals == null)) {
+            return null;
+        }
+
+        return BalanceDriftDTO.builder()
+                .partyType(partyType)
+                .partyId(partyId)
+                .expectedInvoiced(expectedInvoiced)
+                .actualInvoiced(actualInvoiced)
+                .expectedPaid(expectedPaid)
+                .actualPaid(actualPaid)
+                .expectedCreditNote(expectedCreditNote)
+                .actualCreditNote(actualCreditNote)
+                .expectedOutstanding(expectedOutstanding)
+                .actualOutstanding(actualOutstanding)
+                .missingBalance(snapshot == null)
+                .build();
+    }
+
+    /**
+     * Ghi giá trị đúng của cả lô trong một JDBC batch, trong transaction đang giữ khóa các dòng balance
+     * (dòng còn thiếu đã được tạo trước khi khóa). Dòng đang bị khóa nên ghi thẳng giá trị thay vì cộng delta.
+     * Trên MySQL cần rewriteBatchedStatements=true trong URL để driver gửi cả batch trong một lần.
+     */
+    private void writeCustomerCorrections(List<BalanceDriftDTO> drifts) {
+        jdbcTemplate.batchUpdate("UPDATE customer_balances SET total_invoiced = ?, total_paid = ?, " +
+                        "total_credit_note = ?, outstanding_balance = ?, last_updated_at = CURRENT_TIMESTAMP " +
+                        "WHERE customer_id = ?",
+                drifts, drifts.size(), (ps, drift) -> {
+                    ps.setBigDecimal(1, drift.getExpectedInvoiced());
+                    ps.setBigDecimal(2, drift.getExpectedPaid());
+                    ps.setBigDecimal(3, drift.getExpectedCreditNote());
+                    ps.setBigDecimal(4, drift.getExpectedOutstanding());
+                    ps.setInt(5, drift.getPartyId());
+                });
+    }
+
+    private void writeVendorCorrections(List<BalanceDriftDTO> drifts) {
+        jdbcTemplate.batchUpdate("UPDATE vendor_balances SET total_invoiced = ?, total_paid = ?, " +
+                        "outstanding_balance = ?, last_updated_at = CURRENT_TIMESTAMP WHERE vendor_id = ?",
+                drifts, drifts.size(), (ps, drift) -> {
+                    ps.setBigDecimal(1, drift.getExpectedInvoiced());
+                    ps.setBigDecimal(2, drift.getExpectedPaid());
+                    ps.setBigDecimal(3, drift.getExpectedOutstanding());
+                    ps.setInt(4, drift.getPartyId());
+                });
+    }
+
+    private static void merge(Map<Integer, BigDecimal[]> totals, List<PartyAmountProjection> rows, int index) {
+        for (PartyAmountProjection row : rows) {
+            if (row.getPartyId() == null) {
+                continue;
+            }
+            totals.computeIfAbsent(row.getPartyId(),
+                    id -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO})[index] = nonNull(row.getAmount());
+        }
+    }
+
+    private static BigDecimal nonNull(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    private static Totals toTotals(PartyBalanceProjection snapshot) {
+        return snapshot == null ? null : new Totals(snapshot.getTotalInvoiced(), snapshot.getTotalPaid(),
+                snapshot.getTotalCreditNote(), snapshot.getOutstandingBalance());
+    }
+
+    private record Totals(BigDecimal invoiced, BigDecimal paid, BigDecimal creditNote, BigDecimal outstanding) {
+    }
+
+    private record PartyResult(int checked, List<BalanceDriftDTO> drifts) {
+    }
+}
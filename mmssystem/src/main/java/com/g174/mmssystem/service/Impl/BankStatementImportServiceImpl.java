@@ -0,0 +1,538 @@
+package com.g174.mmssystem.service.Impl;
+
+import com.g174.mmssystem.dto.responseDTO.BankStatementExceptionDTO;
+import com.g174.mmssystem.dto.responseDTO.BankStatementImportResultDTO;
+import com.g174.mmssystem.dto.responseDTO.OpenInvoiceProjection;
+import com.g174.mmssystem.entity.APInvoice;
+import com.g174.mmssystem.entity.APPayment;
+import com.g174.mmssystem.entity.ARInvoice;
+import com.g174.mmssystem.entity.ARPayment;
+import com.g174.mmssystem.entity.PurchaseOrder;
+import com.g174.mmssystem.enums.PurchaseOrderStatus;
+import com.g174.mmssystem.repository.APInvoiceRepository;
+import com.g174.mmssystem.repository.APPaymentRepository;
+import com.g174.mmssystem.repository.ARInvoiceRepository;
+import com.g174.mmssystem.repository.ARPaymentRepository;
+import com.g174.mmssystem.repository.PurchaseOrderRepository;
+import com.g174.mmssystem.service.BankStatementCsvReader;
+import com.g174.mmssystem.service.BankStatementCsvReader.StatementLine;
+import com.g174.mmssystem.service.IService.IBankStatementImportService;
+import com.g174.mmssystem.service.IService.ICustomerBalanceService;
+import com.g174.mmssystem.service.IService.IDebtSummaryService;
+import com.g174.mmssystem.service.IService.IVendorBalanceService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Import sao kê ngân hàng:
+ * - Đọc CSV theo từng lô BATCH_SIZE dòng, không giữ cả file trong bộ nhớ
+ * - Khớp với hóa đơn còn nợ qua index trong bộ nhớ: số hóa đơn -> mã KH/NCC + số tiền -> số tiền duy nhất
+ * - Mỗi lô ghi thanh toán, cập nhật hóa đơn và công nợ trong một transaction; hóa đơn được đọc lại
+ *   với khóa ghi nên thanh toán song song không làm vượt số còn nợ
+ * - Chống import trùng theo số tham chiếu và fingerprint dòng sao kê (cho cả dòng không có tham chiếu)
+ */
+@Service
+@Slf4j
+public class BankStatementImportServiceImpl implements IBankStatementImportService {
+
+    private static final int BATCH_SIZE = 200;
+    private static final int MAX_REPORTED_EXCEPTIONS = 1000;
+    private static final int MAX_CANDIDATES_IN_MESSAGE = 5;
+    private static final String PAYMENT_METHOD = "Bank Transfer";
+
+    static final String REASON_INVALID_LINE = "INVALID_LINE";
+    static final String REASON_UNMATCHED = "UNMATCHED";
+    static final String REASON_AMBIGUOUS = "AMBIGUOUS";
+    static final String REASON_OVERPAYMENT = "OVERPAYMENT";
+    static final String REASON_DUPLICATE = "DUPLICATE";
+    static final String REASON_POSTING_FAILED = "POSTING_FAILED";
+
+    private final ARInvoiceRepository arInvoiceRepository;
+    private final ARPaymentRepository arPaymentRepository;
+    private final APInvoiceRepository apInvoiceRepository;
+    private final APPaymentRepository apPaymentRepository;
+    private final PurchaseOrderRepository purchaseOrderRepository;
+    private final ICustomerBalanceService customerBalanceService;
+    private final IVendorBalanceService vendorBalanceService;
+    private final IDebtSummaryService debtSummaryService;
+    private final TransactionTemplate transactionTemplate;
+
+    public BankStatementImportServiceImpl(ARInvoiceRepository arInvoiceRepository,
+                                          ARPaymentRepository arPaymentRepository,
+                                          APInvoiceRepository apInvoiceRepository,
+                                          APPaymentRepository apPaymentRepository,
+                                          PurchaseOrderRepository purchaseOrderRepository,
+                                          ICustomerBalanceService customerBalanceService,
+                                          IVendorBalanceService vendorBalanceService,
+                                          IDebtSummaryService debtSummaryService,
+                                          PlatformTransactionManager transactionManager) {
+        this.arInvoiceRepository = arInvoiceRepository;
+        this.arPaymentRepository = arPaymentRepository;
+        this.apInvoiceRepository = apInvoiceRepository;
+        this.apPaymentRepository = apPaymentRepository;
+        this.purchaseOrderRepository = purchaseOrderRepository;
+        this.customerBalanceService = customerBalanceService;
+        this.vendorBalanceService = vendorBalanceService;
+        this.debtSummaryService = debtSummaryService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public BankStatementImportResultDTO importStatement(InputStream csv, boolean dryRun) {
+        long startedAt = System.currentTimeMillis();
+        ImportState state = new ImportState();
+        InvoiceIndex receivables = InvoiceIndex.build(arInvoiceRepository.findOpenInvoiceKeys());
+        InvoiceIndex payables = InvoiceIndex.build(apInvoiceRepository.findOpenInvoiceKeys());
+        log.info("Importing bank statement (dryRun={}) against {} open AR and {} open AP invoices",
+                dryRun, receivables.size(), payables.size());
+
+        try (BankStatementCsvReader reader = new BankStatementCsvReader(csv)) {
+            List<StatementLine> batch = new ArrayList<>(BATCH_SIZE);
+            StatementLine line;
+            while ((line = reader.next()) != null) {
+                state.totalLines++;
+                if (!line.isValid()) {
+                    state.addException(line, REASON_INVALID_LINE, line.error(), null);
+                    continue;
+                }
+                batch.add(line);
+                if (batch.size() == BATCH_SIZE) {
+                    processBatch(batch, receivables, payables, state, dryRun);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                processBatch(batch, receivables, payables, state, dryRun);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Không đọc được file sao kê: " + e.getMessage(), e);
+        }
+
+        log.info("Bank statement imported: {} lines, {} AR payments, {} AP payments, {} exceptions",
+                state.totalLines, state.receivablePayments, state.payablePayments, state.exceptionCount);
+        return BankStatementImportResultDTO.builder()
+                .durationMs(System.currentTimeMillis() - startedAt)
+                .totalLines(state.totalLines)
+                .receivablePayments(state.receivablePayments)
+                .receivableAmount(state.receivableAmount)
+                .payablePayments(state.payablePayments)
+                .payableAmount(state.payableAmount)
+                .exceptionCount(state.exceptionCount)
+                .exceptions(state.exceptions)
+                .exceptionsTruncated(state.exceptionCount > state.exceptions.size())
+                .build();
+    }
+
+    private void processBatch(List<StatementLine> batch, InvoiceIndex receivables, InvoiceIndex payables,
+                              ImportState state, boolean dryRun) {
+        List<StatementLine> incoming = batch.stream().filter(l -> l.amount().signum() > 0).toList();
+        List<StatementLine> outgoing = batch.stream().filter(l -> l.amount().signum() < 0).toList();
+
+        List<Match> arMatches = match(removeDuplicates(incoming, arPaymentRepository::findExistingReferenceNos,
+                arPaymentRepository::findExistingStatementFingerprints, state), receivables, state);
+        List<Match> apMatches = match(removeDuplicates(outgoing, apPaymentRepository::findExistingReferenceNos,
+                apPaymentRepository::findExistingStatementFingerprints, state), payables, state);
+        if (dryRun) {
+            state.countReceivables(arMatches);
+            state.countPayables(apMatches);
+            return;
+        }
+        if (!arMatches.isEmpty()) {
+            post(arMatches, receivables, state, this::postReceivables, state::countReceivables);
+        }
+        if (!apMatches.isEmpty()) {
+            post(apMatches, payables, state, this::postPayables, state::countPayables);
+        }
+    }
+
+    /**
+     * Bỏ các dòng có số tham chiếu đã được ghi nhận (import lại cùng file) hoặc lặp lại trong cùng lô,
+     * và các dòng có fingerprint đã được ghi nhận (import lại file không có cột tham chiếu).
+     */
+    private List<StatementLine> removeDuplicates(List<StatementLine> lines,
+                                                 Function<Set<String>, List<String>> existingReferenceLookup,
+                                                 Function<Set<String>, List<String>> existingFingerprintLookup,
+                                                 ImportState state) {
+        Set<String> references = lines.stream()
+                .map(StatementLine::referenceNo)
+                .filter(Objects::nonNull)
+                .map(BankStatementImportServiceImpl::truncateReference)
+                .collect(Collectors.toSet());
+        Set<String> existing = references.isEmpty() ? Set.of() : new HashSet<>(existingReferenceLookup.apply(references));
+        Set<String> fingerprints = lines.stream().map(StatementLine::fingerprint).collect(Collectors.toSet());
+        Set<String> existingFingerprints = fingerprints.isEmpty()
+                ? Set.of() : new HashSet<>(existingFingerprintLookup.apply(fingerprints));
+
+        Set<String> seen = new HashSet<>();
+        List<StatementLine> unique = new ArrayList<>(lines.size());
+        for (StatementLine line : lines) {
+            String reference = line.referenceNo() != null ? truncateReference(line.referenceNo()) : null;
+            if (reference != null && (existing.contains(reference) || !seen.add(reference))) {
+                state.addException(line, REASON_DUPLICATE,
+                        "Giao dịch " + reference + " đã được ghi nhận thanh toán", null);
+                continue;
+            }
+            if (existingFingerprints.contains(line.fingerprint())) {
+                state.addException(line, REASON_DUPLICATE, "Dòng sao kê này đã được import trước đó", null);
+                continue;
+            }
+            unique.add(line);
+        }
+        return unique;
+    }
+
+    private List<Match> match(List<StatementLine> lines, InvoiceIndex index, ImportState state) {
+        List<Match> matches = new ArrayList<>(lines.size());
+        for (StatementLine line : lines) {
+            BigDecimal amount = line.amount().abs();
+            List<String> keys = candidateKeys(line);
+
+            // 1. Số hóa đơn xuất hiện trong nội dung / tham chiếu
+            OpenInvoice byNumber = keys.stream().map(index.byInvoiceNo::get)
+                    .filter(Objects::nonNull)
+                    .findFirst().orElse(null);
+            if (byNumber != null) {
+                if (amount.compareTo(byNumber.remaining) > 0) {
+                    state.addException(line, REASON_OVERPAYMENT,
+                            String.format("Số tiền (%,.0f) vượt quá số tiền còn nợ (%,.0f) của hóa đơn %s",
+                                    amount, byNumber.remaining, byNumber.invoiceNo), byNumber.invoiceNo);
+                    continue;
+                }
+                matches.add(index.take(line, byNumber, amount));
+                continue;
+            }
+
+            // 2. Mã KH/NCC + đúng số tiền còn nợ (nhiều hóa đơn cùng số tiền thì trả hóa đơn cũ nhất trước)
+            String partyKey = keys.stream().filter(index.byParty::containsKey).findFirst().orElse(null);
+            if (partyKey != null) {
+                OpenInvoice byParty = index.byParty.get(partyKey).stream()
+                        .filter(inv -> inv.remaining.compareTo(amount) == 0)
+                        .min(Comparator.comparing(inv -> inv.invoiceId))
+                        .orElse(null);
+                if (byParty != null) {
+                    matches.add(index.take(line, byParty, amount));
+                } else {
+                    state.addException(line, REASON_UNMATCHED,
+                            "Không có hóa đơn của " + partyKey + " còn nợ đúng số tiền này", null);
+                }
+                continue;
+            }
+
+            // 3. Chỉ dựa vào số tiền: phải duy nhất
+            List<OpenInvoice> byAmount = index.byAmount.getOrDefault(amountKey(amount), List.of());
+            if (byAmount.size() == 1) {
+                matches.add(index.take(line, byAmount.get(0), amount));
+            } else if (byAmount.isEmpty()) {
+                state.addException(line, REASON_UNMATCHED, "Không tìm thấy hóa đơn phù hợp", null);
+            } else {
+                state.addException(line, REASON_AMBIGUOUS, byAmount.size() + " hóa đơn cùng số tiền còn nợ",
+                        byAmount.stream().limit(MAX_CANDIDATES_IN_MESSAGE)
+                                .map(inv -> inv.invoiceNo).collect(Collectors.joining(", ")));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Ghi một lô trong một transaction. Dòng bị từ chối (hóa đơn đã thay đổi) hoặc cả lô khi lỗi
+     * được trả số tiền lại cho index và báo ngoại lệ.
+     */
+    private void post(List<Match> matches, InvoiceIndex index, ImportState state,
+                      BatchPoster poster, Consumer<List<Match>> onPosted) {
+        try {
+            List<Match> rejected = new ArrayList<>();
+            List<Match> posted = transactionTemplate.execute(status -> poster.post(matches, rejected));
+            for (Match m : rejected) {
+                index.restore(m);
+                state.addException(m.line, REASON_POSTING_FAILED,
+                        "Hóa đơn " + m.invoice.invoiceNo + " đã thay đổi trong lúc import", m.invoice.invoiceNo);
+            }
+            onPosted.accept(posted);
+        } catch (RuntimeException e) {
+            log.error("Failed to post bank statement batch of {} payments: {}", matches.size(), e.getMessage());
+            for (Match m : matches) {
+                index.restore(m);
+                state.addException(m.line, REASON_POSTING_FAILED, e.getMessage(), m.invoice.invoiceNo);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface BatchPoster {
+        List<Match> post(List<Match> matches, List<Match> rejected);
+    }
+
+    private List<Match> postReceivables(List<Match> matches, List<Match> rejected) {
+        Map<Integer, ARInvoice> invoices = arInvoiceRepository.lockAllWithCustomerByIdIn(invoiceIds(matches)).stream()
+                .collect(Collectors.toMap(ARInvoice::getArInvoiceId, Function.identity()));
+        List<ARPayment> payments = new ArrayList<>(matches.size());
+        List<Match> posted = new ArrayList<>(matches.size());
+
+        for (Match m : matches) {
+            ARInvoice invoice = invoices.get(m.invoice.invoiceId);
+            // Hóa đơn có thể đã được thanh toán / hủy sau khi dựng index
+            if (invoice == null || invoice.getDeletedAt() != null
+                    || invoice.getStatus() == ARInvoice.InvoiceStatus.Paid
+                    || invoice.getStatus() == ARInvoice.InvoiceStatus.Cancelled
+                    || m.amount.compareTo(invoice.getBalanceAmount()) > 0) {
+                rejected.add(m);
+                continue;
+            }
+            ARPayment payment = new ARPayment();
+            payment.setInvoice(invoice);
+            payment.setAmount(m.amount);
+            payment.setPaymentDate(m.line.transactionDate().atStartOfDay(ZoneId.systemDefault()).toInstant());
+            payment.setMethod(PAYMENT_METHOD);
+            payment.setReferenceNo(m.line.referenceNo() != null ? truncateReference(m.line.referenceNo()) : null);
+            payment.setNotes(notesOf(m.line));
+            payment.setStatementFingerprint(m.line.fingerprint());
+            payments.add(payment);
+
+            BigDecimal newBalance = invoice.getBalanceAmount().subtract(m.amount);
+            invoice.setBalanceAmount(newBalance);
+            invoice.setStatus(newBalance.compareTo(BigDecimal.ZERO) == 0
+                    ? ARInvoice.InvoiceStatus.Paid : ARInvoice.InvoiceStatus.PartiallyPaid);
+
+            customerBalanceService.updateOnPaymentAdded(invoice.getCustomer().getCustomerId(), m.amount);
+            debtSummaryService.recordCustomer(invoice.getCustomer(), m.line.transactionDate(), BigDecimal.ZERO, m.amount);
+            posted.add(m);
+        }
+        arPaymentRepository.saveAll(payments);
+        arInvoiceRepository.saveAll(invoices.values());
+        return posted;
+    }
+
+    private List<Match> postPayables(List<Match> matches, List<Match> rejected) {
+        Map<Integer, APInvoice> invoices = apInvoiceRepository.lockAllWithVendorByIdIn(invoiceIds(matches)).stream()
+                .collect(Collectors.toMap(APInvoice::getApInvoiceId, Function.identity()));
+        List<APPayment> payments = new ArrayList<>(matches.size());
+        List<Match> posted = new ArrayList<>(matches.size());
+        LocalDateTime now = LocalDateTime.now();
+
+        for (Match m : matches) {
+            APInvoice invoice = invoices.get(m.invoice.invoiceId);
+            if (invoice == null || invoice.getDeletedAt() != null
+                    || invoice.getStatus() == APInvoice.APInvoiceStatus.Paid
+                    || m.amount.compareTo(invoice.getBalanceAmount()) > 0) {
+                rejected.add(m);
+                continue;
+            }
+            payments.add(APPayment.builder()
+                    .apInvoice(invoice)
+                    .paymentDate(m.line.transactionDate().atStartOfDay())
+                    .amount(m.amount)
+                    .method(PAYMENT_METHOD)
+                    .referenceNo(m.line.referenceNo() != null ? truncateReference(m.line.referenceNo()) : null)
+                    .notes(notesOf(m.line))
+                    .statementFingerprint(m.line.fingerprint())
+                    .createdAt(now)
+                    .build());
+
+            BigDecimal newBalance = invoice.getBalanceAmount().subtract(m.amount);
+            invoice.setBalanceAmount(newBalance);
+            invoice.setUpdatedAt(now);
+            if (newBalance.compareTo(BigDecimal.ZERO) <= 0) {
+                invoice.setStatus(APInvoice.APInvoiceStatus.Paid);
+                completePurchaseOrder(invoice.getPurchaseOrder(), now);
+            } else {
+                invoice.setStatus(APInvoice.APInvoiceStatus.Partially_Paid);
+            }
+
+            vendorBalanceService.updateOnPaymentAdded(invoice.getVendor().getVendorId(), m.amount);
+            debtSummaryService.recordVendor(invoice.getVendor(), m.line.transactionDate(), BigDecimal.ZERO, m.amount);
+            posted.add(m);
+        }
+        apPaymentRepository.saveAll(payments);
+        apInvoiceRepository.saveAll(invoices.values());
+        return posted;
+    }
+
+    // Giống APInvoiceServiceImpl.addPayment: hóa đơn trả đủ thì PO chuyển Completed
+    private void completePurchaseOrder(PurchaseOrder po, LocalDateTime now) {
+        if (po != null && po.getStatus() != PurchaseOrderStatus.Completed) {
+            po.setStatus(PurchaseOrderStatus.Completed);
+            po.setUpdatedAt(now);
+            purchaseOrderRepository.save(po);
+        }
+    }
+
+    private static Set<Integer> invoiceIds(List<Match> matches) {
+        return matches.stream().map(m -> m.invoice.invoiceId).collect(Collectors.toSet());
+    }
+
+    private static String notesOf(StatementLine line) {
+        String notes = "Import sao kê ngân hàng, dòng " + line.lineNo();
+        return line.description() != null ? notes + ": " + line.description() : notes;
+    }
+
+    private static String truncateReference(String reference) {
+        return reference.length() > 100 ? reference.substring(0, 100) : reference;
+    }
+
+    /**
+     * Các khóa có thể là số hóa đơn / mã KH, NCC: mã đối tác (nếu có cột), từng từ và từng cặp từ liền nhau
+     * trong tham chiếu + nội dung, bỏ ký tự ngăn cách ("INV 123456", "inv-123456" -> "INV123456").
+     */
+    static List<String> candidateKeys(StatementLine line) {
+        Set<String> keys = new LinkedHashSet<>();
+        if (line.partyCode() != null) {
+            keys.add(normalizeKey(line.partyCode()));
+        }
+        String text = (line.referenceNo() != null ? line.referenceNo() : "") + " "
+                + (line.description() != null ? line.description() : "");
+        String[] tokens = text.split("[\\s,;:|()\\[\\]]+");
+        String previous = null;
+        for (String token : tokens) {
+            String key = normalizeKey(token);
+            if (key.isEmpty()) {
+                continue;
+            }
+            keys.add(key);
+            if (previous != null) {
+                keys.add(previous + key);
+            }
+            previous = key;
+        }
+        return new ArrayList<>(keys);
+    }
+
+    static String normalizeKey(String value) {
+        return value.toUpperCase(Locale.ROOT).replaceAll("[^A-Z0-9]", "");
+    }
+
+    private static BigDecimal amountKey(BigDecimal amount) {
+        return amount.stripTrailingZeros();
+    }
+
+    private record Match(StatementLine line, OpenInvoice invoice, BigDecimal amount) {
+    }
+
+    private static final class OpenInvoice {
+        private final Integer invoiceId;
+        private final String invoiceNo;
+        private BigDecimal remaining;
+
+        private OpenInvoice(Integer invoiceId, String invoiceNo, BigDecimal remaining) {
+            this.invoiceId = invoiceId;
+            this.invoiceNo = invoiceNo;
+            this.remaining = remaining;
+        }
+    }
+
+    /**
+     * Index hóa đơn còn nợ của một phía (AR hoặc AP). Số tiền còn nợ được trừ ngay khi khớp
+     * để các dòng sau trong cùng file thấy đúng số dư.
+     */
+    private static final class InvoiceIndex {
+        private final Map<String, OpenInvoice> byInvoiceNo = new HashMap<>();
+        private final Map<String, List<OpenInvoice>> byParty = new HashMap<>();
+        private final Map<BigDecimal, List<OpenInvoice>> byAmount = new HashMap<>();
+
+        static InvoiceIndex build(List<OpenInvoiceProjection> invoices) {
+            InvoiceIndex index = new InvoiceIndex();
+            for (OpenInvoiceProjection row : invoices) {
+                OpenInvoice invoice = new OpenInvoice(row.getInvoiceId(), row.getInvoiceNo(), row.getBalanceAmount());
+                if (row.getInvoiceNo() != null) {
+                    index.byInvoiceNo.put(normalizeKey(row.getInvoiceNo()), invoice);
+                }
+                if (row.getPartyCode() != null) {
+                    index.byParty.computeIfAbsent(normalizeKey(row.getPartyCode()), k -> new ArrayList<>()).add(invoice);
+                }
+                index.addAmount(invoice);
+            }
+            return index;
+        }
+
+        int size() {
+            return byInvoiceNo.size();
+        }
+
+        Match take(StatementLine line, OpenInvoice invoice, BigDecimal amount) {
+            removeAmount(invoice);
+            invoice.remaining = invoice.remaining.subtract(amount);
+            addAmount(invoice);
+            return new Match(line, invoice, amount);
+        }
+
+        void restore(Match match) {
+            removeAmount(match.invoice);
+            match.invoice.remaining = match.invoice.remaining.add(match.amount);
+            addAmount(match.invoice);
+        }
+
+        private void addAmount(OpenInvoice invoice) {
+            if (invoice.remaining.signum() > 0) {
+                byAmount.computeIfAbsent(amountKey(invoice.remaining), k -> new ArrayList<>()).add(invoice);
+            }
+        }
+
+        private void removeAmount(OpenInvoice invoice) {
+            List<OpenInvoice> list = byAmount.get(amountKey(invoice.remaining));
+            if (list != null) {
+                list.remove(invoice);
+                if (list.isEmpty()) {
+                    byAmount.remove(amountKey(invoice.remaining));
+                }
+            }
+        }
+    }
+
+    private static final class ImportState {
+        private long totalLines;
+        private long receivablePayments;
+        private BigDecimal receivableAmount = BigDecimal.ZERO;
+        private long payablePayments;
+        private BigDecimal payableAmount = BigDecimal.ZERO;
+        private long exceptionCount;
+        private final List<BankStatementExceptionDTO> exceptions = new ArrayList<>();
+
+        void countReceivables(List<Match> posted) {
+            receivablePayments += posted.size();
+            receivableAmount = posted.stream().map(Match::amount).reduce(receivableAmount, BigDecimal::add);
+        }
+
+        void countPayables(List<Match> posted) {
+            payablePayments += posted.size();
+            payableAmount = posted.stream().map(Match::amount).reduce(payableAmount, BigDecimal::add);
+        }
+
+        void addException(StatementLine line, String reason, String message, String candidates) {
+            exceptionCount++;
+            if (exceptions.size() >= MAX_REPORTED_EXCEPTIONS) {
+                return;
+            }
+            exceptions.add(BankStatementExceptionDTO.builder()
+                    .lineNo(line.lineNo())
+                    .transactionDate(line.transactionDate())
+                    .amount(line.amount())
+                    .description(line.description())
+                    .referenceNo(line.referenceNo())
+                    .reason(reason)
+                    .message(message)
+                    .candidateInvoices(candidates)
+                    .build());
+        }
+    }
+}
@@ -9,8 +9,12 @@ import com.g174.mmssystem.exception.ResourceNotFoundException;
 import com.g174.mmssystem.mapper.CreditNoteMapper;
 import com.g174.mmssystem.repository.*;
 import com.g174.mmssystem.service.IService.ICreditNoteService;
+import com.g174.mmssystem.specification.CreditNoteSpecifications;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
@@ -21,6 +25,7 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
@@ -45,6 +50,7 @@ public class CreditNoteServiceImpl implements ICreditNoteService {
     private final UserRepository userRepository;
     private final CreditNoteMapper creditNoteMapper;
     private final com.g174.mmssystem.service.IService.ICustomerBalanceService customerBalanceService;
+    private final com.g174.mmssystem.service.IService.IDebtSummaryService debtSummaryService;
 
     @Override
     public CreditNoteResponseDTO createCreditNote(CreditNoteRequestDTO request) {
@@ -112,23 +118,44 @@ public class CreditNoteServiceImpl implements ICreditNoteService {
     @Transactional(readOnly = true)
     public List<CreditNoteListResponseDTO> getAllCreditNotes(Integer invoiceId, Integer returnOrderId, String status,
             String keyword) {
-        List<CreditNote> creditNotes = creditNoteRepository.findAll().stream()
-                .filter(cn -> cn.getDeletedAt() == null)
-                .filter(cn -> invoiceId == null
-                        || (cn.getInvoice() != null && cn.getInvoice().getArInvoiceId().equals(invoiceId)))
-                .filter(cn -> returnOrderId == null
-                        || (cn.getReturnOrder() != null && cn.getReturnOrder().getRoId().equals(returnOrderId)))
-                .filter(cn -> status == null || status.isEmpty() || cn.getStatus().name().equals(status))
-                .filter(cn -> keyword == null || keyword.isEmpty() ||
-                        (cn.getCreditNoteNo() != null
-                                && cn.getCreditNoteNo().toLowerCase().contains(keyword.toLowerCase())))
-                .collect(Collectors.toList());
-
-        return creditNotes.stream()
+        Specification<CreditNote> spec = buildListSpec(invoiceId, returnOrderId, null, status, keyword, null, null);
+        return creditNoteRepository.findListPage(spec, Pageable.unpaged()).stream()
                 .map(creditNoteMapper::toListResponse)
                 .collect(Collectors.toList());
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Page<CreditNoteListResponseDTO> getCreditNotes(Integer invoiceId, Integer returnOrderId, Integer customerId,
+            String status, String keyword, LocalDate fromDate, LocalDate toDate, Pageable pageable) {
+        if (fromDate != null && toDate != null && fromDate.isAfter(toDate)) {
+            throw new IllegalArgumentException("Từ ngày phải trước hoặc bằng đến ngày");
+        }
+        Specification<CreditNote> spec = buildListSpec(invoiceId, returnOrderId, customerId, status, keyword,
+                fromDate, toDate);
+        return creditNoteRepository.findListPage(spec, pageable)
+                .map(creditNoteMapper::toListResponse);
+    }
+
+    private Specification<CreditNote> buildListSpec(Integer invoiceId, Integer returnOrderId, Integer customerId,
+            String status, String keyword, LocalDate fromDate, LocalDate toDate) {
+        CreditNote.CreditNoteStatus parsedStatus = parseStatus(status);
+        if (StringUtils.hasText(status) && parsedStatus == null) {
+            throw new IllegalArgumentException("Trạng thái không hợp lệ: " + status);
+        }
+        // creditNoteDate được lưu là đầu ngày theo UTC (xem CreditNoteMapper)
+        return Specification.where(CreditNoteSpecifications.notDeleted())
+                .and(CreditNoteSpecifications.hasInvoice(invoiceId))
+                .and(CreditNoteSpecifications.hasReturnOrder(returnOrderId))
+                .and(CreditNoteSpecifications.hasCustomer(customerId))
+                .and(CreditNoteSpecifications.hasStatus(parsedStatus))
+                .and(CreditNoteSpecifications.keywordLike(keyword))
+                .and(CreditNoteSpecifications.dateFrom(
+                        fromDate != null ? fromDate.atStartOfDay().toInstant(ZoneOffset.UTC) : null))
+                .and(CreditNoteSpecifications.dateBefore(
+                        toDate != null ? toDate.plusDays(1).atStartOfDay().toInstant(ZoneOffset.UTC) : null));
+    }
+
     @Override
     public void deleteCreditNote(Integer id) {
         CreditNote creditNote = getCreditNoteEntity(id);
@@ -170,6 +197,15 @@ public class CreditNoteServiceImpl implements ICreditNoteService {
                 customerBalanceService.updateOnCreditNoteApplied(
                         invoice.getCustomer().getCustomerId(),
                         creditNote.getAppliedToBalance() != null ? creditNote.getAppliedToBalance() : creditNote.getTotalAmount());
+                // Tổng hợp công nợ tháng chỉ ghi nhận một lần (Issued -> Applied không ghi lại)
+                if (oldStatus != CreditNote.CreditNoteStatus.Issued) {
+                    debtSummaryService.recordCustomer(invoice.getCustomer(),
+                            creditNote.getCreditNoteDate() != null
+                                    ? creditNote.getCreditNoteDate().atZone(java.time.ZoneId.systemDefault()).toLocalDate()
+                                    : null,
+                            BigDecimal.ZERO,
+                            creditNote.getAppliedToBalance() != null ? creditNote.getAppliedToBalance() : creditNote.getTotalAmount());
+                }
             }
         }
 
@@ -1,11 +1,13 @@
 package com.g174.mmssystem.service.Impl;
 
+import com.g174.mmssystem.entity.CreditNote;
 import com.g174.mmssystem.entity.CustomerBalance;
 import com.g174.mmssystem.repository.CustomerBalanceRepository;
-import com.g174.mmssystem.repository.CustomerRepository;
 import com.g174.mmssystem.repository.ARInvoiceRepository;
 import com.g174.mmssystem.repository.ARPaymentRepository;
 import com.g174.mmssystem.repository.CreditNoteRepository;
+import com.g174.mmssystem.service.BalanceDeltaCoalescer;
+import com.g174.mmssystem.service.IService.IAgingReportService;
 import com.g174.mmssystem.service.IService.ICustomerBalanceService;
 import com.g174.mmssystem.exception.ResourceNotFoundException;
 import lombok.RequiredArgsConstructor;
@@ -14,6 +16,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
@@ -21,103 +24,110 @@ import java.math.BigDecimal;
 @Transactional
 public class CustomerBalanceServiceImpl implements ICustomerBalanceService {
 
+    private static final String BALANCE_SCOPE = "customer";
+
+    /**
+     * Credit Note ở các trạng thái này đã được bù trừ vào công nợ
+     */
+    public static final List<CreditNote.CreditNoteStatus> APPLIED_CREDIT_NOTE_STATUSES =
+            List.of(CreditNote.CreditNoteStatus.Issued, CreditNote.CreditNoteStatus.Applied);
+
     private final CustomerBalanceRepository customerBalanceRepository;
-    private final CustomerRepository customerRepository;
     private final ARInvoiceRepository arInvoiceRepository;
     private final ARPaymentRepository arPaymentRepository;
     private final CreditNoteRepository creditNoteRepository;
+    private final BalanceDeltaCoalescer balanceDeltaCoalescer;
+    private final IAgingReportService agingReportService;
 
     @Override
     public CustomerBalance getOrCreateBalance(Integer customerId) {
         return customerBalanceRepository.findByCustomer_CustomerId(customerId)
                 .orElseGet(() -> {
-                    CustomerBalance balance = new CustomerBalance();
-                    balance.setCustomer(customerRepository.findById(customerId)
-                            .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy customer ID: " + customerId)));
-                    balance.setTotalInvoiced(BigDecimal.ZERO);
-                    balance.setTotalPaid(BigDecimal.ZERO);
-                    balance.setTotalCreditNote(BigDecimal.ZERO);
-                    balance.setOutstandingBalance(BigDecimal.ZERO);
-                    return customerBalanceRepository.save(balance);
+                    customerBalanceRepository.insertIfAbsent(customerId);
+                    return customerBalanceRepository.findByCustomer_CustomerId(customerId)
+                            .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy customer ID: " + customerId));
                 });
     }
 
     @Override
     public void updateOnInvoiceCreated(Integer customerId, BigDecimal invoiceAmount) {
-        CustomerBalance balance = getOrCreateBalance(customerId);
-        balance.setTotalInvoiced(balance.getTotalInvoiced().add(invoiceAmount));
-        balance.recalculateOutstandingBalance();
-        customerBalanceRepository.save(balance);
+        postDelta(customerId, invoiceAmount, BigDecimal.ZERO, BigDecimal.ZERO);
         log.info("Updated customer {} balance: +{} invoice", customerId, invoiceAmount);
     }
 
     @Override
     public void updateOnInvoiceDeleted(Integer customerId, BigDecimal invoiceAmount) {
-        CustomerBalance balance = getOrCreateBalance(customerId);
-        balance.setTotalInvoiced(balance.getTotalInvoiced().subtract(invoiceAmount).max(BigDecimal.ZERO));
-        balance.recalculateOutstandingBalance();
-        customerBalanceRepository.save(balance);
+        postDelta(customerId, negate(invoiceAmount), BigDecimal.ZERO, BigDecimal.ZERO);
         log.info("Updated customer {} balance: -{} invoice", customerId, invoiceAmount);
     }
 
     @Override
     public void updateOnPaymentAdded(Integer customerId, BigDecimal paymentAmount) {
-        CustomerBalance balance = getOrCreateBalance(customerId);
-        balance.setTotalPaid(balance.getTotalPaid().add(paymentAmount));
-        balance.recalculateOutstandingBalance();
-        customerBalanceRepository.save(balance);
+        postDelta(customerId, BigDecimal.ZERO, paymentAmount, BigDecimal.ZERO);
         log.info("Updated customer {} balance: +{} payment", customerId, paymentAmount);
     }
 
     @Override
     public void updateOnPaymentDeleted(Integer customerId, BigDecimal paymentAmount) {
-        CustomerBalance balance = getOrCreateBalance(customerId);
-        balance.setTotalPaid(balance.getTotalPaid().subtract(paymentAmount).max(BigDecimal.ZERO));
-        balance.recalculateOutstandingBalance();
-        customerBalanceRepository.save(balance);
+        postDelta(customerId, BigDecimal.ZERO, negate(paymentAmount), BigDecimal.ZERO);
         log.info("Updated customer {} balance: -{} payment", customerId, paymentAmount);
     }
 
     @Override
     public void updateOnCreditNoteApplied(Integer customerId, BigDecimal creditNoteAmount) {
-        CustomerBalance balance = getOrCreateBalance(customerId);
-        balance.setTotalCreditNote(balance.getTotalCreditNote().add(creditNoteAmount));
-        balance.recalculateOutstandingBalance();
-        customerBalanceRepository.save(balance);
+        postDelta(customerId, BigDecimal.ZERO, BigDecimal.ZERO, creditNoteAmount);
         log.info("Updated customer {} balance: +{} credit note", customerId, creditNoteAmount);
     }
 
     @Override
     public void updateOnCreditNoteRemoved(Integer customerId, BigDecimal creditNoteAmount) {
-        CustomerBalance balance = getOrCreateBalance(customerId);
-        balance.setTotalCreditNote(balance.getTotalCreditNote().subtract(creditNoteAmount).max(BigDecimal.ZERO));
-        balance.recalculateOutstandingBalance();
-        customerBalanceRepository.save(balance);
+        postDelta(customerId, BigDecimal.ZERO, BigDecimal.ZERO, negate(creditNoteAmount));
         log.info("Updated customer {} balance: -{} credit note", customerId, creditNoteAmount);
     }
 
+    /**
+     * Ghi delta bằng một câu UPDATE atomic (hoặc gộp đến lúc commit nếu bật coalescing).
+     * Mọi hóa đơn / thanh toán / Credit Note đều đi qua đây nên cũng là nơi xóa cache báo cáo tuổi nợ.
+     */
+    private void postDelta(Integer customerId, BigDecimal invoiced, BigDecimal paid, BigDecimal creditNote) {
+        agingReportService.markReceivablesChanged();
+        balanceDeltaCoalescer.add(BALANCE_SCOPE, customerId,
+                new BigDecimal[]{nonNull(invoiced), nonNull(paid), nonNull(creditNote)},
+                this::writeDelta);
+    }
+
+    private void writeDelta(Integer customerId, BigDecimal[] deltas) {
+        if (customerBalanceRepository.applyDelta(customerId, deltas[0], deltas[1], deltas[2]) > 0) {
+            return;
+        }
+        // Chưa có dòng balance: tạo rồi cộng lại
+        customerBalanceRepository.insertIfAbsent(customerId);
+        if (customerBalanceRepository.applyDelta(customerId, deltas[0], deltas[1], deltas[2]) == 0) {
+            throw new ResourceNotFoundException("Không tìm thấy customer ID: " + customerId);
+        }
+    }
+
+    private static BigDecimal nonNull(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    private static BigDecimal negate(BigDecimal value) {
+        return nonNull(value).negate();
+    }
+
     @Override
     public void recalculateBalance(Integer customerId) {
         CustomerBalance balance = getOrCreateBalance(customerId);
 
-        // Tính tổng từ tất cả Invoice
-        BigDecimal totalInvoiced = arInvoiceRepository.findAllActiveInvoices().stream()
-                .filter(inv -> inv.getCustomer().getCustomerId().equals(customerId))
-                .map(inv -> inv.getTotalAmount() != null ? inv.getTotalAmount() : BigDecimal.ZERO)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        // Tính tổng từ tất cả Invoice / Payment / Credit Note (phần bù trừ) của customer bằng SUM trong database
+        BigDecimal totalInvoiced = arInvoiceRepository.sumActiveTotalByCustomerId(customerId);
 
-        // Tính tổng từ tất cả Payment của customer
         BigDecimal totalPaid = arPaymentRepository.getTotalPaidByCustomerId(customerId);
         if (totalPaid == null) {
             totalPaid = BigDecimal.ZERO;
         }
 
-        // Tính tổng từ tất cả Credit Note đã áp dụng của customer
-        BigDecimal totalCreditNote = creditNoteRepository.findByCustomerIdAndDeletedAtIsNull(customerId).stream()
-                .filter(cn -> cn.getStatus() == com.g174.mmssystem.entity.CreditNote.CreditNoteStatus.Issued ||
-                             cn.getStatus() == com.g174.mmssystem.entity.CreditNote.CreditNoteStatus.Applied)
-                .map(cn -> cn.getTotalAmount() != null ? cn.getTotalAmount() : BigDecimal.ZERO)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal totalCreditNote = creditNoteRepository.sumAppliedByCustomerId(customerId, APPLIED_CREDIT_NOTE_STATUSES);
 
         balance.setTotalInvoiced(totalInvoiced);
         balance.setTotalPaid(totalPaid);
@@ -6,6 +6,7 @@ import com.g174.mmssystem.dto.requestDTO.CustomerFormRequestDTO;
 import com.g174.mmssystem.dto.requestDTO.CustomerRequestDTO;
 import com.g174.mmssystem.dto.responseDTO.CustomerDetailResponseDTO;
 import com.g174.mmssystem.dto.responseDTO.CustomerResponseDTO;
+import com.g174.mmssystem.dto.responseDTO.SuggestionDTO;
 import com.g174.mmssystem.dto.responseDTO.TransactionSummaryDTO;
 import com.g174.mmssystem.dto.responseDTO.TransactionSummaryProjection;
 import com.g174.mmssystem.entity.*;
@@ -13,9 +14,11 @@ import com.g174.mmssystem.exception.DuplicateResourceException;
 import com.g174.mmssystem.exception.ResourceNotFoundException;
 import com.g174.mmssystem.repository.*;
 import com.g174.mmssystem.service.IService.ICustomerService;
+import com.g174.mmssystem.service.MasterDataSearchIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -32,6 +35,7 @@ import java.util.stream.Collectors;
 public class CustomerServiceImpl implements ICustomerService {
 
     private final CustomerRepository customerRepository;
+    private final MasterDataSearchIndex searchIndex;
     private final AddressRepository addressRepository;
     private final ContactRepository contactRepository;
     private final SalesQuotationRepository salesQuotationRepository;
@@ -105,6 +109,7 @@ public class CustomerServiceImpl implements ICustomerService {
         }
 
         Customer savedCustomer = customerRepository.save(customer);
+        searchIndex.indexCustomer(savedCustomer);
         log.info("Customer created successfully with ID: {}", savedCustomer.getCustomerId());
 
         return convertToResponseDTO(savedCustomer);
@@ -170,7 +175,9 @@ public class CustomerServiceImpl implements ICustomerService {
             return getAllCustomers();
         }
 
-        List<Customer> customers = customerRepository.searchCustomers(keyword.trim());
+        List<Customer> customers = searchIndex.isReady()
+                ? findInRankOrder(searchIndex.searchCustomers(keyword))
+                : customerRepository.searchCustomers(keyword.trim());
         return customers.stream()
                 .map(this::convertToResponseDTO)
                 .collect(Collectors.toList());
@@ -186,10 +193,35 @@ public class CustomerServiceImpl implements ICustomerService {
             return getAllCustomers(pageable);
         }
 
-        Page<Customer> customers = customerRepository.searchCustomers(keyword.trim(), pageable);
+        Page<Customer> customers;
+        if (searchIndex.isReady()) {
+            // Kết quả theo thứ tự xếp hạng của chỉ mục, sort của pageable không áp dụng
+            List<Integer> ids = searchIndex.searchCustomers(keyword);
+            int from = (int) Math.min(pageable.getOffset(), ids.size());
+            int to = Math.min(from + pageable.getPageSize(), ids.size());
+            customers = new PageImpl<>(findInRankOrder(ids.subList(from, to)), pageable, ids.size());
+        } else {
+            customers = customerRepository.searchCustomers(keyword.trim(), pageable);
+        }
         return customers.map(this::convertToResponseDTO);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<SuggestionDTO> suggestCustomers(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            return List.of();
+        }
+        if (searchIndex.isReady()) {
+            return searchIndex.suggestCustomers(prefix, limit);
+        }
+        return customerRepository.searchCustomers(prefix.trim()).stream()
+                .limit(limit)
+                .map(customer -> new SuggestionDTO(customer.getCustomerId(), customer.getCustomerCode(),
+                        customer.getFirstName() + " " + customer.getLastName()))
+                .collect(Collectors.toList());
+    }
+
     @Override
     public CustomerResponseDTO updateCustomer(Integer customerId, CustomerRequestDTO customerRequestDTO) {
         log.info("Updating customer with ID: {}", customerId);
@@ -241,6 +273,7 @@ public class CustomerServiceImpl implements ICustomerService {
         }
 
         Customer updatedCustomer = customerRepository.save(customer);
+        searchIndex.indexCustomer(updatedCustomer);
         log.info("Customer updated successfully with ID: {}", updatedCustomer.getCustomerId());
 
         return convertToResponseDTO(updatedCustomer);
@@ -260,6 +293,7 @@ public class CustomerServiceImpl implements ICustomerService {
 
         customer.setDeletedAt(Instant.now());
         customerRepository.save(customer);
+        searchIndex.removeCustomer(customerId);
         log.info("Customer soft deleted successfully with ID: {}", customerId);
     }
 
@@ -276,6 +310,7 @@ public class CustomerServiceImpl implements ICustomerService {
 
         customer.setDeletedAt(null);
         customerRepository.save(customer);
+        searchIndex.indexCustomer(customer);
         log.info("Customer restored successfully with ID: {}", customerId);
     }
 
@@ -399,11 +434,16 @@ public class CustomerServiceImpl implements ICustomerService {
         }
 
         Customer updatedCustomer = customerRepository.save(customer);
+        searchIndex.indexCustomer(updatedCustomer);
         log.info("Customer form updated successfully with ID: {}", updatedCustomer.getCustomerId());
 
         return convertToResponseDTO(updatedCustomer);
     }
 
+    private List<Customer> findInRankOrder(List<Integer> ids) {
+        return MasterDataSearchIndex.inRankOrder(ids, customerRepository.findAllById(ids), Customer::getCustomerId);
+    }
+
     private Address createAddress(AddressDTO addressDTO) {
         log.info("=== CREATING ADDRESS ===");
         log.info("AddressDTO received: {}", addressDTO);
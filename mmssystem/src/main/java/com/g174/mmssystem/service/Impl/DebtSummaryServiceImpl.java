@@ -0,0 +1,201 @@
+package com.g174.mmssystem.service.Impl;
+
+import com.g174.mmssystem.dto.responseDTO.DebtSummaryRowDTO;
+import com.g174.mmssystem.entity.Customer;
+import com.g174.mmssystem.entity.DebtMonthlySummary;
+import com.g174.mmssystem.entity.Vendor;
+import com.g174.mmssystem.repository.AppLockRepository;
+import com.g174.mmssystem.repository.DebtLedgerRepository;
+import com.g174.mmssystem.repository.DebtMonthlySummaryRepository;
+import com.g174.mmssystem.service.IService.IDebtSummaryService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class DebtSummaryServiceImpl implements IDebtSummaryService {
+
+    private static final int REBUILD_BATCH_SIZE = 500;
+    // Ghi nhận phát sinh giữ khóa chia sẻ, rebuild giữ khóa độc quyền đến hết transaction
+    private static final String SUMMARY_LOCK = "DEBT_SUMMARY";
+
+    private final DebtMonthlySummaryRepository summaryRepository;
+    private final DebtLedgerRepository debtLedgerRepository;
+    private final AppLockRepository appLockRepository;
+
+    @Override
+    public void recordCustomer(Customer customer, LocalDate transactionDate, BigDecimal increase, BigDecimal decrease) {
+        if (customer == null) {
+            return;
+        }
+        record(DebtMonthlySummary.PARTY_CUSTOMER, customer.getCustomerId(), customer.getCustomerCode(),
+                customer.getFirstName() + " " + customer.getLastName(), transactionDate, increase, decrease);
+    }
+
+    @Override
+    public void recordVendor(Vendor vendor, LocalDate transactionDate, BigDecimal increase, BigDecimal decrease) {
+        if (vendor == null) {
+            return;
+        }
+        record(DebtMonthlySummary.PARTY_VENDOR, vendor.getVendorId(), vendor.getVendorCode(),
+                vendor.getName(), transactionDate, increase, decrease);
+    }
+
+    private void record(String partyType, Integer partyId, String partyCode, String partyName,
+                        LocalDate transactionDate, BigDecimal increase, BigDecimal decrease) {
+        BigDecimal inc = increase != null ? increase : BigDecimal.ZERO;
+        BigDecimal dec = decrease != null ? decrease : BigDecimal.ZERO;
+        BigDecimal delta = inc.subtract(dec);
+        if (inc.signum() == 0 && dec.signum() == 0) {
+            return;
+        }
+
+        // Chờ nếu đang rebuild, và chặn rebuild bắt đầu cho tới khi transaction này kết thúc
+        if (appLockRepository.lockShared(SUMMARY_LOCK).isEmpty()) {
+            appLockRepository.insertIfAbsent(SUMMARY_LOCK);
+            appLockRepository.lockShared(SUMMARY_LOCK);
+        }
+
+        int period = toPeriod(transactionDate != null ? transactionDate : LocalDate.now());
+        summaryRepository.insertIfAbsent(partyType, partyId, partyCode, partyName, period);
+        summaryRepository.applyDelta(partyType, partyId, period, inc, dec);
+        if (delta.signum() != 0) {
+            summaryRepository.shiftLaterPeriods(partyType, partyId, period, delta);
+        }
+
+        log.debug("Debt summary {} {} period {}: +{} / -{}", partyType, partyId, period, inc, dec);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<DebtSummaryRowDTO> getMonthlySummary(int year, int month, String customerVendorType, Pageable pageable) {
+        if (month < 1 || month > 12) {
+            throw new IllegalArgumentException("Tháng không hợp lệ: " + month);
+        }
+        int period = year * 100 + month;
+
+        Pageable sorted = pageable.getSort().isSorted()
+                ? pageable
+                : PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(),
+                Sort.by("partyCode").ascending().and(Sort.by("partyType")));
+
+        // Chỉ tháng có phát sinh mới có dòng riêng; KH/NCC còn số dư từ tháng trước được mang sang
+        Page<DebtMonthlySummary> page = summaryRepository.findLatestUpToPeriod(period,
+                StringUtils.hasText(customerVendorType) ? customerVendorType.trim() : null, sorted);
+        return page.map(summary -> summary.getPeriod() == period ? toRowDTO(summary) : toCarriedRowDTO(summary, period));
+    }
+
+    /**
+     * Giữ khóa độc quyền trong suốt quá trình xóa và tính lại: rebuild chờ các giao dịch đang ghi nhận commit xong,
+     * giao dịch mới chờ rebuild commit rồi mới ghi tiếp, nên không có phát sinh nào bị mất hoặc ghi vào bảng đang dựng dở.
+     * Snapshot đọc ledger được tạo sau khi đã có khóa nên thấy đủ các giao dịch đã commit trước đó.
+     */
+    @Override
+    public int rebuild() {
+        log.info("Rebuilding debt monthly summaries");
+        appLockRepository.insertIfAbsent(SUMMARY_LOCK);
+        appLockRepository.lockExclusive(SUMMARY_LOCK);
+        summaryRepository.deleteAllInBatch();
+
+        List<Object[]> rows = debtLedgerRepository.sumByPartyAndPeriod();
+        List<DebtMonthlySummary> batch = new ArrayList<>(REBUILD_BATCH_SIZE);
+        String currentType = null;
+        Integer currentId = null;
+        BigDecimal running = BigDecimal.ZERO;
+
+        // rows đã được sắp theo party_type, party_id, period nên chỉ cần cộng dồn tuần tự
+        for (Object[] row : rows) {
+            String partyType = (String) row[0];
+            Integer partyId = ((Number) row[1]).intValue();
+            if (!partyType.equals(currentType) || !Objects.equals(partyId, currentId)) {
+                currentType = partyType;
+                currentId = partyId;
+                running = BigDecimal.ZERO;
+            }
+
+            BigDecimal increase = toBigDecimal(row[5]);
+            BigDecimal decrease = toBigDecimal(row[6]);
+
+            DebtMonthlySummary summary = new DebtMonthlySummary();
+            summary.setPartyType(partyType);
+            summary.setPartyId(partyId);
+            summary.setPartyCode((String) row[2]);
+            summary.setPartyName((String) row[3]);
+            summary.setPeriod(((Number) row[4]).intValue());
+            summary.setOpeningBalance(running);
+            summary.setTotalIncrease(increase);
+            summary.setTotalDecrease(decrease);
+            running = running.add(increase).subtract(decrease);
+            summary.setClosingBalance(running);
+            batch.add(summary);
+
+            if (batch.size() >= REBUILD_BATCH_SIZE) {
+                summaryRepository.saveAll(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            summaryRepository.saveAll(batch);
+        }
+
+        log.info("Rebuilt {} debt monthly summary rows", rows.size());
+        return rows.size();
+    }
+
+    private DebtSummaryRowDTO toRowDTO(DebtMonthlySummary summary) {
+        return DebtSummaryRowDTO.builder()
+                .customerVendorCode(summary.getPartyCode())
+                .customerVendorType(summary.getPartyType())
+                .customerVendorName(summary.getPartyName())
+                .totalDebit(summary.getTotalIncrease())
+                .totalCredit(summary.getTotalDecrease())
+                .balance(summary.getTotalIncrease().subtract(summary.getTotalDecrease()))
+                .period(summary.getPeriod())
+                .openingBalance(summary.getOpeningBalance())
+                .closingBalance(summary.getClosingBalance())
+                .build();
+    }
+
+    /**
+     * Dòng của tháng không có phát sinh: opening = closing = closing của tháng gần nhất trước đó
+     */
+    private DebtSummaryRowDTO toCarriedRowDTO(DebtMonthlySummary latest, int period) {
+        return DebtSummaryRowDTO.builder()
+                .customerVendorCode(latest.getPartyCode())
+                .customerVendorType(latest.getPartyType())
+                .customerVendorName(latest.getPartyName())
+                .totalDebit(BigDecimal.ZERO)
+                .totalCredit(BigDecimal.ZERO)
+                .balance(BigDecimal.ZERO)
+                .period(period)
+                .openingBalance(latest.getClosingBalance())
+                .closingBalance(latest.getClosingBalance())
+                .build();
+    }
+
+    private static int toPeriod(LocalDate date) {
+        return date.getYear() * 100 + date.getMonthValue();
+    }
+
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value == null) {
+            return BigDecimal.ZERO;
+        }
+        return value instanceof BigDecimal decimal ? decimal : new BigDecimal(value.toString());
+    }
+}
@@ -2,6 +2,7 @@ package com.g174.mmssystem.service.Impl;
 
 import com.g174.mmssystem.dto.requestDTO.DeliveryItemRequestDTO;
 import com.g174.mmssystem.dto.requestDTO.DeliveryRequestDTO;
+import com.g174.mmssystem.dto.responseDTO.DeliveryItemQuantityProjection;
 import com.g174.mmssystem.dto.responseDTO.DeliveryListResponseDTO;
 import com.g174.mmssystem.dto.responseDTO.DeliveryResponseDTO;
 import com.g174.mmssystem.entity.*;
@@ -9,6 +10,7 @@ import com.g174.mmssystem.exception.ResourceNotFoundException;
 import com.g174.mmssystem.mapper.DeliveryMapper;
 import com.g174.mmssystem.repository.*;
 import com.g174.mmssystem.service.IService.IDeliveryService;
+import com.g174.mmssystem.service.OrderFulfillmentCalculator;
 import com.g174.mmssystem.specification.DeliverySpecifications;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -30,6 +32,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
@@ -47,8 +50,8 @@ public class DeliveryServiceImpl implements IDeliveryService {
     private final UserRepository userRepository;
     private final DeliveryMapper deliveryMapper;
     private final GoodIssueRepository goodIssueRepository;
-    private final GoodIssueItemRepository goodIssueItemRepository;
     private final ReturnOrderItemRepository returnOrderItemRepository;
+    private final OrderFulfillmentCalculator fulfillmentCalculator;
 
     @Override
     public DeliveryResponseDTO createDelivery(DeliveryRequestDTO request) {
@@ -146,14 +149,8 @@ public class DeliveryServiceImpl implements IDeliveryService {
         deliveryItemRepository.deleteByDelivery_DeliveryId(id);
         delivery.getItems().clear();
 
-        // ===== LOAD GOOD ISSUE APPROVED để lấy deliveredQty =====
-        List<GoodIssue> approvedIssues = goodIssueRepository.findByDeliveryId(id).stream()
-                .filter(issue -> issue.getStatus() == GoodIssue.GoodIssueStatus.Approved
-                        && issue.getDeletedAt() == null)
-                .toList();
-
-        // ===== BUILD ITEMS với deliveredQty từ Good Issue =====
-        List<DeliveryItem> items = buildItemsWithGoodIssueQty(delivery, request.getItems(), salesOrder, approvedIssues);
+        // ===== BUILD ITEMS với deliveredQty từ Good Issue approved =====
+        List<DeliveryItem> items = buildItemsWithGoodIssueQty(delivery, request.getItems(), salesOrder);
         delivery.getItems().addAll(items);
 
         Delivery saved = deliveryRepository.save(delivery);
@@ -178,9 +175,10 @@ public class DeliveryServiceImpl implements IDeliveryService {
                 .and(DeliverySpecifications.hasStatus(parseStatus(status)))
                 .and(DeliverySpecifications.keywordLike(keyword));
 
-        return deliveryRepository.findAll(spec, pageable)
-                .map(deliveryMapper::toListResponse)
-                .map(this::enrichDeliveryListDto);
+        Page<DeliveryListResponseDTO> page = deliveryRepository.findAll(spec, pageable)
+                .map(deliveryMapper::toListResponse);
+        enrichDeliveryListDtos(page.getContent());
+        return page;
     }
 
     @Override
@@ -277,16 +275,8 @@ public class DeliveryServiceImpl implements IDeliveryService {
             // Tự động cập nhật deliveredQty từ Good Issue approved
             List<DeliveryItem> items = deliveryItemRepository.findByDelivery_DeliveryId(id);
 
-            // Tạo map: productId -> tổng issuedQty từ Good Issue approved
-            Map<Integer, BigDecimal> goodIssueQtyByProduct = new HashMap<>();
-            for (GoodIssue issue : approvedIssues) {
-                List<GoodIssueItem> issueItems = goodIssueItemRepository.findByIssueId(issue.getIssueId());
-                for (GoodIssueItem issueItem : issueItems) {
-                    Integer productId = issueItem.getProduct().getProductId();
-                    BigDecimal issuedQty = issueItem.getIssuedQty();
-                    goodIssueQtyByProduct.merge(productId, issuedQty, BigDecimal::add);
-                }
-            }
+            // Tạo map: productId -> tổng issuedQty từ Good Issue approved (một query GROUP BY)
+            Map<Integer, BigDecimal> goodIssueQtyByProduct = fulfillmentCalculator.issuedQtyByProduct(id);
 
             // Cập nhật deliveredQty cho từng DeliveryItem
             for (DeliveryItem item : items) {
@@ -357,11 +347,11 @@ public class DeliveryServiceImpl implements IDeliveryService {
         // ===== VALIDATE TRƯỚC: Kiểm tra xem có thể tạo Delivery từ Sales Order này
         // không =====
         List<SalesOrderItem> orderItems = salesOrderItemRepository.findBySalesOrder_SoId(salesOrderId);
+        OrderFulfillmentCalculator.SalesOrderFulfillment fulfillment = fulfillmentCalculator.forSalesOrder(salesOrderId);
         for (SalesOrderItem orderItem : orderItems) {
-            BigDecimal deliveredQty = deliveryItemRepository.sumDeliveredQtyBySalesOrderItem(orderItem.getSoiId());
-            BigDecimal plannedQty = deliveryItemRepository
-                    .sumPlannedQtyBySalesOrderItemExcludingDelivered(orderItem.getSoiId());
-            BigDecimal remainingQty = orderItem.getQuantity().subtract(deliveredQty).subtract(plannedQty);
+            BigDecimal deliveredQty = fulfillment.deliveredQty(orderItem.getSoiId());
+            BigDecimal plannedQty = fulfillment.plannedQty(orderItem.getSoiId());
+            BigDecimal remainingQty = fulfillment.remainingToPlan(orderItem);
 
             if (remainingQty.compareTo(BigDecimal.ZERO) <= 0) {
                 List<DeliveryItem> plannedItemsForOrder = deliveryItemRepository
@@ -399,7 +389,7 @@ public class DeliveryServiceImpl implements IDeliveryService {
         delivery.setCreatedBy(currentUser);
         delivery.setUpdatedBy(currentUser);
 
-        List<DeliveryItem> items = buildItemsFromSalesOrder(delivery, salesOrderId, defaultWarehouse);
+        List<DeliveryItem> items = buildItemsFromSalesOrder(delivery, orderItems, fulfillment, defaultWarehouse);
 
         if (items.isEmpty()) {
             throw new IllegalStateException("Tất cả sản phẩm trong đơn hàng đã được giao");
@@ -424,6 +414,9 @@ public class DeliveryServiceImpl implements IDeliveryService {
             throw new IllegalArgumentException("Cần ít nhất một dòng giao hàng");
         }
 
+        OrderFulfillmentCalculator.SalesOrderFulfillment fulfillment =
+                fulfillmentCalculator.forSalesOrder(salesOrder.getSoId());
+
         for (DeliveryItemRequestDTO dto : requestItems) {
             // Fetch data cần thiết
             SalesOrderItem salesOrderItem = salesOrderItemRepository.findById(dto.getSalesOrderItemId())
@@ -458,10 +451,8 @@ public class DeliveryServiceImpl implements IDeliveryService {
 
             // ========== VALIDATE: Không được giao vượt quá số lượng đơn hàng ==========
             BigDecimal orderedQty = salesOrderItem.getQuantity();
-            BigDecimal alreadyDeliveredQty = deliveryItemRepository
-                    .sumDeliveredQtyBySalesOrderItem(salesOrderItem.getSoiId());
-            BigDecimal alreadyPlannedQty = deliveryItemRepository
-                    .sumPlannedQtyBySalesOrderItemExcludingDelivered(salesOrderItem.getSoiId());
+            BigDecimal alreadyDeliveredQty = fulfillment.deliveredQty(salesOrderItem.getSoiId());
+            BigDecimal alreadyPlannedQty = fulfillment.plannedQty(salesOrderItem.getSoiId());
             BigDecimal maxPlannedQtyFromOrder = orderedQty.subtract(alreadyDeliveredQty).subtract(alreadyPlannedQty);
 
             log.info(
@@ -512,6 +503,8 @@ public class DeliveryServiceImpl implements IDeliveryService {
 
         // Load current items để exclude khỏi calculation
         List<DeliveryItem> currentItems = deliveryItemRepository.findByDelivery_DeliveryId(deliveryId);
+        OrderFulfillmentCalculator.SalesOrderFulfillment fulfillment =
+                fulfillmentCalculator.forSalesOrder(salesOrder.getSoId());
 
         for (DeliveryItemRequestDTO dto : requestItems) {
             SalesOrderItem salesOrderItem = salesOrderItemRepository.findById(dto.getSalesOrderItemId())
@@ -545,10 +538,8 @@ public class DeliveryServiceImpl implements IDeliveryService {
 
             // Validate số lượng từ đơn hàng
             BigDecimal orderedQty = salesOrderItem.getQuantity();
-            BigDecimal alreadyDeliveredQty = deliveryItemRepository
-                    .sumDeliveredQtyBySalesOrderItem(salesOrderItem.getSoiId());
-            BigDecimal alreadyPlannedQty = deliveryItemRepository
-                    .sumPlannedQtyBySalesOrderItemExcludingDelivered(salesOrderItem.getSoiId());
+            BigDecimal alreadyDeliveredQty = fulfillment.deliveredQty(salesOrderItem.getSoiId());
+            BigDecimal alreadyPlannedQty = fulfillment.plannedQty(salesOrderItem.getSoiId());
 
             // Trừ đi plannedQty của delivery hiện tại
             for (DeliveryItem currentItem : currentItems) {
@@ -576,21 +567,11 @@ public class DeliveryServiceImpl implements IDeliveryService {
     private List<DeliveryItem> buildItemsWithGoodIssueQty(
             Delivery delivery,
             List<DeliveryItemRequestDTO> requestItems,
-            SalesOrder salesOrder,
-            List<GoodIssue> approvedIssues) {
+            SalesOrder salesOrder) {
 
         // Tạo map: productId -> tổng issuedQty từ Good Issue approved cho Delivery này
-        java.util.Map<Integer, BigDecimal> goodIssueQtyByProduct = new java.util.HashMap<>();
-        for (GoodIssue issue : approvedIssues) {
-            List<GoodIssueItem> issueItems = goodIssueItemRepository.findByIssueId(issue.getIssueId());
-            for (GoodIssueItem issueItem : issueItems) {
-                if (issueItem.getDeliveryItem().getDelivery().getDeliveryId().equals(delivery.getDeliveryId())) {
-                    Integer productId = issueItem.getProduct().getProductId();
-                    BigDecimal issuedQty = issueItem.getIssuedQty();
-                    goodIssueQtyByProduct.merge(productId, issuedQty, BigDecimal::add);
-                }
-            }
-        }
+        Map<Integer, BigDecimal> goodIssueQtyByProduct = fulfillmentCalculator
+                .issuedQtyByProduct(delivery.getDeliveryId());
 
         List<DeliveryItem> items = new ArrayList<>();
         for (DeliveryItemRequestDTO dto : requestItems) {
@@ -638,20 +619,15 @@ public class DeliveryServiceImpl implements IDeliveryService {
         return items;
     }
 
-    private List<DeliveryItem> buildItemsFromSalesOrder(Delivery delivery, Integer salesOrderId,
-            Warehouse defaultWarehouse) {
+    private List<DeliveryItem> buildItemsFromSalesOrder(Delivery delivery, List<SalesOrderItem> orderItems,
+            OrderFulfillmentCalculator.SalesOrderFulfillment fulfillment, Warehouse defaultWarehouse) {
         List<DeliveryItem> items = new ArrayList<>();
-        List<SalesOrderItem> orderItems = salesOrderItemRepository.findBySalesOrder_SoId(salesOrderId);
 
         for (SalesOrderItem orderItem : orderItems) {
             // Tính số lượng còn lại cần giao
             // Chỉ tính số lượng đã giao thực tế (từ các Delivery đã Delivered)
-            // Và số lượng đã lên kế hoạch nhưng chưa giao (từ các Delivery chưa Delivered)
-            BigDecimal deliveredQty = deliveryItemRepository.sumDeliveredQtyBySalesOrderItem(orderItem.getSoiId());
-            // Chỉ tính plannedQty từ các Delivery chưa Delivered (Draft, Picked, Shipped)
-            BigDecimal plannedQty = deliveryItemRepository
-                    .sumPlannedQtyBySalesOrderItemExcludingDelivered(orderItem.getSoiId());
-            BigDecimal remainingQty = orderItem.getQuantity().subtract(deliveredQty).subtract(plannedQty);
+            // Và số lượng đã lên kế hoạch nhưng chưa giao (từ các Delivery chưa Delivered: Draft, Picked, Shipped)
+            BigDecimal remainingQty = fulfillment.remainingToPlan(orderItem);
 
             if (remainingQty.compareTo(BigDecimal.ZERO) > 0) {
                 DeliveryItem item = new DeliveryItem();
@@ -784,41 +760,63 @@ public class DeliveryServiceImpl implements IDeliveryService {
         return String.format("%s%04d", prefix, nextNum);
     }
 
-    private DeliveryListResponseDTO enrichDeliveryListDto(DeliveryListResponseDTO dto) {
-        if (dto == null || dto.getDeliveryId() == null)
-            return dto;
-        Integer deliveryId = dto.getDeliveryId();
+    /**
+     * Enrich cả trang danh sách: load items và tổng returnedQty của tất cả Delivery trong trang
+     * bằng 2 query IN, rồi ghép trong bộ nhớ (thay vì query theo từng dòng / từng item).
+     */
+    private void enrichDeliveryListDtos(List<DeliveryListResponseDTO> dtos) {
+        List<Integer> deliveryIds = dtos.stream()
+                .map(DeliveryListResponseDTO::getDeliveryId)
+                .filter(Objects::nonNull)
+                .toList();
+        if (deliveryIds.isEmpty()) {
+            return;
+        }
+
+        List<DeliveryItem> items = deliveryItemRepository.findByDelivery_DeliveryIdIn(deliveryIds);
+        Map<Integer, List<DeliveryItem>> itemsByDelivery = new HashMap<>(deliveryIds.size() * 2);
+        List<Integer> itemIds = new ArrayList<>(items.size());
+        for (DeliveryItem item : items) {
+            itemsByDelivery.computeIfAbsent(item.getDelivery().getDeliveryId(), k -> new ArrayList<>()).add(item);
+            itemIds.add(item.getDiId());
+        }
 
-        // Check xem Delivery đã trả hết hàng chưa (tất cả items đều đã có Return Order
-        // đủ số lượng)
-        boolean isFullyReturned = true;
-        List<DeliveryItem> items = deliveryItemRepository.findByDelivery_DeliveryId(deliveryId);
-        if (items != null && !items.isEmpty()) {
-            for (DeliveryItem item : items) {
-                // Tính tổng returnedQty từ các ReturnOrderItem liên kết với DeliveryItem này
-                List<ReturnOrderItem> returnOrderItems = returnOrderItemRepository
-                        .findByDeliveryItem_DiId(item.getDiId());
-                BigDecimal totalReturnedQty = returnOrderItems.stream()
-                        .map(roi -> roi.getReturnedQty() != null ? roi.getReturnedQty() : BigDecimal.ZERO)
-                        .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-                // So sánh với deliveredQty (hoặc plannedQty nếu deliveredQty = 0)
-                BigDecimal targetQty = item.getDeliveredQty() != null
-                        && item.getDeliveredQty().compareTo(BigDecimal.ZERO) > 0
-                                ? item.getDeliveredQty()
-                                : (item.getPlannedQty() != null ? item.getPlannedQty() : BigDecimal.ZERO);
-
-                if (totalReturnedQty.compareTo(targetQty) < 0) {
-                    isFullyReturned = false;
-                    break;
-                }
+        // Tổng returnedQty từ các ReturnOrderItem theo DeliveryItem
+        Map<Integer, BigDecimal> returnedQtyByItem = new HashMap<>(itemIds.size() * 2);
+        if (!itemIds.isEmpty()) {
+            for (DeliveryItemQuantityProjection row : returnOrderItemRepository.sumReturnedQtyByDeliveryItemIds(itemIds)) {
+                returnedQtyByItem.put(row.getDiId(), row.getQuantity());
             }
-        } else {
-            // Nếu không có items thì coi như chưa trả hết
-            isFullyReturned = false;
         }
-        dto.setIsFullyReturned(isFullyReturned);
 
-        return dto;
+        for (DeliveryListResponseDTO dto : dtos) {
+            if (dto.getDeliveryId() != null) {
+                dto.setIsFullyReturned(isFullyReturned(itemsByDelivery.get(dto.getDeliveryId()), returnedQtyByItem));
+            }
+        }
+    }
+
+    /**
+     * Check xem Delivery đã trả hết hàng chưa (tất cả items đều đã có Return Order đủ số lượng).
+     * Nếu không có items thì coi như chưa trả hết.
+     */
+    private boolean isFullyReturned(List<DeliveryItem> items, Map<Integer, BigDecimal> returnedQtyByItem) {
+        if (items == null || items.isEmpty()) {
+            return false;
+        }
+        for (DeliveryItem item : items) {
+            BigDecimal totalReturnedQty = defaultBigDecimal(returnedQtyByItem.get(item.getDiId()));
+
+            // So sánh với deliveredQty (hoặc plannedQty nếu deliveredQty = 0)
+            BigDecimal targetQty = item.getDeliveredQty() != null
+                    && item.getDeliveredQty().compareTo(BigDecimal.ZERO) > 0
+                            ? item.getDeliveredQty()
+                            : defaultBigDecimal(item.getPlannedQty());
+
+            if (totalReturnedQty.compareTo(targetQty) < 0) {
+                return false;
+            }
+        }
+        return true;
     }
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.g174.mmssystem.service.Impl;
+
+import com.g174.mmssystem.dto.responseDTO.DocumentSearchResultDTO;
+import com.g174.mmssystem.enums.SearchDocumentType;
+import com.g174.mmssystem.service.DocumentSearchIndex;
+import com.g174.mmssystem.service.IService.IDocumentSearchService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+@Service
+@RequiredArgsConstructor
+public class DocumentSearchServiceImpl implements IDocumentSearchService {
+
+    private static final int MAX_RESULTS = 100;
+
+    private final DocumentSearchIndex documentSearchIndex;
+
+    @Override
+    public List<DocumentSearchResultDTO> searchDocuments(String keyword, Set<SearchDocumentType> types, int limit) {
+        if (keyword == null || keyword.isBlank()) {
+            return List.of();
+        }
+        Set<SearchDocumentType> visible = visibleTypes();
+        if (types != null && !types.isEmpty()) {
+            visible.retainAll(types);
+        }
+        return documentSearchIndex.search(keyword, visible, Math.min(limit, MAX_RESULTS));
+    }
+
+    // Loại chứng từ mà ít nhất một role của người dùng hiện tại được xem
+    private Set<SearchDocumentType> visibleTypes() {
+        Set<SearchDocumentType> visible = EnumSet.noneOf(SearchDocumentType.class);
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            return visible;
+        }
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            String role = authority.getAuthority().replaceFirst("^ROLE_", "");
+            for (SearchDocumentType type : SearchDocumentType.values()) {
+                if (type.isVisibleTo(role)) {
+                    visible.add(type);
+                }
+            }
+        }
+        return visible;
+    }
+}
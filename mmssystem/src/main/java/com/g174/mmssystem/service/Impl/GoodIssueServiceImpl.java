@@ -1,12 +1,15 @@
 package com.g174.mmssystem.service.Impl;
 
+import com.g174.mmssystem.dto.requestDTO.GoodIssueBatchRequestDTO;
 import com.g174.mmssystem.dto.requestDTO.GoodIssueRequestDTO;
+import com.g174.mmssystem.dto.responseDTO.GoodIssueBatchResultDTO;
 import com.g174.mmssystem.dto.responseDTO.GoodIssueResponseDTO;
 import com.g174.mmssystem.entity.*;
 import com.g174.mmssystem.exception.DuplicateResourceException;
 import com.g174.mmssystem.exception.ResourceNotFoundException;
 import com.g174.mmssystem.mapper.GoodIssueMapper;
 import com.g174.mmssystem.repository.*;
+import com.g174.mmssystem.service.DocumentNumberAllocator;
 import com.g174.mmssystem.service.IService.IGoodIssueService;
 import com.g174.mmssystem.service.IService.IWarehouseStockService;
 import lombok.RequiredArgsConstructor;
@@ -22,7 +25,14 @@ import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -40,6 +50,10 @@ public class GoodIssueServiceImpl implements IGoodIssueService {
     private final ProductRepository productRepository;
     private final GoodIssueMapper issueMapper;
     private final IWarehouseStockService warehouseStockService;
+    private final WarehouseStockRepository warehouseStockRepository;
+    private final DocumentNumberAllocator documentNumberAllocator;
+
+    private static final int BATCH_RESULT_CHUNK_SIZE = 200;
 
     @Override
     @Transactional
@@ -81,7 +95,7 @@ public class GoodIssueServiceImpl implements IGoodIssueService {
         // Generate issue number if not provided
         String issueNo = dto.getIssueNo();
         if (issueNo == null || issueNo.trim().isEmpty()) {
-            issueNo = generateIssueNo();
+            issueNo = reserveIssueNos(1).get(0);
         } else if (issueRepository.existsByIssueNo(issueNo)) {
             throw new DuplicateResourceException("Good Issue number already exists: " + issueNo);
         }
@@ -180,6 +194,205 @@ public class GoodIssueServiceImpl implements IGoodIssueService {
         return createIssue(dto, createdById);
     }
 
+    /**
+     * Tạo và duyệt phiếu xuất kho cho nhiều Delivery trong một transaction.
+     * Mỗi Delivery xuất đủ plannedQty của từng dòng; tồn kho được kiểm tra theo tổng nhu cầu
+     * (kho, sản phẩm) của cả đợt bằng một query, và được trừ theo từng cặp (kho, sản phẩm) đã gom.
+     */
+    @Override
+    @Transactional
+    public List<Integer> createAndApproveIssues(GoodIssueBatchRequestDTO dto, Integer userId) {
+        List<Integer> deliveryIds = dto.getDeliveryIds().stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        if (deliveryIds.isEmpty()) {
+            throw new IllegalArgumentException("Danh sách Delivery ID không được để trống");
+        }
+        log.info("Creating and approving good issues for {} deliveries", deliveryIds.size());
+
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found with ID: " + userId));
+
+        // Load và validate Delivery
+        Map<Integer, Delivery> deliveriesById = deliveryRepository.findAllById(deliveryIds).stream()
+                .filter(d -> d.getDeletedAt() == null)
+                .collect(Collectors.toMap(Delivery::getDeliveryId, d -> d));
+        for (Integer deliveryId : deliveryIds) {
+            Delivery delivery = deliveriesById.get(deliveryId);
+            if (delivery == null) {
+                throw new ResourceNotFoundException("Delivery not found with ID: " + deliveryId);
+            }
+            if (delivery.getStatus() != Delivery.DeliveryStatus.Picked) {
+                throw new IllegalStateException(String.format(
+                        "Phiếu giao hàng %s chưa được submit cho kho (trạng thái hiện tại: %s)",
+                        delivery.getDeliveryNo(), delivery.getStatus()));
+            }
+        }
+
+        List<Integer> alreadyIssued = issueRepository.findDeliveryIdsWithApprovedIssue(deliveryIds);
+        if (!alreadyIssued.isEmpty()) {
+            throw new IllegalStateException("Các Delivery đã có phiếu xuất kho được duyệt: " + alreadyIssued);
+        }
+
+        // Load items của tất cả Delivery và gom nhu cầu theo (kho, sản phẩm)
+        Map<Integer, List<DeliveryItem>> itemsByDelivery = new HashMap<>();
+        Map<WarehouseStockId, BigDecimal> demand = new LinkedHashMap<>();
+        for (DeliveryItem di : deliveryItemRepository.findByDeliveryIdsWithProductAndWarehouse(deliveryIds)) {
+            Integer deliveryId = di.getDelivery().getDeliveryId();
+            BigDecimal qty = di.getPlannedQty();
+            if (qty == null || qty.compareTo(BigDecimal.ZERO) <= 0) {
+                continue;
+            }
+            Warehouse warehouse = resolveItemWarehouse(di, deliveriesById.get(deliveryId));
+            if (warehouse == null) {
+                throw new IllegalArgumentException(
+                        String.format("Warehouse ID is required for product %s", di.getProduct().getName()));
+            }
+            itemsByDelivery.computeIfAbsent(deliveryId, k -> new ArrayList<>()).add(di);
+            demand.merge(new WarehouseStockId(warehouse.getWarehouseId(), di.getProduct().getProductId()),
+                    qty, BigDecimal::add);
+        }
+        for (Integer deliveryId : deliveryIds) {
+            if (!itemsByDelivery.containsKey(deliveryId)) {
+                throw new IllegalStateException(String.format(
+                        "Phiếu giao hàng %s không có sản phẩm nào cần xuất kho",
+                        deliveriesById.get(deliveryId).getDeliveryNo()));
+            }
+        }
+
+        validateAggregatedStock(demand);
+
+        // Tạo phiếu xuất kho ở trạng thái Approved
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime issueDate = dto.getIssueDate() != null ? dto.getIssueDate().toLocalDateTime() : now;
+        List<String> issueNos = reserveIssueNos(deliveryIds.size());
+        List<GoodIssue> issues = new ArrayList<>(deliveryIds.size());
+        for (int i = 0; i < deliveryIds.size(); i++) {
+            Delivery delivery = deliveriesById.get(deliveryIds.get(i));
+            GoodIssue issue = GoodIssue.builder()
+                    .issueNo(issueNos.get(i))
+                    .delivery(delivery)
+                    .warehouse(delivery.getWarehouse())
+                    .issueDate(issueDate)
+                    .status(GoodIssue.GoodIssueStatus.Approved)
+                    .createdBy(user)
+                    .approvedBy(user)
+                    .approvedAt(now)
+                    .notes(dto.getNotes())
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .items(new ArrayList<>())
+                    .build();
+            for (DeliveryItem di : itemsByDelivery.get(delivery.getDeliveryId())) {
+                issue.getItems().add(GoodIssueItem.builder()
+                        .goodIssue(issue)
+                        .deliveryItem(di)
+                        .product(di.getProduct())
+                        .warehouse(resolveItemWarehouse(di, delivery))
+                        .issuedQty(di.getPlannedQty())
+                        .build());
+            }
+            issues.add(issue);
+        }
+        List<GoodIssue> savedIssues = issueRepository.saveAll(issues);
+
+        // Trừ tồn kho theo từng cặp (kho, sản phẩm) đã gom; điều kiện quantity >= demand chặn tồn âm khi có ghi đồng thời
+        for (Map.Entry<WarehouseStockId, BigDecimal> entry : demand.entrySet()) {
+            WarehouseStockId key = entry.getKey();
+            int updated = warehouseStockRepository.decreaseStockIfSufficient(
+                    key.getWarehouseId(), key.getProductId(), entry.getValue());
+            if (updated != 1) {
+                throw new IllegalStateException(String.format(
+                        "Failed to decrease stock for product %d in warehouse %d: insufficient stock",
+                        key.getProductId(), key.getWarehouseId()));
+            }
+        }
+
+        int shipped = deliveryRepository.markPickedAsShipped(deliveryIds, Instant.now());
+        log.info("Batch good issue completed: {} issues approved, {} stock rows decreased, {} deliveries shipped",
+                savedIssues.size(), demand.size(), shipped);
+
+        return savedIssues.stream()
+                .map(GoodIssue::getIssueId)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Đọc kết quả của các phiếu xuất vừa tạo theo từng nhóm {@value #BATCH_RESULT_CHUNK_SIZE} phiếu
+     * (số dòng và tổng số lượng được tính bằng GROUP BY) và đẩy lần lượt ra {@code sink} theo thứ tự issueIds.
+     */
+    @Override
+    public void streamBatchResults(List<Integer> issueIds, Consumer<GoodIssueBatchResultDTO> sink) {
+        for (int from = 0; from < issueIds.size(); from += BATCH_RESULT_CHUNK_SIZE) {
+            List<Integer> chunk = issueIds.subList(from, Math.min(from + BATCH_RESULT_CHUNK_SIZE, issueIds.size()));
+            Map<Integer, GoodIssueBatchResultDTO> resultsById = issueRepository.findBatchResults(chunk).stream()
+                    .collect(Collectors.toMap(GoodIssueBatchResultDTO::getIssueId, r -> r));
+            for (Integer issueId : chunk) {
+                GoodIssueBatchResultDTO result = resultsById.get(issueId);
+                if (result != null) {
+                    sink.accept(result);
+                }
+            }
+        }
+    }
+
+    private Warehouse resolveItemWarehouse(DeliveryItem di, Delivery delivery) {
+        return di.getWarehouse() != null ? di.getWarehouse() : delivery.getWarehouse();
+    }
+
+    private void validateAggregatedStock(Map<WarehouseStockId, BigDecimal> demand) {
+        Set<Integer> warehouseIds = new HashSet<>();
+        Set<Integer> productIds = new HashSet<>();
+        demand.keySet().forEach(key -> {
+            warehouseIds.add(key.getWarehouseId());
+            productIds.add(key.getProductId());
+        });
+
+        Map<WarehouseStockId, BigDecimal> available = new HashMap<>();
+        for (WarehouseStock stock : warehouseStockRepository.findByWarehouseIdInAndProductIdIn(warehouseIds, productIds)) {
+            available.put(new WarehouseStockId(stock.getWarehouseId(), stock.getProductId()), stock.getQuantity());
+        }
+
+        List<String> shortages = new ArrayList<>();
+        demand.forEach((key, required) -> {
+            BigDecimal availableQty = available.getOrDefault(key, BigDecimal.ZERO);
+            if (availableQty.compareTo(required) < 0) {
+                shortages.add(String.format("warehouse %d / product %d (Available: %s, Required: %s)",
+                        key.getWarehouseId(), key.getProductId(), availableQty, required));
+            }
+        });
+        if (!shortages.isEmpty()) {
+            throw new IllegalStateException("Insufficient stock: " + String.join("; ", shortages));
+        }
+    }
+
+    /**
+     * Giữ chỗ {@code count} mã phiếu xuất kho liên tiếp qua bộ đếm GI&lt;năm&gt;, không trùng với mã đang có
+     * hay mã đã cấp cho request khác chạy đồng thời.
+     */
+    private List<String> reserveIssueNos(int count) {
+        String prefix = "GI" + java.time.Year.now().getValue();
+        long start = documentNumberAllocator.reserve(prefix, count, () -> issueRepository
+                .findTopByIssueNoStartingWithOrderByIssueNoDesc(prefix)
+                .map(issue -> parseIssueNumber(prefix, issue.getIssueNo()))
+                .orElse(0L));
+        List<String> issueNos = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            issueNos.add(String.format("%s%04d", prefix, start + i));
+        }
+        return issueNos;
+    }
+
+    private long parseIssueNumber(String prefix, String issueNo) {
+        try {
+            return Long.parseLong(issueNo.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            log.warn("Could not parse number from Issue number: {}", issueNo);
+            return 0L;
+        }
+    }
+
     @Override
     public GoodIssueResponseDTO getIssueById(Integer issueId) {
         log.info("Fetching good issue ID: {}", issueId);
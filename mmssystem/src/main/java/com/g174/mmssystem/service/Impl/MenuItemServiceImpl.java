@@ -6,20 +6,19 @@ import com.g174.mmssystem.dto.responseDTO.MenuConfigResponseDTO;
 import com.g174.mmssystem.dto.responseDTO.MenuItemResponseDTO;
 import com.g174.mmssystem.dto.responseDTO.PageResponseDTO;
 import com.g174.mmssystem.entity.MenuItem;
-import com.g174.mmssystem.entity.User;
 import com.g174.mmssystem.exception.DuplicateResourceException;
 import com.g174.mmssystem.exception.ResourceNotFoundException;
-import com.g174.mmssystem.mapper.MenuConfigMapper;
 import com.g174.mmssystem.mapper.MenuItemMapper;
 import com.g174.mmssystem.repository.MenuItemRepository;
-import com.g174.mmssystem.repository.UserRepository;
 import com.g174.mmssystem.service.IService.IMenuItemService;
+import com.g174.mmssystem.service.MenuConfigCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -32,9 +31,8 @@ import java.util.List;
 public class MenuItemServiceImpl implements IMenuItemService {
     
     private final MenuItemRepository menuItemRepository;
-    private final UserRepository userRepository;
     private final MenuItemMapper menuItemMapper;
-    private final MenuConfigMapper menuConfigMapper;
+    private final MenuConfigCache menuConfigCache;
     
     @Override
     @Transactional(readOnly = true)
@@ -55,26 +53,23 @@ public class MenuItemServiceImpl implements IMenuItemService {
     }
     
     @Override
-    @Transactional(readOnly = true)
     public MenuConfigResponseDTO getMenuConfigForCurrentUser() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-        log.info("Lấy menu config cho user: {}", email);
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy user"));
-        String roleName = user.getUserRoles().stream()
+        log.debug("Lấy menu config cho user: {}", auth.getName());
+        // Role lấy từ token (đã nạp vào authorities), không cần truy vấn user
+        String roleName = auth.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .filter(authority -> authority.startsWith("ROLE_"))
+                .map(authority -> authority.substring("ROLE_".length()))
                 .findFirst()
-                .map(ur -> ur.getRole().getRoleName())
                 .orElse("EMPLOYEE");
-        return getMenuConfigByRoleName(roleName);
+        return menuConfigCache.get(roleName);
     }
     
     @Override
-    @Transactional(readOnly = true)
     public MenuConfigResponseDTO getMenuConfigByRoleName(String roleName) {
         log.info("Lấy menu config cho role: {}", roleName);
-        List<MenuItem> menuItems = menuItemRepository.findMenusByRoleName(roleName);
-        return menuConfigMapper.toMenuConfigResponseDTO(menuItems);
+        return menuConfigCache.get(roleName);
     }
     
     @Override
@@ -95,6 +90,7 @@ public class MenuItemServiceImpl implements IMenuItemService {
         }
         MenuItem menuItem = menuItemMapper.toEntity(request);
         MenuItem savedMenuItem = menuItemRepository.save(menuItem);
+        menuConfigCache.invalidate();
         log.info("Tạo menu item thành công: {} (ID: {})", savedMenuItem.getMenuKey(), savedMenuItem.getMenuId());
         return menuItemMapper.toResponseDTO(savedMenuItem);
     }
@@ -107,6 +103,7 @@ public class MenuItemServiceImpl implements IMenuItemService {
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy menu item"));
         menuItemMapper.updateEntityFromDTO(existingMenuItem, request);
         MenuItem updatedMenuItem = menuItemRepository.save(existingMenuItem);
+        menuConfigCache.invalidate();
         log.info("Cập nhật menu item thành công: {}", updatedMenuItem.getMenuKey());
         return menuItemMapper.toResponseDTO(updatedMenuItem);
     }
@@ -119,6 +116,7 @@ public class MenuItemServiceImpl implements IMenuItemService {
             throw new ResourceNotFoundException("Không tìm thấy menu item");
         }
         menuItemRepository.deleteById(menuId);
+        menuConfigCache.invalidate();
         log.info("Xóa menu item thành công");
     }
 }
@@ -3,21 +3,17 @@ package com.g174.mmssystem.service.Impl;
 import com.g174.mmssystem.dto.requestDTO.CreatePermissionRequestDTO;
 import com.g174.mmssystem.dto.responseDTO.PermissionResponseDTO;
 import com.g174.mmssystem.entity.Permission;
-import com.g174.mmssystem.entity.User;
-import com.g174.mmssystem.entity.UserPermission;
 import com.g174.mmssystem.exception.DuplicateResourceException;
 import com.g174.mmssystem.exception.ResourceNotFoundException;
 import com.g174.mmssystem.mapper.PermissionMapper;
 import com.g174.mmssystem.repository.PermissionRepository;
-import com.g174.mmssystem.repository.UserPermissionRepository;
-import com.g174.mmssystem.repository.UserRepository;
 import com.g174.mmssystem.service.IService.IPermissionService;
+import com.g174.mmssystem.service.PermissionEngine;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
 import java.util.List;
 
 @Service
@@ -26,9 +22,8 @@ import java.util.List;
 public class PermissionServiceImpl implements IPermissionService {
     
     private final PermissionRepository permissionRepository;
-    private final UserRepository userRepository;
-    private final UserPermissionRepository userPermissionRepository;
     private final PermissionMapper permissionMapper;
+    private final PermissionEngine permissionEngine;
     
     @Override
     @Transactional(readOnly = true)
@@ -68,6 +63,7 @@ public class PermissionServiceImpl implements IPermissionService {
         
         Permission permission = permissionMapper.toEntity(request);
         Permission savedPermission = permissionRepository.save(permission);
+        permissionEngine.invalidateAll();
         
         log.info("Tạo permission thành công: {} (ID: {})", savedPermission.getPermissionKey(), savedPermission.getPermissionId());
         return permissionMapper.toResponseDTO(savedPermission);
@@ -83,51 +79,13 @@ public class PermissionServiceImpl implements IPermissionService {
         }
         
         permissionRepository.deleteById(permissionId);
+        permissionEngine.invalidateAll();
         log.info("Xóa permission thành công");
     }
     
     @Override
-    @Transactional(readOnly = true)
     public boolean hasPermission(String userEmail, String permissionKey) {
         log.debug("Kiểm tra permission '{}' cho user: {}", permissionKey, userEmail);
-        
-        User user = userRepository.findByEmail(userEmail)
-                .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy user"));
-        
-        Permission permission = permissionRepository.findByPermissionKey(permissionKey)
-                .orElse(null);
-        
-        if (permission == null) {
-            log.warn("Permission '{}' không tồn tại", permissionKey);
-            return false;
-        }
-        
-        UserPermission userPerm = userPermissionRepository.findByUserIdAndPermissionIdAndNotExpired(
-                user.getId(), 
-                permission.getPermissionId(),
-                LocalDateTime.now()
-        );
-        
-        if (userPerm != null) {
-            log.debug("User có override permission: {}", permissionKey);
-            return true;
-        }
-        
-        String roleName = user.getUserRoles().stream()
-                .findFirst()
-                .map(ur -> ur.getRole().getRoleName())
-                .orElse(null);
-        
-        if (roleName == null) {
-            return false;
-        }
-        
-        List<Permission> rolePermissions = permissionRepository.findPermissionsByRoleName(roleName);
-        boolean hasRolePermission = rolePermissions.stream()
-                .anyMatch(p -> p.getPermissionKey().equals(permissionKey));
-        
-        log.debug("User {} permission '{}' từ role: {}", hasRolePermission ? "có" : "không có", permissionKey, roleName);
-        return hasRolePermission;
+        return permissionEngine.hasPermission(userEmail, permissionKey);
     }
 }
-
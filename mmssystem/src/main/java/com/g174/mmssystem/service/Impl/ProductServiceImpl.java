@@ -2,6 +2,7 @@ package com.g174.mmssystem.service.Impl;
 
 import com.g174.mmssystem.dto.requestDTO.ProductRequestDTO;
 import com.g174.mmssystem.dto.responseDTO.ProductResponseDTO;
+import com.g174.mmssystem.dto.responseDTO.SuggestionDTO;
 import com.g174.mmssystem.entity.Product;
 import com.g174.mmssystem.entity.ProductCategory;
 import com.g174.mmssystem.entity.User;
@@ -9,8 +10,11 @@ import com.g174.mmssystem.mapper.ProductMapper;
 import com.g174.mmssystem.repository.ProductCategoryRepository;
 import com.g174.mmssystem.repository.ProductRepository;
 import com.g174.mmssystem.repository.UserRepository;
+import com.g174.mmssystem.service.FileStore;
 import com.g174.mmssystem.service.IService.IProductService;
 import com.g174.mmssystem.service.IService.IWarehouseStockService;
+import com.g174.mmssystem.service.MasterDataSearchIndex;
+import com.g174.mmssystem.service.ThumbnailGenerator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -19,12 +23,13 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.UUID;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -34,17 +39,26 @@ public class ProductServiceImpl implements IProductService {
     private final UserRepository userRepository;
     private final ProductMapper productMapper;
     private final IWarehouseStockService warehouseStockService;
+    private final MasterDataSearchIndex searchIndex;
+    private final FileStore fileStore;
+    private final ThumbnailGenerator thumbnailGenerator;
 
     public ProductServiceImpl(ProductRepository productRepository,
                               ProductCategoryRepository productCategoryRepository,
                               UserRepository userRepository,
                               ProductMapper productMapper,
-                              IWarehouseStockService warehouseStockService) {
+                              IWarehouseStockService warehouseStockService,
+                              MasterDataSearchIndex searchIndex,
+                              FileStore fileStore,
+                              ThumbnailGenerator thumbnailGenerator) {
         this.productRepository = productRepository;
         this.productCategoryRepository = productCategoryRepository;
         this.userRepository = userRepository;
         this.productMapper = productMapper;
         this.warehouseStockService = warehouseStockService;
+        this.searchIndex = searchIndex;
+        this.fileStore = fileStore;
+        this.thumbnailGenerator = thumbnailGenerator;
     }
 
     @Override
@@ -65,7 +79,14 @@ public class ProductServiceImpl implements IProductService {
         if (keyword == null || keyword.trim().isEmpty()) {
             return getProducts();
         }
-        List<Product> products = productRepository.searchActiveProducts(keyword.trim());
+        List<Product> products;
+        if (searchIndex.isReady()) {
+            // Tìm trên chỉ mục trong bộ nhớ (không dấu, xếp hạng), chỉ nạp entity theo id
+            List<Integer> ids = searchIndex.searchProducts(keyword);
+            products = MasterDataSearchIndex.inRankOrder(ids, productRepository.findAllById(ids), Product::getProductId);
+        } else {
+            products = productRepository.searchActiveProducts(keyword.trim());
+        }
         List<ProductResponseDTO> dtos = productMapper.toResponseDTOList(products);
         // Tính totalQuantity từ Warehouse_Stock
         dtos.forEach(dto -> {
@@ -76,6 +97,20 @@ public class ProductServiceImpl implements IProductService {
         return dtos;
     }
 
+    @Override
+    public List<SuggestionDTO> suggestProducts(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            return List.of();
+        }
+        if (searchIndex.isReady()) {
+            return searchIndex.suggestProducts(prefix, limit);
+        }
+        return productRepository.searchActiveProducts(prefix.trim()).stream()
+                .limit(limit)
+                .map(product -> new SuggestionDTO(product.getProductId(), product.getSku(), product.getName()))
+                .toList();
+    }
+
     @Override
     public List<ProductResponseDTO> getDeletedProducts() {
         List<Product> products = productRepository.findAllDeletedOrderByCreatedAt();
@@ -117,6 +152,8 @@ public class ProductServiceImpl implements IProductService {
         User user = getCurrentUser();
         Product product = productMapper.toEntity(request, category, user);
         Product savedProduct = productRepository.save(product);
+        acquireImages(imageUrlsOf(savedProduct.getImageUrl()));
+        searchIndex.indexProduct(savedProduct);
         ProductResponseDTO dto = productMapper.toResponseDTO(savedProduct);
         // Tính totalQuantity từ Warehouse_Stock (sẽ là 0 vì sản phẩm mới)
         dto.setTotalQuantity(warehouseStockService.getTotalQuantityByProductId(savedProduct.getProductId()));
@@ -149,8 +186,17 @@ public class ProductServiceImpl implements IProductService {
         }
 
         User user = getCurrentUser();
+        Set<String> oldImageUrls = imageUrlsOf(product.getImageUrl());
         productMapper.updateEntityFromDTO(product, request, category, user);
         Product updatedProduct = productRepository.save(product);
+        // Thêm tham chiếu tới ảnh mới gắn vào, bỏ tham chiếu tới các ảnh đã bị gỡ khỏi sản phẩm
+        Set<String> newImageUrls = imageUrlsOf(updatedProduct.getImageUrl());
+        Set<String> addedImageUrls = new HashSet<>(newImageUrls);
+        addedImageUrls.removeAll(oldImageUrls);
+        acquireImages(addedImageUrls);
+        oldImageUrls.removeAll(newImageUrls);
+        oldImageUrls.forEach(fileStore::release);
+        searchIndex.indexProduct(updatedProduct);
         ProductResponseDTO dto = productMapper.toResponseDTO(updatedProduct);
         // Tính totalQuantity từ Warehouse_Stock
         dto.setTotalQuantity(warehouseStockService.getTotalQuantityByProductId(id));
@@ -169,6 +215,8 @@ public class ProductServiceImpl implements IProductService {
 
         product.setDeletedAt(LocalDateTime.now());
         productRepository.save(product);
+        imageUrlsOf(product.getImageUrl()).forEach(fileStore::release);
+        searchIndex.removeProduct(id);
     }
 
     @Override
@@ -182,7 +230,15 @@ public class ProductServiceImpl implements IProductService {
         }
 
         product.setDeletedAt(null);
+        // Ảnh đã bị xóa khỏi kho trong lúc sản phẩm ở thùng rác thì bỏ khỏi sản phẩm
+        Set<String> imageUrls = imageUrlsOf(product.getImageUrl());
+        List<String> keptImageUrls = imageUrls.stream().filter(fileStore::acquire).toList();
+        if (keptImageUrls.size() != imageUrls.size()) {
+            log.warn("Product {} restored without {} missing image(s)", id, imageUrls.size() - keptImageUrls.size());
+            product.setImageUrl(keptImageUrls.isEmpty() ? null : String.join(",", keptImageUrls));
+        }
         productRepository.save(product);
+        searchIndex.indexProduct(product);
     }
 
     @Override
@@ -202,25 +258,33 @@ public class ProductServiceImpl implements IProductService {
         }
 
         try {
-            Path uploadsDir = Paths.get("uploads/products");
-            Files.createDirectories(uploadsDir);
-
-            String originalFilename = file.getOriginalFilename();
-            String extension = originalFilename != null && originalFilename.contains(".")
-                    ? originalFilename.substring(originalFilename.lastIndexOf("."))
-                    : "";
-            String filename = UUID.randomUUID().toString() + extension;
-
-            Path filePath = uploadsDir.resolve(filename);
-            Files.copy(file.getInputStream(), filePath);
-
-            return "/uploads/products/" + filename;
-
+            // Tham chiếu được thêm khi sản phẩm lưu imageUrl (create / update); ảnh không được dùng sẽ bị sweep xóa
+            String imageUrl = fileStore.storeUnreferenced(file);
+            thumbnailGenerator.schedule(imageUrl);
+            return imageUrl;
         } catch (IOException e) {
             throw new RuntimeException("Tải lên ảnh sản phẩm thất bại: " + e.getMessage(), e);
         }
     }
 
+    private void acquireImages(Set<String> imageUrls) {
+        for (String imageUrl : imageUrls) {
+            if (!fileStore.acquire(imageUrl)) {
+                throw new RuntimeException("Ảnh sản phẩm không còn tồn tại, vui lòng tải lên lại: " + imageUrl);
+            }
+        }
+    }
+
+    private static Set<String> imageUrlsOf(String imageUrl) {
+        if (imageUrl == null || imageUrl.isBlank()) {
+            return new LinkedHashSet<>();
+        }
+        return Arrays.stream(imageUrl.split("[,;]"))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
     private User getCurrentUser() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         String email = authentication.getName();
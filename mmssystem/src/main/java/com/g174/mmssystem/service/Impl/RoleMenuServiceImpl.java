@@ -10,6 +10,7 @@ import com.g174.mmssystem.repository.MenuItemRepository;
 import com.g174.mmssystem.repository.RoleMenuRepository;
 import com.g174.mmssystem.repository.RoleRepository;
 import com.g174.mmssystem.service.IService.IRoleMenuService;
+import com.g174.mmssystem.service.MenuConfigCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -26,6 +27,7 @@ public class RoleMenuServiceImpl implements IRoleMenuService {
     private final RoleRepository roleRepository;
     private final MenuItemRepository menuItemRepository;
     private final MenuItemMapper menuItemMapper;
+    private final MenuConfigCache menuConfigCache;
     
     @Override
     @Transactional(readOnly = true)
@@ -63,6 +65,7 @@ public class RoleMenuServiceImpl implements IRoleMenuService {
             roleMenu.setMenuId(menuId);
             roleMenuRepository.save(roleMenu);
         }
+        menuConfigCache.invalidate();
         
         log.info("Assign menus thành công cho role ID: {}", request.getRoleId());
     }
@@ -73,6 +76,7 @@ public class RoleMenuServiceImpl implements IRoleMenuService {
         log.info("Xóa menu {} khỏi role {}", menuId, roleId);
         
         roleMenuRepository.deleteByRoleIdAndMenuId(roleId, menuId);
+        menuConfigCache.invalidate();
         log.info("Xóa menu khỏi role thành công");
     }
     
@@ -82,6 +86,7 @@ public class RoleMenuServiceImpl implements IRoleMenuService {
         log.info("Xóa tất cả menus của role {}", roleId);
         
         roleMenuRepository.deleteByRoleId(roleId);
+        menuConfigCache.invalidate();
         log.info("Xóa tất cả menus thành công");
     }
 }
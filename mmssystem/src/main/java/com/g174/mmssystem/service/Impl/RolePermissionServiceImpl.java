@@ -15,6 +15,7 @@ import com.g174.mmssystem.repository.PermissionRepository;
 import com.g174.mmssystem.repository.RolePermissionRepository;
 import com.g174.mmssystem.repository.RoleRepository;
 import com.g174.mmssystem.service.IService.IRolePermissionService;
+import com.g174.mmssystem.service.PermissionEngine;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -33,6 +34,7 @@ public class RolePermissionServiceImpl implements IRolePermissionService {
     private final MenuItemRepository menuItemRepository;
     private final PermissionMapper permissionMapper;
     private final RoleDetailMapper roleDetailMapper;
+    private final PermissionEngine permissionEngine;
     
     @Override
     @Transactional(readOnly = true)
@@ -83,6 +85,7 @@ public class RolePermissionServiceImpl implements IRolePermissionService {
             rolePermission.setPermissionId(permission.getPermissionId());
             rolePermissionRepository.save(rolePermission);
         }
+        permissionEngine.invalidateRole(request.getRoleId());
         
         log.info("Assign permissions thành công cho role ID: {}", request.getRoleId());
     }
@@ -93,6 +96,7 @@ public class RolePermissionServiceImpl implements IRolePermissionService {
         log.info("Xóa permission {} khỏi role {}", permissionId, roleId);
         
         rolePermissionRepository.deleteByRoleIdAndPermissionId(roleId, permissionId);
+        permissionEngine.invalidateRole(roleId);
         log.info("Xóa permission khỏi role thành công");
     }
     
@@ -102,6 +106,7 @@ public class RolePermissionServiceImpl implements IRolePermissionService {
         log.info("Xóa tất cả permissions của role {}", roleId);
         
         rolePermissionRepository.deleteByRoleId(roleId);
+        permissionEngine.invalidateRole(roleId);
         log.info("Xóa tất cả permissions thành công");
     }
 }
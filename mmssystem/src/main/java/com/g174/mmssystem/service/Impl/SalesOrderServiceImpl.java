@@ -3,6 +3,7 @@ package com.g174.mmssystem.service.Impl;
 import com.g174.mmssystem.dto.requestDTO.SalesOrderItemRequestDTO;
 import com.g174.mmssystem.dto.requestDTO.SalesOrderRequestDTO;
 import com.g174.mmssystem.dto.responseDTO.SalesOrderListResponseDTO;
+import com.g174.mmssystem.dto.responseDTO.SalesOrderRelationFlagsProjection;
 import com.g174.mmssystem.dto.responseDTO.SalesOrderResponseDTO;
 import com.g174.mmssystem.entity.*;
 import com.g174.mmssystem.exception.ResourceNotFoundException;
@@ -10,6 +11,7 @@ import com.g174.mmssystem.mapper.SalesOrderMapper;
 import com.g174.mmssystem.repository.*;
 import com.g174.mmssystem.service.IService.ISalesOrderService;
 import com.g174.mmssystem.service.EmailService;
+import com.g174.mmssystem.service.OrderFulfillmentCalculator;
 import com.g174.mmssystem.specification.SalesOrderSpecifications;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -28,9 +30,12 @@ import java.time.Instant;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -48,9 +53,9 @@ public class SalesOrderServiceImpl implements ISalesOrderService {
     private final UserRepository userRepository;
     private final SalesOrderMapper salesOrderMapper;
     private final DeliveryRepository deliveryRepository;
-    private final DeliveryItemRepository deliveryItemRepository;
     private final ARInvoiceRepository arInvoiceRepository;
     private final EmailService emailService;
+    private final OrderFulfillmentCalculator fulfillmentCalculator;
 
     @Override
     public SalesOrderResponseDTO createOrder(SalesOrderRequestDTO request) {
@@ -158,9 +163,9 @@ public class SalesOrderServiceImpl implements ISalesOrderService {
                 .and(SalesOrderSpecifications.hasStatus(parseStatus(status)))
                 .and(SalesOrderSpecifications.keywordLike(keyword));
 
-        return salesOrderRepository.findAll(spec, pageable)
-                .map(salesOrderMapper::toListResponse)
-                .map(this::enrichListDtoWithRelations);
+        Page<SalesOrder> orders = salesOrderRepository.findAll(spec, pageable);
+        Map<Integer, SalesOrderRelationFlagsProjection> flags = loadRelationFlags(orders.getContent());
+        return orders.map(order -> enrichListDtoWithRelations(salesOrderMapper.toListResponse(order), flags));
     }
 
     @Override
@@ -171,40 +176,43 @@ public class SalesOrderServiceImpl implements ISalesOrderService {
                 .and(SalesOrderSpecifications.hasStatus(parseStatus(status)))
                 .and(SalesOrderSpecifications.keywordLike(keyword));
 
-        return salesOrderRepository.findAll(spec).stream()
-                .map(salesOrderMapper::toListResponse)
-                .map(this::enrichListDtoWithRelations)
+        List<SalesOrder> orders = salesOrderRepository.findAll(spec);
+        Map<Integer, SalesOrderRelationFlagsProjection> flags = loadRelationFlags(orders);
+        return orders.stream()
+                .map(order -> enrichListDtoWithRelations(salesOrderMapper.toListResponse(order), flags))
                 .collect(Collectors.toList());
     }
 
-    private SalesOrderListResponseDTO enrichListDtoWithRelations(SalesOrderListResponseDTO dto) {
+    /**
+     * hasDelivery / hasInvoice của cả danh sách trong một câu SELECT (EXISTS), thay vì 2 query cho mỗi đơn.
+     */
+    private Map<Integer, SalesOrderRelationFlagsProjection> loadRelationFlags(List<SalesOrder> orders) {
+        if (orders.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<Integer> ids = orders.stream().map(SalesOrder::getSoId).collect(Collectors.toList());
+        return salesOrderRepository.findRelationFlags(ids).stream()
+                .collect(Collectors.toMap(SalesOrderRelationFlagsProjection::getSoId, Function.identity()));
+    }
+
+    private SalesOrderListResponseDTO enrichListDtoWithRelations(SalesOrderListResponseDTO dto,
+            Map<Integer, SalesOrderRelationFlagsProjection> flags) {
         if (dto == null || dto.getOrderId() == null)
             return dto;
         Integer soId = dto.getOrderId();
-        boolean hasDelivery = !deliveryRepository.findBySalesOrder_SoIdAndDeletedAtIsNull(soId).isEmpty();
-        boolean hasInvoice = !arInvoiceRepository.findBySalesOrder_SoIdAndDeletedAtIsNull(soId).isEmpty();
+        SalesOrderRelationFlagsProjection flag = flags.get(soId);
+        boolean hasDelivery = flag != null && Boolean.TRUE.equals(flag.getHasDelivery());
+        boolean hasInvoice = flag != null && Boolean.TRUE.equals(flag.getHasInvoice());
         dto.setHasDelivery(hasDelivery);
         dto.setHasInvoice(hasInvoice);
 
         // Check xem đơn hàng đã giao hết hàng chưa (tất cả items đều remainingQty <= 0)
-        boolean isFullyDelivered = true;
-        List<SalesOrderItem> items = salesOrderItemRepository.findBySalesOrder_SoId(soId);
-        if (items != null && !items.isEmpty()) {
-            for (SalesOrderItem item : items) {
-                BigDecimal quantity = item.getQuantity() != null ? item.getQuantity() : BigDecimal.ZERO;
-                BigDecimal deliveredQty = deliveryItemRepository.sumDeliveredQtyBySalesOrderItem(item.getSoiId());
-                if (deliveredQty == null) {
-                    deliveredQty = BigDecimal.ZERO;
-                }
-                BigDecimal remainingQty = quantity.subtract(deliveredQty);
-                if (remainingQty.compareTo(BigDecimal.ZERO) > 0) {
-                    isFullyDelivered = false;
-                    break;
-                }
-            }
-        } else {
-            // Nếu không có items thì coi như chưa giao hết
-            isFullyDelivered = false;
+        // Nếu không có items hoặc chưa có phiếu giao nào thì coi như chưa giao hết
+        boolean isFullyDelivered = false;
+        if (hasDelivery) {
+            List<SalesOrderItem> items = salesOrderItemRepository.findBySalesOrder_SoId(soId);
+            isFullyDelivered = items != null && !items.isEmpty()
+                    && fulfillmentCalculator.forSalesOrder(soId).isFullyDelivered(items);
         }
         dto.setIsFullyDelivered(isFullyDelivered);
 
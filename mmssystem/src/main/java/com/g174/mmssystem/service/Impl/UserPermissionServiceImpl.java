@@ -4,7 +4,6 @@ import com.g174.mmssystem.dto.requestDTO.GrantUserPermissionRequestDTO;
 import com.g174.mmssystem.dto.requestDTO.RevokeUserPermissionRequestDTO;
 import com.g174.mmssystem.dto.responseDTO.UserPermissionResponseDTO;
 import com.g174.mmssystem.entity.Permission;
-import com.g174.mmssystem.entity.User;
 import com.g174.mmssystem.entity.UserPermission;
 import com.g174.mmssystem.exception.ResourceNotFoundException;
 import com.g174.mmssystem.mapper.UserPermissionMapper;
@@ -12,6 +11,7 @@ import com.g174.mmssystem.repository.PermissionRepository;
 import com.g174.mmssystem.repository.UserPermissionRepository;
 import com.g174.mmssystem.repository.UserRepository;
 import com.g174.mmssystem.service.IService.IUserPermissionService;
+import com.g174.mmssystem.service.PermissionEngine;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -19,8 +19,6 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -31,39 +29,19 @@ public class UserPermissionServiceImpl implements IUserPermissionService {
     private final UserRepository userRepository;
     private final PermissionRepository permissionRepository;
     private final UserPermissionMapper userPermissionMapper;
+    private final PermissionEngine permissionEngine;
     
     @Override
     @Transactional(readOnly = true)
     public List<UserPermissionResponseDTO> getUserPermissions(Integer userId) {
         log.info("Lấy tất cả permissions của user ID: {}", userId);
         
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy user"));
-        
-        String roleName = user.getUserRoles().stream()
-                .findFirst()
-                .map(ur -> ur.getRole().getRoleName())
-                .orElse(null);
-        
-        List<Permission> rolePermissions = roleName != null 
-                ? permissionRepository.findPermissionsByRoleName(roleName)
-                : List.of();
+        if (!userRepository.existsById(userId)) {
+            throw new ResourceNotFoundException("Không tìm thấy user");
+        }
         
         List<UserPermission> userPerms = userPermissionRepository.findByUserIdAndNotExpired(userId, LocalDateTime.now());
-        List<Integer> userPermIds = userPerms.stream()
-                .map(UserPermission::getPermissionId)
-                .toList();
-        
-        List<Permission> userOverridePermissions = userPermIds.isEmpty() 
-                ? List.of()
-                : permissionRepository.findAllById(userPermIds);
-        
-        Map<Integer, Permission> allPermissionsMap = rolePermissions.stream()
-                .collect(Collectors.toMap(Permission::getPermissionId, p -> p));
-        
-        userOverridePermissions.forEach(p -> allPermissionsMap.putIfAbsent(p.getPermissionId(), p));
-        
-        return userPermissionMapper.toResponseDTOList(userPerms, allPermissionsMap);
+        return userPermissionMapper.toResponseDTOList(userPerms, permissionEngine.getPermissionsById());
     }
     
     @Override
@@ -77,18 +55,7 @@ public class UserPermissionServiceImpl implements IUserPermissionService {
         
         List<UserPermission> userPerms = userPermissionRepository.findByUserIdAndNotExpired(userId, LocalDateTime.now());
         
-        List<Integer> permIds = userPerms.stream()
-                .map(UserPermission::getPermissionId)
-                .toList();
-        
-        List<Permission> permissions = permIds.isEmpty() 
-                ? List.of()
-                : permissionRepository.findAllById(permIds);
-        
-        Map<Integer, Permission> permissionMap = permissions.stream()
-                .collect(Collectors.toMap(Permission::getPermissionId, p -> p));
-        
-        return userPermissionMapper.toResponseDTOList(userPerms, permissionMap);
+        return userPermissionMapper.toResponseDTOList(userPerms, permissionEngine.getPermissionsById());
     }
     
     @Override
@@ -114,6 +81,7 @@ public class UserPermissionServiceImpl implements IUserPermissionService {
         userPermission.setExpiresAt(request.getExpiresAt());
         
         userPermissionRepository.save(userPermission);
+        permissionEngine.invalidateUser(request.getUserId());
         
         String expiryInfo = request.getExpiresAt() == null ? "vĩnh viễn" : "hết hạn " + request.getExpiresAt();
         log.info("Cấp quyền thành công: {} ({})", request.getPermissionKey(), expiryInfo);
@@ -130,6 +98,7 @@ public class UserPermissionServiceImpl implements IUserPermissionService {
         userPermissionRepository.deleteById(
             new UserPermission.UserPermissionId(request.getUserId(), permission.getPermissionId())
         );
+        permissionEngine.invalidateUser(request.getUserId());
         
         log.info("Thu hồi quyền thành công");
     }
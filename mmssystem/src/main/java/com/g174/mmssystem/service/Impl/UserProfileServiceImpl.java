@@ -9,6 +9,7 @@ import com.g174.mmssystem.exception.InvalidCredentialsException;
 import com.g174.mmssystem.exception.ResourceNotFoundException;
 import com.g174.mmssystem.repository.UserProfileRepository;
 import com.g174.mmssystem.repository.UserRepository;
+import com.g174.mmssystem.service.FileStore;
 import com.g174.mmssystem.service.IService.IUserProfileService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -17,10 +18,6 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
@@ -30,6 +27,7 @@ public class UserProfileServiceImpl implements IUserProfileService {
     private final UserRepository userRepository;
     private final UserProfileRepository userProfileRepository;
     private final PasswordEncoder passwordEncoder;
+    private final FileStore fileStore;
 
     @Override
     @Transactional(readOnly = true)
@@ -107,25 +105,13 @@ public class UserProfileServiceImpl implements IUserProfileService {
         }
 
         try {
-            // Create uploads directory if not exists
-            Path uploadsDir = Paths.get("uploads/avatars");
-            Files.createDirectories(uploadsDir);
-
-            // Generate unique filename
-            String originalFilename = file.getOriginalFilename();
-            String extension = originalFilename != null && originalFilename.contains(".")
-                    ? originalFilename.substring(originalFilename.lastIndexOf("."))
-                    : ".jpg";
-            String filename = UUID.randomUUID().toString() + extension;
-
-            // Save file
-            Path filePath = uploadsDir.resolve(filename);
-            Files.copy(file.getInputStream(), filePath);
-
             // Update user profile
             User user = userRepository.findByEmailWithRelations(email)
                     .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy người dùng với email: " + email));
 
+            // Save file
+            String avatarUrl = fileStore.store(file);
+
             UserProfile profile = user.getProfile();
             if (profile == null) {
                 profile = new UserProfile();
@@ -133,9 +119,10 @@ public class UserProfileServiceImpl implements IUserProfileService {
                 user.setProfile(profile);
             }
 
-            // Save relative path for database
-            String avatarUrl = "/uploads/avatars/" + filename;
+            // Save relative path for database, bỏ tham chiếu tới avatar cũ
+            String oldAvatarUrl = profile.getAvatarUrl();
             profile.setAvatarUrl(avatarUrl);
+            fileStore.release(oldAvatarUrl);
             userProfileRepository.save(profile);
 
             return avatarUrl;
@@ -15,6 +15,7 @@ import com.g174.mmssystem.repository.RoleRepository;
 import com.g174.mmssystem.repository.UserRepository;
 import com.g174.mmssystem.repository.UserRoleRepository;
 import com.g174.mmssystem.service.IService.IUserService;
+import com.g174.mmssystem.service.PermissionEngine;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -37,6 +38,7 @@ public class UserServiceImpl implements IUserService {
     private final RoleRepository roleRepository;
     private final UserRoleRepository userRoleRepository;
     private final PasswordEncoder passwordEncoder;
+    private final PermissionEngine permissionEngine;
 
     @Override
     public List<UserListResponseDTO> searchUsers(String keyword) {
@@ -119,6 +121,7 @@ public class UserServiceImpl implements IUserService {
                 .collect(Collectors.toList());
 
         userRoleRepository.saveAll(userRoles);
+        permissionEngine.invalidateUser(userId);
 
         User savedUser = userRepository.save(user);
         return userMapper.toListResponseDTO(savedUser);
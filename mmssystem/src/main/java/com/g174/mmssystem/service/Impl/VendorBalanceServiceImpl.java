@@ -2,9 +2,10 @@ package com.g174.mmssystem.service.Impl;
 
 import com.g174.mmssystem.entity.VendorBalance;
 import com.g174.mmssystem.repository.VendorBalanceRepository;
-import com.g174.mmssystem.repository.VendorRepository;
 import com.g174.mmssystem.repository.APInvoiceRepository;
 import com.g174.mmssystem.repository.APPaymentRepository;
+import com.g174.mmssystem.service.BalanceDeltaCoalescer;
+import com.g174.mmssystem.service.IService.IAgingReportService;
 import com.g174.mmssystem.service.IService.IVendorBalanceService;
 import com.g174.mmssystem.exception.ResourceNotFoundException;
 import lombok.RequiredArgsConstructor;
@@ -20,70 +21,84 @@ import java.math.BigDecimal;
 @Transactional
 public class VendorBalanceServiceImpl implements IVendorBalanceService {
 
+    private static final String BALANCE_SCOPE = "vendor";
+
     private final VendorBalanceRepository vendorBalanceRepository;
-    private final VendorRepository vendorRepository;
     private final APInvoiceRepository apInvoiceRepository;
     private final APPaymentRepository apPaymentRepository;
+    private final BalanceDeltaCoalescer balanceDeltaCoalescer;
+    private final IAgingReportService agingReportService;
 
     @Override
     public VendorBalance getOrCreateBalance(Integer vendorId) {
         return vendorBalanceRepository.findByVendor_VendorId(vendorId)
                 .orElseGet(() -> {
-                    VendorBalance balance = new VendorBalance();
-                    balance.setVendor(vendorRepository.findById(vendorId)
-                            .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy vendor ID: " + vendorId)));
-                    balance.setTotalInvoiced(BigDecimal.ZERO);
-                    balance.setTotalPaid(BigDecimal.ZERO);
-                    balance.setOutstandingBalance(BigDecimal.ZERO);
-                    return vendorBalanceRepository.save(balance);
+                    vendorBalanceRepository.insertIfAbsent(vendorId);
+                    return vendorBalanceRepository.findByVendor_VendorId(vendorId)
+                            .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy vendor ID: " + vendorId));
                 });
     }
 
     @Override
     public void updateOnInvoiceCreated(Integer vendorId, BigDecimal invoiceAmount) {
-        VendorBalance balance = getOrCreateBalance(vendorId);
-        balance.setTotalInvoiced(balance.getTotalInvoiced().add(invoiceAmount));
-        balance.recalculateOutstandingBalance();
-        vendorBalanceRepository.save(balance);
+        postDelta(vendorId, invoiceAmount, BigDecimal.ZERO);
         log.info("Updated vendor {} balance: +{} invoice", vendorId, invoiceAmount);
     }
 
     @Override
     public void updateOnInvoiceDeleted(Integer vendorId, BigDecimal invoiceAmount) {
-        VendorBalance balance = getOrCreateBalance(vendorId);
-        balance.setTotalInvoiced(balance.getTotalInvoiced().subtract(invoiceAmount).max(BigDecimal.ZERO));
-        balance.recalculateOutstandingBalance();
-        vendorBalanceRepository.save(balance);
+        postDelta(vendorId, negate(invoiceAmount), BigDecimal.ZERO);
         log.info("Updated vendor {} balance: -{} invoice", vendorId, invoiceAmount);
     }
 
     @Override
     public void updateOnPaymentAdded(Integer vendorId, BigDecimal paymentAmount) {
-        VendorBalance balance = getOrCreateBalance(vendorId);
-        balance.setTotalPaid(balance.getTotalPaid().add(paymentAmount));
-        balance.recalculateOutstandingBalance();
-        vendorBalanceRepository.save(balance);
+        postDelta(vendorId, BigDecimal.ZERO, paymentAmount);
         log.info("Updated vendor {} balance: +{} payment", vendorId, paymentAmount);
     }
 
     @Override
     public void updateOnPaymentDeleted(Integer vendorId, BigDecimal paymentAmount) {
-        VendorBalance balance = getOrCreateBalance(vendorId);
-        balance.setTotalPaid(balance.getTotalPaid().subtract(paymentAmount).max(BigDecimal.ZERO));
-        balance.recalculateOutstandingBalance();
-        vendorBalanceRepository.save(balance);
+        postDelta(vendorId, BigDecimal.ZERO, negate(paymentAmount));
         log.info("Updated vendor {} balance: -{} payment", vendorId, paymentAmount);
     }
 
+    /**
+     * Ghi delta bằng một câu UPDATE atomic (hoặc gộp đến lúc commit nếu bật coalescing).
+     * Mọi hóa đơn / thanh toán phải trả đều đi qua đây nên cũng là nơi xóa cache báo cáo tuổi nợ.
+     */
+    private void postDelta(Integer vendorId, BigDecimal invoiced, BigDecimal paid) {
+        agingReportService.markPayablesChanged();
+        balanceDeltaCoalescer.add(BALANCE_SCOPE, vendorId,
+                new BigDecimal[]{nonNull(invoiced), nonNull(paid)},
+                this::writeDelta);
+    }
+
+    private void writeDelta(Integer vendorId, BigDecimal[] deltas) {
+        if (vendorBalanceRepository.applyDelta(vendorId, deltas[0], deltas[1]) > 0) {
+            return;
+        }
+        // Chưa có dòng balance: tạo rồi cộng lại
+        vendorBalanceRepository.insertIfAbsent(vendorId);
+        if (vendorBalanceRepository.applyDelta(vendorId, deltas[0], deltas[1]) == 0) {
+            throw new ResourceNotFoundException("Không tìm thấy vendor ID: " + vendorId);
+        }
+    }
+
+    private static BigDecimal nonNull(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    private static BigDecimal negate(BigDecimal value) {
+        return nonNull(value).negate();
+    }
+
     @Override
     public void recalculateBalance(Integer vendorId) {
         VendorBalance balance = getOrCreateBalance(vendorId);
 
         // Tính tổng từ tất cả AP Invoice
-        BigDecimal totalInvoiced = apInvoiceRepository.findAllActiveInvoices().stream()
-                .filter(inv -> inv.getVendor().getVendorId().equals(vendorId))
-                .map(inv -> inv.getTotalAmount() != null ? inv.getTotalAmount() : BigDecimal.ZERO)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal totalInvoiced = apInvoiceRepository.sumActiveTotalByVendorId(vendorId);
 
         // Tính tổng từ tất cả Payment của vendor
         BigDecimal totalPaid = apPaymentRepository.getTotalPaidByVendorId(vendorId);
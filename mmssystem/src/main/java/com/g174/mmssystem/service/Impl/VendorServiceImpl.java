@@ -3,6 +3,7 @@ package com.g174.mmssystem.service.Impl;
 import com.g174.mmssystem.dto.requestDTO.AddressDTO;
 import com.g174.mmssystem.dto.requestDTO.ContactDTO;
 import com.g174.mmssystem.dto.requestDTO.VendorRequestDTO;
+import com.g174.mmssystem.dto.responseDTO.SuggestionDTO;
 import com.g174.mmssystem.dto.responseDTO.VendorResponseDTO;
 import com.g174.mmssystem.entity.Address;
 import com.g174.mmssystem.entity.Contact;
@@ -13,9 +14,11 @@ import com.g174.mmssystem.repository.AddressRepository;
 import com.g174.mmssystem.repository.ContactRepository;
 import com.g174.mmssystem.repository.VendorRepository;
 import com.g174.mmssystem.service.IService.IVendorService;
+import com.g174.mmssystem.service.MasterDataSearchIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -31,6 +34,7 @@ import java.util.stream.Collectors;
 public class VendorServiceImpl implements IVendorService {
 
     private final VendorRepository vendorRepository;
+    private final MasterDataSearchIndex searchIndex;
     private final AddressRepository addressRepository;
     private final ContactRepository contactRepository;
     private final com.g174.mmssystem.service.IService.IVendorBalanceService vendorBalanceService;
@@ -105,6 +109,7 @@ public class VendorServiceImpl implements IVendorService {
         }
 
         Vendor savedVendor = vendorRepository.save(vendor);
+        searchIndex.indexVendor(savedVendor);
         log.info("Vendor created successfully with ID: {}", savedVendor.getVendorId());
 
         return convertToResponseDTO(savedVendor);
@@ -170,7 +175,9 @@ public class VendorServiceImpl implements IVendorService {
             return getAllVendors();
         }
 
-        List<Vendor> vendors = vendorRepository.searchVendors(keyword.trim());
+        List<Vendor> vendors = searchIndex.isReady()
+                ? findInRankOrder(searchIndex.searchVendors(keyword))
+                : vendorRepository.searchVendors(keyword.trim());
         return vendors.stream()
                 .map(this::convertToResponseDTO)
                 .collect(Collectors.toList());
@@ -186,10 +193,34 @@ public class VendorServiceImpl implements IVendorService {
             return getAllVendors(pageable);
         }
 
-        Page<Vendor> vendors = vendorRepository.searchVendors(keyword.trim(), pageable);
+        Page<Vendor> vendors;
+        if (searchIndex.isReady()) {
+            // Kết quả theo thứ tự xếp hạng của chỉ mục, sort của pageable không áp dụng
+            List<Integer> ids = searchIndex.searchVendors(keyword);
+            int from = (int) Math.min(pageable.getOffset(), ids.size());
+            int to = Math.min(from + pageable.getPageSize(), ids.size());
+            vendors = new PageImpl<>(findInRankOrder(ids.subList(from, to)), pageable, ids.size());
+        } else {
+            vendors = vendorRepository.searchVendors(keyword.trim(), pageable);
+        }
         return vendors.map(this::convertToResponseDTO);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<SuggestionDTO> suggestVendors(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            return List.of();
+        }
+        if (searchIndex.isReady()) {
+            return searchIndex.suggestVendors(prefix, limit);
+        }
+        return vendorRepository.searchVendors(prefix.trim()).stream()
+                .limit(limit)
+                .map(vendor -> new SuggestionDTO(vendor.getVendorId(), vendor.getVendorCode(), vendor.getName()))
+                .collect(Collectors.toList());
+    }
+
     @Override
     public VendorResponseDTO updateVendor(Integer vendorId, VendorRequestDTO vendorRequestDTO) {
         log.info("Updating vendor with ID: {}", vendorId);
@@ -233,6 +264,7 @@ public class VendorServiceImpl implements IVendorService {
         }
 
         Vendor updatedVendor = vendorRepository.save(vendor);
+        searchIndex.indexVendor(updatedVendor);
         log.info("Vendor updated successfully with ID: {}", updatedVendor.getVendorId());
 
         return convertToResponseDTO(updatedVendor);
@@ -252,6 +284,7 @@ public class VendorServiceImpl implements IVendorService {
 
         vendor.setDeletedAt(Instant.now());
         vendorRepository.save(vendor);
+        searchIndex.removeVendor(vendorId);
         log.info("Vendor soft deleted successfully with ID: {}", vendorId);
     }
 
@@ -268,6 +301,7 @@ public class VendorServiceImpl implements IVendorService {
 
         vendor.setDeletedAt(null);
         vendorRepository.save(vendor);
+        searchIndex.indexVendor(vendor);
         log.info("Vendor restored successfully with ID: {}", vendorId);
     }
 
@@ -277,6 +311,10 @@ public class VendorServiceImpl implements IVendorService {
         return vendorRepository.existsByVendorCodeAndDeletedAtIsNull(vendorCode);
     }
 
+    private List<Vendor> findInRankOrder(List<Integer> ids) {
+        return MasterDataSearchIndex.inRankOrder(ids, vendorRepository.findAllById(ids), Vendor::getVendorId);
+    }
+
     private Address createAddress(AddressDTO addressDTO) {
         log.info("=== CREATING ADDRESS ===");
         log.info("AddressDTO received: {}", addressDTO);
@@ -0,0 +1,283 @@
+package com.g174.mmssystem.service;
+
+import com.g174.mmssystem.dto.responseDTO.MasterDataSearchProjection;
+import com.g174.mmssystem.dto.responseDTO.SuggestionDTO;
+import com.g174.mmssystem.entity.Customer;
+import com.g174.mmssystem.entity.Product;
+import com.g174.mmssystem.entity.Vendor;
+import com.g174.mmssystem.repository.CustomerRepository;
+import com.g174.mmssystem.repository.ProductRepository;
+import com.g174.mmssystem.repository.VendorRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Chỉ mục tìm kiếm trong bộ nhớ cho sản phẩm, khách hàng và nhà cung cấp (chỉ bản ghi chưa xóa).
+ * Mỗi loại gồm chỉ mục n-gram (tìm theo từ khóa) và cây tiền tố (gợi ý khi gõ).
+ *
+ * - Nạp toàn bộ khi ứng dụng sẵn sàng và nạp lại định kỳ (app.search.index-refresh-ms) để bắt các thay đổi
+ *   không đi qua service (import, sửa trực tiếp DB, instance khác).
+ * - Service gọi indexX / removeX sau khi ghi; thay đổi chỉ áp vào chỉ mục khi transaction commit.
+ *   Cây tiền tố bất biến nên được dựng lại trên một luồng nền sau thay đổi (gộp các thay đổi liên tiếp).
+ * - Trước khi nạp xong, isReady() = false và service dùng lại truy vấn LIKE.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MasterDataSearchIndex {
+
+    private final ProductRepository productRepository;
+    private final CustomerRepository customerRepository;
+    private final VendorRepository vendorRepository;
+
+    private record Indexes(EntityIndex products, EntityIndex customers, EntityIndex vendors) {
+    }
+
+    /**
+     * Chỉ mục của một loại danh mục
+     */
+    private final class EntityIndex {
+        private final NGramSearchIndex keywords = new NGramSearchIndex();
+        private final Map<Integer, PrefixTrie.Item> items = new ConcurrentHashMap<>();
+        private final AtomicBoolean trieRebuildPending = new AtomicBoolean();
+        private volatile PrefixTrie trie = PrefixTrie.EMPTY;
+
+        void put(int id, String code, String name) {
+            keywords.put(id, code, name);
+            items.put(id, new PrefixTrie.Item(id, code, name));
+        }
+
+        void remove(int id) {
+            keywords.remove(id);
+            items.remove(id);
+        }
+
+        void rebuildTrie() {
+            trie = PrefixTrie.build(items.values());
+        }
+
+        void scheduleTrieRebuild() {
+            if (trieRebuildPending.compareAndSet(false, true)) {
+                trieExecutor.execute(() -> {
+                    // Xóa cờ trước khi dựng để thay đổi xảy ra trong lúc dựng được dựng lại lần nữa
+                    trieRebuildPending.set(false);
+                    rebuildTrie();
+                });
+            }
+        }
+    }
+
+    private final ExecutorService trieExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "search-trie-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Indexes indexes;
+    // Thay đổi commit trong lúc đang nạp lại, áp lại lên chỉ mục mới sau khi nạp xong
+    private List<Consumer<Indexes>> changesDuringReload;
+
+    public boolean isReady() {
+        return indexes != null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.index-refresh-ms:600000}",
+            initialDelayString = "${app.search.index-refresh-ms:600000}")
+    public void reload() {
+        long startTime = System.currentTimeMillis();
+        synchronized (this) {
+            changesDuringReload = new ArrayList<>();
+        }
+        try {
+            Indexes loaded = new Indexes(build(productRepository.findActiveSearchDocuments()),
+                    build(customerRepository.findActiveSearchDocuments()),
+                    build(vendorRepository.findActiveSearchDocuments()));
+            synchronized (this) {
+                changesDuringReload.forEach(change -> change.accept(loaded));
+                loaded.products().rebuildTrie();
+                loaded.customers().rebuildTrie();
+                loaded.vendors().rebuildTrie();
+                indexes = loaded;
+            }
+            log.info("Loaded search index: {} products, {} customers, {} vendors in {} ms",
+                    loaded.products().items.size(), loaded.customers().items.size(), loaded.vendors().items.size(),
+                    System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            log.warn("Failed to load search index: {}", e.getMessage());
+        } finally {
+            synchronized (this) {
+                changesDuringReload = null;
+            }
+        }
+    }
+
+    // ===== Tìm kiếm: trả về id theo thứ tự xếp hạng =====
+
+    public List<Integer> searchProducts(String keyword) {
+        return search(keyword, Indexes::products);
+    }
+
+    public List<Integer> searchCustomers(String keyword) {
+        return search(keyword, Indexes::customers);
+    }
+
+    public List<Integer> searchVendors(String keyword) {
+        return search(keyword, Indexes::vendors);
+    }
+
+    // ===== Gợi ý khi gõ: tối đa limit bản ghi có mã / tên bắt đầu bằng prefix =====
+
+    public List<SuggestionDTO> suggestProducts(String prefix, int limit) {
+        return suggest(prefix, limit, Indexes::products);
+    }
+
+    public List<SuggestionDTO> suggestCustomers(String prefix, int limit) {
+        return suggest(prefix, limit, Indexes::customers);
+    }
+
+    public List<SuggestionDTO> suggestVendors(String prefix, int limit) {
+        return suggest(prefix, limit, Indexes::vendors);
+    }
+
+    // ===== Cập nhật sau khi ghi =====
+
+    public void indexProduct(Product product) {
+        Integer id = product.getProductId();
+        if (product.getDeletedAt() != null) {
+            removeProduct(id);
+            return;
+        }
+        String sku = product.getSku();
+        String name = product.getName();
+        afterCommit(Indexes::products, index -> index.put(id, sku, name));
+    }
+
+    public void removeProduct(Integer productId) {
+        afterCommit(Indexes::products, index -> index.remove(productId));
+    }
+
+    public void indexCustomer(Customer customer) {
+        Integer id = customer.getCustomerId();
+        if (customer.getDeletedAt() != null) {
+            removeCustomer(id);
+            return;
+        }
+        String code = customer.getCustomerCode();
+        String name = Objects.toString(customer.getFirstName(), "") + " " + Objects.toString(customer.getLastName(), "");
+        afterCommit(Indexes::customers, index -> index.put(id, code, name));
+    }
+
+    public void removeCustomer(Integer customerId) {
+        afterCommit(Indexes::customers, index -> index.remove(customerId));
+    }
+
+    public void indexVendor(Vendor vendor) {
+        Integer id = vendor.getVendorId();
+        if (vendor.getDeletedAt() != null) {
+            removeVendor(id);
+            return;
+        }
+        String code = vendor.getVendorCode();
+        String name = vendor.getName();
+        afterCommit(Indexes::vendors, index -> index.put(id, code, name));
+    }
+
+    public void removeVendor(Integer vendorId) {
+        afterCommit(Indexes::vendors, index -> index.remove(vendorId));
+    }
+
+    /**
+     * Sắp entity nạp bằng findAllById theo đúng thứ tự id xếp hạng (bỏ id không còn tồn tại)
+     */
+    public static <T> List<T> inRankOrder(List<Integer> ids, List<T> entities, Function<T, Integer> idOf) {
+        Map<Integer, T> byId = new HashMap<>();
+        entities.forEach(entity -> byId.put(idOf.apply(entity), entity));
+        List<T> ordered = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            T entity = byId.get(id);
+            if (entity != null) {
+                ordered.add(entity);
+            }
+        }
+        return ordered;
+    }
+
+    private List<Integer> search(String keyword, Function<Indexes, EntityIndex> index) {
+        return index.apply(current()).keywords.search(keyword, Integer.MAX_VALUE);
+    }
+
+    private List<SuggestionDTO> suggest(String prefix, int limit, Function<Indexes, EntityIndex> index) {
+        return index.apply(current()).trie.suggest(prefix, Math.min(limit, PrefixTrie.MAX_SUGGESTIONS)).stream()
+                .map(item -> new SuggestionDTO(item.id(), item.code(), item.name()))
+                .toList();
+    }
+
+    private Indexes current() {
+        Indexes current = indexes;
+        if (current == null) {
+            throw new IllegalStateException("Chỉ mục tìm kiếm chưa sẵn sàng");
+        }
+        return current;
+    }
+
+    private void afterCommit(Function<Indexes, EntityIndex> kind, Consumer<EntityIndex> change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(kind, change);
+                }
+            });
+        } else {
+            apply(kind, change);
+        }
+    }
+
+    private synchronized void apply(Function<Indexes, EntityIndex> kind, Consumer<EntityIndex> change) {
+        if (indexes != null) {
+            EntityIndex index = kind.apply(indexes);
+            change.accept(index);
+            index.scheduleTrieRebuild();
+        }
+        if (changesDuringReload != null) {
+            changesDuringReload.add(loaded -> change.accept(kind.apply(loaded)));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        trieExecutor.shutdownNow();
+    }
+
+    private EntityIndex build(List<MasterDataSearchProjection> documents) {
+        EntityIndex index = new EntityIndex();
+        for (MasterDataSearchProjection document : documents) {
+            index.put(document.getId(), document.getCode(), document.getName());
+        }
+        return index;
+    }
+}
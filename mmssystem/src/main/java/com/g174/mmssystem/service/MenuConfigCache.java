@@ -0,0 +1,83 @@
+package com.g174.mmssystem.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.g174.mmssystem.dto.responseDTO.MenuConfigResponseDTO;
+import com.g174.mmssystem.mapper.MenuConfigMapper;
+import com.g174.mmssystem.repository.MenuItemRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache cấu hình menu đã dựng sẵn theo role.
+ *
+ * Mỗi cấu hình có version = băm nội dung menu, dùng làm ETag: giống nhau giữa các lần khởi động và giữa các
+ * instance, chỉ đổi khi menu của role thật sự đổi. Thêm / sửa / xóa menu hoặc gán menu cho role gọi
+ * invalidate(), cache được xóa sau khi transaction commit và dựng lại khi có request tiếp theo.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MenuConfigCache {
+
+    private final MenuItemRepository menuItemRepository;
+    private final MenuConfigMapper menuConfigMapper;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, MenuConfigResponseDTO> configByRole = new ConcurrentHashMap<>();
+    // Tăng mỗi lần xóa cache, cấu hình dựng xong chỉ được cache nếu không có thay đổi nào xen vào
+    private final AtomicLong generation = new AtomicLong();
+
+    public MenuConfigResponseDTO get(String roleName) {
+        MenuConfigResponseDTO cached = configByRole.get(roleName);
+        if (cached != null) {
+            return cached;
+        }
+        long startGeneration = generation.get();
+        MenuConfigResponseDTO config = menuConfigMapper.toMenuConfigResponseDTO(
+                menuItemRepository.findMenusByRoleName(roleName));
+        config.setVersion(contentHash(config));
+        if (generation.get() == startGeneration) {
+            configByRole.put(roleName, config);
+        }
+        log.debug("Dựng menu config cho role {} (version {})", roleName, config.getVersion());
+        return config;
+    }
+
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    clear();
+                }
+            });
+        } else {
+            clear();
+        }
+    }
+
+    private void clear() {
+        generation.incrementAndGet();
+        configByRole.clear();
+    }
+
+    private String contentHash(MenuConfigResponseDTO config) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(config));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Không thể tính version cho menu config", e);
+        }
+    }
+}
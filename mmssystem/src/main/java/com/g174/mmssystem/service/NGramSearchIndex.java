@@ -0,0 +1,209 @@
+package com.g174.mmssystem.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Chỉ mục đảo n-gram trong bộ nhớ cho một loại danh mục (sản phẩm, KH, NCC).
+ *
+ * Mỗi bản ghi có mã và tên đã chuẩn hóa (SearchTextNormalizer). Mỗi từ được tách thành các bigram và trigram;
+ * posting list của gram trỏ tới id bản ghi. Khi tìm, lấy posting list nhỏ nhất trong các gram của từ khóa
+ * làm tập ứng viên rồi kiểm tra chứa chuỗi trên từng ứng viên, nên chi phí phụ thuộc số kết quả
+ * chứ không phụ thuộc kích thước bảng.
+ *
+ * Thread-safe: nhiều luồng đọc đồng thời, ghi (put / remove) giữ write lock.
+ */
+public class NGramSearchIndex {
+
+    private static final int MIN_GRAM = 2;
+    private static final int MAX_GRAM = 3;
+
+    /**
+     * @param code - Mã đã chuẩn hóa
+     * @param name - Tên đã chuẩn hóa
+     */
+    private record Entry(int id, String code, String name, String text) {
+    }
+
+    /**
+     * Một kết quả tìm kiếm
+     * @param rank - Hạng khớp (0 = trùng mã ... 4 = chỉ chứa keyword), nhỏ hơn là tốt hơn
+     * @param nameLength - Độ dài tên đã chuẩn hóa, dùng khi cùng hạng
+     */
+    public record Hit(int id, int rank, int nameLength) {
+        public static final Comparator<Hit> ORDER = Comparator.comparingInt(Hit::rank)
+                .thenComparingInt(Hit::nameLength)
+                .thenComparingInt(Hit::id);
+    }
+
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final Map<String, Set<Integer>> postings = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Thêm hoặc thay thế bản ghi
+     */
+    public void put(int id, String code, String name) {
+        String foldedCode = SearchTextNormalizer.fold(code);
+        String foldedName = SearchTextNormalizer.fold(name);
+        Entry entry = new Entry(id, foldedCode, foldedName, (foldedCode + " " + foldedName).trim());
+        Set<String> grams = grams(entry.text());
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            entries.put(id, entry);
+            for (String gram : grams) {
+                postings.computeIfAbsent(gram, k -> new HashSet<>()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Tìm bản ghi chứa tất cả các từ của keyword (không phân biệt hoa thường, có dấu / không dấu).
+     * Thứ tự: trùng mã > mã bắt đầu bằng keyword > tên bắt đầu bằng keyword > một từ trong tên
+     * bắt đầu bằng keyword > chứa keyword; cùng hạng thì tên ngắn hơn đứng trước.
+     * @return Danh sách id theo thứ tự xếp hạng, tối đa limit phần tử
+     */
+    public List<Integer> search(String keyword, int limit) {
+        List<Hit> hits = searchHits(keyword, limit);
+        List<Integer> result = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            result.add(hit.id());
+        }
+        return result;
+    }
+
+    /**
+     * Như search nhưng trả kèm hạng của từng kết quả, để trộn kết quả của nhiều chỉ mục (xem Hit.ORDER)
+     */
+    public List<Hit> searchHits(String keyword, int limit) {
+        String[] tokens = SearchTextNormalizer.tokens(keyword);
+        if (tokens.length == 0 || limit <= 0) {
+            return List.of();
+        }
+        String query = String.join(" ", tokens);
+
+        List<Entry> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Collection<Integer> candidates = candidates(tokens);
+            for (Integer id : candidates) {
+                Entry entry = entries.get(id);
+                if (entry != null && containsAll(entry.text(), tokens)) {
+                    matches.add(entry);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Hit> hits = new ArrayList<>(matches.size());
+        for (Entry entry : matches) {
+            hits.add(new Hit(entry.id(), rank(entry, query, tokens[0]), entry.name().length()));
+        }
+        hits.sort(Hit.ORDER);
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    // Gọi khi đang giữ read lock
+    private Collection<Integer> candidates(String[] tokens) {
+        Set<Integer> smallest = null;
+        for (String token : tokens) {
+            if (token.length() < MIN_GRAM) {
+                continue;
+            }
+            int size = Math.min(token.length(), MAX_GRAM);
+            for (int i = 0; i + size <= token.length(); i++) {
+                Set<Integer> posting = postings.get(token.substring(i, i + size));
+                if (posting == null) {
+                    return List.of();
+                }
+                if (smallest == null || posting.size() < smallest.size()) {
+                    smallest = posting;
+                }
+            }
+        }
+        // Chỉ toàn từ 1 ký tự: không có gram để lọc, duyệt toàn bộ
+        return smallest != null ? smallest : entries.keySet();
+    }
+
+    private static boolean containsAll(String text, String[] tokens) {
+        for (String token : tokens) {
+            if (!text.contains(token)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int rank(Entry entry, String query, String firstToken) {
+        if (entry.code().equals(query)) {
+            return 0;
+        }
+        if (entry.code().startsWith(query)) {
+            return 1;
+        }
+        if (entry.name().startsWith(query)) {
+            return 2;
+        }
+        if (entry.name().contains(" " + firstToken)) {
+            return 3;
+        }
+        return 4;
+    }
+
+    // Gọi khi đang giữ write lock
+    private void removeLocked(int id) {
+        Entry old = entries.remove(id);
+        if (old == null) {
+            return;
+        }
+        for (String gram : grams(old.text())) {
+            Set<Integer> posting = postings.get(gram);
+            if (posting != null && posting.remove(id) && posting.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (String token : text.split(" ")) {
+            for (int size = MIN_GRAM; size <= MAX_GRAM; size++) {
+                for (int i = 0; i + size <= token.length(); i++) {
+                    grams.add(token.substring(i, i + size));
+                }
+            }
+        }
+        return grams;
+    }
+}
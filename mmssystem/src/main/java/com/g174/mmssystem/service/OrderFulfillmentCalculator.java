@@ -0,0 +1,109 @@
+package com.g174.mmssystem.service;
+
+import com.g174.mmssystem.dto.responseDTO.ProductQuantityProjection;
+import com.g174.mmssystem.dto.responseDTO.SalesOrderItemFulfillmentProjection;
+import com.g174.mmssystem.entity.SalesOrderItem;
+import com.g174.mmssystem.repository.DeliveryItemRepository;
+import com.g174.mmssystem.repository.GoodIssueItemRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tính số lượng đã giao / đã lên kế hoạch / đã xuất kho cho cả đơn hàng hoặc cả phiếu giao
+ * bằng một query GROUP BY, thay vì query từng dòng.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderFulfillmentCalculator {
+
+    private final DeliveryItemRepository deliveryItemRepository;
+    private final GoodIssueItemRepository goodIssueItemRepository;
+
+    public SalesOrderFulfillment forSalesOrder(Integer soId) {
+        if (soId == null) {
+            return new SalesOrderFulfillment(Collections.emptyMap(), Collections.emptyMap());
+        }
+        List<SalesOrderItemFulfillmentProjection> rows = deliveryItemRepository.sumFulfillmentBySalesOrder(soId);
+        Map<Integer, BigDecimal> delivered = new HashMap<>(rows.size() * 2);
+        Map<Integer, BigDecimal> planned = new HashMap<>(rows.size() * 2);
+        for (SalesOrderItemFulfillmentProjection row : rows) {
+            delivered.put(row.getSoiId(), nonNull(row.getDeliveredQty()));
+            planned.put(row.getSoiId(), nonNull(row.getPlannedQty()));
+        }
+        return new SalesOrderFulfillment(delivered, planned);
+    }
+
+    /**
+     * productId -> tổng issuedQty từ các Good Issue đã Approved của Delivery.
+     */
+    public Map<Integer, BigDecimal> issuedQtyByProduct(Integer deliveryId) {
+        List<ProductQuantityProjection> rows = goodIssueItemRepository.sumApprovedIssuedQtyByDelivery(deliveryId);
+        Map<Integer, BigDecimal> result = new HashMap<>(rows.size() * 2);
+        for (ProductQuantityProjection row : rows) {
+            result.put(row.getProductId(), nonNull(row.getQuantity()));
+        }
+        return result;
+    }
+
+    private static BigDecimal nonNull(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    /**
+     * Kết quả tổng hợp theo soiId cho một Sales Order.
+     * deliveredQty: từ các Delivery đã Delivered; plannedQty: từ các Delivery chưa Delivered (Draft, Picked, Shipped).
+     */
+    public static class SalesOrderFulfillment {
+
+        private final Map<Integer, BigDecimal> deliveredBySoi;
+        private final Map<Integer, BigDecimal> plannedBySoi;
+
+        SalesOrderFulfillment(Map<Integer, BigDecimal> deliveredBySoi, Map<Integer, BigDecimal> plannedBySoi) {
+            this.deliveredBySoi = deliveredBySoi;
+            this.plannedBySoi = plannedBySoi;
+        }
+
+        public BigDecimal deliveredQty(Integer soiId) {
+            return deliveredBySoi.getOrDefault(soiId, BigDecimal.ZERO);
+        }
+
+        public BigDecimal plannedQty(Integer soiId) {
+            return plannedBySoi.getOrDefault(soiId, BigDecimal.ZERO);
+        }
+
+        /**
+         * Số lượng còn có thể lên kế hoạch giao = đặt hàng - đã giao - đã lên kế hoạch.
+         */
+        public BigDecimal remainingToPlan(SalesOrderItem item) {
+            return nonNull(item.getQuantity())
+                    .subtract(deliveredQty(item.getSoiId()))
+                    .subtract(plannedQty(item.getSoiId()));
+        }
+
+        /**
+         * Số lượng chưa giao = đặt hàng - đã giao (không âm).
+         */
+        public BigDecimal remainingToDeliver(SalesOrderItem item) {
+            BigDecimal remaining = nonNull(item.getQuantity()).subtract(deliveredQty(item.getSoiId()));
+            return remaining.compareTo(BigDecimal.ZERO) < 0 ? BigDecimal.ZERO : remaining;
+        }
+
+        public boolean isFullyDelivered(List<SalesOrderItem> items) {
+            if (items == null || items.isEmpty()) {
+                return false;
+            }
+            for (SalesOrderItem item : items) {
+                if (remainingToDeliver(item).compareTo(BigDecimal.ZERO) > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.g174.mmssystem.service;
+
+import com.g174.mmssystem.entity.PasswordResetOtp;
+import com.g174.mmssystem.repository.PasswordResetOtpRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Lưu OTP đặt lại mật khẩu theo email, tách khỏi bảng Users.
+ *
+ * - Mỗi email có: hash của OTP hiện tại, thời điểm hết hạn (app.otp.expiration-minutes), số lần nhập sai
+ *   (tối đa app.otp.max-attempts) và token bucket giới hạn số lần yêu cầu OTP (app.otp.request-burst lượt,
+ *   nạp lại 1 lượt mỗi app.otp.request-refill-seconds giây).
+ * - app.otp.store=memory (mặc định): giữ trong ConcurrentHashMap, mọi thao tác trên một email là nguyên tử.
+ *   app.otp.store=database: lưu trong bảng Password_Reset_Otps và khóa dòng khi cập nhật, dùng khi chạy
+ *   nhiều instance; mỗi thao tác commit ngay trong transaction riêng.
+ * - Trạng thái không còn hiệu lực (OTP hết hạn, bucket đã đầy lại) được dọn định kỳ.
+ */
+@Component
+@Slf4j
+public class OtpStore {
+
+    public enum Status {
+        VALID, INVALID, NOT_FOUND, USED, EXPIRED, LOCKED
+    }
+
+    /**
+     * @param remainingAttempts - Số lần còn được nhập sai
+     */
+    public record Verification(Status status, int remainingAttempts) {
+    }
+
+    private final PasswordResetOtpRepository otpRepository;
+    private final TransactionTemplate otpTransaction;
+    private final boolean database;
+    private final Duration ttl;
+    private final int maxAttempts;
+    private final int requestBurst;
+    private final long refillMillis;
+
+    private final Map<String, PasswordResetOtp> states = new ConcurrentHashMap<>();
+
+    public OtpStore(PasswordResetOtpRepository otpRepository,
+                    PlatformTransactionManager transactionManager,
+                    @Value("${app.otp.store:memory}") String store,
+                    @Value("${app.otp.expiration-minutes:10}") int expirationMinutes,
+                    @Value("${app.otp.max-attempts:5}") int maxAttempts,
+                    @Value("${app.otp.request-burst:3}") int requestBurst,
+                    @Value("${app.otp.request-refill-seconds:60}") int refillSeconds) {
+        this.otpRepository = otpRepository;
+        this.otpTransaction = new TransactionTemplate(transactionManager);
+        this.otpTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.database = "database".equalsIgnoreCase(store);
+        this.ttl = Duration.ofMinutes(expirationMinutes);
+        this.maxAttempts = maxAttempts;
+        this.requestBurst = requestBurst;
+        this.refillMillis = refillSeconds * 1000L;
+    }
+
+    /**
+     * Lấy một lượt yêu cầu OTP của email
+     * @return 0 nếu được phép, ngược lại số giây phải đợi tới lượt tiếp theo
+     */
+    public long tryAcquireRequest(String email) {
+        return withState(email, true, state -> {
+            Instant now = Instant.now();
+            double tokens = Math.min(requestBurst, state.getRequestTokens()
+                    + (double) Duration.between(state.getTokensUpdatedAt(), now).toMillis() / refillMillis);
+            state.setTokensUpdatedAt(now);
+            if (tokens >= 1) {
+                state.setRequestTokens(tokens - 1);
+                return 0L;
+            }
+            state.setRequestTokens(tokens);
+            return (long) Math.ceil((1 - tokens) * refillMillis / 1000.0);
+        });
+    }
+
+    /**
+     * Lưu OTP mới cho email (thay OTP cũ, đặt lại số lần nhập sai)
+     */
+    public void issue(String email, String otp) {
+        withState(email, true, state -> {
+            state.setOtpHash(hash(otp));
+            state.setExpiresAt(Instant.now().plus(ttl));
+            state.setAttempts(0);
+            state.setUsed(false);
+            return null;
+        });
+    }
+
+    /**
+     * Kiểm tra OTP (không đánh dấu đã dùng, xem consume()); nhập sai thì tăng số lần sai,
+     * sai quá số lần cho phép thì OTP bị hủy.
+     */
+    public Verification verify(String email, String otp) {
+        return withState(email, false, state -> {
+            if (state == null || state.getOtpHash() == null) {
+                return new Verification(Status.NOT_FOUND, 0);
+            }
+            if (Boolean.TRUE.equals(state.getUsed())) {
+                return new Verification(Status.USED, 0);
+            }
+            if (state.getExpiresAt() == null || Instant.now().isAfter(state.getExpiresAt())) {
+                return new Verification(Status.EXPIRED, 0);
+            }
+            int attempts = state.getAttempts();
+            if (attempts >= maxAttempts) {
+                markUsed(state);
+                return new Verification(Status.LOCKED, 0);
+            }
+            if (!matches(state, otp)) {
+                state.setAttempts(attempts + 1);
+                return new Verification(Status.INVALID, maxAttempts - (attempts + 1));
+            }
+            return new Verification(Status.VALID, maxAttempts - attempts);
+        });
+    }
+
+    /**
+     * Đánh dấu OTP đã dùng (không dùng lại được). Gọi sau khi thao tác dùng OTP đã commit;
+     * nếu email đã được cấp OTP mới trong lúc đó thì OTP mới được giữ nguyên.
+     */
+    public void consume(String email, String otp) {
+        withState(email, false, state -> {
+            if (state != null && state.getOtpHash() != null && matches(state, otp)) {
+                markUsed(state);
+            }
+            return null;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.otp.cleanup-interval-ms:60000}",
+            initialDelayString = "${app.otp.cleanup-interval-ms:60000}")
+    public void purgeIdle() {
+        // Sau khoảng này OTP đã hết hạn và bucket đã nạp đầy, trạng thái không còn ý nghĩa
+        Duration idle = ttl.compareTo(Duration.ofMillis(refillMillis * requestBurst)) > 0
+                ? ttl
+                : Duration.ofMillis(refillMillis * requestBurst);
+        Instant cutoff = Instant.now().minus(idle);
+        if (database) {
+            Integer deleted = otpTransaction.execute(status -> otpRepository.deleteIdleBefore(cutoff));
+            if (deleted != null && deleted > 0) {
+                log.debug("Purged {} idle OTP states", deleted);
+            }
+        } else {
+            states.values().removeIf(state -> state.getUpdatedAt().isBefore(cutoff));
+        }
+    }
+
+    /**
+     * Chạy action trên trạng thái của email một cách nguyên tử
+     * @param create - Tạo trạng thái mới (bucket đầy) nếu chưa có; false thì action nhận null
+     */
+    private <T> T withState(String email, boolean create, Function<PasswordResetOtp, T> action) {
+        String key = email.trim().toLowerCase(Locale.ROOT);
+        if (database) {
+            return otpTransaction.execute(status -> {
+                if (create) {
+                    otpRepository.insertIfAbsent(key, requestBurst, Instant.now());
+                }
+                PasswordResetOtp state = otpRepository.findForUpdate(key).orElse(null);
+                T result = action.apply(state);
+                if (state != null) {
+                    state.setUpdatedAt(Instant.now());
+                    otpRepository.save(state);
+                }
+                return result;
+            });
+        }
+
+        Object[] result = new Object[1];
+        states.compute(key, (k, state) -> {
+            if (state == null && create) {
+                state = newState(k);
+            }
+            result[0] = action.apply(state);
+            if (state != null) {
+                state.setUpdatedAt(Instant.now());
+            }
+            return state;
+        });
+        @SuppressWarnings("unchecked")
+        T value = (T) result[0];
+        return value;
+    }
+
+    private static boolean matches(PasswordResetOtp state, String otp) {
+        return otp != null && MessageDigest.isEqual(
+                state.getOtpHash().getBytes(StandardCharsets.US_ASCII),
+                hash(otp).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void markUsed(PasswordResetOtp state) {
+        state.setOtpHash(null);
+        state.setExpiresAt(null);
+        state.setUsed(true);
+        state.setAttempts(0);
+    }
+
+    private PasswordResetOtp newState(String key) {
+        PasswordResetOtp state = new PasswordResetOtp();
+        state.setEmail(key);
+        state.setRequestTokens((double) requestBurst);
+        state.setTokensUpdatedAt(Instant.now());
+        state.setUpdatedAt(Instant.now());
+        return state;
+    }
+
+    private static String hash(String otp) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(otp.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.g174.mmssystem.service;
+
+import com.g174.mmssystem.entity.Permission;
+import com.g174.mmssystem.entity.RolePermission;
+import com.g174.mmssystem.entity.UserPermission;
+import com.g174.mmssystem.exception.ResourceNotFoundException;
+import com.g174.mmssystem.repository.PermissionRepository;
+import com.g174.mmssystem.repository.RolePermissionRepository;
+import com.g174.mmssystem.repository.UserPermissionRepository;
+import com.g174.mmssystem.repository.UserRepository;
+import com.g174.mmssystem.repository.UserRoleRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tính quyền hiệu lực của user dưới dạng bitset.
+ *
+ * - Mỗi Permission được gán một chỉ số liên tục (theo permissionId), quyền của một role / user là long[]
+ *   với bit thứ i bật nếu có permission chỉ số i.
+ * - Quyền hiệu lực của user = OR quyền các role của user OR các quyền override chưa hết hạn; được cache
+ *   cho tới khi override sớm nhất hết hạn. Kiểm tra quyền chỉ còn là đọc một bit.
+ * - Thay đổi sau commit: permission (thêm / xóa) dựng lại toàn bộ, quyền của một role chỉ tính lại các user
+ *   có role đó, override / role của user chỉ tính lại user đó. Cache được xóa định kỳ
+ *   (app.permission.cache-refresh-ms) để bắt thay đổi không đi qua service.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PermissionEngine {
+
+    private final PermissionRepository permissionRepository;
+    private final RolePermissionRepository rolePermissionRepository;
+    private final UserPermissionRepository userPermissionRepository;
+    private final UserRoleRepository userRoleRepository;
+    private final UserRepository userRepository;
+
+    /**
+     * Danh mục permission và chỉ số bit của từng permission
+     */
+    private record Catalog(Map<String, Integer> indexByKey, Map<Integer, Integer> indexById,
+                           Map<Integer, Permission> byId) {
+    }
+
+    /**
+     * @param validUntil - Thời điểm override sớm nhất hết hạn, null = không hết hạn
+     */
+    private record UserBits(long[] bits, List<Integer> roleIds, LocalDateTime validUntil) {
+    }
+
+    private volatile Catalog catalog;
+    private final Map<Integer, long[]> roleBits = new ConcurrentHashMap<>();
+    private final Map<Integer, UserBits> userBits = new ConcurrentHashMap<>();
+    // Tăng mỗi lần xóa cache, bitset tính xong chỉ được cache nếu không có thay đổi nào xen vào
+    private final AtomicLong generation = new AtomicLong();
+
+    // Email có thể đổi (UserServiceImpl.updateUser) nên không cache email -> id; findIdByEmail đi theo unique index
+    public boolean hasPermission(String userEmail, String permissionKey) {
+        Integer userId = userRepository.findIdByEmail(userEmail)
+                .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy user"));
+        return hasPermission(userId, permissionKey);
+    }
+
+    public boolean hasPermission(Integer userId, String permissionKey) {
+        Integer index = catalog().indexByKey().get(permissionKey);
+        if (index == null) {
+            log.warn("Permission '{}' không tồn tại", permissionKey);
+            return false;
+        }
+        return isSet(effectiveBits(userId), index);
+    }
+
+    /**
+     * Permission theo id, dùng để hiển thị (thay cho findAllById)
+     */
+    public Map<Integer, Permission> getPermissionsById() {
+        return catalog().byId();
+    }
+
+    // ===== Xóa cache sau khi ghi =====
+
+    public void invalidateAll() {
+        afterCommit(() -> {
+            generation.incrementAndGet();
+            catalog = null;
+            roleBits.clear();
+            userBits.clear();
+        });
+    }
+
+    public void invalidateRole(Integer roleId) {
+        afterCommit(() -> {
+            generation.incrementAndGet();
+            roleBits.remove(roleId);
+            userBits.values().removeIf(bits -> bits.roleIds().contains(roleId));
+        });
+    }
+
+    public void invalidateUser(Integer userId) {
+        afterCommit(() -> {
+            generation.incrementAndGet();
+            userBits.remove(userId);
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.permission.cache-refresh-ms:600000}",
+            initialDelayString = "${app.permission.cache-refresh-ms:600000}")
+    public void refresh() {
+        generation.incrementAndGet();
+        catalog = null;
+        roleBits.clear();
+        userBits.clear();
+    }
+
+    private long[] effectiveBits(Integer userId) {
+        UserBits cached = userBits.get(userId);
+        LocalDateTime now = LocalDateTime.now();
+        if (cached != null && (cached.validUntil() == null || now.isBefore(cached.validUntil()))) {
+            return cached.bits();
+        }
+
+        long startGeneration = generation.get();
+        Catalog current = catalog();
+        List<Integer> roleIds = userRoleRepository.findRoleIdsByUserId(userId);
+        long[] bits = new long[words(current)];
+        for (Integer roleId : roleIds) {
+            or(bits, roleBits(roleId, current));
+        }
+        LocalDateTime validUntil = null;
+        for (UserPermission override : userPermissionRepository.findByUserIdAndNotExpired(userId, now)) {
+            Integer index = current.indexById().get(override.getPermissionId());
+            if (index != null) {
+                set(bits, index);
+            }
+            LocalDateTime expiresAt = override.getExpiresAt();
+            if (expiresAt != null && (validUntil == null || expiresAt.isBefore(validUntil))) {
+                validUntil = expiresAt;
+            }
+        }
+
+        if (generation.get() == startGeneration) {
+            userBits.put(userId, new UserBits(bits, List.copyOf(roleIds), validUntil));
+        }
+        return bits;
+    }
+
+    private long[] roleBits(Integer roleId, Catalog current) {
+        long[] cached = roleBits.get(roleId);
+        if (cached != null) {
+            return cached;
+        }
+        long startGeneration = generation.get();
+        long[] bits = new long[words(current)];
+        for (RolePermission rolePermission : rolePermissionRepository.findByRoleId(roleId)) {
+            Integer index = current.indexById().get(rolePermission.getPermissionId());
+            if (index != null) {
+                set(bits, index);
+            }
+        }
+        if (generation.get() == startGeneration) {
+            roleBits.put(roleId, bits);
+        }
+        return bits;
+    }
+
+    private Catalog catalog() {
+        Catalog current = catalog;
+        if (current != null) {
+            return current;
+        }
+        long startGeneration = generation.get();
+        List<Permission> permissions = permissionRepository.findAll().stream()
+                .sorted(Comparator.comparing(Permission::getPermissionId))
+                .toList();
+        Map<String, Integer> indexByKey = new HashMap<>();
+        Map<Integer, Integer> indexById = new HashMap<>();
+        Map<Integer, Permission> byId = new HashMap<>();
+        for (int i = 0; i < permissions.size(); i++) {
+            Permission permission = permissions.get(i);
+            indexByKey.put(permission.getPermissionKey(), i);
+            indexById.put(permission.getPermissionId(), i);
+            byId.put(permission.getPermissionId(), permission);
+        }
+        current = new Catalog(Map.copyOf(indexByKey), Map.copyOf(indexById), Map.copyOf(byId));
+        if (generation.get() == startGeneration) {
+            catalog = current;
+        }
+        return current;
+    }
+
+    private static int words(Catalog catalog) {
+        return (catalog.indexById().size() + 63) >>> 6;
+    }
+
+    private static boolean isSet(long[] bits, int index) {
+        int word = index >>> 6;
+        return word < bits.length && (bits[word] & (1L << index)) != 0;
+    }
+
+    private static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private static void or(long[] target, long[] source) {
+        for (int i = 0; i < target.length && i < source.length; i++) {
+            target[i] |= source[i];
+        }
+    }
+
+    private void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+}
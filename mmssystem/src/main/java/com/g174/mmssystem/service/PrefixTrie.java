@@ -0,0 +1,262 @@
+package com.g174.mmssystem.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Cây tiền tố nén (radix trie) phục vụ gợi ý khi gõ (typeahead), bất biến sau khi dựng.
+ *
+ * Khóa của mỗi bản ghi: mã đã chuẩn hóa (có và không có khoảng trắng) và tên đã chuẩn hóa bắt đầu từ
+ * từng từ ("nguyen van an", "van an", "an"), tối đa MAX_TERM_LENGTH ký tự. Các chuỗi đơn nhánh được nén
+ * thành một cạnh, mỗi nút lưu sẵn tối đa MAX_SUGGESTIONS bản ghi tốt nhất trong cây con, nên một lần gợi ý
+ * chỉ đi theo tiền tố rồi đọc mảng top của nút, không phụ thuộc số bản ghi.
+ *
+ * Thứ hạng bản ghi: tên ngắn hơn trước, cùng độ dài thì theo thứ tự chữ cái.
+ * Khi dữ liệu thay đổi thì dựng lại cây mới và thay thế tham chiếu (xem MasterDataSearchIndex).
+ */
+public final class PrefixTrie {
+
+    public static final int MAX_SUGGESTIONS = 20;
+    private static final int MAX_TERM_LENGTH = 32;
+    private static final int[] NO_ITEMS = new int[0];
+
+    public static final PrefixTrie EMPTY = build(List.of());
+
+    public record Item(int id, String code, String name) {
+    }
+
+    // Bản ghi theo thứ hạng, chỉ số trong mảng chính là hạng
+    private final Item[] items;
+    // Nút 0 là gốc; con của một nút nối với nhau qua nextSibling
+    private final String[] edges;
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final int[][] top;
+
+    private PrefixTrie(Item[] items, String[] edges, int[] firstChild, int[] nextSibling, int[][] top) {
+        this.items = items;
+        this.edges = edges;
+        this.firstChild = firstChild;
+        this.nextSibling = nextSibling;
+        this.top = top;
+    }
+
+    public int size() {
+        return items.length;
+    }
+
+    /**
+     * @return Tối đa limit bản ghi có một khóa bắt đầu bằng prefix (đã chuẩn hóa), theo thứ hạng
+     */
+    public List<Item> suggest(String prefix, int limit) {
+        String key = SearchTextNormalizer.fold(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        if (key.length() > MAX_TERM_LENGTH) {
+            key = key.substring(0, MAX_TERM_LENGTH);
+        }
+
+        int node = 0;
+        int pos = 0;
+        while (pos < key.length()) {
+            int child = firstChild[node];
+            char c = key.charAt(pos);
+            while (child >= 0 && edges[child].charAt(0) != c) {
+                child = nextSibling[child];
+            }
+            if (child < 0) {
+                return List.of();
+            }
+            String edge = edges[child];
+            int length = Math.min(edge.length(), key.length() - pos);
+            if (!key.regionMatches(pos, edge, 0, length)) {
+                return List.of();
+            }
+            pos += length;
+            node = child;
+        }
+
+        int[] best = top[node];
+        int count = Math.min(limit, best.length);
+        List<Item> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(items[best[i]]);
+        }
+        return result;
+    }
+
+    public static PrefixTrie build(Collection<Item> source) {
+        Item[] items = source.toArray(new Item[0]);
+        String[] foldedNames = new String[items.length];
+        for (int i = 0; i < items.length; i++) {
+            foldedNames[i] = SearchTextNormalizer.fold(items[i].name());
+        }
+        Integer[] order = new Integer[items.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingInt(i -> foldedNames[i].length())
+                .thenComparing(i -> foldedNames[i])
+                .thenComparingInt(i -> items[i].id()));
+        Item[] ranked = new Item[items.length];
+        List<Term> terms = new ArrayList<>();
+        for (int rank = 0; rank < order.length; rank++) {
+            Item item = items[order[rank]];
+            ranked[rank] = item;
+            addTerms(terms, rank, SearchTextNormalizer.fold(item.code()), foldedNames[order[rank]]);
+        }
+        terms.sort(Comparator.comparing(Term::key).thenComparingInt(Term::rank));
+        return new Builder(ranked, terms).build();
+    }
+
+    private record Term(String key, int rank) {
+    }
+
+    private static void addTerms(List<Term> terms, int rank, String code, String name) {
+        if (!code.isEmpty()) {
+            addTerm(terms, rank, code);
+            if (code.indexOf(' ') >= 0) {
+                addTerm(terms, rank, code.replace(" ", ""));
+            }
+        }
+        for (int start = 0; start < name.length(); start++) {
+            if (start == 0 || name.charAt(start - 1) == ' ') {
+                addTerm(terms, rank, name.substring(start));
+            }
+        }
+    }
+
+    private static void addTerm(List<Term> terms, int rank, String key) {
+        terms.add(new Term(key.length() > MAX_TERM_LENGTH ? key.substring(0, MAX_TERM_LENGTH) : key, rank));
+    }
+
+    /**
+     * Dựng cây từ danh sách khóa đã sắp xếp: mỗi nút ứng với một đoạn [lo, hi) các khóa có chung tiền tố.
+     */
+    private static final class Builder {
+        private final Item[] items;
+        private final List<Term> terms;
+        private final List<String> edges = new ArrayList<>();
+        private final List<int[]> tops = new ArrayList<>();
+        private int[] firstChild = new int[16];
+        private int[] nextSibling = new int[16];
+
+        Builder(Item[] items, List<Term> terms) {
+            this.items = items;
+            this.terms = terms;
+        }
+
+        PrefixTrie build() {
+            int root = newNode("");
+            if (!terms.isEmpty()) {
+                tops.set(root, buildChildren(root, 0, terms.size(), 0));
+            }
+            int count = edges.size();
+            return new PrefixTrie(items, edges.toArray(new String[0]), Arrays.copyOf(firstChild, count),
+                    Arrays.copyOf(nextSibling, count), tops.toArray(new int[0][]));
+        }
+
+        /**
+         * Tạo con của node cho các khóa [lo, hi) có chung depth ký tự đầu.
+         * @return Top bản ghi của cây con gốc node
+         */
+        private int[] buildChildren(int node, int lo, int hi, int depth) {
+            List<int[]> candidates = new ArrayList<>();
+            int i = lo;
+            // Khóa kết thúc đúng tại node
+            int terminalEnd = i;
+            while (terminalEnd < hi && terms.get(terminalEnd).key().length() == depth) {
+                terminalEnd++;
+            }
+            if (terminalEnd > i) {
+                candidates.add(ranksOf(i, terminalEnd));
+                i = terminalEnd;
+            }
+
+            int lastChild = -1;
+            while (i < hi) {
+                char c = terms.get(i).key().charAt(depth);
+                int j = i + 1;
+                while (j < hi && terms.get(j).key().charAt(depth) == c) {
+                    j++;
+                }
+                int end = commonPrefixEnd(i, j, depth);
+                int child = newNode(terms.get(i).key().substring(depth, end));
+                if (lastChild < 0) {
+                    firstChild[node] = child;
+                } else {
+                    nextSibling[lastChild] = child;
+                }
+                lastChild = child;
+                int[] childTop = buildChildren(child, i, j, end);
+                tops.set(child, childTop);
+                candidates.add(childTop);
+                i = j;
+            }
+            // Nút chỉ có một nguồn thì dùng chung mảng top, không sao chép
+            return candidates.size() == 1 ? candidates.get(0) : merge(candidates);
+        }
+
+        private int commonPrefixEnd(int lo, int hi, int depth) {
+            // Các khóa đã sắp xếp: tiền tố chung của cả đoạn = tiền tố chung của khóa đầu và khóa cuối
+            String first = terms.get(lo).key();
+            String last = terms.get(hi - 1).key();
+            int end = depth + 1;
+            int max = Math.min(first.length(), last.length());
+            while (end < max && first.charAt(end) == last.charAt(end)) {
+                end++;
+            }
+            return end;
+        }
+
+        private int[] ranksOf(int lo, int hi) {
+            int[] ranks = new int[Math.min(hi - lo, MAX_SUGGESTIONS)];
+            int count = 0;
+            for (int k = lo; k < hi && count < ranks.length; k++) {
+                int rank = terms.get(k).rank();
+                if (count == 0 || ranks[count - 1] != rank) {
+                    ranks[count++] = rank;
+                }
+            }
+            return count == ranks.length ? ranks : Arrays.copyOf(ranks, count);
+        }
+
+        private static int[] merge(List<int[]> candidates) {
+            int total = 0;
+            for (int[] candidate : candidates) {
+                total += candidate.length;
+            }
+            int[] all = new int[total];
+            int pos = 0;
+            for (int[] candidate : candidates) {
+                System.arraycopy(candidate, 0, all, pos, candidate.length);
+                pos += candidate.length;
+            }
+            Arrays.sort(all);
+            int count = 0;
+            for (int k = 0; k < all.length && count < MAX_SUGGESTIONS; k++) {
+                if (count == 0 || all[count - 1] != all[k]) {
+                    all[count++] = all[k];
+                }
+            }
+            return count == 0 ? NO_ITEMS : Arrays.copyOf(all, count);
+        }
+
+        private int newNode(String edge) {
+            int node = edges.size();
+            if (node == firstChild.length) {
+                firstChild = Arrays.copyOf(firstChild, node * 2);
+                nextSibling = Arrays.copyOf(nextSibling, node * 2);
+            }
+            edges.add(edge);
+            tops.add(NO_ITEMS);
+            firstChild[node] = -1;
+            nextSibling[node] = -1;
+            return node;
+        }
+    }
+}
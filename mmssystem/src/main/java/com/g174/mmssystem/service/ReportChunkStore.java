@@ -0,0 +1,145 @@
+package com.g174.mmssystem.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.g174.mmssystem.entity.ReportChunk;
+import com.g174.mmssystem.repository.ReportChunkRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Lưu dòng dữ liệu báo cáo theo từng chunk nén GZIP trong bảng Report_Chunks.
+ * Report chỉ giữ phần tóm tắt (summary, rowCount, chunkCount); đọc một trang dòng chỉ giải nén các chunk chứa trang đó.
+ */
+@Component
+public class ReportChunkStore {
+
+    public static final int CHUNK_ROWS = 500;
+
+    private static final TypeReference<List<Map<String, Object>>> ROWS_TYPE = new TypeReference<>() {
+    };
+
+    private final ReportChunkRepository reportChunkRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate writeTransaction;
+
+    public ReportChunkStore(ReportChunkRepository reportChunkRepository,
+                            ObjectMapper objectMapper,
+                            PlatformTransactionManager transactionManager) {
+        this.reportChunkRepository = reportChunkRepository;
+        this.objectMapper = objectMapper;
+        // Chunk được ghi trong lúc job đang đọc dữ liệu bằng transaction read-only
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Bộ ghi dòng cho một báo cáo: gom CHUNK_ROWS dòng rồi nén và lưu thành một chunk.
+     */
+    public ChunkWriter open(Integer reportId) {
+        return new ChunkWriter(reportId);
+    }
+
+    /**
+     * Đọc limit dòng bắt đầu từ dòng offset (0-based).
+     * @param limit - Tối đa CHUNK_ROWS để một trang chỉ chạm tới nhiều nhất 2 chunk
+     */
+    public List<Map<String, Object>> readRows(Integer reportId, long offset, int limit) {
+        int fromIndex = (int) (offset / CHUNK_ROWS);
+        int toIndex = (int) ((offset + limit - 1) / CHUNK_ROWS);
+        List<Map<String, Object>> rows = new ArrayList<>(limit);
+        for (ReportChunk chunk : reportChunkRepository.findChunks(reportId, fromIndex, toIndex)) {
+            List<Map<String, Object>> chunkRows = decompress(chunk.getPayload());
+            long chunkStart = (long) chunk.getChunkIndex() * CHUNK_ROWS;
+            int from = (int) Math.max(0, offset - chunkStart);
+            int to = (int) Math.min(chunkRows.size(), offset + limit - chunkStart);
+            if (from < to) {
+                rows.addAll(chunkRows.subList(from, to));
+            }
+        }
+        return rows;
+    }
+
+    public void deleteChunks(Integer reportId) {
+        writeTransaction.executeWithoutResult(status -> reportChunkRepository.deleteByReportId(reportId));
+    }
+
+    private byte[] compress(List<Map<String, Object>> rows) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(buffer)) {
+            objectMapper.writeValue(gzip, rows);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Không thể nén dữ liệu báo cáo", e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private List<Map<String, Object>> decompress(byte[] payload) {
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            return objectMapper.readValue(gzip, ROWS_TYPE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Không thể đọc dữ liệu báo cáo", e);
+        }
+    }
+
+    public final class ChunkWriter implements ReportJobExecutor.ReportRowSink {
+
+        private final Integer reportId;
+        private final List<Map<String, Object>> buffer = new ArrayList<>(CHUNK_ROWS);
+        private int chunkCount;
+        private int rowCount;
+
+        private ChunkWriter(Integer reportId) {
+            this.reportId = reportId;
+        }
+
+        @Override
+        public void add(Map<String, Object> row) {
+            buffer.add(row);
+            rowCount++;
+            if (buffer.size() == CHUNK_ROWS) {
+                flush();
+            }
+        }
+
+        /**
+         * Lưu các dòng còn lại trong buffer thành chunk cuối.
+         */
+        public void flush() {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            ReportChunk chunk = ReportChunk.builder()
+                    .reportId(reportId)
+                    .chunkIndex(chunkCount)
+                    .rowCount(buffer.size())
+                    .payload(compress(buffer))
+                    .build();
+            writeTransaction.executeWithoutResult(status -> reportChunkRepository.save(chunk));
+            chunkCount++;
+            buffer.clear();
+        }
+
+        public int getChunkCount() {
+            return chunkCount;
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.g174.mmssystem.service;
+
+import com.g174.mmssystem.dto.request.ReportRequest;
+import com.g174.mmssystem.dto.responseDTO.InventoryExportRowProjection;
+import com.g174.mmssystem.dto.responseDTO.PurchaseOrderExportRowProjection;
+import com.g174.mmssystem.dto.responseDTO.SalesOrderExportRowProjection;
+import com.g174.mmssystem.enums.ReportExportFormat;
+import com.g174.mmssystem.enums.ReportType;
+import com.g174.mmssystem.repository.PurchaseOrderRepository;
+import com.g174.mmssystem.repository.SalesOrderRepository;
+import com.g174.mmssystem.repository.WarehouseStockRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Xuất dòng báo cáo ra CSV / XLSX trực tiếp từ cursor database.
+ * Mỗi dòng được ghi ra output ngay khi đọc, bộ nhớ dùng không phụ thuộc số dòng.
+ */
+@Service
+@Slf4j
+public class ReportExportService {
+
+    private final WarehouseStockRepository warehouseStockRepository;
+    private final SalesOrderRepository salesOrderRepository;
+    private final PurchaseOrderRepository purchaseOrderRepository;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public ReportExportService(WarehouseStockRepository warehouseStockRepository,
+                               SalesOrderRepository salesOrderRepository,
+                               PurchaseOrderRepository purchaseOrderRepository,
+                               PlatformTransactionManager transactionManager) {
+        this.warehouseStockRepository = warehouseStockRepository;
+        this.salesOrderRepository = salesOrderRepository;
+        this.purchaseOrderRepository = purchaseOrderRepository;
+        // Stream từ repository chỉ đọc được khi transaction còn mở
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public String fileName(ReportType type, ReportExportFormat format) {
+        String name = switch (type) {
+            case Inventory -> "bao-cao-ton-kho";
+            case Sales -> "bao-cao-ban-hang";
+            case Purchase -> "bao-cao-mua-hang";
+            case Financial -> "bao-cao-tai-chinh";
+        };
+        return name + "-" + LocalDate.now() + "." + format.getExtension();
+    }
+
+    /**
+     * Ghi toàn bộ dòng báo cáo vào output (gọi từ StreamingResponseBody).
+     */
+    public void export(ReportType type, ReportRequest filters, ReportExportFormat format, OutputStream output)
+            throws IOException {
+        long startTime = System.currentTimeMillis();
+        try {
+            Long rows = readOnlyTransaction.execute(status -> {
+                try (ReportRowWriter writer = ReportRowWriter.create(format, output)) {
+                    return switch (type) {
+                        case Inventory -> writeInventory(filters, writer);
+                        case Sales -> writeSales(filters, writer);
+                        case Purchase -> writePurchase(filters, writer);
+                        case Financial -> throw new IllegalArgumentException("Chưa hỗ trợ xuất báo cáo tài chính");
+                    };
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            log.info("Exported {} {} report rows as {} in {} ms", rows, type, format,
+                    System.currentTimeMillis() - startTime);
+        } catch (UncheckedIOException e) {
+            // Thường là client ngắt kết nối giữa chừng
+            log.warn("Export of {} report aborted: {}", type, e.getMessage());
+            throw e.getCause();
+        }
+    }
+
+    private long writeInventory(ReportRequest filters, ReportRowWriter writer) throws IOException {
+        writer.writeRow("Mã kho", "Kho", "Mã sản phẩm", "Tên sản phẩm", "Đơn vị", "Tồn kho");
+        long count = 0;
+        try (Stream<InventoryExportRowProjection> rows =
+                     warehouseStockRepository.streamInventoryExportRows(filters.getWarehouseId())) {
+            Iterator<InventoryExportRowProjection> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                InventoryExportRowProjection row = iterator.next();
+                writer.writeRow(row.getWarehouseCode(), row.getWarehouseName(), row.getProductCode(),
+                        row.getProductName(), row.getUnit() != null ? row.getUnit() : "PCS", row.getQuantity());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private long writeSales(ReportRequest filters, ReportRowWriter writer) throws IOException {
+        writer.writeRow("Số đơn hàng", "Ngày đặt", "Mã khách hàng", "Khách hàng", "Trạng thái", "Phê duyệt",
+                "Tổng tiền");
+        Instant fromDate = filters.getStartDate() != null
+                ? filters.getStartDate().atStartOfDay(ZoneOffset.UTC).toInstant() : null;
+        Instant toDate = filters.getEndDate() != null
+                ? filters.getEndDate().plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant() : null;
+        long count = 0;
+        try (Stream<SalesOrderExportRowProjection> rows =
+                     salesOrderRepository.streamExportRows(filters.getCustomerId(), fromDate, toDate)) {
+            Iterator<SalesOrderExportRowProjection> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                SalesOrderExportRowProjection row = iterator.next();
+                writer.writeRow(row.getSoNo(), row.getOrderDate(), row.getCustomerCode(),
+                        fullName(row.getCustomerFirstName(), row.getCustomerLastName()),
+                        row.getStatus(), row.getApprovalStatus(), row.getTotalAmount());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private long writePurchase(ReportRequest filters, ReportRowWriter writer) throws IOException {
+        writer.writeRow("Số đơn mua", "Ngày đặt", "Mã nhà cung cấp", "Nhà cung cấp", "Trạng thái", "Phê duyệt",
+                "Tổng tiền sau thuế");
+        LocalDateTime fromDate = filters.getStartDate() != null ? filters.getStartDate().atStartOfDay() : null;
+        LocalDateTime toDate = filters.getEndDate() != null ? filters.getEndDate().plusDays(1).atStartOfDay() : null;
+        long count = 0;
+        try (Stream<PurchaseOrderExportRowProjection> rows =
+                     purchaseOrderRepository.streamExportRows(filters.getVendorId(), fromDate, toDate)) {
+            Iterator<PurchaseOrderExportRowProjection> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                PurchaseOrderExportRowProjection row = iterator.next();
+                writer.writeRow(row.getPoNo(), row.getOrderDate(), row.getVendorCode(), row.getVendorName(),
+                        row.getStatus(), row.getApprovalStatus(), row.getTotalAfterTax());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static String fullName(String firstName, String lastName) {
+        String name = (firstName != null ? firstName : "") + " " + (lastName != null ? lastName : "");
+        return name.trim();
+    }
+}
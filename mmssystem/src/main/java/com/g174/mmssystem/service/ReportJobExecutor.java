@@ -0,0 +1,266 @@
+package com.g174.mmssystem.service;
+
+import com.g174.mmssystem.enums.ReportStatus;
+import com.g174.mmssystem.repository.ReportRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Hàng đợi tạo báo cáo chạy nền với số worker giới hạn.
+ *
+ * Vòng đời: Pending (trong hàng đợi) -> Running (có progress 0-100) -> Completed / Failed / Cancelled.
+ * Các yêu cầu có cùng paramHash trong lúc job trước còn chờ / đang chạy được gộp về cùng một reportId.
+ * Hủy job là cooperative: job đang chạy dừng ở lần báo tiến độ kế tiếp.
+ * Trạng thái in-flight chỉ nằm trong bộ nhớ của instance hiện tại (triển khai một instance).
+ */
+@Component
+@Slf4j
+public class ReportJobExecutor {
+
+    private static final List<ReportStatus> ACTIVE_STATUSES = List.of(ReportStatus.Pending, ReportStatus.Running);
+
+    /**
+     * Tạo báo cáo trong transaction read-only trên worker thread: từng dòng dữ liệu được đẩy vào rows
+     * (lưu thành chunk nén), giá trị trả về là phần tóm tắt (JSON) lưu trên Report.
+     */
+    @FunctionalInterface
+    public interface ReportTask {
+        String generate(ReportProgress progress, ReportRowSink rows);
+    }
+
+    @FunctionalInterface
+    public interface ReportRowSink {
+        void add(Map<String, Object> row);
+    }
+
+    /**
+     * Báo tiến độ 0-100; ném ReportCancelledException nếu job đã bị hủy.
+     */
+    @FunctionalInterface
+    public interface ReportProgress {
+        void update(int percent);
+    }
+
+    /**
+     * @param joined - true nếu yêu cầu được gộp vào job giống hệt đang chạy
+     */
+    public record Submission(Integer reportId, boolean joined) {
+    }
+
+    public static class ReportCancelledException extends RuntimeException {
+        public ReportCancelledException() {
+            super("Báo cáo đã bị hủy");
+        }
+    }
+
+    private final ReportRepository reportRepository;
+    private final ReportChunkStore reportChunkStore;
+    private final TransactionTemplate writeTransaction;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ThreadPoolExecutor executor;
+    private final Map<Integer, Job> jobs = new ConcurrentHashMap<>();
+    private final Map<String, Integer> inFlightByHash = new ConcurrentHashMap<>();
+
+    public ReportJobExecutor(ReportRepository reportRepository,
+                             ReportChunkStore reportChunkStore,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${app.report.workers:2}") int workers,
+                             @Value("${app.report.queue-capacity:20}") int queueCapacity) {
+        this.reportRepository = reportRepository;
+        this.reportChunkStore = reportChunkStore;
+        // Cập nhật trạng thái / tiến độ commit ngay, độc lập với transaction đọc dữ liệu của job
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "report-worker-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Đưa job vào hàng đợi và trả về ngay reportId.
+     * @param paramHash - Hash của người tạo + loại báo cáo + bộ lọc
+     * @param createReport - Tạo bản ghi Report ở trạng thái Pending, trả về reportId
+     */
+    public synchronized Submission submit(String paramHash, Supplier<Integer> createReport, ReportTask task) {
+        Integer existing = inFlightByHash.get(paramHash);
+        if (existing != null) {
+            return new Submission(existing, true);
+        }
+
+        Integer reportId = writeTransaction.execute(status -> createReport.get());
+        Job job = new Job(reportId, paramHash, task);
+        jobs.put(reportId, job);
+        inFlightByHash.put(paramHash, reportId);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            release(job);
+            finish(reportId, ReportStatus.Failed, "Hàng đợi tạo báo cáo đang đầy");
+            throw new IllegalStateException("Hàng đợi tạo báo cáo đang đầy, vui lòng thử lại sau");
+        }
+        log.info("Queued report job {} (queue size: {})", reportId, executor.getQueue().size());
+        return new Submission(reportId, false);
+    }
+
+    /**
+     * Yêu cầu hủy job. Job còn trong hàng đợi (hoặc không còn được theo dõi, ví dụ sau khi khởi động lại)
+     * bị đóng ngay; job đang chạy dừng ở lần báo tiến độ kế tiếp.
+     * @return true nếu bản ghi đã chuyển sang Cancelled ngay, false nếu job đang chạy sẽ tự dừng sau
+     */
+    public boolean cancel(Integer reportId) {
+        Job job = jobs.get(reportId);
+        if (job == null) {
+            finish(reportId, ReportStatus.Cancelled, null);
+            return true;
+        }
+        job.cancelled = true;
+        if (job.started.compareAndSet(false, true)) {
+            release(job);
+            finish(reportId, ReportStatus.Cancelled, null);
+            log.info("Cancelled queued report job {}", reportId);
+            return true;
+        }
+        return false;
+    }
+
+    private void run(Job job) {
+        if (!job.started.compareAndSet(false, true)) {
+            return; // Đã bị hủy khi còn trong hàng đợi
+        }
+        Integer reportId = job.reportId;
+        try {
+            Integer started = writeTransaction.execute(status -> reportRepository.markRunning(reportId,
+                    ReportStatus.Pending, ReportStatus.Running, LocalDateTime.now()));
+            if (started == null || started == 0) {
+                log.info("Report {} is no longer pending, skipping", reportId);
+                return;
+            }
+
+            long startTime = System.currentTimeMillis();
+            ReportChunkStore.ChunkWriter rows = reportChunkStore.open(reportId);
+            String summary = readOnlyTransaction.execute(status -> job.task.generate(job::updateProgress, rows));
+            job.checkCancelled();
+            rows.flush();
+            Integer completed = writeTransaction.execute(status -> reportRepository.markCompleted(reportId,
+                    summary, rows.getRowCount(), rows.getChunkCount(), ReportStatus.Running,
+                    ReportStatus.Completed, LocalDateTime.now()));
+            log.info("Report job {} finished in {} ms: {} rows in {} chunks (saved: {})", reportId,
+                    System.currentTimeMillis() - startTime, rows.getRowCount(), rows.getChunkCount(),
+                    completed != null && completed > 0);
+        } catch (ReportCancelledException e) {
+            discardRows(reportId);
+            finish(reportId, ReportStatus.Cancelled, null);
+            log.info("Report job {} cancelled", reportId);
+        } catch (RuntimeException e) {
+            log.error("Report job {} failed", reportId, e);
+            discardRows(reportId);
+            finish(reportId, ReportStatus.Failed, e.getMessage());
+        } finally {
+            release(job);
+        }
+    }
+
+    private void finish(Integer reportId, ReportStatus status, String errorMessage) {
+        try {
+            writeTransaction.executeWithoutResult(tx -> reportRepository.markFinished(reportId, status,
+                    errorMessage, ACTIVE_STATUSES, LocalDateTime.now()));
+        } catch (RuntimeException e) {
+            log.error("Failed to mark report {} as {}", reportId, status, e);
+        }
+    }
+
+    // Chunk đã ghi của job bị hủy / lỗi không bao giờ được đọc tới
+    private void discardRows(Integer reportId) {
+        try {
+            reportChunkStore.deleteChunks(reportId);
+        } catch (RuntimeException e) {
+            log.error("Failed to delete row chunks of report {}", reportId, e);
+        }
+    }
+
+    private void release(Job job) {
+        jobs.remove(job.reportId, job);
+        inFlightByHash.remove(job.paramHash, job.reportId);
+    }
+
+    /**
+     * Job Pending / Running còn lại từ lần chạy trước sẽ không bao giờ hoàn thành.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void failInterruptedJobs() {
+        try {
+            Integer count = writeTransaction.execute(status -> reportRepository.markAllFinished(ReportStatus.Failed,
+                    "Bị gián đoạn do ứng dụng khởi động lại", ACTIVE_STATUSES, LocalDateTime.now()));
+            if (count != null && count > 0) {
+                log.warn("Marked {} interrupted report jobs as failed", count);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to clean up interrupted report jobs: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobs.values().forEach(job -> job.cancelled = true);
+        executor.shutdownNow();
+    }
+
+    private final class Job {
+
+        private final Integer reportId;
+        private final String paramHash;
+        private final ReportTask task;
+        private final AtomicBoolean started = new AtomicBoolean();
+        private volatile boolean cancelled;
+        private int lastProgress;
+
+        Job(Integer reportId, String paramHash, ReportTask task) {
+            this.reportId = reportId;
+            this.paramHash = paramHash;
+            this.task = task;
+        }
+
+        void checkCancelled() {
+            if (cancelled) {
+                throw new ReportCancelledException();
+            }
+        }
+
+        // Chỉ ghi xuống database khi tiến độ tăng; 100 được ghi cùng lúc với dữ liệu báo cáo
+        void updateProgress(int percent) {
+            checkCancelled();
+            int value = Math.max(0, Math.min(99, percent));
+            if (value > lastProgress) {
+                lastProgress = value;
+                writeTransaction.executeWithoutResult(tx -> reportRepository.updateProgress(reportId, value,
+                        ReportStatus.Running));
+            }
+        }
+    }
+}
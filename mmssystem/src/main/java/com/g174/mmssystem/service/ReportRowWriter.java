@@ -0,0 +1,46 @@
+package com.g174.mmssystem.service;
+
+import com.g174.mmssystem.enums.ReportExportFormat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Ghi từng dòng báo cáo ra output stream (không giữ dữ liệu trong bộ nhớ).
+ * Dòng đầu tiên nên là header. close() hoàn tất file nhưng không đóng output stream gốc.
+ */
+public interface ReportRowWriter extends Closeable {
+
+    DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    void writeRow(Object... values) throws IOException;
+
+    static ReportRowWriter create(ReportExportFormat format, OutputStream output) throws IOException {
+        return format == ReportExportFormat.XLSX ? new ReportXlsxWriter(output) : new ReportCsvWriter(output);
+    }
+
+    /**
+     * Chuỗi hiển thị của một ô (ngày giờ theo múi giờ server, số không dùng ký hiệu mũ).
+     */
+    static String format(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof BigDecimal decimal) {
+            return decimal.toPlainString();
+        }
+        if (value instanceof Instant instant) {
+            return DATE_TIME_FORMAT.format(instant.atZone(ZoneId.systemDefault()));
+        }
+        if (value instanceof LocalDateTime dateTime) {
+            return DATE_TIME_FORMAT.format(dateTime);
+        }
+        return value.toString();
+    }
+}
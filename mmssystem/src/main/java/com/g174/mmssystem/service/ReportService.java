@@ -1,8 +1,12 @@
 package com.g174.mmssystem.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.g174.mmssystem.dto.request.ReportRequest;
 import com.g174.mmssystem.dto.response.ReportResponse;
+import com.g174.mmssystem.dto.responseDTO.ReportSummaryProjection;
 import com.g174.mmssystem.entity.Report;
 import com.g174.mmssystem.entity.User;
 import com.g174.mmssystem.entity.WarehouseStock;
@@ -13,6 +17,7 @@ import com.g174.mmssystem.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -20,26 +25,39 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ReportService {
     
+    // Báo tiến độ sau mỗi PROGRESS_STEP dòng tồn kho
+    private static final int PROGRESS_STEP = 500;
+    
+    // Số nhóm đứng đầu giữ trong phần tóm tắt, toàn bộ nhóm nằm trong các dòng báo cáo
+    private static final int TOP_GROUPS = 10;
+    
     private final ReportRepository reportRepository;
     private final UserRepository userRepository;
     private final WarehouseStockRepository warehouseStockRepository;
     private final ProductRepository productRepository;
     private final WarehouseRepository warehouseRepository;
-    private final PurchaseOrderRepository purchaseOrderRepository;
-    private final SalesOrderRepository salesOrderRepository;
     private final ObjectMapper objectMapper;
+    private final ReportJobExecutor reportJobExecutor;
+    private final ReportChunkStore reportChunkStore;
+    private final ReportChunkRepository reportChunkRepository;
+    private final TradeAnalyticsService tradeAnalyticsService;
     
     // Get all reports with pagination
     @Transactional(readOnly = true)
@@ -48,8 +66,8 @@ public class ReportService {
                     Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
         Pageable pageable = PageRequest.of(page, size, sort);
         
-        Page<Report> reports = reportRepository.findAll(pageable);
-        return reports.map(this::mapToResponse);
+        return reportRepository.findSummaries(null, null, null, pageable)
+                .map(this::mapToSummaryResponse);
     }
     
     // Get report by ID
@@ -65,228 +83,319 @@ public class ReportService {
     public Page<ReportResponse> filterReports(ReportType type, ReportStatus status, 
                                                String keyword, int page, int size) {
         Pageable pageable = PageRequest.of(page, size, Sort.by("generatedAt").descending());
-        Page<Report> reports;
-        
-        if (keyword != null && !keyword.trim().isEmpty()) {
-            reports = reportRepository.searchByKeyword(keyword, pageable);
-        } else if (type != null && status != null) {
-            reports = reportRepository.findByTypeAndStatus(type, status, pageable);
-        } else if (type != null) {
-            reports = reportRepository.findByType(type, pageable);
-        } else if (status != null) {
-            reports = reportRepository.findByStatus(status, pageable);
-        } else {
-            reports = reportRepository.findAll(pageable);
+        String search = keyword != null && !keyword.trim().isEmpty() ? keyword.trim() : null;
+        return reportRepository.findSummaries(type, status, search, pageable)
+                .map(this::mapToSummaryResponse);
+    }
+    
+    // Page through report rows: chỉ giải nén các chunk chứa trang được yêu cầu
+    @Transactional(readOnly = true)
+    public Page<Map<String, Object>> getReportRows(Integer reportId, int page, int size) {
+        if (page < 0 || size < 1 || size > ReportChunkStore.CHUNK_ROWS) {
+            throw new IllegalArgumentException("size phải từ 1 đến " + ReportChunkStore.CHUNK_ROWS);
+        }
+        Report report = reportRepository.findById(reportId)
+                .orElseThrow(() -> new RuntimeException("Report not found with id: " + reportId));
+        if (report.getStatus() != ReportStatus.Completed) {
+            throw new IllegalStateException("Báo cáo chưa hoàn thành");
         }
         
-        return reports.map(this::mapToResponse);
+        Pageable pageable = PageRequest.of(page, size);
+        if (report.getChunkCount() == null) {
+            return legacyRows(report, pageable);
+        }
+        int total = report.getRowCount() != null ? report.getRowCount() : 0;
+        if (pageable.getOffset() >= total) {
+            return new PageImpl<>(List.of(), pageable, total);
+        }
+        return new PageImpl<>(reportChunkStore.readRows(reportId, pageable.getOffset(), size), pageable, total);
     }
     
-    // Generate Inventory Report
-    @Transactional
-    public ReportResponse generateInventoryReport(ReportRequest request, Integer userId) {
+    // Báo cáo tạo trước khi có Report_Chunks vẫn giữ dòng trong report_data.items
+    private Page<Map<String, Object>> legacyRows(Report report, Pageable pageable) {
+        List<Map<String, Object>> items = List.of();
         try {
-            // Get actual inventory data from Warehouse_Stock
-            List<Map<String, Object>> inventoryItems = new ArrayList<>();
-            
-            List<WarehouseStock> warehouseStocks = warehouseStockRepository.findAll();
-            log.info("Found {} warehouse stocks in database", warehouseStocks.size());
-            
-            for (WarehouseStock stock : warehouseStocks) {
-                log.debug("Processing stock for product: {}, quantity: {}", 
-                    stock.getProduct() != null ? stock.getProduct().getName() : "NULL", 
-                    stock.getQuantity());
-                if (stock.getProduct() != null && stock.getQuantity().compareTo(BigDecimal.ZERO) > 0) {
-                    Map<String, Object> item = new HashMap<>();
-                    
-                    Product product = stock.getProduct();
-                    item.put("productId", product.getProductId());
-                    item.put("productCode", product.getSku());
-                    item.put("productName", product.getName());
-                    item.put("unit", product.getUom() != null ? product.getUom() : "PCS");
-                    item.put("warehouseName", stock.getWarehouse() != null ? stock.getWarehouse().getName() : "N/A");
-                    
-                    // Current stock quantity
-                    item.put("currentQty", stock.getQuantity());
-                    item.put("minStock", BigDecimal.ZERO); // Default value - can be enhanced later
-                    item.put("maxStock", BigDecimal.ZERO); // Default value - can be enhanced later
-                    
-                    // For now, use placeholder values for movement data
-                    // In production, you would calculate from GoodsReceipt/GoodIssue in date range
-                    item.put("openingQty", stock.getQuantity().multiply(BigDecimal.valueOf(0.8))); // Simplified
-                    item.put("inboundQty", stock.getQuantity().multiply(BigDecimal.valueOf(0.3))); // Simplified  
-                    item.put("outboundQty", stock.getQuantity().multiply(BigDecimal.valueOf(0.1))); // Simplified
-                    item.put("closingQty", stock.getQuantity());
-                    
-                    inventoryItems.add(item);
+            if (report.getReportData() != null) {
+                Map<String, Object> data = objectMapper.readValue(report.getReportData(), new TypeReference<>() {
+                });
+                if (data.get("items") instanceof List<?> list) {
+                    items = objectMapper.convertValue(list, new TypeReference<>() {
+                    });
                 }
             }
-            
-            log.info("Built {} inventory items for report", inventoryItems.size());
-            
-            // No sample data - return actual data only
-            
-            Map<String, Object> reportData = new HashMap<>();
-            reportData.put("generatedAt", LocalDateTime.now());
-            reportData.put("totalProducts", productRepository.count());
-            reportData.put("totalWarehouses", warehouseRepository.count());
-            reportData.put("items", inventoryItems);
-            reportData.put("filters", buildFiltersMap(request));
-            
-            String jsonData = objectMapper.writeValueAsString(reportData);
-            
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-            
-            Report report = Report.builder()
-                    .name(request.getName() != null ? request.getName() : "Báo cáo tồn kho " + LocalDate.now())
-                    .type(ReportType.Inventory)
-                    .status(ReportStatus.Completed)
-                    .description(request.getDescription())
-                    .reportData(jsonData)
-                    .generatedBy(user)
-                    .generatedAt(LocalDateTime.now())
-                    .build();
-            
-            report = reportRepository.save(report);
-            log.info("Generated Inventory Report: {} with {} items", report.getReportId(), inventoryItems.size());
-            
-            // Return response with actual data for immediate display
-            ReportResponse response = mapToResponse(report);
-            response.setReportData(reportData); // This will contain the 'items' array that frontend expects
-            return response;
         } catch (Exception e) {
-            log.error("Error generating inventory report", e);
-            throw new RuntimeException("Failed to generate inventory report: " + e.getMessage());
+            log.warn("Failed to parse report data for report {}", report.getReportId());
         }
+        int from = (int) Math.min(pageable.getOffset(), items.size());
+        int to = Math.min(from + pageable.getPageSize(), items.size());
+        return new PageImpl<>(items.subList(from, to), pageable, items.size());
     }
     
-    // Generate Purchase Report
-    @Transactional
+    // Generate Inventory Report (chạy nền, trả về ngay bản ghi Pending)
+    public ReportResponse generateInventoryReport(ReportRequest request, Integer userId) {
+        return submitReport(ReportType.Inventory, "Báo cáo tồn kho ", request, userId,
+                (progress, rows) -> buildInventoryData(request, progress, rows));
+    }
+    
+    // Generate Purchase Report (chạy nền, trả về ngay bản ghi Pending)
     public ReportResponse generatePurchaseReport(ReportRequest request, Integer userId) {
-        try {
-            Map<String, Object> reportData = new HashMap<>();
-            
-            LocalDateTime startDate = request.getStartDate() != null ? 
-                    request.getStartDate().atStartOfDay() : LocalDateTime.now().minusMonths(1);
-            LocalDateTime endDate = request.getEndDate() != null ? 
-                    request.getEndDate().atTime(23, 59, 59) : LocalDateTime.now();
-            
-            reportData.put("generatedAt", LocalDateTime.now());
-            reportData.put("period", Map.of("from", startDate, "to", endDate));
-            reportData.put("totalPurchaseOrders", purchaseOrderRepository.count());
-            
-            // Additional purchase metrics can be added here
-            reportData.put("filters", buildFiltersMap(request));
-            
-            String jsonData = objectMapper.writeValueAsString(reportData);
-            
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-            
-            Report report = Report.builder()
-                    .name(request.getName() != null ? request.getName() : "Báo cáo mua hàng " + LocalDate.now())
-                    .type(ReportType.Purchase)
-                    .status(ReportStatus.Completed)
-                    .description(request.getDescription())
-                    .reportData(jsonData)
-                    .generatedBy(user)
-                    .generatedAt(LocalDateTime.now())
-                    .build();
-            
-            report = reportRepository.save(report);
-            log.info("Generated Purchase Report: {}", report.getReportId());
-            
-            return mapToResponse(report);
-        } catch (Exception e) {
-            log.error("Error generating purchase report", e);
-            throw new RuntimeException("Failed to generate purchase report: " + e.getMessage());
-        }
+        return submitReport(ReportType.Purchase, "Báo cáo mua hàng ", request, userId,
+                (progress, rows) -> buildPurchaseData(request, progress, rows));
     }
     
-    // Generate Sales Report
-    @Transactional
+    // Generate Sales Report (chạy nền, trả về ngay bản ghi Pending)
     public ReportResponse generateSalesReport(ReportRequest request, Integer userId) {
-        try {
-            Map<String, Object> reportData = new HashMap<>();
-            
-            LocalDateTime startDate = request.getStartDate() != null ? 
-                    request.getStartDate().atStartOfDay() : LocalDateTime.now().minusMonths(1);
-            LocalDateTime endDate = request.getEndDate() != null ? 
-                    request.getEndDate().atTime(23, 59, 59) : LocalDateTime.now();
-            
-            reportData.put("generatedAt", LocalDateTime.now());
-            reportData.put("period", Map.of("from", startDate, "to", endDate));
-            reportData.put("totalSalesOrders", salesOrderRepository.count());
-            
-            // Additional sales metrics can be added here
-            reportData.put("filters", buildFiltersMap(request));
-            
-            String jsonData = objectMapper.writeValueAsString(reportData);
-            
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-            
-            Report report = Report.builder()
-                    .name(request.getName() != null ? request.getName() : "Báo cáo bán hàng " + LocalDate.now())
-                    .type(ReportType.Sales)
-                    .status(ReportStatus.Completed)
-                    .description(request.getDescription())
-                    .reportData(jsonData)
-                    .generatedBy(user)
-                    .generatedAt(LocalDateTime.now())
-                    .build();
-            
-            report = reportRepository.save(report);
-            log.info("Generated Sales Report: {}", report.getReportId());
-            
-            return mapToResponse(report);
-        } catch (Exception e) {
-            log.error("Error generating sales report", e);
-            throw new RuntimeException("Failed to generate sales report: " + e.getMessage());
-        }
+        return submitReport(ReportType.Sales, "Báo cáo bán hàng ", request, userId,
+                (progress, rows) -> buildSalesData(request, progress, rows));
     }
     
-    // Generate Financial Report
-    @Transactional
+    // Generate Financial Report (chạy nền, trả về ngay bản ghi Pending)
     public ReportResponse generateFinancialReport(ReportRequest request, Integer userId) {
-        try {
-            Map<String, Object> reportData = new HashMap<>();
-            
-            LocalDateTime startDate = request.getStartDate() != null ? 
-                    request.getStartDate().atStartOfDay() : LocalDateTime.now().minusMonths(1);
-            LocalDateTime endDate = request.getEndDate() != null ? 
-                    request.getEndDate().atTime(23, 59, 59) : LocalDateTime.now();
-            
-            reportData.put("generatedAt", LocalDateTime.now());
-            reportData.put("period", Map.of("from", startDate, "to", endDate));
-            
-            // Financial metrics can be added here
-            reportData.put("filters", buildFiltersMap(request));
-            
-            String jsonData = objectMapper.writeValueAsString(reportData);
-            
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-            
-            Report report = Report.builder()
-                    .name(request.getName() != null ? request.getName() : "Báo cáo tài chính " + LocalDate.now())
-                    .type(ReportType.Financial)
-                    .status(ReportStatus.Completed)
-                    .description(request.getDescription())
-                    .reportData(jsonData)
-                    .generatedBy(user)
-                    .generatedAt(LocalDateTime.now())
-                    .build();
-            
-            report = reportRepository.save(report);
-            log.info("Generated Financial Report: {}", report.getReportId());
-            
-            return mapToResponse(report);
-        } catch (Exception e) {
-            log.error("Error generating financial report", e);
-            throw new RuntimeException("Failed to generate financial report: " + e.getMessage());
+        return submitReport(ReportType.Financial, "Báo cáo tài chính ", request, userId,
+                (progress, rows) -> buildFinancialData(request, progress));
+    }
+    
+    // Cancel report job
+    public ReportResponse cancelReport(Integer reportId) {
+        Report report = reportRepository.findWithUserById(reportId)
+                .orElseThrow(() -> new RuntimeException("Report not found with id: " + reportId));
+        if (report.getStatus() != ReportStatus.Pending && report.getStatus() != ReportStatus.Running) {
+            throw new IllegalStateException("Báo cáo đã kết thúc, không thể hủy");
+        }
+        // Job đang chạy giữ trạng thái Running cho tới lần báo tiến độ kế tiếp
+        if (reportJobExecutor.cancel(reportId)) {
+            report.setStatus(ReportStatus.Cancelled);
         }
+        log.info("Cancel requested for report {}", reportId);
+        return mapToResponse(report);
+    }
+    
+    private ReportResponse submitReport(ReportType type, String defaultName, ReportRequest request, Integer userId,
+                                        ReportDataBuilder dataBuilder) {
+        String paramHash = buildParamHash(type, request, userId);
+        ReportJobExecutor.Submission submission = reportJobExecutor.submit(paramHash,
+                () -> createPendingReport(type, defaultName, request, userId, paramHash),
+                (progress, rows) -> toJson(dataBuilder.build(progress, rows)));
+        if (submission.joined()) {
+            log.info("{} report request joined in-flight report {}", type, submission.reportId());
+        }
+        Report report = reportRepository.findWithUserById(submission.reportId())
+                .orElseThrow(() -> new RuntimeException("Report not found with id: " + submission.reportId()));
+        return mapToResponse(report);
+    }
+    
+    private Integer createPendingReport(ReportType type, String defaultName, ReportRequest request,
+                                        Integer userId, String paramHash) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        
+        Report report = Report.builder()
+                .name(request.getName() != null ? request.getName() : defaultName + LocalDate.now())
+                .type(type)
+                .status(ReportStatus.Pending)
+                .progress(0)
+                .paramHash(paramHash)
+                .description(request.getDescription())
+                .generatedBy(user)
+                .generatedAt(LocalDateTime.now())
+                .build();
+        return reportRepository.save(report).getReportId();
+    }
+    
+    // Trả về phần tóm tắt; từng dòng được đẩy vào rows (lưu thành chunk nén)
+    @FunctionalInterface
+    private interface ReportDataBuilder {
+        Map<String, Object> build(ReportJobExecutor.ReportProgress progress, ReportJobExecutor.ReportRowSink rows);
+    }
+    
+    private Map<String, Object> buildInventoryData(ReportRequest request, ReportJobExecutor.ReportProgress progress,
+                                                   ReportJobExecutor.ReportRowSink rows) {
+        // Get actual inventory data from Warehouse_Stock
+        int itemCount = 0;
+        
+        List<WarehouseStock> warehouseStocks = warehouseStockRepository.findAll();
+        log.info("Found {} warehouse stocks in database", warehouseStocks.size());
+        progress.update(10);
+        
+        int processed = 0;
+        for (WarehouseStock stock : warehouseStocks) {
+            if (++processed % PROGRESS_STEP == 0) {
+                progress.update(10 + processed * 80 / warehouseStocks.size());
+            }
+            if (stock.getProduct() != null && stock.getQuantity().compareTo(BigDecimal.ZERO) > 0) {
+                Map<String, Object> item = new HashMap<>();
+                
+                Product product = stock.getProduct();
+                item.put("productId", product.getProductId());
+                item.put("productCode", product.getSku());
+                item.put("productName", product.getName());
+                item.put("unit", product.getUom() != null ? product.getUom() : "PCS");
+                item.put("warehouseName", stock.getWarehouse() != null ? stock.getWarehouse().getName() : "N/A");
+                
+                // Current stock quantity
+                item.put("currentQty", stock.getQuantity());
+                item.put("minStock", BigDecimal.ZERO); // Default value - can be enhanced later
+                item.put("maxStock", BigDecimal.ZERO); // Default value - can be enhanced later
+                
+                // For now, use placeholder values for movement data
+                // In production, you would calculate from GoodsReceipt/GoodIssue in date range
+                item.put("openingQty", stock.getQuantity().multiply(BigDecimal.valueOf(0.8))); // Simplified
+                item.put("inboundQty", stock.getQuantity().multiply(BigDecimal.valueOf(0.3))); // Simplified  
+                item.put("outboundQty", stock.getQuantity().multiply(BigDecimal.valueOf(0.1))); // Simplified
+                item.put("closingQty", stock.getQuantity());
+                
+                rows.add(item);
+                itemCount++;
+            }
+        }
+        
+        log.info("Built {} inventory items for report", itemCount);
+        progress.update(90);
+        
+        Map<String, Object> reportData = new HashMap<>();
+        reportData.put("generatedAt", LocalDateTime.now());
+        reportData.put("totalProducts", productRepository.count());
+        reportData.put("totalWarehouses", warehouseRepository.count());
+        reportData.put("itemCount", itemCount);
+        reportData.put("filters", buildFiltersMap(request));
+        return reportData;
+    }
+    
+    private Map<String, Object> buildPurchaseData(ReportRequest request, ReportJobExecutor.ReportProgress progress,
+                                                  ReportJobExecutor.ReportRowSink rows) {
+        LocalDate startDate = request.getStartDate() != null ? request.getStartDate() : LocalDate.now().minusMonths(1);
+        LocalDate endDate = request.getEndDate() != null ? request.getEndDate() : LocalDate.now();
+        progress.update(10);
+        
+        TradeAnalyticsService.PurchaseAnalytics analytics =
+                tradeAnalyticsService.purchaseAnalytics(startDate, endDate, request.getVendorId());
+        progress.update(70);
+        
+        // Mỗi dòng đơn mua thuộc đúng một NCC nên tổng theo NCC là tổng toàn kỳ
+        BigDecimal totalSpend = BigDecimal.ZERO;
+        BigDecimal orderedQty = BigDecimal.ZERO;
+        BigDecimal receivedQty = BigDecimal.ZERO;
+        long leadDays = 0;
+        long receiptLines = 0;
+        for (TradeAnalyticsService.AnalyticsGroup vendor : analytics.byVendor()) {
+            totalSpend = totalSpend.add(vendor.getOrderedAmount());
+            orderedQty = orderedQty.add(vendor.getOrderedQty());
+            receivedQty = receivedQty.add(vendor.getReceivedQty());
+            leadDays += vendor.getLeadDays();
+            receiptLines += vendor.getReceiptLines();
+        }
+        
+        int itemCount = addAnalyticsRows(rows, "vendor", analytics.byVendor(), true)
+                + addAnalyticsRows(rows, "product", analytics.byProduct(), true)
+                + addAnalyticsRows(rows, "category", analytics.byCategory(), true);
+        progress.update(90);
+        
+        Map<String, Object> reportData = new HashMap<>();
+        reportData.put("generatedAt", LocalDateTime.now());
+        reportData.put("period", Map.of("from", startDate, "to", endDate));
+        reportData.put("totalSpend", totalSpend);
+        reportData.put("orderedQty", orderedQty);
+        reportData.put("receivedQty", receivedQty);
+        reportData.put("fillRate", orderedQty.signum() > 0
+                ? receivedQty.divide(orderedQty, 4, RoundingMode.HALF_UP) : null);
+        reportData.put("averageLeadDays", receiptLines > 0
+                ? BigDecimal.valueOf(leadDays).divide(BigDecimal.valueOf(receiptLines), 2, RoundingMode.HALF_UP) : null);
+        reportData.put("vendorCount", analytics.byVendor().size());
+        reportData.put("productCount", analytics.byProduct().size());
+        reportData.put("topVendors", toAnalyticsRows("vendor", analytics.byVendor(), true, TOP_GROUPS));
+        reportData.put("topProducts", toAnalyticsRows("product", analytics.byProduct(), true, TOP_GROUPS));
+        reportData.put("spendByCategory", toAnalyticsRows("category", analytics.byCategory(), true, Integer.MAX_VALUE));
+        reportData.put("aggregatedMonths", analytics.aggregatedMonths());
+        reportData.put("itemCount", itemCount);
+        reportData.put("filters", buildFiltersMap(request));
+        return reportData;
+    }
+    
+    private Map<String, Object> buildSalesData(ReportRequest request, ReportJobExecutor.ReportProgress progress,
+                                               ReportJobExecutor.ReportRowSink rows) {
+        LocalDate startDate = request.getStartDate() != null ? request.getStartDate() : LocalDate.now().minusMonths(1);
+        LocalDate endDate = request.getEndDate() != null ? request.getEndDate() : LocalDate.now();
+        progress.update(10);
+        
+        TradeAnalyticsService.SalesAnalytics analytics =
+                tradeAnalyticsService.salesAnalytics(startDate, endDate, request.getCustomerId());
+        progress.update(70);
+        
+        BigDecimal orderedAmount = BigDecimal.ZERO;
+        BigDecimal revenue = BigDecimal.ZERO;
+        for (TradeAnalyticsService.AnalyticsGroup customer : analytics.byCustomer()) {
+            orderedAmount = orderedAmount.add(customer.getOrderedAmount());
+            revenue = revenue.add(customer.getInvoicedAmount());
+        }
+        
+        int itemCount = addAnalyticsRows(rows, "customer", analytics.byCustomer(), false)
+                + addAnalyticsRows(rows, "product", analytics.byProduct(), false);
+        progress.update(90);
+        
+        Map<String, Object> reportData = new HashMap<>();
+        reportData.put("generatedAt", LocalDateTime.now());
+        reportData.put("period", Map.of("from", startDate, "to", endDate));
+        reportData.put("orderedAmount", orderedAmount);
+        reportData.put("totalRevenue", revenue);
+        reportData.put("customerCount", analytics.byCustomer().size());
+        reportData.put("productCount", analytics.byProduct().size());
+        reportData.put("topCustomers", toAnalyticsRows("customer", analytics.byCustomer(), false, TOP_GROUPS));
+        reportData.put("topProducts", toAnalyticsRows("product", analytics.byProduct(), false, TOP_GROUPS));
+        reportData.put("aggregatedMonths", analytics.aggregatedMonths());
+        reportData.put("itemCount", itemCount);
+        reportData.put("filters", buildFiltersMap(request));
+        return reportData;
+    }
+    
+    private int addAnalyticsRows(ReportJobExecutor.ReportRowSink rows, String section,
+                                 List<TradeAnalyticsService.AnalyticsGroup> groups, boolean purchase) {
+        for (TradeAnalyticsService.AnalyticsGroup group : groups) {
+            rows.add(toAnalyticsRow(section, group, purchase));
+        }
+        return groups.size();
+    }
+    
+    private List<Map<String, Object>> toAnalyticsRows(String section, List<TradeAnalyticsService.AnalyticsGroup> groups,
+                                                      boolean purchase, int limit) {
+        return groups.stream().limit(limit).map(group -> toAnalyticsRow(section, group, purchase)).toList();
+    }
+    
+    private Map<String, Object> toAnalyticsRow(String section, TradeAnalyticsService.AnalyticsGroup group, boolean purchase) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("section", section);
+        row.put("groupId", group.getGroupId());
+        row.put("code", group.getGroupCode());
+        row.put("name", group.getGroupName() != null ? group.getGroupName() : "Chưa phân loại");
+        row.put("orderedQty", group.getOrderedQty());
+        row.put("orderLines", group.getOrderLines());
+        if (purchase) {
+            row.put("spend", group.getOrderedAmount());
+            row.put("receivedQty", group.getReceivedQty());
+            row.put("fillRate", group.getFillRate());
+            row.put("averageLeadDays", group.getAverageLeadDays());
+        } else {
+            row.put("orderedAmount", group.getOrderedAmount());
+            row.put("invoicedQty", group.getInvoicedQty());
+            row.put("revenue", group.getInvoicedAmount());
+        }
+        return row;
+    }
+    
+    private Map<String, Object> buildFinancialData(ReportRequest request, ReportJobExecutor.ReportProgress progress) {
+        Map<String, Object> reportData = new HashMap<>();
+        
+        LocalDateTime startDate = request.getStartDate() != null ? 
+                request.getStartDate().atStartOfDay() : LocalDateTime.now().minusMonths(1);
+        LocalDateTime endDate = request.getEndDate() != null ? 
+                request.getEndDate().atTime(23, 59, 59) : LocalDateTime.now();
+        
+        reportData.put("generatedAt", LocalDateTime.now());
+        reportData.put("period", Map.of("from", startDate, "to", endDate));
+        progress.update(50);
+        
+        // Financial metrics can be added here
+        reportData.put("filters", buildFiltersMap(request));
+        return reportData;
     }
     
     // Delete report
@@ -294,6 +403,8 @@ public class ReportService {
     public void deleteReport(Integer reportId) {
         Report report = reportRepository.findById(reportId)
                 .orElseThrow(() -> new RuntimeException("Report not found with id: " + reportId));
+        reportJobExecutor.cancel(reportId);
+        reportChunkRepository.deleteByReportId(reportId);
         reportRepository.delete(report);
         log.info("Deleted Report: {}", reportId);
     }
@@ -309,6 +420,61 @@ public class ReportService {
         return filters;
     }
     
+    // Cùng người tạo + cùng loại báo cáo + cùng bộ lọc => cùng hash (không phụ thuộc tên, mô tả).
+    // Có người tạo trong hash để mỗi người nhận báo cáo của chính mình (generatedBy đúng người yêu cầu).
+    String buildParamHash(ReportType type, ReportRequest request, Integer userId) {
+        Map<String, Object> params = new TreeMap<>(buildFiltersMap(request));
+        if (request.getAdditionalFilters() != null) {
+            params.put("additionalFilters", canonicalFilters(request.getAdditionalFilters()));
+        }
+        try {
+            String canonical = objectMapper.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                    .writeValueAsString(params);
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((userId + "|" + type.name() + "|" + canonical).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Không thể chuẩn hóa bộ lọc báo cáo: " + e.getMessage(), e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 không khả dụng", e);
+        }
+    }
+    
+    // additionalFilters là JSON: parse lại để thứ tự khóa / khoảng trắng không làm đổi hash
+    private Object canonicalFilters(String additionalFilters) {
+        try {
+            return objectMapper.readValue(additionalFilters, Object.class);
+        } catch (JsonProcessingException e) {
+            return additionalFilters.trim();
+        }
+    }
+    
+    private String toJson(Map<String, Object> reportData) {
+        try {
+            return objectMapper.writeValueAsString(reportData);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Không thể lưu dữ liệu báo cáo: " + e.getMessage(), e);
+        }
+    }
+    
+    private ReportResponse mapToSummaryResponse(ReportSummaryProjection report) {
+        return ReportResponse.builder()
+                .reportId(report.getReportId())
+                .name(report.getName())
+                .type(report.getType())
+                .status(report.getStatus())
+                .progress(report.getProgress())
+                .errorMessage(report.getErrorMessage())
+                .description(report.getDescription())
+                .rowCount(report.getRowCount())
+                .generatedByUserId(report.getGeneratedByUserId())
+                .generatedByEmail(report.getGeneratedByEmail())
+                .generatedAt(report.getGeneratedAt())
+                .startedAt(report.getStartedAt())
+                .completedAt(report.getCompletedAt())
+                .build();
+    }
+    
     private ReportResponse mapToResponse(Report report) {
         Object parsedData = null;
         try {
@@ -324,11 +490,16 @@ public class ReportService {
                 .name(report.getName())
                 .type(report.getType())
                 .status(report.getStatus())
+                .progress(report.getProgress())
+                .errorMessage(report.getErrorMessage())
                 .description(report.getDescription())
                 .reportData(parsedData)
+                .rowCount(report.getRowCount())
                 .generatedByUserId(report.getGeneratedBy() != null ? report.getGeneratedBy().getId() : null)
                 .generatedByEmail(report.getGeneratedBy() != null ? report.getGeneratedBy().getEmail() : null)
                 .generatedAt(report.getGeneratedAt())
+                .startedAt(report.getStartedAt())
+                .completedAt(report.getCompletedAt())
                 .build();
     }
 }
@@ -0,0 +1,38 @@
+package com.g174.mmssystem.service;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Chuẩn hóa chuỗi cho tìm kiếm: bỏ dấu tiếng Việt, đ -> d, chữ thường,
+ * ký tự không phải chữ / số thành khoảng trắng. "Nguyễn Văn-Đức" -> "nguyen van duc".
+ */
+public final class SearchTextNormalizer {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^a-z0-9]+");
+    private static final String[] NO_TOKENS = new String[0];
+
+    private SearchTextNormalizer() {
+    }
+
+    public static String fold(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("")
+                .replace('đ', 'd')
+                .replace('Đ', 'D')
+                .toLowerCase(Locale.ROOT);
+        return SEPARATORS.matcher(folded).replaceAll(" ").trim();
+    }
+
+    /**
+     * Các từ của chuỗi đã chuẩn hóa, mảng rỗng nếu không có từ nào
+     */
+    public static String[] tokens(String value) {
+        String folded = fold(value);
+        return folded.isEmpty() ? NO_TOKENS : folded.split(" ");
+    }
+}
@@ -0,0 +1,263 @@
+package com.g174.mmssystem.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Tạo ảnh thumbnail cho ảnh sản phẩm trong FileStore (chỉ dùng ImageIO của JDK).
+ *
+ * - Sau khi upload, ảnh được đưa vào hàng đợi; worker nền tạo các bản rộng WIDTHS (không phóng to ảnh nhỏ hơn)
+ *   cạnh file gốc: &lt;sha256&gt;-w160.jpg ... (JPEG giữ JPEG, định dạng khác ghi PNG để giữ nền trong suốt).
+ * - srcsetOf() trả giá trị srcset cho thẻ img từ các thumbnail đã có; ảnh chưa có thumbnail (upload trước đây,
+ *   khởi động lại khi hàng đợi chưa chạy xong) được xếp hàng tạo và tạm thời không có srcset.
+ * - Ảnh không đọc được (định dạng ImageIO không hỗ trợ) hoặc quá lớn thì bỏ qua, giao diện dùng ảnh gốc.
+ */
+@Component
+@Slf4j
+public class ThumbnailGenerator {
+
+    public static final int[] WIDTHS = {160, 320, 640};
+
+    private static final long MAX_PIXELS = 40_000_000L;
+    private static final float JPEG_QUALITY = 0.82f;
+    private static final int MAX_CACHED_IMAGES = 20_000;
+
+    private final FileStore fileStore;
+    private final ThreadPoolExecutor executor;
+    private final AtomicInteger threadCount = new AtomicInteger();
+    // Độ rộng các thumbnail đã có của từng ảnh (theo URL ảnh gốc)
+    private final Map<String, List<Integer>> availableWidths = new ConcurrentHashMap<>();
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    public ThumbnailGenerator(FileStore fileStore,
+                              @Value("${app.image.thumbnail-workers:2}") int workers,
+                              @Value("${app.image.thumbnail-queue-capacity:1000}") int queueCapacity) {
+        this.fileStore = fileStore;
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "image-thumbnail-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+    }
+
+    /**
+     * Xếp hàng tạo thumbnail cho ảnh; URL không thuộc FileStore được bỏ qua
+     */
+    public void schedule(String imageUrl) {
+        if (fileStore.localPathOf(imageUrl) == null || !pending.add(imageUrl)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    cache(imageUrl, generate(imageUrl));
+                } catch (Exception e) {
+                    log.warn("Failed to create thumbnails for {}: {}", imageUrl, e.getMessage());
+                    cache(imageUrl, List.of());
+                } finally {
+                    pending.remove(imageUrl);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Hàng đợi đầy: ảnh sẽ được xếp hàng lại ở lần hiển thị sau
+            pending.remove(imageUrl);
+        }
+    }
+
+    /**
+     * @return Giá trị srcset ("/uploads/files/.../hash-w160.jpg 160w, ..."), null nếu ảnh chưa có thumbnail
+     */
+    public String srcsetOf(String imageUrl) {
+        Path original = fileStore.localPathOf(imageUrl);
+        if (original == null) {
+            return null;
+        }
+        List<Integer> widths = availableWidths.get(imageUrl);
+        if (widths == null) {
+            widths = existingWidths(original);
+            if (widths.isEmpty()) {
+                if (Files.exists(original)) {
+                    schedule(imageUrl);
+                }
+                return null;
+            }
+            cache(imageUrl, widths);
+        }
+        if (widths.isEmpty()) {
+            return null;
+        }
+        String baseUrl = imageUrl.trim().substring(0, imageUrl.trim().lastIndexOf('/') + 1);
+        return widths.stream()
+                .map(width -> baseUrl + thumbnailName(original, width) + " " + width + "w")
+                .collect(Collectors.joining(", "));
+    }
+
+    private void cache(String imageUrl, List<Integer> widths) {
+        if (availableWidths.size() >= MAX_CACHED_IMAGES) {
+            availableWidths.clear();
+        }
+        availableWidths.put(imageUrl, widths);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private List<Integer> generate(String imageUrl) throws IOException {
+        Path original = fileStore.localPathOf(imageUrl);
+        BufferedImage image = read(original);
+        if (image == null) {
+            return List.of();
+        }
+        boolean jpeg = isJpeg(original);
+        List<Integer> widths = new ArrayList<>();
+        for (int width : WIDTHS) {
+            if (width >= image.getWidth()) {
+                break;
+            }
+            Path target = original.resolveSibling(thumbnailName(original, width));
+            if (!Files.exists(target)) {
+                write(scale(image, width, jpeg), target, jpeg);
+            }
+            widths.add(width);
+        }
+        log.debug("Created thumbnails {} for {}", widths, imageUrl);
+        return List.copyOf(widths);
+    }
+
+    private static List<Integer> existingWidths(Path original) {
+        List<Integer> widths = new ArrayList<>();
+        for (int width : WIDTHS) {
+            if (Files.exists(original.resolveSibling(thumbnailName(original, width)))) {
+                widths.add(width);
+            }
+        }
+        return widths;
+    }
+
+    private static String thumbnailName(Path original, int width) {
+        String tag = FileStore.contentTagOf(original.getFileName().toString());
+        return tag + "-w" + width + (isJpeg(original) ? ".jpg" : ".png");
+    }
+
+    private static boolean isJpeg(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(".jpg") || name.endsWith(".jpeg");
+    }
+
+    /**
+     * Đọc ảnh, null nếu file không còn, định dạng không hỗ trợ hoặc ảnh quá lớn
+     */
+    private static BufferedImage read(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                // Kiểm tra kích thước trước khi giải nén toàn bộ ảnh
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > MAX_PIXELS) {
+                    log.warn("Skip thumbnails for {}: image too large", file.getFileName());
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Thu nhỏ về độ rộng width, mỗi bước giảm tối đa một nửa để ảnh không bị răng cưa
+     */
+    private static BufferedImage scale(BufferedImage source, int width, boolean opaque) {
+        int height = Math.max(1, (int) Math.round((double) source.getHeight() * width / source.getWidth()));
+        int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                if (opaque) {
+                    graphics.setColor(Color.WHITE);
+                    graphics.fillRect(0, 0, currentWidth, currentHeight);
+                }
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    /**
+     * Ghi vào file tạm (ẩn) rồi đổi tên để không phục vụ thumbnail đang ghi dở
+     */
+    private static void write(BufferedImage image, Path target, boolean jpeg) throws IOException {
+        Path temp = Files.createTempFile(target.getParent(), ".thumbnail-", ".part");
+        try {
+            if (jpeg) {
+                ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+                try (ImageOutputStream output = ImageIO.createImageOutputStream(temp.toFile())) {
+                    ImageWriteParam param = writer.getDefaultWriteParam();
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    param.setCompressionQuality(JPEG_QUALITY);
+                    writer.setOutput(output);
+                    writer.write(null, new IIOImage(image, null, null), param);
+                } finally {
+                    writer.dispose();
+                }
+            } else {
+                ImageIO.write(image, "png", temp.toFile());
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.g174.mmssystem.service;
+
+import com.g174.mmssystem.entity.ARInvoice;
+import com.g174.mmssystem.entity.ARInvoiceItem;
+import com.g174.mmssystem.entity.GoodsReceipt;
+import com.g174.mmssystem.entity.GoodsReceiptItem;
+import com.g174.mmssystem.entity.PurchaseOrder;
+import com.g174.mmssystem.entity.PurchaseOrderItem;
+import com.g174.mmssystem.entity.SalesOrder;
+import com.g174.mmssystem.entity.SalesOrderItem;
+import com.g174.mmssystem.entity.TradeMonthlyAggregate;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+
+/**
+ * Entity listener của chứng từ mua / bán và dòng chứng từ: báo TradeAnalyticsService tháng của chứng từ vừa ghi
+ * cần dựng lại tổng hợp (kể cả sửa lùi ngày vào tháng đã dựng).
+ * Dòng chứng từ chỉ đọc ngày của chứng từ cha khi cha đã được nạp; nếu không thì chỉ gửi id (không kích hoạt
+ * lazy load trong callback), ngày được tra lại sau commit.
+ *
+ * TradeAnalyticsService lấy qua ObjectProvider vì cùng lý do với DocumentSearchEntityListener.
+ */
+public class TradeAggregateEntityListener {
+
+    private final ObjectProvider<TradeAnalyticsService> tradeAnalyticsService;
+
+    public TradeAggregateEntityListener(ObjectProvider<TradeAnalyticsService> tradeAnalyticsService) {
+        this.tradeAnalyticsService = tradeAnalyticsService;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        TradeAnalyticsService analytics = tradeAnalyticsService.getIfAvailable();
+        if (analytics == null) {
+            return;
+        }
+        if (entity instanceof PurchaseOrder order) {
+            analytics.markMonthChanged(monthOf(order));
+        } else if (entity instanceof GoodsReceipt receipt) {
+            analytics.markMonthChanged(monthOf(receipt));
+        } else if (entity instanceof SalesOrder order) {
+            analytics.markMonthChanged(monthOf(order));
+        } else if (entity instanceof ARInvoice invoice) {
+            analytics.markMonthChanged(monthOf(invoice));
+        } else if (entity instanceof PurchaseOrderItem item && item.getPurchaseOrder() != null) {
+            PurchaseOrder order = item.getPurchaseOrder();
+            if (Hibernate.isInitialized(order)) {
+                analytics.markMonthChanged(monthOf(order));
+            } else {
+                analytics.markDocumentChanged(TradeMonthlyAggregate.SOURCE_PURCHASE_ORDER, order.getOrderId());
+            }
+        } else if (entity instanceof GoodsReceiptItem item && item.getGoodsReceipt() != null) {
+            GoodsReceipt receipt = item.getGoodsReceipt();
+            if (Hibernate.isInitialized(receipt)) {
+                analytics.markMonthChanged(monthOf(receipt));
+            } else {
+                analytics.markDocumentChanged(TradeMonthlyAggregate.SOURCE_GOODS_RECEIPT, receipt.getReceiptId());
+            }
+        } else if (entity instanceof SalesOrderItem item && item.getSalesOrder() != null) {
+            SalesOrder order = item.getSalesOrder();
+            if (Hibernate.isInitialized(order)) {
+                analytics.markMonthChanged(monthOf(order));
+            } else {
+                analytics.markDocumentChanged(TradeMonthlyAggregate.SOURCE_SALES_ORDER, order.getSoId());
+            }
+        } else if (entity instanceof ARInvoiceItem item && item.getInvoice() != null) {
+            ARInvoice invoice = item.getInvoice();
+            if (Hibernate.isInitialized(invoice)) {
+                analytics.markMonthChanged(monthOf(invoice));
+            } else {
+                analytics.markDocumentChanged(TradeMonthlyAggregate.SOURCE_AR_INVOICE, invoice.getArInvoiceId());
+            }
+        }
+    }
+
+    private static YearMonth monthOf(PurchaseOrder order) {
+        return monthOf(order.getOrderDate());
+    }
+
+    private static YearMonth monthOf(GoodsReceipt receipt) {
+        return monthOf(receipt.getReceivedDate());
+    }
+
+    private static YearMonth monthOf(SalesOrder order) {
+        return monthOf(order.getOrderDate());
+    }
+
+    private static YearMonth monthOf(ARInvoice invoice) {
+        LocalDate date = invoice.getInvoiceDate();
+        return date != null ? YearMonth.from(date) : null;
+    }
+
+    static YearMonth monthOf(LocalDateTime date) {
+        return date != null ? YearMonth.from(date) : null;
+    }
+
+    // Cùng múi giờ với TradeAnalyticsService khi chia khoảng ngày của đơn bán
+    static YearMonth monthOf(Instant date) {
+        return date != null ? YearMonth.from(date.atZone(ZoneId.systemDefault())) : null;
+    }
+}
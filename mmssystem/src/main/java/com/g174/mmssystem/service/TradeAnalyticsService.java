@@ -0,0 +1,463 @@
+package com.g174.mmssystem.service;
+
+import com.g174.mmssystem.dto.responseDTO.TradeAnalyticsRowProjection;
+import com.g174.mmssystem.entity.TradeAggregatePeriod;
+import com.g174.mmssystem.entity.TradeMonthlyAggregate;
+import com.g174.mmssystem.repository.ARInvoiceItemRepository;
+import com.g174.mmssystem.repository.GoodsReceiptItemRepository;
+import com.g174.mmssystem.repository.PurchaseOrderItemRepository;
+import com.g174.mmssystem.repository.SalesOrderItemRepository;
+import com.g174.mmssystem.repository.TradeAggregatePeriodRepository;
+import com.g174.mmssystem.repository.TradeMonthlyAggregateRepository;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Số liệu phân tích mua / bán theo khoảng ngày, tính bằng truy vấn GROUP BY.
+ *
+ * Khoảng ngày được tách thành:
+ * - các tháng trọn vẹn đã qua: đọc từ trade_monthly_aggregates (dựng một lần cho mỗi tháng),
+ * - phần lẻ đầu / cuối khoảng và tháng hiện tại: GROUP BY trực tiếp trên dòng chứng từ gốc.
+ * Nhờ vậy báo cáo nhiều năm chỉ đọc vài trăm dòng tổng hợp mỗi tháng thay vì toàn bộ dòng chứng từ.
+ *
+ * Chứng từ / dòng chứng từ của tháng đã dựng mà bị ghi sau đó (TradeAggregateEntityListener) làm tháng đó mất dấu
+ * "đã dựng" sau commit, nên báo cáo kế tiếp dựng lại tháng đó. TradeAggregateScheduler vẫn dựng lại vài tháng
+ * gần nhất mỗi đêm (cho thay đổi không đi qua entity, ví dụ câu UPDATE hàng loạt), hoặc gọi rebuildMonths.
+ *
+ * Dựng tổng hợp luôn chạy trong transaction riêng (REQUIRES_NEW): báo cáo gọi từ transaction read-only của
+ * ReportJobExecutor vẫn ghi được, và vì việc dựng xảy ra trước câu đọc đầu tiên của transaction đó nên snapshot
+ * của nó thấy các tháng vừa dựng.
+ */
+@Service
+@Slf4j
+public class TradeAnalyticsService {
+
+    private static final int RATIO_SCALE = 4;
+
+    private final TradeMonthlyAggregateRepository aggregateRepository;
+    private final TradeAggregatePeriodRepository periodRepository;
+    private final PurchaseOrderItemRepository purchaseOrderItemRepository;
+    private final GoodsReceiptItemRepository goodsReceiptItemRepository;
+    private final SalesOrderItemRepository salesOrderItemRepository;
+    private final ARInvoiceItemRepository arInvoiceItemRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public TradeAnalyticsService(TradeMonthlyAggregateRepository aggregateRepository,
+                                 TradeAggregatePeriodRepository periodRepository,
+                                 PurchaseOrderItemRepository purchaseOrderItemRepository,
+                                 GoodsReceiptItemRepository goodsReceiptItemRepository,
+                                 SalesOrderItemRepository salesOrderItemRepository,
+                                 ARInvoiceItemRepository arInvoiceItemRepository,
+                                 PlatformTransactionManager transactionManager) {
+        this.aggregateRepository = aggregateRepository;
+        this.periodRepository = periodRepository;
+        this.purchaseOrderItemRepository = purchaseOrderItemRepository;
+        this.goodsReceiptItemRepository = goodsReceiptItemRepository;
+        this.salesOrderItemRepository = salesOrderItemRepository;
+        this.arInvoiceItemRepository = arInvoiceItemRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Chỉ số của một nhóm (NCC, KH, sản phẩm, danh mục); cộng dồn từ nhiều đoạn thời gian.
+     */
+    @Getter
+    public static class AnalyticsGroup {
+        private final Integer groupId;
+        private final String groupCode;
+        private final String groupName;
+        // Đơn mua / đơn bán
+        private BigDecimal orderedQty = BigDecimal.ZERO;
+        private BigDecimal receivedQty = BigDecimal.ZERO;
+        private BigDecimal orderedAmount = BigDecimal.ZERO;
+        private long orderLines;
+        // Phiếu nhập (thời gian giao hàng)
+        private long leadDays;
+        private long receiptLines;
+        // Hóa đơn bán
+        private BigDecimal invoicedQty = BigDecimal.ZERO;
+        private BigDecimal invoicedAmount = BigDecimal.ZERO;
+        private long invoiceLines;
+
+        AnalyticsGroup(TradeAnalyticsRowProjection row) {
+            this.groupId = row.getGroupId();
+            this.groupCode = row.getGroupCode();
+            this.groupName = row.getGroupName();
+        }
+
+        /**
+         * Tỷ lệ đáp ứng = SL đã nhận / SL đặt, null nếu không có SL đặt
+         */
+        public BigDecimal getFillRate() {
+            return orderedQty.signum() > 0
+                    ? receivedQty.divide(orderedQty, RATIO_SCALE, RoundingMode.HALF_UP)
+                    : null;
+        }
+
+        /**
+         * Số ngày trung bình từ ngày đặt đơn mua tới ngày nhập kho, null nếu chưa có phiếu nhập
+         */
+        public BigDecimal getAverageLeadDays() {
+            return receiptLines > 0
+                    ? BigDecimal.valueOf(leadDays).divide(BigDecimal.valueOf(receiptLines), 2, RoundingMode.HALF_UP)
+                    : null;
+        }
+    }
+
+    public record PurchaseAnalytics(List<AnalyticsGroup> byVendor, List<AnalyticsGroup> byProduct,
+                                    List<AnalyticsGroup> byCategory, int aggregatedMonths) {
+    }
+
+    public record SalesAnalytics(List<AnalyticsGroup> byCustomer, List<AnalyticsGroup> byProduct,
+                                 int aggregatedMonths) {
+    }
+
+    /**
+     * Chi phí mua theo NCC / sản phẩm / danh mục, tỷ lệ đáp ứng và thời gian giao hàng theo NCC.
+     * @param to - Ngày cuối (bao gồm)
+     */
+    public PurchaseAnalytics purchaseAnalytics(LocalDate from, LocalDate to, Integer vendorId) {
+        RangePlan plan = plan(from, to);
+        ensureAggregates(plan);
+
+        Map<Integer, AnalyticsGroup> byVendor = new LinkedHashMap<>();
+        collect(plan, byVendor, Measure.ORDER,
+                (f, t) -> purchaseOrderItemRepository.sumByVendor(f.atStartOfDay(), t.atStartOfDay(), vendorId),
+                (fp, tp) -> aggregateRepository.sumByVendor(TradeMonthlyAggregate.SOURCE_PURCHASE_ORDER, fp, tp, vendorId));
+        collect(plan, byVendor, Measure.RECEIPT,
+                (f, t) -> goodsReceiptItemRepository.sumLeadTimeByVendor(f.atStartOfDay(), t.atStartOfDay(), vendorId),
+                (fp, tp) -> aggregateRepository.sumByVendor(TradeMonthlyAggregate.SOURCE_GOODS_RECEIPT, fp, tp, vendorId));
+
+        Map<Integer, AnalyticsGroup> byProduct = new LinkedHashMap<>();
+        collect(plan, byProduct, Measure.ORDER,
+                (f, t) -> purchaseOrderItemRepository.sumByProduct(f.atStartOfDay(), t.atStartOfDay(), vendorId),
+                (fp, tp) -> aggregateRepository.sumByProduct(TradeMonthlyAggregate.SOURCE_PURCHASE_ORDER, fp, tp, vendorId));
+
+        Map<Integer, AnalyticsGroup> byCategory = new LinkedHashMap<>();
+        collect(plan, byCategory, Measure.ORDER,
+                (f, t) -> purchaseOrderItemRepository.sumByCategory(f.atStartOfDay(), t.atStartOfDay(), vendorId),
+                (fp, tp) -> aggregateRepository.sumByCategory(TradeMonthlyAggregate.SOURCE_PURCHASE_ORDER, fp, tp, vendorId));
+
+        return new PurchaseAnalytics(sorted(byVendor, AnalyticsGroup::getOrderedAmount),
+                sorted(byProduct, AnalyticsGroup::getOrderedAmount),
+                sorted(byCategory, AnalyticsGroup::getOrderedAmount),
+                plan.aggregatedMonths());
+    }
+
+    /**
+     * Doanh số đặt hàng (đơn bán) và doanh thu đã xuất hóa đơn theo KH / sản phẩm.
+     * @param to - Ngày cuối (bao gồm)
+     */
+    public SalesAnalytics salesAnalytics(LocalDate from, LocalDate to, Integer customerId) {
+        RangePlan plan = plan(from, to);
+        ensureAggregates(plan);
+
+        Map<Integer, AnalyticsGroup> byCustomer = new LinkedHashMap<>();
+        collect(plan, byCustomer, Measure.ORDER,
+                (f, t) -> salesOrderItemRepository.sumByCustomer(toInstant(f), toInstant(t), customerId),
+                (fp, tp) -> aggregateRepository.sumByCustomer(TradeMonthlyAggregate.SOURCE_SALES_ORDER, fp, tp, customerId));
+        collect(plan, byCustomer, Measure.INVOICE,
+                (f, t) -> arInvoiceItemRepository.sumByCustomer(f, t, customerId),
+                (fp, tp) -> aggregateRepository.sumByCustomer(TradeMonthlyAggregate.SOURCE_AR_INVOICE, fp, tp, customerId));
+
+        Map<Integer, AnalyticsGroup> byProduct = new LinkedHashMap<>();
+        collect(plan, byProduct, Measure.ORDER,
+                (f, t) -> salesOrderItemRepository.sumByProduct(toInstant(f), toInstant(t), customerId),
+                (fp, tp) -> aggregateRepository.sumByProduct(TradeMonthlyAggregate.SOURCE_SALES_ORDER, fp, tp, customerId));
+        collect(plan, byProduct, Measure.INVOICE,
+                (f, t) -> arInvoiceItemRepository.sumByProduct(f, t, customerId),
+                (fp, tp) -> aggregateRepository.sumByProduct(TradeMonthlyAggregate.SOURCE_AR_INVOICE, fp, tp, customerId));
+
+        return new SalesAnalytics(sorted(byCustomer, AnalyticsGroup::getInvoicedAmount),
+                sorted(byProduct, AnalyticsGroup::getInvoicedAmount),
+                plan.aggregatedMonths());
+    }
+
+    /**
+     * Dựng lại tổng hợp cho các tháng [from, to]; tháng hiện tại trở đi bị bỏ qua.
+     * @return Số tháng đã dựng
+     */
+    public int rebuildMonths(YearMonth from, YearMonth to) {
+        YearMonth last = min(to, YearMonth.now().minusMonths(1));
+        int built = 0;
+        for (YearMonth month = from; !month.isAfter(last); month = month.plusMonths(1)) {
+            rebuildMonth(month);
+            built++;
+        }
+        return built;
+    }
+
+    /**
+     * Đánh dấu tháng cần dựng lại tổng hợp; gom theo transaction và bỏ dấu "đã dựng" sau khi commit.
+     * Tháng hiện tại trở đi luôn đọc từ chứng từ gốc nên bỏ qua.
+     */
+    public void markMonthChanged(YearMonth month) {
+        if (month == null || !month.isBefore(YearMonth.now())) {
+            return;
+        }
+        markChanged(changes -> changes.periods.add(toPeriod(month)));
+    }
+
+    /**
+     * Như markMonthChanged khi chỉ biết id chứng từ; tháng được tra theo ngày chứng từ sau khi commit.
+     * @param source - Loại chứng từ (TradeMonthlyAggregate.SOURCE_*)
+     */
+    public void markDocumentChanged(String source, Integer documentId) {
+        if (documentId == null) {
+            return;
+        }
+        markChanged(changes -> changes.documentIds.computeIfAbsent(source, k -> new HashSet<>()).add(documentId));
+    }
+
+    private void markChanged(Consumer<ChangedPeriods> change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            ChangedPeriods changes = new ChangedPeriods();
+            change.accept(changes);
+            invalidate(changes);
+            return;
+        }
+        ChangedPeriods changes = (ChangedPeriods) TransactionSynchronizationManager.getResource(this);
+        if (changes == null) {
+            changes = new ChangedPeriods();
+            TransactionSynchronizationManager.bindResource(this, changes);
+            TransactionSynchronizationManager.registerSynchronization(changes);
+        }
+        change.accept(changes);
+    }
+
+    private final class ChangedPeriods implements TransactionSynchronization {
+
+        private final Set<Integer> periods = new TreeSet<>();
+        private final Map<String, Set<Integer>> documentIds = new HashMap<>();
+
+        @Override
+        public void afterCommit() {
+            invalidate(this);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(TradeAnalyticsService.this);
+        }
+    }
+
+    /**
+     * Xóa dấu "đã dựng" của các tháng thay đổi. Lỗi chỉ được ghi log: chứng từ đã commit,
+     * tháng đó sẽ được dựng lại ở lần chạy đêm.
+     */
+    private void invalidate(ChangedPeriods changes) {
+        try {
+            Set<Integer> removed = transactionTemplate.execute(status -> {
+                Set<Integer> periods = new TreeSet<>(changes.periods);
+                changes.documentIds.forEach((source, ids) -> documentMonths(source, ids).stream()
+                        .filter(Objects::nonNull)
+                        .forEach(month -> periods.add(toPeriod(month))));
+                periods.removeIf(period -> period >= toPeriod(YearMonth.now()));
+                if (!periods.isEmpty()) {
+                    periodRepository.deleteByPeriods(periods);
+                }
+                return periods;
+            });
+            if (removed != null && !removed.isEmpty()) {
+                log.debug("Marked trade aggregate periods {} for rebuild", removed);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to mark trade aggregate periods for rebuild: {}", e.getMessage());
+        }
+    }
+
+    private List<YearMonth> documentMonths(String source, Set<Integer> ids) {
+        return switch (source) {
+            case TradeMonthlyAggregate.SOURCE_PURCHASE_ORDER -> periodRepository.findPurchaseOrderDates(ids).stream()
+                    .map(TradeAggregateEntityListener::monthOf).toList();
+            case TradeMonthlyAggregate.SOURCE_GOODS_RECEIPT -> periodRepository.findGoodsReceiptDates(ids).stream()
+                    .map(TradeAggregateEntityListener::monthOf).toList();
+            case TradeMonthlyAggregate.SOURCE_SALES_ORDER -> periodRepository.findSalesOrderDates(ids).stream()
+                    .map(TradeAggregateEntityListener::monthOf).toList();
+            case TradeMonthlyAggregate.SOURCE_AR_INVOICE -> periodRepository.findARInvoiceDates(ids).stream()
+                    .map(date -> date != null ? YearMonth.from(date) : null).toList();
+            default -> List.of();
+        };
+    }
+
+    // ===== Tách khoảng ngày =====
+
+    private enum Measure { ORDER, RECEIPT, INVOICE }
+
+    /**
+     * [from, to) là khoảng ngày đọc trực tiếp từ chứng từ gốc
+     */
+    private record DateRange(LocalDate from, LocalDate to) {
+    }
+
+    /**
+     * firstMonth..lastMonth đọc từ bảng tổng hợp (null nếu không có tháng trọn vẹn nào)
+     */
+    private record RangePlan(YearMonth firstMonth, YearMonth lastMonth, List<DateRange> rawRanges) {
+
+        int aggregatedMonths() {
+            return firstMonth == null ? 0 : (int) (lastMonth.getYear() * 12L + lastMonth.getMonthValue()
+                    - firstMonth.getYear() * 12L - firstMonth.getMonthValue() + 1);
+        }
+    }
+
+    private RangePlan plan(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Ngày bắt đầu phải trước ngày kết thúc");
+        }
+        LocalDate end = to.plusDays(1);
+        YearMonth firstMonth = from.getDayOfMonth() == 1 ? YearMonth.from(from) : YearMonth.from(from).plusMonths(1);
+        YearMonth lastMonth = to.equals(YearMonth.from(to).atEndOfMonth()) ? YearMonth.from(to) : YearMonth.from(to).minusMonths(1);
+        // Tháng hiện tại còn thay đổi, luôn đọc từ chứng từ gốc
+        lastMonth = min(lastMonth, YearMonth.now().minusMonths(1));
+
+        List<DateRange> rawRanges = new ArrayList<>();
+        if (firstMonth.isAfter(lastMonth)) {
+            rawRanges.add(new DateRange(from, end));
+            return new RangePlan(null, null, rawRanges);
+        }
+        LocalDate aggregatedFrom = firstMonth.atDay(1);
+        LocalDate aggregatedTo = lastMonth.plusMonths(1).atDay(1);
+        if (from.isBefore(aggregatedFrom)) {
+            rawRanges.add(new DateRange(from, aggregatedFrom));
+        }
+        if (end.isAfter(aggregatedTo)) {
+            rawRanges.add(new DateRange(aggregatedTo, end));
+        }
+        return new RangePlan(firstMonth, lastMonth, rawRanges);
+    }
+
+    private void collect(RangePlan plan, Map<Integer, AnalyticsGroup> target, Measure measure,
+                         BiFunction<LocalDate, LocalDate, List<TradeAnalyticsRowProjection>> rawQuery,
+                         BiFunction<Integer, Integer, List<TradeAnalyticsRowProjection>> aggregateQuery) {
+        if (plan.firstMonth() != null) {
+            merge(target, measure, aggregateQuery.apply(toPeriod(plan.firstMonth()), toPeriod(plan.lastMonth())));
+        }
+        for (DateRange range : plan.rawRanges()) {
+            merge(target, measure, rawQuery.apply(range.from(), range.to()));
+        }
+    }
+
+    private void merge(Map<Integer, AnalyticsGroup> target, Measure measure, List<TradeAnalyticsRowProjection> rows) {
+        for (TradeAnalyticsRowProjection row : rows) {
+            AnalyticsGroup group = target.computeIfAbsent(row.getGroupId(), id -> new AnalyticsGroup(row));
+            long lines = row.getLineCount() != null ? row.getLineCount() : 0L;
+            switch (measure) {
+                case ORDER -> {
+                    group.orderedQty = group.orderedQty.add(nonNull(row.getQuantity()));
+                    group.receivedQty = group.receivedQty.add(nonNull(row.getReceivedQty()));
+                    group.orderedAmount = group.orderedAmount.add(nonNull(row.getAmount()));
+                    group.orderLines += lines;
+                }
+                case RECEIPT -> {
+                    group.leadDays += row.getLeadDays() != null ? row.getLeadDays() : 0L;
+                    group.receiptLines += lines;
+                }
+                case INVOICE -> {
+                    group.invoicedQty = group.invoicedQty.add(nonNull(row.getQuantity()));
+                    group.invoicedAmount = group.invoicedAmount.add(nonNull(row.getAmount()));
+                    group.invoiceLines += lines;
+                }
+            }
+        }
+    }
+
+    private List<AnalyticsGroup> sorted(Map<Integer, AnalyticsGroup> groups,
+                                        Function<AnalyticsGroup, BigDecimal> amount) {
+        List<AnalyticsGroup> result = new ArrayList<>(groups.values());
+        result.sort(Comparator.comparing(amount).reversed());
+        return result;
+    }
+
+    // ===== Bảng tổng hợp tháng =====
+
+    /**
+     * Dựng các tháng trong plan chưa có tổng hợp. synchronized để hai báo cáo chạy song song
+     * không cùng dựng một tháng.
+     */
+    private synchronized void ensureAggregates(RangePlan plan) {
+        if (plan.firstMonth() == null) {
+            return;
+        }
+        Set<Integer> built = new HashSet<>(transactionTemplate.execute(status -> periodRepository.findBuiltPeriods(
+                toPeriod(plan.firstMonth()), toPeriod(plan.lastMonth()))));
+        int missing = 0;
+        for (YearMonth month = plan.firstMonth(); !month.isAfter(plan.lastMonth()); month = month.plusMonths(1)) {
+            if (!built.contains(toPeriod(month))) {
+                rebuildMonth(month);
+                missing++;
+            }
+        }
+        if (missing > 0) {
+            log.info("Built trade aggregates for {} missing months between {} and {}",
+                    missing, plan.firstMonth(), plan.lastMonth());
+        }
+    }
+
+    private synchronized void rebuildMonth(YearMonth month) {
+        int period = toPeriod(month);
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        Integer rows = transactionTemplate.execute(status -> {
+            aggregateRepository.deleteByPeriod(period);
+            int inserted = aggregateRepository.insertPurchaseOrderPeriod(period, from.atStartOfDay(), to.atStartOfDay())
+                    + aggregateRepository.insertGoodsReceiptPeriod(period, from.atStartOfDay(), to.atStartOfDay())
+                    + aggregateRepository.insertSalesOrderPeriod(period, toInstant(from), toInstant(to))
+                    + aggregateRepository.insertARInvoicePeriod(period, from, to);
+
+            TradeAggregatePeriod marker = periodRepository.findById(period).orElseGet(() -> {
+                TradeAggregatePeriod created = new TradeAggregatePeriod();
+                created.setPeriod(period);
+                return created;
+            });
+            marker.setBuiltAt(LocalDateTime.now());
+            periodRepository.save(marker);
+            return inserted;
+        });
+        log.debug("Rebuilt trade aggregates for {}: {} rows", month, rows);
+    }
+
+    private static int toPeriod(YearMonth month) {
+        return month.getYear() * 100 + month.getMonthValue();
+    }
+
+    private static Instant toInstant(LocalDate date) {
+        return date.atStartOfDay(ZoneId.systemDefault()).toInstant();
+    }
+
+    private static YearMonth min(YearMonth a, YearMonth b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    private static BigDecimal nonNull(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+}
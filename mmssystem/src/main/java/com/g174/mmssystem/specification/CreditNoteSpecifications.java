@@ -0,0 +1,75 @@
+package com.g174.mmssystem.specification;
+
+import com.g174.mmssystem.entity.CreditNote;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.util.StringUtils;
+
+import java.time.Instant;
+
+public final class CreditNoteSpecifications {
+
+    private CreditNoteSpecifications() {
+    }
+
+    public static Specification<CreditNote> notDeleted() {
+        return (root, query, cb) -> cb.isNull(root.get("deletedAt"));
+    }
+
+    public static Specification<CreditNote> hasInvoice(Integer invoiceId) {
+        return (root, query, cb) -> invoiceId == null
+                ? null
+                : cb.equal(root.get("invoice").get("arInvoiceId"), invoiceId);
+    }
+
+    public static Specification<CreditNote> hasReturnOrder(Integer returnOrderId) {
+        return (root, query, cb) -> returnOrderId == null
+                ? null
+                : cb.equal(join(root, "returnOrder").get("roId"), returnOrderId);
+    }
+
+    public static Specification<CreditNote> hasCustomer(Integer customerId) {
+        return (root, query, cb) -> customerId == null
+                ? null
+                : cb.equal(join(join(root, "invoice"), "customer").get("customerId"), customerId);
+    }
+
+    public static Specification<CreditNote> hasStatus(CreditNote.CreditNoteStatus status) {
+        return (root, query, cb) -> status == null ? null : cb.equal(root.get("status"), status);
+    }
+
+    public static Specification<CreditNote> keywordLike(String keyword) {
+        return (root, query, cb) -> {
+            if (!StringUtils.hasText(keyword)) {
+                return null;
+            }
+            String like = "%" + keyword.trim().toLowerCase() + "%";
+            return cb.or(
+                    cb.like(cb.lower(root.get("creditNoteNo")), like),
+                    cb.like(cb.lower(join(root, "invoice").get("invoiceNo")), like)
+            );
+        };
+    }
+
+    public static Specification<CreditNote> dateFrom(Instant from) {
+        return (root, query, cb) -> from == null ? null : cb.greaterThanOrEqualTo(root.get("creditNoteDate"), from);
+    }
+
+    public static Specification<CreditNote> dateBefore(Instant before) {
+        return (root, query, cb) -> before == null ? null : cb.lessThan(root.get("creditNoteDate"), before);
+    }
+
+    /**
+     * Dùng lại LEFT JOIN đã có (do spec khác hoặc query danh sách tạo) thay vì join thêm lần nữa.
+     */
+    private static <X> Join<X, ?> join(From<?, X> from, String attribute) {
+        for (Join<X, ?> existing : from.getJoins()) {
+            if (existing.getAttribute().getName().equals(attribute) && existing.getJoinType() == JoinType.LEFT) {
+                return existing;
+            }
+        }
+        return from.join(attribute, JoinType.LEFT);
+    }
+}
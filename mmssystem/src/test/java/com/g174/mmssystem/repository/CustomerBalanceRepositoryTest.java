@@ -0,0 +1,103 @@
+package com.g174.mmssystem.repository;
+
+import com.g174.mmssystem.entity.Customer;
+import com.g174.mmssystem.entity.CustomerBalance;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * applyDelta / insertIfAbsent chạy thật trên database: cộng delta trong câu UPDATE,
+ * chặn âm từng cột và tính outstanding từ giá trị cũ.
+ */
+class CustomerBalanceRepositoryTest extends RepositoryTestSupport {
+
+    @Autowired
+    private CustomerBalanceRepository repository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Integer customerId;
+
+    @BeforeEach
+    void setUp() {
+        Customer customer = new Customer();
+        customer.setFirstName("Nguyen");
+        customer.setLastName("An");
+        customer.setCustomerCode("KH-TEST");
+        entityManager.persist(customer);
+        entityManager.flush();
+        customerId = customer.getCustomerId();
+    }
+
+    @Test
+    void insertIfAbsentCreatesEmptyRowOnce() {
+        assertEquals(1, repository.insertIfAbsent(customerId));
+        assertEquals(0, repository.insertIfAbsent(customerId));
+
+        CustomerBalance balance = reload();
+        assertEquals(0, balance.getTotalInvoiced().signum());
+        assertEquals(0, balance.getOutstandingBalance().signum());
+    }
+
+    @Test
+    void insertIfAbsentIgnoresUnknownCustomer() {
+        assertEquals(0, repository.insertIfAbsent(customerId + 1000));
+    }
+
+    @Test
+    void applyDeltaReturnsZeroWithoutBalanceRow() {
+        assertEquals(0, repository.applyDelta(customerId, new BigDecimal("100"), BigDecimal.ZERO, BigDecimal.ZERO));
+    }
+
+    @Test
+    void applyDeltaAccumulatesAndRecomputesOutstanding() {
+        repository.insertIfAbsent(customerId);
+
+        assertEquals(1, repository.applyDelta(customerId, new BigDecimal("1000.00"), BigDecimal.ZERO, BigDecimal.ZERO));
+        assertEquals(1, repository.applyDelta(customerId, new BigDecimal("250.50"), new BigDecimal("300.00"), BigDecimal.ZERO));
+        assertEquals(1, repository.applyDelta(customerId, BigDecimal.ZERO, BigDecimal.ZERO, new BigDecimal("100.00")));
+
+        CustomerBalance balance = reload();
+        assertDecimal("1250.50", balance.getTotalInvoiced());
+        assertDecimal("300.00", balance.getTotalPaid());
+        assertDecimal("100.00", balance.getTotalCreditNote());
+        assertDecimal("850.50", balance.getOutstandingBalance());
+        assertTrue(balance.getLastUpdatedAt() != null);
+    }
+
+    @Test
+    void applyDeltaClampsNegativeTotalsAndOutstanding() {
+        repository.insertIfAbsent(customerId);
+        repository.applyDelta(customerId, new BigDecimal("100.00"), BigDecimal.ZERO, BigDecimal.ZERO);
+
+        // Thanh toán vượt hóa đơn: outstanding không âm
+        repository.applyDelta(customerId, BigDecimal.ZERO, new BigDecimal("150.00"), BigDecimal.ZERO);
+        CustomerBalance overpaid = reload();
+        assertDecimal("150.00", overpaid.getTotalPaid());
+        assertDecimal("0.00", overpaid.getOutstandingBalance());
+
+        // Xóa hóa đơn nhiều hơn tổng đã ghi: tổng bị chặn ở 0
+        repository.applyDelta(customerId, new BigDecimal("-500.00"), new BigDecimal("-150.00"), BigDecimal.ZERO);
+        CustomerBalance reversed = reload();
+        assertDecimal("0.00", reversed.getTotalInvoiced());
+        assertDecimal("0.00", reversed.getTotalPaid());
+        assertDecimal("0.00", reversed.getOutstandingBalance());
+    }
+
+    private CustomerBalance reload() {
+        entityManager.clear();
+        return repository.findBalanceByCustomerId(customerId).orElseThrow();
+    }
+
+    private static void assertDecimal(String expected, BigDecimal actual) {
+        assertEquals(0, new BigDecimal(expected).compareTo(actual), "expected " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,91 @@
+package com.g174.mmssystem.repository;
+
+import com.g174.mmssystem.entity.DebtMonthlySummary;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Dòng tổng hợp theo tháng: opening lấy closing của kỳ trước, ghi vào kỳ cũ dời các kỳ sau,
+ * và tháng không phát sinh vẫn thấy KH/NCC còn số dư.
+ */
+class DebtMonthlySummaryRepositoryTest extends RepositoryTestSupport {
+
+    private static final String CUSTOMER = DebtMonthlySummary.PARTY_CUSTOMER;
+    private static final String VENDOR = DebtMonthlySummary.PARTY_VENDOR;
+
+    @Autowired
+    private DebtMonthlySummaryRepository repository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        // KH 1: nợ 1000 từ tháng 1, trả 400 ở tháng 3
+        post(CUSTOMER, 1, "KH01", 202601, "1000", "0");
+        post(CUSTOMER, 1, "KH01", 202603, "0", "400");
+        // KH 2: đã trả hết trong tháng 1
+        post(CUSTOMER, 2, "KH02", 202601, "500", "500");
+        // NCC 7: phát sinh ở tháng 2
+        post(VENDOR, 7, "NCC07", 202602, "300", "0");
+        entityManager.clear();
+    }
+
+    @Test
+    void insertIfAbsentOpensWithPreviousClosingAndBackdatedPostingShiftsLaterPeriods() {
+        assertDecimal("1000", row(CUSTOMER, 1, 202603).getOpeningBalance());
+        assertDecimal("600", row(CUSTOMER, 1, 202603).getClosingBalance());
+
+        post(CUSTOMER, 1, "KH01", 202602, "50", "0");
+        entityManager.clear();
+
+        assertDecimal("1000", row(CUSTOMER, 1, 202602).getOpeningBalance());
+        assertDecimal("1050", row(CUSTOMER, 1, 202603).getOpeningBalance());
+        assertDecimal("650", row(CUSTOMER, 1, 202603).getClosingBalance());
+    }
+
+    @Test
+    void monthWithoutActivityCarriesLatestNonZeroBalance() {
+        // Tháng 2: KH 1 mang sang từ tháng 1, NCC 7 có phát sinh, KH 2 đã hết nợ
+        assertEquals(List.of("KH01:202601", "NCC07:202602"), codes(202602, null));
+        // Tháng 4: KH 1 mang sang từ tháng 3
+        assertEquals(List.of("KH01:202603", "NCC07:202602"), codes(202604, null));
+        assertEquals(List.of("NCC07:202602"), codes(202604, VENDOR));
+        // Tháng có phát sinh luôn có dòng dù closing = 0
+        assertEquals(List.of("KH01:202601", "KH02:202601"), codes(202601, CUSTOMER));
+        assertEquals(List.of(), codes(202512, null));
+    }
+
+    private void post(String partyType, int partyId, String code, int period, String increase, String decrease) {
+        repository.insertIfAbsent(partyType, partyId, code, code, period);
+        BigDecimal inc = new BigDecimal(increase);
+        BigDecimal dec = new BigDecimal(decrease);
+        repository.applyDelta(partyType, partyId, period, inc, dec);
+        repository.shiftLaterPeriods(partyType, partyId, period, inc.subtract(dec));
+    }
+
+    private List<String> codes(int period, String partyType) {
+        Page<DebtMonthlySummary> page = repository.findLatestUpToPeriod(period, partyType,
+                PageRequest.of(0, 10, Sort.by("partyCode")));
+        assertEquals(page.getContent().size(), page.getTotalElements());
+        return page.map(s -> s.getPartyCode() + ":" + s.getPeriod()).getContent();
+    }
+
+    private DebtMonthlySummary row(String partyType, int partyId, int period) {
+        return repository.findByPartyTypeAndPartyIdAndPeriod(partyType, partyId, period).orElseThrow();
+    }
+
+    private static void assertDecimal(String expected, BigDecimal actual) {
+        assertEquals(0, new BigDecimal(expected).compareTo(actual), "expected " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,22 @@
+package com.g174.mmssystem.repository;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+/**
+ * Test repository trên H2 chế độ MySQL với MySQLDialect: JPQL được kiểm tra và sinh SQL như khi chạy MySQL,
+ * schema được tạo từ entity, các câu native (INSERT IGNORE, ON DUPLICATE KEY UPDATE, FOR UPDATE) chạy được.
+ */
+@DataJpaTest(showSql = false, properties = {
+        "spring.datasource.url=jdbc:h2:mem:mms;MODE=MySQL;DATABASE_TO_LOWER=TRUE;CASE_INSENSITIVE_IDENTIFIERS=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.database-platform=org.hibernate.dialect.MySQLDialect",
+        "spring.jpa.properties.hibernate.boot.allow_jdbc_metadata_access=false",
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.jpa.properties.jakarta.persistence.schema-generation.database.action=create"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public abstract class RepositoryTestSupport {
+}
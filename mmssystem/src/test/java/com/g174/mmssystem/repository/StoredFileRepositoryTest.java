@@ -0,0 +1,85 @@
+package com.g174.mmssystem.repository;
+
+import com.g174.mmssystem.entity.StoredFile;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Đếm tham chiếu của Stored_Files chạy thật trên database: acquire / register dùng ON DUPLICATE KEY UPDATE,
+ * release không xuống dưới 0 và chỉ xóa được dòng không còn tham chiếu.
+ */
+class StoredFileRepositoryTest extends RepositoryTestSupport {
+
+    private static final String KEY = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08.png";
+
+    @Autowired
+    private StoredFileRepository repository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void acquireInsertsOnceThenCountsReferences() {
+        repository.acquire(KEY, 120L, "image/png");
+        repository.acquire(KEY, 120L, "image/png");
+
+        StoredFile file = reload();
+        assertEquals(2, file.getRefCount());
+        assertEquals(120L, file.getSizeBytes());
+        assertEquals("image/png", file.getContentType());
+        assertEquals(1, repository.findAll().size());
+    }
+
+    @Test
+    void registerKeepsReferencesAndAcquireExistingNeedsRow() {
+        assertEquals(0, repository.acquireExisting(KEY));
+
+        repository.register(KEY, 120L, "image/png");
+        assertEquals(0, reload().getRefCount());
+        assertEquals(1, repository.acquireExisting(KEY));
+
+        // Upload lại nội dung đang được dùng: không đổi số tham chiếu
+        repository.register(KEY, 120L, "image/png");
+        assertEquals(1, reload().getRefCount());
+    }
+
+    @Test
+    void releaseStopsAtZeroAndOnlyUnreferencedRowIsDeleted() {
+        repository.acquire(KEY, 120L, "image/png");
+        repository.acquire(KEY, 120L, "image/png");
+
+        assertEquals(1, repository.release(KEY));
+        assertEquals(0, repository.deleteIfUnreferenced(KEY));
+        assertEquals(1, repository.release(KEY));
+        assertEquals(0, repository.release(KEY));
+        assertEquals(0, reload().getRefCount());
+
+        assertEquals(1, repository.deleteIfUnreferenced(KEY));
+        entityManager.clear();
+        assertTrue(repository.findById(KEY).isEmpty());
+    }
+
+    @Test
+    void sweepQueriesRespectCutoff() {
+        repository.register(KEY, 120L, "image/png");
+        LocalDateTime before = LocalDateTime.now().minusHours(1);
+        LocalDateTime after = LocalDateTime.now().plusHours(1);
+
+        assertEquals(List.of(), repository.findUnreferencedBefore(before));
+        assertEquals(0, repository.deleteIfUnreferencedBefore(KEY, before));
+        assertEquals(List.of(KEY), repository.findUnreferencedBefore(after));
+        assertEquals(1, repository.deleteIfUnreferencedBefore(KEY, after));
+    }
+
+    private StoredFile reload() {
+        entityManager.clear();
+        return repository.findById(KEY).orElseThrow();
+    }
+}
@@ -0,0 +1,144 @@
+package com.g174.mmssystem.service;
+
+import com.g174.mmssystem.service.BankStatementCsvReader.StatementLine;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Đọc CSV sao kê: header, số tiền nhiều định dạng và fingerprint chống import trùng.
+ */
+class BankStatementCsvReaderTest {
+
+    @Test
+    void parseAmountHandlesSeparators() {
+        assertAmount("1234567.89", "1,234,567.89");
+        assertAmount("1234567.89", "1.234.567,89");
+        assertAmount("1500000", "1.500.000");
+        assertAmount("1500", "1,500");
+        assertAmount("12.5", "12,5");
+        assertAmount("1500000", "1,500,000 VND");
+    }
+
+    @Test
+    void singleDotIsDecimalPoint() {
+        assertAmount("1.5", "1.500");
+        assertAmount("0.25", "0.25");
+    }
+
+    @Test
+    void parseAmountHandlesNegativeNotations() {
+        assertAmount("-1234", "(1,234)");
+        assertAmount("-1234", "-1,234");
+        assertAmount("-1234", "1,234-");
+        assertAmount("-50.5", "($50.50)");
+    }
+
+    @Test
+    void parseAmountRejectsEmptyAndGarbage() {
+        assertNull(BankStatementCsvReader.parseAmount(null));
+        assertNull(BankStatementCsvReader.parseAmount("-"));
+        assertNull(BankStatementCsvReader.parseAmount("()"));
+        assertThrows(NumberFormatException.class, () -> BankStatementCsvReader.parseAmount("1.2.3,4,5"));
+    }
+
+    @Test
+    void parseDateAcceptsCommonFormats() {
+        LocalDate expected = LocalDate.of(2024, 5, 1);
+        assertEquals(expected, BankStatementCsvReader.parseDate("2024-05-01"));
+        assertEquals(expected, BankStatementCsvReader.parseDate("01/05/2024"));
+        assertEquals(expected, BankStatementCsvReader.parseDate("1.5.2024 10:15"));
+        assertNull(BankStatementCsvReader.parseDate("05/2024"));
+    }
+
+    @Test
+    void splitLineHandlesQuotedFields() {
+        assertEquals(List.of("a", "b, c", "say \"hi\"", ""),
+                BankStatementCsvReader.splitLine("a,\"b, c\",\"say \"\"hi\"\"\","));
+    }
+
+    @Test
+    void readsCreditDebitColumnsWithVietnameseHeaders() throws IOException {
+        List<StatementLine> lines = read("\uFEFF" + """
+                Ngày giao dịch,Ghi có,Ghi nợ,Nội dung,Mã giao dịch
+                01/05/2024,"1,000,000",,TT INV-0001,FT001
+                02/05/2024,,(250000),Tra NCC,FT002
+                03/05/2024,,,Phi,FT003
+                xx,100,,Loi ngay,FT004
+                """);
+
+        assertEquals(4, lines.size());
+        assertEquals(0, new BigDecimal("1000000").compareTo(lines.get(0).amount()));
+        assertEquals("FT001", lines.get(0).referenceNo());
+        assertEquals(2, lines.get(0).lineNo());
+        assertEquals(0, new BigDecimal("-250000").compareTo(lines.get(1).amount()));
+        assertFalse(lines.get(2).isValid());
+        assertFalse(lines.get(3).isValid());
+        assertNull(lines.get(3).fingerprint());
+    }
+
+    @Test
+    void missingAmountColumnIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> read("date,description\n2024-05-01,x\n"));
+    }
+
+    @Test
+    void fingerprintIsStableAcrossReadsAndDistinguishesRepeatedLines() throws IOException {
+        String csv = """
+                date,amount,description
+                2024-05-01,500000,Thu tien KH001
+                2024-05-01,500000,Thu tien KH001
+                2024-05-01,500000,thu  tien kh001
+                2024-05-02,500000,Thu tien KH001
+                """;
+        List<StatementLine> first = read(csv);
+        List<StatementLine> second = read(csv);
+
+        for (int i = 0; i < first.size(); i++) {
+            assertTrue(first.get(i).isValid());
+            assertEquals(first.get(i).fingerprint(), second.get(i).fingerprint());
+        }
+        // Hai giao dịch giống hệt nhau trong một file vẫn là hai dòng khác nhau
+        assertNotEquals(first.get(0).fingerprint(), first.get(1).fingerprint());
+        // Khác hoa thường / khoảng trắng trong nội dung: vẫn là lần xuất hiện thứ ba của cùng giao dịch
+        assertNotEquals(first.get(1).fingerprint(), first.get(2).fingerprint());
+        assertNotEquals(first.get(0).fingerprint(), first.get(3).fingerprint());
+    }
+
+    @Test
+    void fingerprintIgnoresTrailingZerosInAmount() throws IOException {
+        StatementLine a = read("date,amount,description\n2024-05-01,500000,X\n").get(0);
+        StatementLine b = read("date,amount,description\n2024-05-01,\"500,000.00\",X\n").get(0);
+        assertEquals(a.fingerprint(), b.fingerprint());
+    }
+
+    private static void assertAmount(String expected, String raw) {
+        BigDecimal actual = BankStatementCsvReader.parseAmount(raw);
+        assertEquals(0, new BigDecimal(expected).compareTo(actual), raw + " -> " + actual);
+    }
+
+    private static List<StatementLine> read(String csv) throws IOException {
+        List<StatementLine> lines = new ArrayList<>();
+        try (BankStatementCsvReader reader = new BankStatementCsvReader(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)))) {
+            StatementLine line;
+            while ((line = reader.next()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,165 @@
+package com.g174.mmssystem.service;
+
+import com.g174.mmssystem.service.FileServer.ByteRange;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Range (206 / 416 / cả file), If-Range và If-None-Match khi phục vụ file.
+ */
+class FileServerTest {
+
+    private static final String CONTENT = "0123456789";
+
+    private final FileServer fileServer = new FileServer();
+
+    @TempDir
+    Path dir;
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        file = Files.writeString(dir.resolve("a.txt"), CONTENT);
+    }
+
+    @Test
+    void parseRangeSupportsSingleRangeForms() {
+        assertEquals(new ByteRange(2, 5), FileServer.parseRange("bytes=2-5", 10));
+        assertEquals(new ByteRange(7, 9), FileServer.parseRange("bytes=7-", 10));
+        assertEquals(new ByteRange(6, 9), FileServer.parseRange("bytes=-4", 10));
+        // Cuối đoạn vượt quá file thì cắt lại, hậu tố dài hơn file thì lấy cả file
+        assertEquals(new ByteRange(8, 9), FileServer.parseRange("bytes=8-100", 10));
+        assertEquals(new ByteRange(0, 9), FileServer.parseRange("bytes=-100", 10));
+        assertEquals(new ByteRange(2, 5), FileServer.parseRange("bytes= 2 - 5 ", 10));
+    }
+
+    @Test
+    void parseRangeReturnsNullWhenUnsatisfiable() {
+        assertNull(FileServer.parseRange("bytes=10-", 10));
+        assertNull(FileServer.parseRange("bytes=5-2", 10));
+        assertNull(FileServer.parseRange("bytes=-0", 10));
+        assertNull(FileServer.parseRange("bytes=-5", 0));
+    }
+
+    @Test
+    void parseRangeFallsBackToWholeFileOnMalformedOrMultipleRanges() {
+        ByteRange whole = new ByteRange(0, 9);
+        assertEquals(whole, FileServer.parseRange("bytes=0-1,4-5", 10));
+        assertEquals(whole, FileServer.parseRange("items=0-1", 10));
+        assertEquals(whole, FileServer.parseRange("bytes=abc", 10));
+        assertEquals(whole, FileServer.parseRange("bytes=a-b", 10));
+    }
+
+    @Test
+    void matchesHandlesListsWeakTagsAndWildcard() {
+        assertTrue(FileServer.matches("\"abc\"", "\"abc\""));
+        assertTrue(FileServer.matches("\"x\", \"abc\"", "\"abc\""));
+        assertTrue(FileServer.matches("W/\"abc\"", "\"abc\""));
+        assertTrue(FileServer.matches("*", "\"abc\""));
+        assertFalse(FileServer.matches("\"abd\"", "\"abc\""));
+        assertFalse(FileServer.matches("abc", "\"abc\""));
+        assertFalse(FileServer.matches(null, "\"abc\""));
+    }
+
+    @Test
+    void servesPartialContentForRange() throws Exception {
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-4");
+
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 2-4/10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals("234", response.getContentAsString());
+        assertEquals(3, response.getContentLengthLong());
+    }
+
+    @Test
+    void unsatisfiableRangeReturns416WithoutBody() throws Exception {
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.RANGE, "bytes=20-");
+
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void ifRangeWithCurrentEtagKeepsRangeOtherwiseSendsWholeFile() throws Exception {
+        String etag = serve(request()).getHeader(HttpHeaders.ETAG);
+
+        MockHttpServletRequest current = request();
+        current.addHeader(HttpHeaders.RANGE, "bytes=0-1");
+        current.addHeader(HttpHeaders.IF_RANGE, etag);
+        assertEquals(206, serve(current).getStatus());
+
+        MockHttpServletRequest stale = request();
+        stale.addHeader(HttpHeaders.RANGE, "bytes=0-1");
+        stale.addHeader(HttpHeaders.IF_RANGE, "\"stale\"");
+        MockHttpServletResponse response = serve(stale);
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(CONTENT, response.getContentAsString());
+    }
+
+    @Test
+    void ifNoneMatchReturns304AndChangedFileGetsNewEtag() throws Exception {
+        MockHttpServletResponse first = serve(request());
+        String etag = first.getHeader(HttpHeaders.ETAG);
+        assertEquals(200, first.getStatus());
+        assertEquals(CONTENT, first.getContentAsString());
+        assertEquals("no-cache, private", first.getHeader(HttpHeaders.CACHE_CONTROL));
+
+        MockHttpServletRequest conditional = request();
+        conditional.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        MockHttpServletResponse notModified = serve(conditional);
+        assertEquals(304, notModified.getStatus());
+        assertEquals(0, notModified.getContentAsByteArray().length);
+
+        Files.writeString(file, "changed content", StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 5_000));
+        MockHttpServletRequest afterChange = request();
+        afterChange.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        assertEquals(200, serve(afterChange).getStatus());
+    }
+
+    @Test
+    void fileStoreNamesUseContentHashAsEtag() throws Exception {
+        String hash = "a".repeat(64);
+        Path stored = Files.writeString(dir.resolve(hash + "-w320.jpg"), CONTENT);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        fileServer.serve(stored, MediaType.IMAGE_JPEG, null, CacheControl.noCache(), request(), response);
+
+        assertEquals("\"" + hash + "-w320\"", response.getHeader(HttpHeaders.ETAG));
+    }
+
+    private MockHttpServletResponse serve(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        fileServer.serve(file, MediaType.TEXT_PLAIN, null, CacheControl.noCache().cachePrivate(), request, response);
+        return response;
+    }
+
+    private static MockHttpServletRequest request() {
+        return new MockHttpServletRequest("GET", "/uploads/a.txt");
+    }
+}
@@ -0,0 +1,259 @@
+package com.g174.mmssystem.service;
+
+import com.g174.mmssystem.repository.StoredFileRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Kho file theo nội dung: băm, gộp nội dung trùng, đếm tham chiếu, hoàn tham chiếu khi rollback và sweep.
+ * Stored_Files được giả lập bằng map trong bộ nhớ; file thật được ghi vào thư mục tạm của từng test.
+ */
+class FileStoreTest {
+
+    private static final long GRACE_MS = 60_000;
+
+    private final Map<String, Integer> refCounts = new HashMap<>();
+    private final Map<String, LocalDateTime> createdAt = new HashMap<>();
+
+    @TempDir
+    private Path tempDir;
+
+    private FileStore fileStore;
+
+    @BeforeEach
+    void setUp() {
+        StoredFileRepository repository = mock(StoredFileRepository.class);
+        doAnswer(inv -> {
+            String key = inv.getArgument(0);
+            createdAt.putIfAbsent(key, LocalDateTime.now());
+            refCounts.merge(key, 1, Integer::sum);
+            return null;
+        }).when(repository).acquire(anyString(), any(), any());
+        doAnswer(inv -> {
+            String key = inv.getArgument(0);
+            if (refCounts.getOrDefault(key, 0) == 0) {
+                createdAt.put(key, LocalDateTime.now());
+            }
+            refCounts.putIfAbsent(key, 0);
+            return null;
+        }).when(repository).register(anyString(), any(), any());
+        when(repository.acquireExisting(anyString())).thenAnswer(inv ->
+                refCounts.computeIfPresent(inv.getArgument(0), (k, count) -> count + 1) != null ? 1 : 0);
+        when(repository.release(anyString())).thenAnswer(inv -> {
+            String key = inv.getArgument(0);
+            if (refCounts.getOrDefault(key, 0) == 0) {
+                return 0;
+            }
+            refCounts.merge(key, -1, Integer::sum);
+            return 1;
+        });
+        when(repository.deleteIfUnreferenced(anyString())).thenAnswer(inv ->
+                deleteRow(inv.getArgument(0), LocalDateTime.MAX));
+        when(repository.findUnreferencedBefore(any())).thenAnswer(inv -> refCounts.keySet().stream()
+                .filter(key -> refCounts.get(key) == 0 && createdAt.get(key).isBefore(inv.getArgument(0)))
+                .toList());
+        when(repository.deleteIfUnreferencedBefore(anyString(), any())).thenAnswer(inv ->
+                deleteRow(inv.getArgument(0), inv.getArgument(1)));
+
+        fileStore = newFileStore(repository, tempDir.resolve("uploads"), tempDir.resolve("private-uploads"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void storeHashesContentIntoShardedPath() throws Exception {
+        byte[] content = uniqueContent();
+        String sha = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+
+        String url = store(content, "Anh.PNG");
+
+        assertEquals(FileStore.URL_PREFIX + sha.substring(0, 2) + "/" + sha.substring(2, 4) + "/" + sha + ".png", url);
+        assertEquals(tempDir.resolve("uploads").resolve("files").resolve(sha.substring(0, 2))
+                .resolve(sha.substring(2, 4)).resolve(sha + ".png"), fileStore.localPathOf(url));
+        assertTrue(Files.exists(fileStore.localPathOf(url)));
+        assertEquals(1, refCounts.get(sha + ".png"));
+        assertEquals(sha, FileStore.contentTagOf(sha + ".png"));
+        assertEquals(sha + "-w320", FileStore.contentTagOf(sha + "-w320.png"));
+    }
+
+    @Test
+    void identicalContentIsStoredOnceWithTwoReferences() throws Exception {
+        byte[] content = uniqueContent();
+
+        String first = store(content, "a.jpg");
+        String second = store(content, "b.jpg");
+
+        assertEquals(first, second);
+        assertEquals(1, refCounts.size());
+        assertEquals(2, refCounts.values().iterator().next());
+        assertNotEquals(first, store(uniqueContent(), "a.jpg"));
+    }
+
+    @Test
+    void lastReleaseDeletesFileAndDerivedFiles() throws Exception {
+        byte[] content = uniqueContent();
+        String url = store(content, "a.jpg");
+        store(content, "a.jpg");
+        Path path = fileStore.localPathOf(url);
+        Path thumbnail = path.resolveSibling(FileStore.contentTagOf(path.getFileName().toString()) + "-w320.jpg");
+        Files.writeString(thumbnail, "thumb");
+
+        fileStore.release(url);
+        assertTrue(Files.exists(path));
+        assertTrue(Files.exists(thumbnail));
+
+        fileStore.release(url);
+        assertFalse(Files.exists(path));
+        assertFalse(Files.exists(thumbnail));
+        assertTrue(refCounts.isEmpty());
+    }
+
+    @Test
+    void rollbackReleasesReferenceTakenByStore() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        String committed = store(uniqueContent(), "a.pdf");
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        TransactionSynchronizationManager.initSynchronization();
+        String rolledBack = store(uniqueContent(), "b.pdf");
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertTrue(Files.exists(fileStore.localPathOf(committed)));
+        assertFalse(Files.exists(fileStore.localPathOf(rolledBack)));
+        assertEquals(1, refCounts.size());
+    }
+
+    @Test
+    void unreferencedUploadIsSweptAfterGraceUnlessAcquired() throws Exception {
+        String kept = fileStore.storeUnreferenced(file(uniqueContent(), "a.png"));
+        String abandoned = fileStore.storeUnreferenced(file(uniqueContent(), "b.png"));
+        assertTrue(fileStore.acquire(kept));
+
+        // Chưa hết thời gian chờ thì chưa xóa
+        fileStore.sweepUnreferenced();
+        assertTrue(Files.exists(fileStore.localPathOf(abandoned)));
+
+        createdAt.replaceAll((key, time) -> time.minusNanos((GRACE_MS + 1_000) * 1_000_000));
+        fileStore.sweepUnreferenced();
+
+        assertTrue(Files.exists(fileStore.localPathOf(kept)));
+        assertFalse(Files.exists(fileStore.localPathOf(abandoned)));
+        assertFalse(fileStore.acquire(abandoned));
+    }
+
+    @Test
+    void reuploadWhileUnreferencedRestartsGrace() throws Exception {
+        byte[] content = uniqueContent();
+        String url = fileStore.storeUnreferenced(file(content, "a.png"));
+        createdAt.replaceAll((key, time) -> time.minusNanos((GRACE_MS + 1_000) * 1_000_000));
+
+        fileStore.storeUnreferenced(file(content, "a.png"));
+        fileStore.sweepUnreferenced();
+
+        assertTrue(Files.exists(fileStore.localPathOf(url)));
+        assertTrue(fileStore.acquire(url));
+    }
+
+    @Test
+    void privateFilesLiveOutsidePublicUploadsWithSeparateReferences() throws Exception {
+        byte[] content = uniqueContent();
+        String publicUrl = store(content, "a.pdf");
+        String privateUrl = fileStore.storePrivate(file(content, "a.pdf"));
+
+        assertTrue(privateUrl.startsWith(FileStore.PRIVATE_URL_PREFIX));
+        assertEquals(publicUrl.substring(FileStore.URL_PREFIX.length()),
+                privateUrl.substring(FileStore.PRIVATE_URL_PREFIX.length()));
+        Path privatePath = fileStore.localPathOf(privateUrl);
+        assertTrue(privatePath.startsWith(tempDir.resolve("private-uploads")));
+        assertFalse(privatePath.startsWith(fileStore.getUploadRoot()));
+        assertEquals(2, refCounts.size());
+
+        fileStore.release(privateUrl);
+        assertFalse(Files.exists(privatePath));
+        assertTrue(Files.exists(fileStore.localPathOf(publicUrl)));
+    }
+
+    @Test
+    void privateDirInsideUploadDirIsRejected() {
+        StoredFileRepository repository = mock(StoredFileRepository.class);
+        Path uploads = tempDir.resolve("uploads");
+
+        assertThrows(IllegalStateException.class, () -> newFileStore(repository, uploads, uploads.resolve("private")));
+        assertThrows(IllegalStateException.class, () -> newFileStore(repository, uploads.resolve("public"), uploads));
+    }
+
+    @Test
+    void urlsOutsideStoreAreIgnored() {
+        assertTrue(fileStore.acquire("/uploads/products/legacy.jpg"));
+        assertTrue(fileStore.acquire(null));
+        fileStore.release("/uploads/products/legacy.jpg");
+        fileStore.release(FileStore.URL_PREFIX + "ab/cd/not-a-hash.jpg");
+        assertEquals(null, fileStore.localPathOf("/uploads/products/legacy.jpg"));
+        assertTrue(refCounts.isEmpty());
+    }
+
+    private int deleteRow(String key, LocalDateTime cutoff) {
+        if (refCounts.getOrDefault(key, -1) != 0 || !createdAt.get(key).isBefore(cutoff)) {
+            return 0;
+        }
+        refCounts.remove(key);
+        createdAt.remove(key);
+        return 1;
+    }
+
+    private String store(byte[] content, String name) throws Exception {
+        return fileStore.store(file(content, name));
+    }
+
+    private static FileStore newFileStore(StoredFileRepository repository, Path uploadDir, Path privateUploadDir) {
+        return new FileStore(repository, mock(PlatformTransactionManager.class), GRACE_MS,
+                uploadDir.toString(), privateUploadDir.toString());
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+
+    private static MockMultipartFile file(byte[] content, String name) {
+        return new MockMultipartFile("file", name, "application/octet-stream", content);
+    }
+
+    private static byte[] uniqueContent() {
+        return ("file-store-test " + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,241 @@
+package com.g174.mmssystem.service.Impl;
+
+import com.g174.mmssystem.dto.responseDTO.BalanceReconciliationReportDTO;
+import com.g174.mmssystem.entity.ARInvoice;
+import com.g174.mmssystem.entity.ARPayment;
+import com.g174.mmssystem.entity.Customer;
+import com.g174.mmssystem.repository.ARInvoiceRepository;
+import com.g174.mmssystem.repository.ARPaymentRepository;
+import com.g174.mmssystem.repository.CustomerBalanceRepository;
+import com.g174.mmssystem.repository.RepositoryTestSupport;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Đối soát chạy trong khi hóa đơn / thanh toán vẫn được ghi nhận: giao dịch ghi nhận giữa chừng không được coi là lệch,
+ * và chỗ lệch thật vẫn được sửa đúng một lần.
+ * Mỗi giao dịch ghi nhận giống luồng thật: ghi chứng từ rồi cộng delta vào balance trong cùng transaction.
+ */
+@Import(BalanceReconciliationServiceImpl.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BalanceReconciliationServiceImplTest extends RepositoryTestSupport {
+
+    private static final int CUSTOMERS = 6;
+    private static final int POSTING_THREADS = 4;
+    private static final int POSTINGS_PER_THREAD = 60;
+
+    @Autowired
+    private BalanceReconciliationServiceImpl reconciliationService;
+
+    @Autowired
+    private CustomerBalanceRepository customerBalanceRepository;
+
+    @Autowired
+    private ARInvoiceRepository arInvoiceRepository;
+
+    @Autowired
+    private ARPaymentRepository arPaymentRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaction;
+    private final List<Integer> customerIds = new ArrayList<>();
+    private final AtomicInteger invoiceSequence = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        transaction = new TransactionTemplate(transactionManager);
+        for (int i = 0; i < CUSTOMERS; i++) {
+            int index = i;
+            Integer customerId = transaction.execute(status -> {
+                Customer customer = new Customer();
+                customer.setFirstName("Khach");
+                customer.setLastName("Hang " + index);
+                customer.setCustomerCode("KH-RECON-" + index);
+                entityManager.persist(customer);
+                entityManager.flush();
+                customerBalanceRepository.insertIfAbsent(customer.getCustomerId());
+                return customer.getCustomerId();
+            });
+            customerIds.add(customerId);
+            postInvoice(customerId, new BigDecimal("1000.00"));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM ar_payments");
+        jdbcTemplate.update("DELETE FROM ar_invoices");
+        jdbcTemplate.update("DELETE FROM customer_balances");
+        jdbcTemplate.update("DELETE FROM customers WHERE customer_code LIKE 'KH-RECON-%'");
+    }
+
+    @Test
+    void postingsDuringRunAreNotCorrected() throws Exception {
+        List<BalanceReconciliationReportDTO> reports = reconcileWhilePosting();
+
+        assertTrue(reports.size() > 1, "Cần nhiều lượt đối soát chạy xen với giao dịch");
+        for (BalanceReconciliationReportDTO report : reports) {
+            assertEquals(0, report.getCustomersCorrected(), "Giao dịch đang ghi nhận bị coi là lệch: " + report.getDrifts());
+        }
+        assertBalancesMatchDocuments();
+    }
+
+    @Test
+    void realDriftIsCorrectedOnceWhilePostingsRun() throws Exception {
+        Integer drifted = customerIds.get(0);
+        jdbcTemplate.update("UPDATE customer_balances SET total_invoiced = total_invoiced + 500, "
+                + "outstanding_balance = outstanding_balance + 500 WHERE customer_id = ?", drifted);
+
+        List<BalanceReconciliationReportDTO> reports = reconcileWhilePosting();
+
+        int corrected = reports.stream().mapToInt(BalanceReconciliationReportDTO::getCustomersCorrected).sum();
+        assertEquals(1, corrected);
+        assertEquals(drifted, reports.get(0).getDrifts().get(0).getPartyId());
+        assertBalancesMatchDocuments();
+    }
+
+    @Test
+    void driftsInOneChunkAreCorrectedInOneRun() {
+        jdbcTemplate.update("UPDATE customer_balances SET total_invoiced = 0 WHERE customer_id = ?", customerIds.get(0));
+        jdbcTemplate.update("UPDATE customer_balances SET total_paid = 300, outstanding_balance = 5 WHERE customer_id = ?",
+                customerIds.get(1));
+        jdbcTemplate.update("DELETE FROM customer_balances WHERE customer_id = ?", customerIds.get(2));
+
+        BalanceReconciliationReportDTO report = reconciliationService.reconcileAll(false);
+
+        assertEquals(3, report.getCustomersCorrected());
+        assertBalancesMatchDocuments();
+        for (Integer customerId : customerIds) {
+            assertEquals(0, new BigDecimal("1000").compareTo(jdbcTemplate.queryForObject(
+                    "SELECT outstanding_balance FROM customer_balances WHERE customer_id = ?", BigDecimal.class, customerId)),
+                    "outstanding_balance của KH " + customerId);
+        }
+        assertEquals(0, reconciliationService.reconcileAll(false).getCustomersCorrected());
+    }
+
+    @Test
+    void dryRunReportsWithoutWriting() {
+        Integer drifted = customerIds.get(1);
+        jdbcTemplate.update("UPDATE customer_balances SET total_paid = total_paid + 200 WHERE customer_id = ?", drifted);
+
+        BalanceReconciliationReportDTO report = reconciliationService.reconcileAll(true);
+
+        assertEquals(1, report.getDrifts().size());
+        assertEquals(0, report.getCustomersCorrected());
+        assertEquals(0, new BigDecimal("200").compareTo(jdbcTemplate.queryForObject(
+                "SELECT total_paid FROM customer_balances WHERE customer_id = ?", BigDecimal.class, drifted)));
+    }
+
+    /**
+     * Chạy đối soát liên tục (không dryRun) cho tới khi các luồng ghi nhận xong, rồi chạy thêm một lượt cuối.
+     */
+    private List<BalanceReconciliationReportDTO> reconcileWhilePosting() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(POSTING_THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < POSTING_THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < POSTINGS_PER_THREAD; i++) {
+                    Integer customerId = customerIds.get(random.nextInt(customerIds.size()));
+                    BigDecimal amount = BigDecimal.valueOf(random.nextInt(1, 100));
+                    if (random.nextBoolean()) {
+                        postInvoice(customerId, amount);
+                    } else {
+                        postPayment(customerId, amount);
+                    }
+                }
+                return null;
+            }));
+        }
+        executor.shutdown();
+
+        List<BalanceReconciliationReportDTO> reports = new ArrayList<>();
+        try {
+            while (!executor.isTerminated()) {
+                reports.add(reconciliationService.reconcileAll(false));
+            }
+        } finally {
+            executor.awaitTermination(2, TimeUnit.MINUTES);
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        reports.add(reconciliationService.reconcileAll(false));
+        return reports;
+    }
+
+    private void postInvoice(Integer customerId, BigDecimal amount) {
+        transaction.executeWithoutResult(status -> {
+            ARInvoice invoice = new ARInvoice();
+            invoice.setInvoiceNo("INV-RECON-" + invoiceSequence.incrementAndGet());
+            invoice.setCustomer(entityManager.getReference(Customer.class, customerId));
+            invoice.setTotalAmount(amount);
+            invoice.setBalanceAmount(amount);
+            entityManager.persist(invoice);
+            entityManager.flush();
+            customerBalanceRepository.applyDelta(customerId, amount, BigDecimal.ZERO, BigDecimal.ZERO);
+        });
+    }
+
+    private void postPayment(Integer customerId, BigDecimal amount) {
+        transaction.executeWithoutResult(status -> {
+            ARInvoice invoice = entityManager.createQuery(
+                            "SELECT ar FROM ARInvoice ar WHERE ar.customer.customerId = :customerId ORDER BY ar.arInvoiceId",
+                            ARInvoice.class)
+                    .setParameter("customerId", customerId)
+                    .setMaxResults(1)
+                    .getSingleResult();
+            ARPayment payment = new ARPayment();
+            payment.setInvoice(invoice);
+            payment.setAmount(amount);
+            payment.setPaymentDate(Instant.now());
+            entityManager.persist(payment);
+            entityManager.flush();
+            customerBalanceRepository.applyDelta(customerId, BigDecimal.ZERO, amount, BigDecimal.ZERO);
+        });
+    }
+
+    private void assertBalancesMatchDocuments() {
+        transaction.executeWithoutResult(status -> {
+            for (Integer customerId : customerIds) {
+                BigDecimal invoiced = arInvoiceRepository.sumActiveTotalByCustomerId(customerId);
+                BigDecimal paid = arPaymentRepository.getTotalPaidByCustomerId(customerId);
+                var balance = customerBalanceRepository.findBalanceByCustomerId(customerId).orElseThrow();
+                assertEquals(0, invoiced.compareTo(balance.getTotalInvoiced()), "total_invoiced của KH " + customerId);
+                assertEquals(0, (paid != null ? paid : BigDecimal.ZERO).compareTo(balance.getTotalPaid()),
+                        "total_paid của KH " + customerId);
+            }
+        });
+    }
+}
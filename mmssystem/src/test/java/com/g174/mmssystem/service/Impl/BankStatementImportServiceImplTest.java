@@ -0,0 +1,242 @@
+package com.g174.mmssystem.service.Impl;
+
+import com.g174.mmssystem.dto.responseDTO.BankStatementExceptionDTO;
+import com.g174.mmssystem.dto.responseDTO.BankStatementImportResultDTO;
+import com.g174.mmssystem.dto.responseDTO.OpenInvoiceProjection;
+import com.g174.mmssystem.entity.APInvoice;
+import com.g174.mmssystem.entity.APPayment;
+import com.g174.mmssystem.entity.ARInvoice;
+import com.g174.mmssystem.entity.ARPayment;
+import com.g174.mmssystem.entity.Customer;
+import com.g174.mmssystem.entity.Vendor;
+import com.g174.mmssystem.repository.APInvoiceRepository;
+import com.g174.mmssystem.repository.APPaymentRepository;
+import com.g174.mmssystem.repository.ARInvoiceRepository;
+import com.g174.mmssystem.repository.ARPaymentRepository;
+import com.g174.mmssystem.repository.PurchaseOrderRepository;
+import com.g174.mmssystem.service.IService.ICustomerBalanceService;
+import com.g174.mmssystem.service.IService.IDebtSummaryService;
+import com.g174.mmssystem.service.IService.IVendorBalanceService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Khớp dòng sao kê với hóa đơn còn nợ và ghi thanh toán; repository được giả lập trong bộ nhớ.
+ */
+class BankStatementImportServiceImplTest {
+
+    private static final String HEADER = "date,amount,description,reference,party\n";
+
+    private final Map<Integer, ARInvoice> arInvoices = new HashMap<>();
+    private final List<ARPayment> arPayments = new ArrayList<>();
+    private final List<APPayment> apPayments = new ArrayList<>();
+
+    private ARInvoiceRepository arInvoiceRepository;
+    private ARPaymentRepository arPaymentRepository;
+    private APInvoiceRepository apInvoiceRepository;
+    private APPaymentRepository apPaymentRepository;
+    private BankStatementImportServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        arInvoiceRepository = mock(ARInvoiceRepository.class);
+        arPaymentRepository = mock(ARPaymentRepository.class);
+        apInvoiceRepository = mock(APInvoiceRepository.class);
+        apPaymentRepository = mock(APPaymentRepository.class);
+
+        when(arInvoiceRepository.lockAllWithCustomerByIdIn(anyCollection())).thenAnswer(inv ->
+                inv.<Collection<Integer>>getArgument(0).stream().map(arInvoices::get).filter(Objects::nonNull).toList());
+        when(arPaymentRepository.saveAll(any())).thenAnswer(inv -> {
+            inv.<Iterable<ARPayment>>getArgument(0).forEach(arPayments::add);
+            return List.of();
+        });
+        when(apPaymentRepository.saveAll(any())).thenAnswer(inv -> {
+            inv.<Iterable<APPayment>>getArgument(0).forEach(apPayments::add);
+            return List.of();
+        });
+
+        service = new BankStatementImportServiceImpl(arInvoiceRepository, arPaymentRepository,
+                apInvoiceRepository, apPaymentRepository, mock(PurchaseOrderRepository.class),
+                mock(ICustomerBalanceService.class), mock(IVendorBalanceService.class),
+                mock(IDebtSummaryService.class), mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void matchesByInvoiceNoThenPartyThenUniqueAmount() {
+        openReceivables(
+                open(1, "INV-0001", "KH001", "1000000"),
+                open(2, "INV-0002", "KH002", "300000"),
+                open(3, "INV-0003", "KH002", "300000"),
+                open(4, "INV-0004", "KH003", "750000"),
+                open(5, "INV-0005", "KH004", "200000"),
+                open(6, "INV-0006", "KH005", "200000"));
+
+        BankStatementImportResultDTO result = service.importStatement(csv(HEADER
+                + "2024-05-01,400000,TT inv 0001,,\n"       // số hóa đơn, thanh toán một phần
+                + "2024-05-01,300000,Chuyen tien,,KH002\n"  // mã KH + số tiền: hóa đơn cũ nhất
+                + "2024-05-01,750000,Chuyen tien,,\n"       // số tiền duy nhất
+                + "2024-05-01,300000,Chuyen khoan,,\n"      // INV-0002 đã hết nợ nên chỉ còn INV-0003
+                + "2024-05-01,300000,Chuyen khoan lan 2,,\n"
+                + "2024-05-01,700000,INV-0001 con lai,,\n"  // còn nợ 600000
+                + "2024-05-01,200000,Khong ro,,\n"
+                + "2024-05-01,-50000,Phi,,\n"), true);
+
+        assertEquals(8, result.getTotalLines());
+        assertEquals(4, result.getReceivablePayments());
+        assertEquals(0, new BigDecimal("1750000").compareTo(result.getReceivableAmount()));
+        assertEquals(List.of("UNMATCHED", "OVERPAYMENT", "AMBIGUOUS", "UNMATCHED"), reasons(result));
+        assertEquals("INV-0001", result.getExceptions().get(1).getCandidateInvoices());
+        assertEquals("INV-0005, INV-0006", result.getExceptions().get(2).getCandidateInvoices());
+        verify(arPaymentRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void postsWithLockedInvoicesAndRecordsFingerprint() {
+        openReceivables(open(1, "INV-0001", "KH001", "1000000"));
+        arInvoices.put(1, arInvoice(1, "INV-0001", "1000000"));
+
+        BankStatementImportResultDTO result = service.importStatement(csv(HEADER
+                + "2024-05-01,400000,TT INV-0001,,\n"), false);
+
+        assertEquals(1, result.getReceivablePayments());
+        assertEquals(1, arPayments.size());
+        assertNotNull(arPayments.get(0).getStatementFingerprint());
+        assertEquals(0, new BigDecimal("600000").compareTo(arInvoices.get(1).getBalanceAmount()));
+        assertEquals(ARInvoice.InvoiceStatus.PartiallyPaid, arInvoices.get(1).getStatus());
+        verify(arInvoiceRepository).lockAllWithCustomerByIdIn(anyCollection());
+    }
+
+    @Test
+    void reimportedLinesWithoutReferenceAreDuplicates() {
+        openReceivables(open(1, "INV-0001", "KH001", "1000000"));
+        arInvoices.put(1, arInvoice(1, "INV-0001", "1000000"));
+        String statement = HEADER + "2024-05-01,100000,TT INV-0001,,\n2024-05-01,100000,TT INV-0001,,\n";
+
+        service.importStatement(csv(statement), false);
+        assertEquals(2, arPayments.size());
+        List<String> recorded = arPayments.stream().map(ARPayment::getStatementFingerprint).toList();
+        when(arPaymentRepository.findExistingStatementFingerprints(anyCollection())).thenAnswer(inv ->
+                inv.<Collection<String>>getArgument(0).stream().filter(recorded::contains).toList());
+
+        BankStatementImportResultDTO again = service.importStatement(csv(statement), false);
+
+        assertEquals(0, again.getReceivablePayments());
+        assertEquals(List.of("DUPLICATE", "DUPLICATE"), reasons(again));
+        assertEquals(2, arPayments.size());
+    }
+
+    @Test
+    void rejectedMatchReturnsAmountToIndex() {
+        // Index dựng lúc còn nợ 1.000.000, nhưng trong lúc import hóa đơn đã được thanh toán bớt còn 600.000
+        openReceivables(open(1, "INV-0001", "KH001", "1000000"));
+        arInvoices.put(1, arInvoice(1, "INV-0001", "600000"));
+
+        StringBuilder statement = new StringBuilder(HEADER).append("2024-05-01,1000000,TT INV-0001,,\n");
+        for (int i = 0; i < 199; i++) {
+            statement.append("2024-05-01,").append(1000 + i).append(",Khong ro,,\n");
+        }
+        // Lô sau: nếu số tiền lô trước không được trả lại index thì dòng này thành OVERPAYMENT
+        statement.append("2024-05-02,600000,TT INV-0001,,\n");
+
+        BankStatementImportResultDTO result = service.importStatement(csv(statement.toString()), false);
+
+        assertEquals(1, result.getReceivablePayments());
+        assertEquals(1, reasons(result).stream().filter("POSTING_FAILED"::equals).count());
+        assertEquals(0, reasons(result).stream().filter("OVERPAYMENT"::equals).count());
+        assertEquals(0, BigDecimal.ZERO.compareTo(arInvoices.get(1).getBalanceAmount()));
+        assertEquals(ARInvoice.InvoiceStatus.Paid, arInvoices.get(1).getStatus());
+    }
+
+    @Test
+    void outgoingLinesPayVendorInvoices() {
+        when(apInvoiceRepository.findOpenInvoiceKeys()).thenReturn(List.of(open(7, "AP-0007", "NCC01", "500000")));
+        Vendor vendor = new Vendor();
+        vendor.setVendorId(1);
+        APInvoice invoice = APInvoice.builder().apInvoiceId(7).invoiceNo("AP-0007").vendor(vendor)
+                .balanceAmount(new BigDecimal("500000")).status(APInvoice.APInvoiceStatus.Unpaid).build();
+        when(apInvoiceRepository.lockAllWithVendorByIdIn(anyCollection())).thenReturn(List.of(invoice));
+
+        BankStatementImportResultDTO result = service.importStatement(csv(HEADER
+                + "2024-05-01,\"(500,000)\",Tra tien,,NCC01\n"), false);
+
+        assertEquals(1, result.getPayablePayments());
+        assertEquals(1, apPayments.size());
+        assertEquals(APInvoice.APInvoiceStatus.Paid, invoice.getStatus());
+    }
+
+    private void openReceivables(OpenInvoiceProjection... invoices) {
+        when(arInvoiceRepository.findOpenInvoiceKeys()).thenReturn(List.of(invoices));
+    }
+
+    private static ARInvoice arInvoice(Integer id, String invoiceNo, String balance) {
+        Customer customer = new Customer();
+        customer.setCustomerId(id);
+        ARInvoice invoice = new ARInvoice();
+        invoice.setArInvoiceId(id);
+        invoice.setInvoiceNo(invoiceNo);
+        invoice.setCustomer(customer);
+        invoice.setBalanceAmount(new BigDecimal(balance));
+        invoice.setStatus(ARInvoice.InvoiceStatus.Unpaid);
+        return invoice;
+    }
+
+    private static OpenInvoiceProjection open(Integer id, String invoiceNo, String partyCode, String balance) {
+        return new OpenInvoice(id, invoiceNo, id, partyCode, new BigDecimal(balance));
+    }
+
+    private static List<String> reasons(BankStatementImportResultDTO result) {
+        return result.getExceptions().stream().map(BankStatementExceptionDTO::getReason).toList();
+    }
+
+    private static ByteArrayInputStream csv(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private record OpenInvoice(Integer invoiceId, String invoiceNo, Integer partyId, String partyCode,
+                               BigDecimal balanceAmount) implements OpenInvoiceProjection {
+        @Override
+        public Integer getInvoiceId() {
+            return invoiceId;
+        }
+
+        @Override
+        public String getInvoiceNo() {
+            return invoiceNo;
+        }
+
+        @Override
+        public Integer getPartyId() {
+            return partyId;
+        }
+
+        @Override
+        public String getPartyCode() {
+            return partyCode;
+        }
+
+        @Override
+        public BigDecimal getBalanceAmount() {
+            return balanceAmount;
+        }
+    }
+}
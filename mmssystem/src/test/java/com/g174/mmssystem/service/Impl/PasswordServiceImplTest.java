@@ -0,0 +1,87 @@
+package com.g174.mmssystem.service.Impl;
+
+import com.g174.mmssystem.dto.auth.ForgotPasswordRequestDTO;
+import com.g174.mmssystem.dto.auth.VerifyOtpRequestDTO;
+import com.g174.mmssystem.entity.User;
+import com.g174.mmssystem.exception.ResourceNotFoundException;
+import com.g174.mmssystem.repository.UserRepository;
+import com.g174.mmssystem.service.EmailService;
+import com.g174.mmssystem.service.OtpStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Quên mật khẩu: OtpStore chỉ giữ trạng thái cho email có tài khoản, OTP chỉ bị hủy sau khi mật khẩu mới commit.
+ */
+class PasswordServiceImplTest {
+
+    private static final String EMAIL = "user@mms.vn";
+    private static final String OTP = "123456";
+
+    private OtpStore otpStore;
+    private PasswordServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setEmail(EMAIL);
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findByEmail(anyString())).thenReturn(Optional.empty());
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(user));
+        PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+        when(passwordEncoder.encode(anyString())).thenReturn("encoded");
+        EmailService emailService = mock(EmailService.class);
+        when(emailService.generateOTP()).thenReturn(OTP);
+
+        otpStore = spy(new OtpStore(null, mock(PlatformTransactionManager.class), "memory", 10, 5, 3, 60));
+        service = new PasswordServiceImpl(userRepository, passwordEncoder, emailService, otpStore);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void unknownEmailDoesNotCreateOtpState() {
+        assertThrows(ResourceNotFoundException.class,
+                () -> service.requestPasswordReset(new ForgotPasswordRequestDTO("nobody@mms.vn")));
+
+        verify(otpStore, never()).tryAcquireRequest(anyString());
+    }
+
+    @Test
+    void otpIsConsumedOnlyAfterCommit() {
+        service.requestPasswordReset(new ForgotPasswordRequestDTO(EMAIL));
+
+        TransactionSynchronizationManager.initSynchronization();
+        service.verifyOtpAndResetPassword(new VerifyOtpRequestDTO(EMAIL, OTP, "NewPass@123"));
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+
+        // Chưa commit (hoặc rollback): OTP vẫn còn hiệu lực
+        assertEquals(OtpStore.Status.VALID, otpStore.verify(EMAIL, OTP).status());
+
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        assertEquals(OtpStore.Status.NOT_FOUND, otpStore.verify(EMAIL, OTP).status());
+    }
+}
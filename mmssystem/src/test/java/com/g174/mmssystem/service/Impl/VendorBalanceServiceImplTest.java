@@ -0,0 +1,173 @@
+package com.g174.mmssystem.service.Impl;
+
+import com.g174.mmssystem.entity.Vendor;
+import com.g174.mmssystem.entity.VendorBalance;
+import com.g174.mmssystem.repository.APInvoiceRepository;
+import com.g174.mmssystem.repository.APPaymentRepository;
+import com.g174.mmssystem.repository.RepositoryTestSupport;
+import com.g174.mmssystem.repository.VendorBalanceRepository;
+import com.g174.mmssystem.service.BalanceDeltaCoalescer;
+import com.g174.mmssystem.service.IService.IAgingReportService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Ghi nhận công nợ phải trả song song trên database thật: balance phải khớp chính xác tổng các giao dịch.
+ * Mỗi thread chạy transaction riêng, dòng balance chưa có sẵn nên các thread đầu tiên cùng tạo dòng bằng INSERT IGNORE.
+ */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class VendorBalanceServiceImplTest extends RepositoryTestSupport {
+
+    private static final int THREADS = 16;
+    private static final int TRANSACTIONS_PER_THREAD = 50;
+    private static final int POSTINGS_PER_TRANSACTION = 4;
+
+    @Autowired
+    private VendorBalanceRepository vendorBalanceRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final AtomicInteger updateStatements = new AtomicInteger();
+
+    private TransactionTemplate transaction;
+    private BalanceDeltaCoalescer coalescer;
+    private VendorBalanceServiceImpl service;
+    private Integer vendorId;
+
+    @BeforeEach
+    void setUp() {
+        transaction = new TransactionTemplate(transactionManager);
+        vendorId = transaction.execute(status -> {
+            Vendor vendor = new Vendor();
+            vendor.setName("Nha cung cap song song");
+            vendor.setVendorCode("NCC-PARALLEL");
+            entityManager.persist(vendor);
+            entityManager.flush();
+            return vendor.getVendorId();
+        });
+
+        coalescer = new BalanceDeltaCoalescer();
+        service = new VendorBalanceServiceImpl(countingUpdates(vendorBalanceRepository), mock(APInvoiceRepository.class),
+                mock(APPaymentRepository.class), coalescer, mock(IAgingReportService.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM vendor_balances");
+        jdbcTemplate.update("DELETE FROM vendors WHERE vendor_code = 'NCC-PARALLEL'");
+    }
+
+    @Test
+    void parallelPostingsKeepBalanceExact() throws Exception {
+        runParallel();
+
+        assertTotals();
+        // Không gộp: mỗi lần ghi nhận là một câu UPDATE (cộng lần thử lại của các thread gặp lúc chưa có dòng balance)
+        assertStatementCount(THREADS * TRANSACTIONS_PER_THREAD * POSTINGS_PER_TRANSACTION);
+    }
+
+    @Test
+    void coalescedParallelPostingsKeepBalanceExact() throws Exception {
+        ReflectionTestUtils.setField(coalescer, "enabled", true);
+
+        runParallel();
+
+        assertTotals();
+        // Gộp theo transaction: mỗi transaction chỉ một câu UPDATE lúc commit
+        assertStatementCount(THREADS * TRANSACTIONS_PER_THREAD);
+    }
+
+    private void runParallel() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < TRANSACTIONS_PER_THREAD; i++) {
+                    transaction.executeWithoutResult(status -> {
+                        service.updateOnInvoiceCreated(vendorId, new BigDecimal("100.00"));
+                        service.updateOnPaymentAdded(vendorId, new BigDecimal("30.00"));
+                        service.updateOnPaymentAdded(vendorId, new BigDecimal("20.50"));
+                        service.updateOnInvoiceDeleted(vendorId, new BigDecimal("5.25"));
+                    });
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        try {
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Bọc repository thật để đếm số câu applyDelta; mọi câu lệnh vẫn chạy trên database.
+     */
+    private VendorBalanceRepository countingUpdates(VendorBalanceRepository repository) {
+        return mock(VendorBalanceRepository.class, withSettings().stubOnly().defaultAnswer(inv -> {
+            if (inv.getMethod().getName().equals("applyDelta")) {
+                updateStatements.incrementAndGet();
+            }
+            try {
+                return inv.getMethod().invoke(repository, inv.getArguments());
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }));
+    }
+
+    private void assertStatementCount(int expected) {
+        int actual = updateStatements.get();
+        assertTrue(actual > expected && actual <= expected + THREADS,
+                "Số câu UPDATE không đúng: " + actual + " (mong đợi " + expected + " + số lần thử lại)");
+    }
+
+    private void assertTotals() {
+        BigDecimal transactions = BigDecimal.valueOf((long) THREADS * TRANSACTIONS_PER_THREAD);
+        VendorBalance balance = vendorBalanceRepository.findBalanceByVendorId(vendorId).orElseThrow();
+        assertDecimal(new BigDecimal("94.75").multiply(transactions), balance.getTotalInvoiced());
+        assertDecimal(new BigDecimal("50.50").multiply(transactions), balance.getTotalPaid());
+        assertDecimal(new BigDecimal("44.25").multiply(transactions), balance.getOutstandingBalance());
+    }
+
+    private static void assertDecimal(BigDecimal expected, BigDecimal actual) {
+        assertEquals(0, expected.compareTo(actual), "expected " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,83 @@
+package com.g174.mmssystem.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NGramSearchIndexTest {
+
+    private NGramSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new NGramSearchIndex();
+        index.put(1, "SP001", "Cà phê sữa đá");
+        index.put(2, "SP002", "Cà phê đen");
+        index.put(3, "TRA01", "Trà sữa trân châu");
+        index.put(4, "SP0010", "Phê la cà");
+        index.put(5, "X9", "Bánh cà phê");
+    }
+
+    @Test
+    void matchesWithoutAccentsAndCase() {
+        assertEquals(List.of(1, 3), sorted(index.search("SUA", 10)));
+        assertEquals(List.of(1, 3), sorted(index.search("sữa", 10)));
+    }
+
+    @Test
+    void requiresAllTokens() {
+        assertEquals(List.of(1), index.search("phe sua", 10));
+        assertEquals(List.of(), index.search("phe tra", 10));
+        assertEquals(List.of(), index.search("khong co", 10));
+    }
+
+    @Test
+    void ranksCodeBeforeNamePrefixBeforeWordPrefixBeforeContains() {
+        // 0: trùng mã, 1: mã bắt đầu bằng keyword
+        assertEquals(List.of(1, 4), index.search("sp001", 10));
+
+        List<NGramSearchIndex.Hit> hits = index.searchHits("ca phe", 10);
+        // Tên bắt đầu bằng "ca phe" (tên ngắn hơn đứng trước), rồi tới tên có từ bắt đầu bằng "ca";
+        // "Phê la cà" chứa đủ các từ dù khác thứ tự
+        assertEquals(List.of(2, 1, 4, 5), hits.stream().map(NGramSearchIndex.Hit::id).toList());
+        assertEquals(List.of(2, 2, 3, 3), hits.stream().map(NGramSearchIndex.Hit::rank).toList());
+
+        // "he" chỉ nằm giữa từ
+        assertTrue(index.searchHits("he", 10).stream().allMatch(hit -> hit.rank() == 4));
+    }
+
+    @Test
+    void limitKeepsBestRanked() {
+        assertEquals(List.of(2, 1), index.search("ca phe", 2));
+        assertEquals(List.of(), index.search("ca phe", 0));
+        assertEquals(List.of(), index.search("  ", 10));
+    }
+
+    @Test
+    void singleCharacterTokensScanAllEntries() {
+        assertEquals(List.of(5), index.search("9", 10));
+        assertEquals(List.of(5), index.search("x 9", 10));
+    }
+
+    @Test
+    void putReplacesOldTextAndRemoveDropsEntry() {
+        index.put(3, "TRA01", "Trà đào");
+        assertEquals(List.of(1), index.search("sua", 10));
+        assertEquals(List.of(3), index.search("dao", 10));
+        assertEquals(5, index.size());
+
+        index.remove(3);
+        index.remove(42);
+        assertEquals(List.of(), index.search("dao", 10));
+        assertEquals(List.of(), index.search("tra01", 10));
+        assertEquals(4, index.size());
+    }
+
+    private static List<Integer> sorted(List<Integer> ids) {
+        return ids.stream().sorted().toList();
+    }
+}
@@ -0,0 +1,95 @@
+package com.g174.mmssystem.service;
+
+import com.g174.mmssystem.service.OtpStore.Status;
+import com.g174.mmssystem.service.OtpStore.Verification;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * OtpStore ở chế độ memory: kiểm tra OTP, khóa sau khi nhập sai quá số lần, hủy OTP và token bucket.
+ */
+class OtpStoreTest {
+
+    private static final String EMAIL = "user@mms.vn";
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final OtpStore store = store(10, 2, 1);
+
+    @Test
+    void verifyAcceptsCurrentOtpUntilConsumed() {
+        store.issue(EMAIL, "123456");
+
+        assertEquals(new Verification(Status.VALID, MAX_ATTEMPTS), store.verify(EMAIL, "123456"));
+        // verify không hủy OTP: vẫn dùng được cho bước đặt lại mật khẩu
+        assertEquals(Status.VALID, store.verify(" User@MMS.vn ", "123456").status());
+
+        store.consume(EMAIL, "123456");
+        assertEquals(Status.NOT_FOUND, store.verify(EMAIL, "123456").status());
+    }
+
+    @Test
+    void consumeKeepsNewerOtp() {
+        store.issue(EMAIL, "111111");
+        store.issue(EMAIL, "222222");
+
+        store.consume(EMAIL, "111111");
+
+        assertEquals(Status.VALID, store.verify(EMAIL, "222222").status());
+    }
+
+    @Test
+    void unknownEmailHasNoOtp() {
+        assertEquals(new Verification(Status.NOT_FOUND, 0), store.verify("other@mms.vn", "123456"));
+        store.consume("other@mms.vn", "123456");
+        assertEquals(Status.NOT_FOUND, store.verify("other@mms.vn", "123456").status());
+    }
+
+    @Test
+    void wrongOtpCountsDownThenLocks() {
+        store.issue(EMAIL, "123456");
+
+        assertEquals(new Verification(Status.INVALID, 2), store.verify(EMAIL, "000000"));
+        assertEquals(new Verification(Status.INVALID, 1), store.verify(EMAIL, "000000"));
+        assertEquals(new Verification(Status.VALID, 1), store.verify(EMAIL, "123456"));
+        assertEquals(new Verification(Status.INVALID, 0), store.verify(EMAIL, null));
+
+        // Hết lượt: mã đúng cũng bị từ chối và OTP bị hủy
+        assertEquals(Status.LOCKED, store.verify(EMAIL, "123456").status());
+        assertEquals(Status.NOT_FOUND, store.verify(EMAIL, "123456").status());
+
+        // OTP mới đặt lại số lần sai
+        store.issue(EMAIL, "654321");
+        assertEquals(new Verification(Status.INVALID, 2), store.verify(EMAIL, "000000"));
+    }
+
+    @Test
+    void expiredOtpIsRejected() throws InterruptedException {
+        OtpStore expiring = store(0, 2, 1);
+        expiring.issue(EMAIL, "123456");
+        Thread.sleep(5);
+
+        assertEquals(Status.EXPIRED, expiring.verify(EMAIL, "123456").status());
+    }
+
+    @Test
+    void tokenBucketAllowsBurstThenRefills() throws InterruptedException {
+        assertEquals(0, store.tryAcquireRequest(EMAIL));
+        assertEquals(0, store.tryAcquireRequest(EMAIL.toUpperCase()));
+        assertEquals(1, store.tryAcquireRequest(EMAIL));
+        // Email khác có bucket riêng
+        assertEquals(0, store.tryAcquireRequest("other@mms.vn"));
+
+        Thread.sleep(1_100);
+        assertEquals(0, store.tryAcquireRequest(EMAIL));
+        assertTrue(store.tryAcquireRequest(EMAIL) > 0);
+    }
+
+    private static OtpStore store(int expirationMinutes, int requestBurst, int refillSeconds) {
+        return new OtpStore(null, mock(PlatformTransactionManager.class), "memory",
+                expirationMinutes, MAX_ATTEMPTS, requestBurst, refillSeconds);
+    }
+}
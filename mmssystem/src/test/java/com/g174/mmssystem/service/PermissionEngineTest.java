@@ -0,0 +1,188 @@
+package com.g174.mmssystem.service;
+
+import com.g174.mmssystem.entity.Permission;
+import com.g174.mmssystem.entity.RolePermission;
+import com.g174.mmssystem.entity.UserPermission;
+import com.g174.mmssystem.exception.ResourceNotFoundException;
+import com.g174.mmssystem.repository.PermissionRepository;
+import com.g174.mmssystem.repository.RolePermissionRepository;
+import com.g174.mmssystem.repository.UserPermissionRepository;
+import com.g174.mmssystem.repository.UserRepository;
+import com.g174.mmssystem.repository.UserRoleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Quyền hiệu lực dạng bitset: OR quyền role với override, hết hạn override và xóa cache.
+ * Repository được giả lập bằng các map trong bộ nhớ, sửa map mô phỏng dữ liệu thay đổi trong database.
+ */
+class PermissionEngineTest {
+
+    private static final int USER_ID = 1;
+    private static final int SALES_ROLE = 10;
+    private static final int PURCHASE_ROLE = 20;
+
+    private final List<Permission> permissions = new ArrayList<>();
+    private final Map<Integer, List<Integer>> rolePermissions = new HashMap<>();
+    private final Map<Integer, List<Integer>> userRoles = new HashMap<>();
+    private final Map<Integer, List<UserPermission>> overrides = new HashMap<>();
+    private final Map<String, Integer> userIdByEmail = new HashMap<>();
+
+    private UserRoleRepository userRoleRepository;
+    private PermissionEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        // 70 permission để bitset có hai word
+        IntStream.rangeClosed(1, 70).forEach(this::addPermission);
+        rolePermissions.put(SALES_ROLE, new ArrayList<>(List.of(1, 2)));
+        rolePermissions.put(PURCHASE_ROLE, new ArrayList<>(List.of(70)));
+        userRoles.put(USER_ID, new ArrayList<>(List.of(SALES_ROLE, PURCHASE_ROLE)));
+        userIdByEmail.put("a@mms.vn", USER_ID);
+
+        PermissionRepository permissionRepository = mock(PermissionRepository.class);
+        when(permissionRepository.findAll()).thenAnswer(inv -> List.copyOf(permissions));
+        RolePermissionRepository rolePermissionRepository = mock(RolePermissionRepository.class);
+        when(rolePermissionRepository.findByRoleId(anyInt())).thenAnswer(inv ->
+                rolePermissions.getOrDefault(inv.<Integer>getArgument(0), List.of()).stream()
+                        .map(permissionId -> new RolePermission(inv.getArgument(0), permissionId)).toList());
+        userRoleRepository = mock(UserRoleRepository.class);
+        when(userRoleRepository.findRoleIdsByUserId(anyInt())).thenAnswer(inv ->
+                List.copyOf(userRoles.getOrDefault(inv.<Integer>getArgument(0), List.of())));
+        UserPermissionRepository userPermissionRepository = mock(UserPermissionRepository.class);
+        when(userPermissionRepository.findByUserIdAndNotExpired(anyInt(), any())).thenAnswer(inv -> {
+            LocalDateTime now = inv.getArgument(1);
+            return overrides.getOrDefault(inv.<Integer>getArgument(0), List.of()).stream()
+                    .filter(o -> o.getExpiresAt() == null || o.getExpiresAt().isAfter(now))
+                    .toList();
+        });
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findIdByEmail(anyString())).thenAnswer(inv ->
+                Optional.ofNullable(userIdByEmail.get(inv.<String>getArgument(0))));
+
+        engine = new PermissionEngine(permissionRepository, rolePermissionRepository, userPermissionRepository,
+                userRoleRepository, userRepository);
+    }
+
+    @Test
+    void effectivePermissionsAreRolesOrOverrides() {
+        override(USER_ID, 5, null);
+
+        assertTrue(engine.hasPermission(USER_ID, "p1"));
+        assertTrue(engine.hasPermission(USER_ID, "p2"));
+        assertTrue(engine.hasPermission(USER_ID, "p70"));
+        assertTrue(engine.hasPermission(USER_ID, "p5"));
+        assertFalse(engine.hasPermission(USER_ID, "p3"));
+        assertFalse(engine.hasPermission(USER_ID, "p64"));
+        assertFalse(engine.hasPermission(USER_ID, "unknown.key"));
+        assertFalse(engine.hasPermission(2, "p1"));
+    }
+
+    @Test
+    void bitsAreCachedUntilEarliestOverrideExpires() throws InterruptedException {
+        override(USER_ID, 5, LocalDateTime.now().plusNanos(300_000_000));
+        override(USER_ID, 6, LocalDateTime.now().plusDays(1));
+
+        assertTrue(engine.hasPermission(USER_ID, "p5"));
+        assertTrue(engine.hasPermission(USER_ID, "p6"));
+        verify(userRoleRepository, times(1)).findRoleIdsByUserId(USER_ID);
+
+        Thread.sleep(400);
+
+        assertFalse(engine.hasPermission(USER_ID, "p5"));
+        assertTrue(engine.hasPermission(USER_ID, "p6"));
+        verify(userRoleRepository, times(2)).findRoleIdsByUserId(USER_ID);
+    }
+
+    @Test
+    void invalidateUserRecomputesOnlyAfterCall() {
+        assertFalse(engine.hasPermission(USER_ID, "p9"));
+        override(USER_ID, 9, null);
+        assertFalse(engine.hasPermission(USER_ID, "p9"));
+
+        engine.invalidateUser(USER_ID);
+        assertTrue(engine.hasPermission(USER_ID, "p9"));
+
+        userRoles.get(USER_ID).remove(Integer.valueOf(SALES_ROLE));
+        engine.invalidateUser(USER_ID);
+        assertFalse(engine.hasPermission(USER_ID, "p1"));
+    }
+
+    @Test
+    void invalidateRoleRecomputesUsersOfThatRole() {
+        assertFalse(engine.hasPermission(USER_ID, "p3"));
+        rolePermissions.get(SALES_ROLE).add(3);
+        rolePermissions.get(PURCHASE_ROLE).clear();
+        assertFalse(engine.hasPermission(USER_ID, "p3"));
+
+        engine.invalidateRole(SALES_ROLE);
+        assertTrue(engine.hasPermission(USER_ID, "p3"));
+        // Role khác vẫn dùng bitset đã cache cho tới khi bị xóa
+        assertTrue(engine.hasPermission(USER_ID, "p70"));
+
+        engine.invalidateRole(PURCHASE_ROLE);
+        assertFalse(engine.hasPermission(USER_ID, "p70"));
+    }
+
+    @Test
+    void invalidateAllAndRefreshReloadCatalog() {
+        assertFalse(engine.hasPermission(USER_ID, "p71"));
+        addPermission(71);
+        rolePermissions.get(SALES_ROLE).add(71);
+        assertFalse(engine.hasPermission(USER_ID, "p71"));
+
+        engine.invalidateAll();
+        assertTrue(engine.hasPermission(USER_ID, "p71"));
+
+        rolePermissions.get(SALES_ROLE).remove(Integer.valueOf(71));
+        engine.refresh();
+        assertFalse(engine.hasPermission(USER_ID, "p71"));
+    }
+
+    @Test
+    void emailIsResolvedOnEveryCheck() {
+        userRoles.put(2, List.of());
+        assertTrue(engine.hasPermission("a@mms.vn", "p1"));
+
+        // User 1 đổi email, user 2 nhận lại email cũ: quyền phải theo user 2
+        userIdByEmail.remove("a@mms.vn");
+        userIdByEmail.put("new@mms.vn", USER_ID);
+        userIdByEmail.put("a@mms.vn", 2);
+        assertFalse(engine.hasPermission("a@mms.vn", "p1"));
+        assertTrue(engine.hasPermission("new@mms.vn", "p1"));
+
+        userIdByEmail.remove("a@mms.vn");
+        assertThrows(ResourceNotFoundException.class, () -> engine.hasPermission("a@mms.vn", "p1"));
+    }
+
+    private void addPermission(int id) {
+        permissions.add(Permission.builder().permissionId(id).permissionKey("p" + id).build());
+    }
+
+    private void override(int userId, int permissionId, LocalDateTime expiresAt) {
+        UserPermission override = new UserPermission();
+        override.setUserId(userId);
+        override.setPermissionId(permissionId);
+        override.setExpiresAt(expiresAt);
+        overrides.computeIfAbsent(userId, k -> new ArrayList<>()).add(override);
+    }
+}
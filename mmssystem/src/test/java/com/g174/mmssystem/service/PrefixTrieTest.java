@@ -0,0 +1,115 @@
+package com.g174.mmssystem.service;
+
+import com.g174.mmssystem.service.PrefixTrie.Item;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PrefixTrieTest {
+
+    @Test
+    void splitsSharedEdgesAndMatchesInsideAnEdge() {
+        PrefixTrie trie = PrefixTrie.build(List.of(
+                new Item(1, "", "cart"),
+                new Item(2, "", "car"),
+                new Item(3, "", "cat"),
+                new Item(4, "", "dog")));
+
+        // "ca" là cạnh chung, tách thành "r" (-> "t") và "t"
+        assertEquals(List.of(2, 3, 1), ids(trie.suggest("c", 10)));
+        assertEquals(List.of(2, 3, 1), ids(trie.suggest("ca", 10)));
+        assertEquals(List.of(2, 1), ids(trie.suggest("car", 10)));
+        assertEquals(List.of(1), ids(trie.suggest("cart", 10)));
+        // Tiền tố kết thúc giữa cạnh "og"
+        assertEquals(List.of(4), ids(trie.suggest("do", 10)));
+        assertEquals(List.of(), ids(trie.suggest("cab", 10)));
+        assertEquals(List.of(), ids(trie.suggest("carts", 10)));
+    }
+
+    @Test
+    void mergesTopsAcrossSubtreesWithoutDuplicates() {
+        PrefixTrie trie = PrefixTrie.build(List.of(
+                new Item(1, "AN01", "An Nhiên"),
+                new Item(2, "B02", "Bình An"),
+                new Item(3, "C03", "An")));
+
+        // Item 1 có cả mã "an01" và tên "an nhien" trong cây con "an" nhưng chỉ xuất hiện một lần
+        assertEquals(List.of(3, 2, 1), ids(trie.suggest("an", 10)));
+        assertEquals(List.of(1), ids(trie.suggest("an0", 10)));
+        assertEquals(List.of(1), ids(trie.suggest("nhien", 10)));
+    }
+
+    @Test
+    void ranksByNameLengthThenAlphabetThenId() {
+        PrefixTrie trie = PrefixTrie.build(List.of(
+                new Item(10, "", "Sữa tươi tiệt trùng"),
+                new Item(11, "", "Sữa đặc"),
+                new Item(12, "", "Sữa bột"),
+                new Item(9, "", "Sữa bột")));
+
+        assertEquals(List.of(9, 12, 11, 10), ids(trie.suggest("SUA", 10)));
+        assertEquals(List.of(9, 12), ids(trie.suggest("sua", 2)));
+        assertEquals(List.of(), trie.suggest("sua", 0));
+    }
+
+    @Test
+    void codesMatchWithAndWithoutSpaces() {
+        PrefixTrie trie = PrefixTrie.build(List.of(new Item(1, "SP 001", "Bút bi")));
+
+        assertEquals(List.of(1), ids(trie.suggest("sp 0", 10)));
+        assertEquals(List.of(1), ids(trie.suggest("sp0", 10)));
+        assertEquals(List.of(1), ids(trie.suggest("SP-001", 10)));
+    }
+
+    @Test
+    void capsTopAtMaxSuggestions() {
+        List<Item> items = new ArrayList<>();
+        IntStream.range(0, PrefixTrie.MAX_SUGGESTIONS + 15)
+                .forEach(i -> items.add(new Item(i, "", "hang " + "x".repeat(i))));
+        PrefixTrie trie = PrefixTrie.build(items);
+
+        List<Item> result = trie.suggest("hang", 100);
+        assertEquals(PrefixTrie.MAX_SUGGESTIONS, result.size());
+        assertEquals(IntStream.range(0, PrefixTrie.MAX_SUGGESTIONS).boxed().toList(), ids(result));
+    }
+
+    @Test
+    void longPrefixIsTruncatedLikeTerms() {
+        String name = "a".repeat(40);
+        PrefixTrie trie = PrefixTrie.build(List.of(new Item(1, "", name)));
+
+        assertEquals(List.of(1), ids(trie.suggest(name, 10)));
+        assertEquals(List.of(1), ids(trie.suggest(name + "b", 10)));
+    }
+
+    @Test
+    void removalByRebuildDropsItemFromEverySubtree() {
+        List<Item> items = new ArrayList<>(List.of(
+                new Item(1, "KH01", "Nguyễn Văn An"),
+                new Item(2, "KH02", "Trần Văn Bình")));
+        assertEquals(List.of(1, 2), ids(PrefixTrie.build(items).suggest("van", 10)));
+
+        items.removeIf(item -> item.id() == 1);
+        PrefixTrie trie = PrefixTrie.build(items);
+
+        assertEquals(1, trie.size());
+        assertEquals(List.of(2), ids(trie.suggest("van", 10)));
+        assertEquals(List.of(), ids(trie.suggest("kh01", 10)));
+        assertEquals(List.of(), ids(trie.suggest("an", 10)));
+    }
+
+    @Test
+    void emptyTrieAndBlankPrefix() {
+        assertEquals(0, PrefixTrie.EMPTY.size());
+        assertEquals(List.of(), PrefixTrie.EMPTY.suggest("a", 10));
+        assertEquals(List.of(), PrefixTrie.build(List.of(new Item(1, "A", "B"))).suggest(" - ", 10));
+    }
+
+    private static List<Integer> ids(List<Item> items) {
+        return items.stream().map(Item::id).toList();
+    }
+}
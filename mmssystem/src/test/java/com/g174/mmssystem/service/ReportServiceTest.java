@@ -0,0 +1,72 @@
+package com.g174.mmssystem.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.g174.mmssystem.dto.request.ReportRequest;
+import com.g174.mmssystem.entity.Report;
+import com.g174.mmssystem.enums.ReportStatus;
+import com.g174.mmssystem.enums.ReportType;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Hash tham số dùng để gộp các yêu cầu báo cáo giống nhau đang chạy.
+ */
+class ReportServiceTest {
+
+    private final ReportService service = new ReportService(null, null, null, null, null,
+            new ObjectMapper().findAndRegisterModules(), null, null, null, null);
+
+    @Test
+    void additionalFiltersKeyOrderAndWhitespaceDoNotChangeHash() {
+        ReportRequest a = request("{\"status\":\"Open\",\"tags\":{\"b\":2,\"a\":1}}");
+        ReportRequest b = request("{ \"tags\": {\"a\": 1, \"b\": 2},\n \"status\": \"Open\" }");
+
+        assertEquals(service.buildParamHash(ReportType.Sales, a, 1), service.buildParamHash(ReportType.Sales, b, 1));
+        assertNotEquals(service.buildParamHash(ReportType.Sales, a, 1),
+                service.buildParamHash(ReportType.Sales, request("{\"status\":\"Closed\"}"), 1));
+    }
+
+    @Test
+    void hashDependsOnUserTypeAndFilters() {
+        ReportRequest request = request(null);
+        String hash = service.buildParamHash(ReportType.Sales, request, 1);
+
+        assertNotEquals(hash, service.buildParamHash(ReportType.Sales, request, 2));
+        assertNotEquals(hash, service.buildParamHash(ReportType.Purchase, request, 1));
+        request.setCustomerId(7);
+        assertNotEquals(hash, service.buildParamHash(ReportType.Sales, request, 1));
+        // Tên và mô tả không ảnh hưởng
+        ReportRequest renamed = request(null);
+        renamed.setName("Khác");
+        assertEquals(hash, service.buildParamHash(ReportType.Sales, renamed, 1));
+    }
+
+    @Test
+    void invalidJsonFiltersStillHash() {
+        assertEquals(service.buildParamHash(ReportType.Sales, request("not json "), 1),
+                service.buildParamHash(ReportType.Sales, request("not json"), 1));
+    }
+
+    @Test
+    void builderKeepsFieldDefaults() {
+        Report report = Report.builder().name("r").type(ReportType.Sales).build();
+
+        assertEquals(0, report.getProgress());
+        assertEquals(ReportStatus.Pending, report.getStatus());
+        assertNotNull(report.getGeneratedAt());
+    }
+
+    private static ReportRequest request(String additionalFilters) {
+        return ReportRequest.builder()
+                .name("Báo cáo")
+                .startDate(LocalDate.of(2024, 1, 1))
+                .endDate(LocalDate.of(2024, 1, 31))
+                .additionalFilters(additionalFilters)
+                .build();
+    }
+}
@@ -0,0 +1,37 @@
+package com.g174.mmssystem.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SearchTextNormalizerTest {
+
+    @Test
+    void foldRemovesVietnameseMarksAndSeparators() {
+        assertEquals("nguyen van duc", SearchTextNormalizer.fold("Nguyễn Văn-Đức"));
+        assertEquals("dau an hao hang", SearchTextNormalizer.fold("  Dầu ăn (hảo hạng)!  "));
+        assertEquals("sp 001 a", SearchTextNormalizer.fold("SP_001/a"));
+    }
+
+    @Test
+    void foldHandlesEmptyInput() {
+        assertEquals("", SearchTextNormalizer.fold(null));
+        assertEquals("", SearchTextNormalizer.fold(""));
+        assertEquals("", SearchTextNormalizer.fold(" -- "));
+    }
+
+    @Test
+    void composedAndDecomposedFormsFoldTheSame() {
+        String composed = "Tiếng Việt";
+        String decomposed = java.text.Normalizer.normalize(composed, java.text.Normalizer.Form.NFD);
+        assertEquals(SearchTextNormalizer.fold(composed), SearchTextNormalizer.fold(decomposed));
+    }
+
+    @Test
+    void tokensSplitFoldedText() {
+        assertArrayEquals(new String[]{"ca", "phe", "sua", "da"}, SearchTextNormalizer.tokens("Cà phê, sữa đá"));
+        assertArrayEquals(new String[0], SearchTextNormalizer.tokens("  ...  "));
+        assertArrayEquals(new String[0], SearchTextNormalizer.tokens(null));
+    }
+}
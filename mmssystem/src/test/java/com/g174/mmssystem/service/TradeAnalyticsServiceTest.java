@@ -0,0 +1,209 @@
+package com.g174.mmssystem.service;
+
+import com.g174.mmssystem.entity.GoodsReceipt;
+import com.g174.mmssystem.entity.GoodsReceiptItem;
+import com.g174.mmssystem.entity.Product;
+import com.g174.mmssystem.entity.PurchaseOrder;
+import com.g174.mmssystem.entity.PurchaseOrderItem;
+import com.g174.mmssystem.entity.Vendor;
+import com.g174.mmssystem.entity.Warehouse;
+import com.g174.mmssystem.enums.PurchaseOrderApprovalStatus;
+import com.g174.mmssystem.enums.PurchaseOrderStatus;
+import com.g174.mmssystem.repository.RepositoryTestSupport;
+import com.g174.mmssystem.repository.TradeAggregatePeriodRepository;
+import com.g174.mmssystem.service.TradeAnalyticsService.AnalyticsGroup;
+import com.g174.mmssystem.service.TradeAnalyticsService.PurchaseAnalytics;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tổng hợp mua theo tháng trên database thật: thời gian giao hàng tính theo ngày lịch, tháng đã dựng bị ghi lùi
+ * được dựng lại, và báo cáo gọi từ transaction read-only vẫn dựng / lưu được tháng còn thiếu.
+ */
+@Import(TradeAnalyticsService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TradeAnalyticsServiceTest extends RepositoryTestSupport {
+
+    // Tháng đã đóng: đọc từ bảng tổng hợp khi lấy trọn tháng
+    private static final YearMonth MONTH = YearMonth.now().minusMonths(2);
+
+    @Autowired
+    private TradeAnalyticsService service;
+
+    @Autowired
+    private TradeAggregatePeriodRepository periodRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaction;
+    private Integer receiptId;
+    private Integer orderId;
+    private Integer productId;
+
+    @BeforeEach
+    void setUp() {
+        transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> {
+            Vendor vendor = new Vendor();
+            vendor.setName("Nha cung cap A");
+            vendor.setVendorCode("NCC-TRADE");
+            entityManager.persist(vendor);
+
+            Warehouse warehouse = new Warehouse();
+            warehouse.setCode("KHO-TRADE");
+            warehouse.setName("Kho tong hop");
+            entityManager.persist(warehouse);
+
+            Product product = new Product();
+            product.setSku("SP-TRADE");
+            product.setName("San pham A");
+            product.setStatus(Product.Status.IN_STOCK);
+            product.setCreatedAt(LocalDateTime.now());
+            entityManager.persist(product);
+
+            // Đặt hàng 10:00 ngày 1, nhập kho 08:00 ngày 4: 3 ngày dù chưa đủ 72 giờ
+            PurchaseOrder order = new PurchaseOrder();
+            order.setPoNo("PO-TRADE");
+            order.setVendor(vendor);
+            order.setOrderDate(MONTH.atDay(1).atTime(10, 0));
+            order.setStatus(PurchaseOrderStatus.Approved);
+            order.setApprovalStatus(PurchaseOrderApprovalStatus.Approved);
+            entityManager.persist(order);
+
+            PurchaseOrderItem orderItem = new PurchaseOrderItem();
+            orderItem.setPurchaseOrder(order);
+            orderItem.setProduct(product);
+            orderItem.setQuantity(new BigDecimal("10"));
+            orderItem.setReceivedQty(new BigDecimal("10"));
+            orderItem.setInvoicedQty(BigDecimal.ZERO);
+            orderItem.setUnitPrice(new BigDecimal("5"));
+            orderItem.setLineTotal(new BigDecimal("50"));
+            entityManager.persist(orderItem);
+
+            GoodsReceipt receipt = new GoodsReceipt();
+            receipt.setReceiptNo("GR-TRADE");
+            receipt.setPurchaseOrder(order);
+            receipt.setWarehouse(warehouse);
+            receipt.setReceivedDate(MONTH.atDay(4).atTime(8, 0));
+            receipt.setStatus(GoodsReceipt.GoodsReceiptStatus.Approved);
+            receipt.setSourceType(GoodsReceipt.SourceType.Purchase);
+            entityManager.persist(receipt);
+            entityManager.flush();
+
+            orderId = order.getOrderId();
+            receiptId = receipt.getReceiptId();
+            productId = product.getProductId();
+        });
+        addReceiptLine(receiptId, "10");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM trade_monthly_aggregates");
+        jdbcTemplate.update("DELETE FROM trade_aggregate_periods");
+        jdbcTemplate.update("DELETE FROM goods_receipt_items");
+        jdbcTemplate.update("DELETE FROM goods_receipts");
+        jdbcTemplate.update("DELETE FROM purchase_order_items");
+        jdbcTemplate.update("DELETE FROM purchase_orders");
+        jdbcTemplate.update("DELETE FROM products WHERE sku = 'SP-TRADE'");
+        jdbcTemplate.update("DELETE FROM warehouses WHERE code = 'KHO-TRADE'");
+        jdbcTemplate.update("DELETE FROM vendors WHERE vendor_code = 'NCC-TRADE'");
+    }
+
+    @Test
+    void leadDaysCountCalendarDaysInRawAndAggregatedRanges() {
+        // Một phần tháng: đọc trực tiếp từ phiếu nhập
+        AnalyticsGroup raw = vendor(service.purchaseAnalytics(MONTH.atDay(2), MONTH.atDay(20), null));
+        assertEquals(1, raw.getReceiptLines());
+        assertDecimal("3.00", raw.getAverageLeadDays());
+
+        // Trọn tháng: đọc từ bảng tổng hợp
+        PurchaseAnalytics aggregated = service.purchaseAnalytics(MONTH.atDay(1), MONTH.atEndOfMonth(), null);
+        assertEquals(1, aggregated.aggregatedMonths());
+        assertDecimal("3.00", vendor(aggregated).getAverageLeadDays());
+        assertDecimal("50", vendor(aggregated).getOrderedAmount());
+    }
+
+    @Test
+    void backdatedWritesMarkBuiltMonthForRebuild() {
+        assertEquals(1, vendor(fullMonth()).getReceiptLines());
+        assertEquals(List.of(period()), builtPeriods());
+
+        // Dòng mới của phiếu nhập tháng cũ (chỉ biết id phiếu)
+        addReceiptLine(receiptId, "5");
+        assertEquals(List.of(), builtPeriods());
+        assertEquals(2, vendor(fullMonth()).getReceiptLines());
+        assertEquals(List.of(period()), builtPeriods());
+
+        // Sửa đơn mua tháng cũ
+        transaction.executeWithoutResult(status ->
+                entityManager.find(PurchaseOrder.class, orderId).setPaymentTerms("Net 30"));
+        assertEquals(List.of(), builtPeriods());
+    }
+
+    @Test
+    void reportInsideReadOnlyTransactionBuildsMissingMonth() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        PurchaseAnalytics analytics = readOnly.execute(status -> fullMonth());
+
+        assertDecimal("50", vendor(analytics).getOrderedAmount());
+        assertEquals(List.of(period()), builtPeriods());
+    }
+
+    private void addReceiptLine(Integer receiptId, String quantity) {
+        transaction.executeWithoutResult(status -> {
+            GoodsReceiptItem item = new GoodsReceiptItem();
+            item.setGoodsReceipt(entityManager.getReference(GoodsReceipt.class, receiptId));
+            item.setProduct(entityManager.getReference(Product.class, productId));
+            item.setReceivedQty(new BigDecimal(quantity));
+            item.setAcceptedQty(new BigDecimal(quantity));
+            entityManager.persist(item);
+        });
+    }
+
+    private PurchaseAnalytics fullMonth() {
+        return service.purchaseAnalytics(MONTH.atDay(1), MONTH.atEndOfMonth(), null);
+    }
+
+    private List<Integer> builtPeriods() {
+        return periodRepository.findBuiltPeriods(period(), period());
+    }
+
+    private static Integer period() {
+        return MONTH.getYear() * 100 + MONTH.getMonthValue();
+    }
+
+    private static AnalyticsGroup vendor(PurchaseAnalytics analytics) {
+        assertEquals(1, analytics.byVendor().size());
+        return analytics.byVendor().get(0);
+    }
+
+    private static void assertDecimal(String expected, BigDecimal actual) {
+        assertEquals(0, new BigDecimal(expected).compareTo(actual), "expected " + expected + " but was " + actual);
+    }
+}